@@ -0,0 +1,108 @@
+package com.payment.config;
+
+import com.payment.service.CanonicalJsonDigest;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.lang.NonNull;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Hashes the body of idempotent requests while it is read for deserialization, so the controller does
+ * not have to re-serialize the DTO to hash it. The {@link CanonicalJsonDigest} is exposed as the
+ * {@link CanonicalJsonDigest#REQUEST_ATTRIBUTE} request attribute and completes once the body has been read.
+ */
+public class PayloadDigestFilter extends OncePerRequestFilter {
+
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain) throws ServletException, IOException {
+        CanonicalJsonDigest digest = new CanonicalJsonDigest();
+        request.setAttribute(CanonicalJsonDigest.REQUEST_ATTRIBUTE, digest);
+        filterChain.doFilter(new DigestingRequestWrapper(request, digest), response);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || request.getHeader(IDEMPOTENCY_KEY_HEADER) == null;
+    }
+
+    private static final class DigestingRequestWrapper extends HttpServletRequestWrapper {
+
+        private final CanonicalJsonDigest digest;
+        private ServletInputStream inputStream;
+
+        DigestingRequestWrapper(HttpServletRequest request, CanonicalJsonDigest digest) {
+            super(request);
+            this.digest = digest;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (inputStream == null) {
+                inputStream = new DigestingInputStream(super.getInputStream(), digest);
+            }
+            return inputStream;
+        }
+    }
+
+    private static final class DigestingInputStream extends ServletInputStream {
+
+        private final ServletInputStream delegate;
+        private final CanonicalJsonDigest digest;
+        private final byte[] single = new byte[1];
+
+        DigestingInputStream(ServletInputStream delegate, CanonicalJsonDigest digest) {
+            this.delegate = delegate;
+            this.digest = digest;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = delegate.read();
+            if (b >= 0) {
+                single[0] = (byte) b;
+                digest.update(single, 0, 1);
+            } else {
+                digest.finish();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = delegate.read(buffer, offset, length);
+            if (n > 0) {
+                digest.update(buffer, offset, n);
+            } else if (n < 0) {
+                digest.finish();
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            delegate.setReadListener(readListener);
+        }
+    }
+}
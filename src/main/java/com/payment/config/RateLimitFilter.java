@@ -1,7 +1,12 @@
 package com.payment.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.domain.RateLimitEndpoint;
 import com.payment.dto.ErrorResponse;
+import com.payment.security.MerchantContext;
+import com.payment.service.LocalRateLimiter;
+import com.payment.service.RateLimitPolicyService;
+import com.payment.service.RateLimitPolicyTable;
 import com.payment.service.RateLimitService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -9,21 +14,25 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.MediaType;
 import org.springframework.lang.NonNull;
-import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.time.Instant;
 
+/**
+ * Applies the authenticated merchant's budget for the requested endpoint.
+ * Runs after Spring Security so the merchant is known; unauthenticated requests never get this far.
+ */
 public class RateLimitFilter extends OncePerRequestFilter {
 
-    private static final String API_KEY_HEADER = "X-API-KEY";
-
-    private final RateLimitService rateLimitService;
+    private final LocalRateLimiter rateLimiter;
+    private final RateLimitPolicyService policyService;
     private final ObjectMapper objectMapper;
 
-    public RateLimitFilter(RateLimitService rateLimitService, ObjectMapper objectMapper) {
-        this.rateLimitService = rateLimitService;
+    public RateLimitFilter(LocalRateLimiter rateLimiter, RateLimitPolicyService policyService,
+                           ObjectMapper objectMapper) {
+        this.rateLimiter = rateLimiter;
+        this.policyService = policyService;
         this.objectMapper = objectMapper;
     }
 
@@ -32,11 +41,17 @@ public class RateLimitFilter extends OncePerRequestFilter {
             @NonNull HttpServletRequest request,
             @NonNull HttpServletResponse response,
             @NonNull FilterChain filterChain) throws ServletException, IOException {
-        String apiKey = request.getHeader(API_KEY_HEADER);
-        if (StringUtils.hasText(apiKey)) {
-            String rateLimitKey = apiKey.length() >= 8 ? apiKey.substring(0, 8) : apiKey;
-            int retryAfter = rateLimitService.checkAndIncrement(rateLimitKey);
-            if (retryAfter > 0) {
+        Long merchantId = MerchantContext.getMerchantId(request);
+        if (merchantId != null) {
+            RateLimitEndpoint endpoint = RateLimitEndpoint.classify(request.getMethod(), request.getRequestURI());
+            RateLimitPolicyTable.Budget budget = policyService.resolve(merchantId, endpoint);
+            RateLimitService.RateLimitResult result = rateLimiter.checkAndIncrement(
+                    merchantId + ":" + endpoint.name(), budget);
+            response.setHeader("X-RateLimit-Limit", String.valueOf(result.limit()));
+            response.setHeader("X-RateLimit-Remaining", String.valueOf(result.remaining()));
+            response.setHeader("X-RateLimit-Reset", String.valueOf(result.resetSeconds()));
+            if (!result.allowed()) {
+                int retryAfter = Math.max(result.retryAfterSeconds(), 1);
                 response.setStatus(429);
                 response.setHeader("Retry-After", String.valueOf(retryAfter));
                 response.setContentType(MediaType.APPLICATION_JSON_VALUE);
@@ -0,0 +1,68 @@
+package com.payment.config;
+
+import com.payment.service.ReadYourWrites;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends {@code @Transactional(readOnly = true)} work to the read replicas in {@code datasource.replica.urls}. The
+ * application's DataSource becomes a {@link LazyConnectionDataSourceProxy} over the primary pool: it takes a
+ * physical connection at the first statement, after the transaction manager has marked the transaction read-only,
+ * and takes read-only ones from {@link ReplicaRoutingDataSource}. Flyway, writes and work outside a read-only
+ * transaction stay on the primary. Without replicas, Boot's own DataSource is used unchanged.
+ */
+@Configuration
+@ConditionalOnExpression("!'${datasource.replica.urls:}'.isBlank()")
+public class ReadReplicaConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaDataSource(HikariDataSource primaryDataSource,
+                                                      DataSourceProperties properties,
+                                                      ReadYourWrites readYourWrites,
+                                                      MeterRegistry meterRegistry,
+                                                      @Value("${datasource.replica.urls}") List<String> urls,
+                                                      @Value("${datasource.replica.pool-size:10}") int poolSize,
+                                                      @Value("${datasource.replica.max-lag-ms:5000}") long maxLagMs,
+                                                      @Value("${datasource.replica.lag-check-ms:500}") long lagCheckMs) {
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String url : urls) {
+            // Same credentials and driver as the primary
+            HikariDataSource replica = properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+                    .url(url.trim())
+                    .build();
+            replica.setPoolName("replica-" + (replicas.size() + 1));
+            replica.setMaximumPoolSize(poolSize);
+            replica.setReadOnly(true);
+            replica.setMetricRegistry(meterRegistry);
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, readYourWrites, meterRegistry,
+                maxLagMs, lagCheckMs);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaRoutingDataSource replicaDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        return dataSource;
+    }
+}
@@ -0,0 +1,31 @@
+package com.payment.config;
+
+import com.payment.security.ApiKeyCache;
+import com.payment.service.PaymentIntentCache;
+import com.payment.service.PaymentIntentStream;
+import com.payment.service.ReadYourWrites;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+public class RedisConfig {
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       ApiKeyCache apiKeyCache,
+                                                                       PaymentIntentCache paymentIntentCache,
+                                                                       PaymentIntentStream paymentIntentStream,
+                                                                       ReadYourWrites readYourWrites) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(apiKeyCache, new ChannelTopic(ApiKeyCache.REVOCATION_CHANNEL));
+        container.addMessageListener(paymentIntentCache, new ChannelTopic(PaymentIntentCache.EVICTION_CHANNEL));
+        container.addMessageListener(paymentIntentStream, new PatternTopic(PaymentIntentStream.CHANNEL_PATTERN));
+        container.addMessageListener(readYourWrites, new PatternTopic(PaymentIntentStream.CHANNEL_PATTERN));
+        return container;
+    }
+}
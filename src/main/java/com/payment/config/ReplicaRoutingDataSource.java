@@ -0,0 +1,197 @@
+package com.payment.config;
+
+import com.payment.security.MerchantContext;
+import com.payment.service.ReadYourWrites;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connections for read-only transactions: from a replica known to be at most {@code datasource.replica.max-lag-ms}
+ * behind the primary, round robin, otherwise from the primary. Merchants that just changed something read from
+ * the primary for the same bound ({@link ReadYourWrites}), so they always see their own writes.
+ * <p>
+ * Staleness is measured by WAL position, which needs no monitoring privileges. Every
+ * {@code datasource.replica.lag-check-ms} the primary's current WAL position is sampled; a replica that has replayed
+ * past the sample taken at time T has every transaction committed before T, so it is fresh as of T. Unlike
+ * {@code pg_last_xact_replay_timestamp()}, this reads an idle primary as no lag and a replica that lost its
+ * connection to the primary as growing lag. A replica is used while its last known freshness is within the bound,
+ * so a read is never staler than {@code max-lag-ms}, however long the next check takes.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+    private static final String PRIMARY_POSITION_SQL = "SELECT pg_current_wal_lsn() - '0/0'";
+    private static final String REPLAY_POSITION_SQL = "SELECT pg_last_wal_replay_lsn() - '0/0'";
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final ReadYourWrites readYourWrites;
+    private final long maxLagMs;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService lagCheck;
+    /** Primary WAL positions as {time, position}, oldest first; touched by the lag check thread only. */
+    private final Deque<long[]> primaryPositions = new ArrayDeque<>();
+    private final Counter replicaReads;
+    private final Counter stickyReads;
+    private final Counter staleReads;
+
+    private static final class Replica {
+        final HikariDataSource dataSource;
+        /** Primary time up to which this replica has every commit; 0 while unknown. */
+        volatile long freshAsOf;
+        boolean available = true;
+
+        Replica(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+
+    public ReplicaRoutingDataSource(DataSource primary,
+                                    List<HikariDataSource> replicas,
+                                    ReadYourWrites readYourWrites,
+                                    MeterRegistry meterRegistry,
+                                    long maxLagMs,
+                                    long lagCheckMs) {
+        if (lagCheckMs >= maxLagMs) {
+            throw new IllegalArgumentException("datasource.replica.lag-check-ms must be below max-lag-ms, "
+                    + "or no replica is ever fresh enough");
+        }
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.readYourWrites = readYourWrites;
+        this.maxLagMs = maxLagMs;
+        this.replicaReads = readOnlyConnections(meterRegistry, "replica", "fresh");
+        this.stickyReads = readOnlyConnections(meterRegistry, "primary", "read_your_writes");
+        this.staleReads = readOnlyConnections(meterRegistry, "primary", "replicas_stale");
+        for (Replica replica : this.replicas) {
+            Gauge.builder("datasource.replica.staleness", replica,
+                            r -> r.freshAsOf == 0 ? Double.NaN : System.currentTimeMillis() - r.freshAsOf)
+                    .tag("pool", replica.dataSource.getPoolName())
+                    .description("Milliseconds of primary commits the replica may be missing")
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+        }
+        this.lagCheck = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("replica-lag-check").daemon().factory());
+        lagCheck.scheduleWithFixedDelay(this::checkLag, 0, lagCheckMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Long merchantId = MerchantContext.getMerchantId();
+        if (merchantId != null && readYourWrites.wroteRecently(merchantId)) {
+            stickyReads.increment();
+            return primary.getConnection();
+        }
+        long now = System.currentTimeMillis();
+        int start = next.getAndIncrement();
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(Math.floorMod(start + i, replicas.size()));
+            if (now - replica.freshAsOf > maxLagMs) {
+                continue;
+            }
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                replicaReads.increment();
+                return connection;
+            } catch (SQLException e) {
+                // Skipped until the next check reaches it
+                replica.freshAsOf = 0;
+                log.warn("Replica {} unavailable, reading from another: {}", replica.dataSource.getPoolName(),
+                        e.getMessage());
+            }
+        }
+        staleReads.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Replica connections use the configured credentials");
+    }
+
+    @Override
+    public void close() {
+        lagCheck.shutdownNow();
+        replicas.forEach(replica -> replica.dataSource.close());
+    }
+
+    private void checkLag() {
+        long now = System.currentTimeMillis();
+        try {
+            primaryPositions.addLast(new long[]{now, position(primary, PRIMARY_POSITION_SQL)});
+        } catch (SQLException | RuntimeException e) {
+            // Replicas keep their last freshness, which ages out
+            log.warn("Cannot read the primary's WAL position: {}", e.getMessage());
+            return;
+        }
+        // A replica behind every kept sample is staler than the bound
+        while (primaryPositions.size() > 1 && primaryPositions.peekFirst()[0] < now - maxLagMs) {
+            primaryPositions.removeFirst();
+        }
+        for (Replica replica : replicas) {
+            try {
+                long replayed = position(replica.dataSource, REPLAY_POSITION_SQL);
+                for (Iterator<long[]> samples = primaryPositions.descendingIterator(); samples.hasNext(); ) {
+                    long[] sample = samples.next();
+                    if (sample[1] <= replayed) {
+                        replica.freshAsOf = Math.max(replica.freshAsOf, sample[0]);
+                        break;
+                    }
+                }
+                if (!replica.available) {
+                    replica.available = true;
+                    log.info("Replica {} is reachable again", replica.dataSource.getPoolName());
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (replica.available) {
+                    replica.available = false;
+                    log.warn("Cannot read replica {}'s replay position: {}", replica.dataSource.getPoolName(),
+                            e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static long position(DataSource dataSource, String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            long position = resultSet.getLong(1);
+            if (resultSet.wasNull()) {
+                throw new IllegalStateException("not a standby");
+            }
+            return position;
+        }
+    }
+
+    private static Counter readOnlyConnections(MeterRegistry meterRegistry, String target, String reason) {
+        return Counter.builder("datasource.read_only.connections")
+                .tag("target", target)
+                .tag("reason", reason)
+                .description("Connections handed out for read-only transactions")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,142 @@
+package com.payment.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Reports virtual threads that block while pinned to their carrier thread, e.g. inside a {@code synchronized}
+ * block or a native frame on Java 21. A pinned thread holds one of the few carriers for as long as it blocks, so
+ * a handful of them stall every other virtual thread.
+ * <p>
+ * Listens to the JFR {@code jdk.VirtualThreadPinned} event, emitted for pins longer than
+ * {@code diagnostics.pinning.threshold-ms}, through an in-process recording stream. Each event is attributed to
+ * the JDBC, Redis or BCrypt path by its stack and recorded in the {@code threads.virtual.pinned} timer. The stack
+ * of each distinct pinning site is logged once.
+ */
+@Component
+@ConditionalOnProperty(name = "diagnostics.pinning.enabled", havingValue = "true")
+public class VirtualThreadPinningMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 25;
+    private static final int MAX_LOGGED_SITES = 1_000;
+
+    public enum Path {
+        JDBC("org.postgresql.", "com.zaxxer.hikari."),
+        REDIS("io.lettuce.", "org.springframework.data.redis."),
+        BCRYPT("org.springframework.security.crypto.bcrypt."),
+        OTHER;
+
+        private final String[] packages;
+
+        Path(String... packages) {
+            this.packages = packages;
+        }
+
+        private boolean owns(String className) {
+            for (String prefix : packages) {
+                if (className.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final Duration threshold;
+    private final Map<Path, Timer> pinned = new EnumMap<>(Path.class);
+    private final Set<String> loggedSites = ConcurrentHashMap.newKeySet();
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry,
+                                       @Value("${diagnostics.pinning.threshold-ms:20}") long thresholdMs) {
+        this.threshold = Duration.ofMillis(thresholdMs);
+        for (Path path : Path.values()) {
+            pinned.put(path, Timer.builder("threads.virtual.pinned")
+                    .description("Virtual threads that blocked while pinned to their carrier")
+                    .tag("path", path.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        stream = new RecordingStream();
+        stream.enable(EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(EVENT, this::record);
+        stream.startAsync();
+        log.info("Virtual thread pinning monitor started: threshold={}ms", threshold.toMillis());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    /**
+     * @return pins recorded so far, per path
+     */
+    public Map<Path, Long> counts() {
+        Map<Path, Long> counts = new EnumMap<>(Path.class);
+        pinned.forEach((path, timer) -> counts.put(path, timer.count()));
+        return counts;
+    }
+
+    private void record(RecordedEvent event) {
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        List<RecordedFrame> frames = stackTrace == null ? List.of() : stackTrace.getFrames();
+        List<String> classNames = frames.stream().map(frame -> frame.getMethod().getType().getName()).toList();
+        Path path = classify(classNames);
+        pinned.get(path).record(event.getDuration());
+
+        String site = frames.stream().limit(LOGGED_FRAMES).map(VirtualThreadPinningMonitor::format)
+                .collect(Collectors.joining("\n\tat "));
+        if (loggedSites.size() < MAX_LOGGED_SITES && loggedSites.add(site)) {
+            log.warn("Virtual thread pinned for {} ms on the {} path:\n\tat {}",
+                    event.getDuration().toMillis(), path, site);
+        }
+    }
+
+    /**
+     * Attributes a pinned stack to the path of its innermost frame from a known library.
+     *
+     * @param classNames declaring classes of the stack frames, innermost first
+     */
+    public static Path classify(List<String> classNames) {
+        for (String className : classNames) {
+            for (Path path : Path.values()) {
+                if (path.owns(className)) {
+                    return path;
+                }
+            }
+        }
+        return Path.OTHER;
+    }
+
+    private static String format(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+}
@@ -1,7 +1,9 @@
 package com.payment.config;
 
-import com.payment.service.RateLimitService;
+import com.payment.service.LocalRateLimiter;
+import com.payment.service.RateLimitPolicyService;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -17,13 +19,23 @@ public class WebConfig {
         return registration;
     }
 
+    @Bean
+    public FilterRegistrationBean<PayloadDigestFilter> payloadDigestFilter() {
+        FilterRegistrationBean<PayloadDigestFilter> registration = new FilterRegistrationBean<>(new PayloadDigestFilter());
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        registration.addUrlPatterns("/api/payment_intents", "/api/payment_intents/*");
+        return registration;
+    }
+
     @Bean
     @ConditionalOnProperty(name = "rate-limit.enabled", havingValue = "true", matchIfMissing = true)
-    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(RateLimitService rateLimitService,
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(LocalRateLimiter rateLimiter,
+                                                                   RateLimitPolicyService policyService,
                                                                    com.fasterxml.jackson.databind.ObjectMapper objectMapper) {
         FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(
-                new RateLimitFilter(rateLimitService, objectMapper));
-        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+                new RateLimitFilter(rateLimiter, policyService, objectMapper));
+        // After the security filter chain, so the budget can be chosen by authenticated merchant
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
         registration.addUrlPatterns("/api/payment_intents", "/api/payment_intents/*");
         return registration;
     }
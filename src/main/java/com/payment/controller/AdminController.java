@@ -41,7 +41,7 @@ public class AdminController {
         if (intentOpt.isEmpty()) {
             throw new IllegalArgumentException("Payment intent not found");
         }
-        return paymentIntentService.getEvents(id).stream()
+        return paymentIntentService.getEvents(merchantId, id).stream()
                 .map(PaymentEventResponse::from)
                 .toList();
     }
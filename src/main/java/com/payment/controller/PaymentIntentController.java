@@ -9,24 +9,45 @@ import com.payment.dto.*;
 import com.payment.exception.IdempotencyConflictException;
 import com.payment.repository.PaymentIntentRepository;
 import com.payment.security.MerchantContext;
+import com.payment.service.CanonicalJsonDigest;
+import com.payment.service.IdempotencyCache;
+import com.payment.service.IdempotencyCoordinator;
 import com.payment.service.IdempotencyService;
+import com.payment.service.PaymentIntentBatchService;
+import com.payment.service.PaymentIntentCache;
+import com.payment.service.PaymentIntentExporter;
 import com.payment.service.PaymentIntentService;
+import com.payment.service.PaymentIntentStream;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 
 @RestController
 @RequestMapping("/api/payment_intents")
@@ -37,16 +58,34 @@ public class PaymentIntentController {
     private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
 
     private final PaymentIntentService paymentIntentService;
+    private final PaymentIntentBatchService paymentIntentBatchService;
+    private final PaymentIntentExporter paymentIntentExporter;
+    private final PaymentIntentStream paymentIntentStream;
+    private final PaymentIntentCache paymentIntentCache;
     private final IdempotencyService idempotencyService;
+    private final IdempotencyCache idempotencyCache;
+    private final IdempotencyCoordinator idempotencyCoordinator;
     private final PaymentIntentRepository paymentIntentRepository;
     private final ObjectMapper objectMapper;
 
     public PaymentIntentController(PaymentIntentService paymentIntentService,
+                                   PaymentIntentBatchService paymentIntentBatchService,
+                                   PaymentIntentExporter paymentIntentExporter,
+                                   PaymentIntentStream paymentIntentStream,
+                                   PaymentIntentCache paymentIntentCache,
                                    IdempotencyService idempotencyService,
+                                   IdempotencyCache idempotencyCache,
+                                   IdempotencyCoordinator idempotencyCoordinator,
                                    PaymentIntentRepository paymentIntentRepository,
                                    ObjectMapper objectMapper) {
         this.paymentIntentService = paymentIntentService;
+        this.paymentIntentBatchService = paymentIntentBatchService;
+        this.paymentIntentExporter = paymentIntentExporter;
+        this.paymentIntentStream = paymentIntentStream;
+        this.paymentIntentCache = paymentIntentCache;
         this.idempotencyService = idempotencyService;
+        this.idempotencyCache = idempotencyCache;
+        this.idempotencyCoordinator = idempotencyCoordinator;
         this.paymentIntentRepository = paymentIntentRepository;
         this.objectMapper = objectMapper;
     }
@@ -56,32 +95,39 @@ public class PaymentIntentController {
     @Operation(summary = "Create a payment intent")
     public PaymentIntentResponse create(
             @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
-            @Valid @RequestBody CreatePaymentIntentRequest request) {
+            @Valid @RequestBody CreatePaymentIntentRequest request,
+            HttpServletRequest httpRequest) {
         Long merchantId = getMerchantId();
 
         if (idempotencyKey != null && !idempotencyKey.isBlank()) {
-            String payloadHash = idempotencyService.hashPayload(toJson(request));
-            Optional<IdempotencyRecord> existing = idempotencyService.findCreateRecord(merchantId, idempotencyKey);
-            if (existing.isPresent()) {
-                if (!existing.get().getPayloadHash().equals(payloadHash)) {
-                    throw new IdempotencyConflictException(
-                            "Idempotency key already used with different request payload");
+            String payloadHash = payloadHash(httpRequest, request);
+            return idempotencyCoordinator.execute(merchantId, "CREATE", idempotencyKey, null, payloadHash, () -> {
+                Optional<IdempotencyRecord> existing = idempotencyService.findCreateRecord(merchantId, idempotencyKey);
+                if (existing.isPresent()) {
+                    PaymentIntent original = paymentIntentRepository.findByIdAndMerchantId(
+                            existing.get().getPaymentIntentId(), merchantId).orElseThrow();
+                    return replayFromDatabase(merchantId, "CREATE", idempotencyKey, null, existing.get(), original,
+                            payloadHash, request);
                 }
-                PaymentIntent original = paymentIntentRepository.findById(existing.get().getPaymentIntentId())
-                        .orElseThrow();
-                return PaymentIntentResponse.from(original);
-            }
-
-            PaymentIntent intent = paymentIntentService.create(
-                    merchantId,
-                    request.amount(),
-                    request.currency(),
-                    request.description(),
-                    request.customerReference(),
-                    idempotencyKey,
-                    payloadHash
-            );
-            return PaymentIntentResponse.from(intent);
+                PaymentIntent intent;
+                try {
+                    intent = paymentIntentService.create(
+                            merchantId,
+                            request.amount(),
+                            request.currency(),
+                            request.description(),
+                            request.customerReference(),
+                            idempotencyKey,
+                            payloadHash
+                    );
+                } catch (DataIntegrityViolationException e) {
+                    if (IdempotencyService.isCreateKeyTaken(e)) {
+                        throw expiredKeyReused();
+                    }
+                    throw e;
+                }
+                return new IdempotencyCache.Replay(payloadHash, PaymentIntentResponse.from(intent));
+            });
         }
 
         PaymentIntent intent = paymentIntentService.create(
@@ -96,31 +142,65 @@ public class PaymentIntentController {
         return PaymentIntentResponse.from(intent);
     }
 
+    @PostMapping("/batch")
+    @Operation(summary = "Create many payment intents, each with its own idempotency key",
+               description = "Returns one result per item, in request order: CREATED, REPLAYED (key already used "
+                       + "with the same payload) or FAILED with an error. Items fail independently.")
+    public BatchCreatePaymentIntentResponse createBatch(@Valid @RequestBody BatchCreatePaymentIntentRequest request) {
+        Long merchantId = getMerchantId();
+        return BatchCreatePaymentIntentResponse.from(paymentIntentBatchService.create(merchantId, request.items()));
+    }
+
+    @PostMapping("/batch/confirm")
+    @Operation(summary = "Confirm many payment intents, each with its own idempotency key",
+               description = "Returns one result per item, in request order: UPDATED, REPLAYED (key already used "
+                       + "for the same intent and payment method) or FAILED with an error. Intents locked by a "
+                       + "concurrent request fail with a retryable error instead of waiting.")
+    public BatchUpdatePaymentIntentsResponse confirmBatch(@Valid @RequestBody BatchConfirmPaymentIntentsRequest request) {
+        Long merchantId = getMerchantId();
+        return BatchUpdatePaymentIntentsResponse.from(paymentIntentBatchService.confirm(merchantId, request.items()));
+    }
+
+    @PostMapping("/batch/cancel")
+    @Operation(summary = "Cancel many payment intents",
+               description = "Returns one result per id, in request order: UPDATED or FAILED with an error.")
+    public BatchUpdatePaymentIntentsResponse cancelBatch(@Valid @RequestBody BatchCancelPaymentIntentsRequest request) {
+        Long merchantId = getMerchantId();
+        return BatchUpdatePaymentIntentsResponse.from(paymentIntentBatchService.cancel(merchantId, request.ids()));
+    }
+
     @PostMapping("/{id}/confirm")
     @Operation(summary = "Confirm a payment intent")
     public PaymentIntentResponse confirm(
             @PathVariable UUID id,
             @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
-            @Valid @RequestBody ConfirmPaymentRequest request) {
+            @Valid @RequestBody ConfirmPaymentRequest request,
+            HttpServletRequest httpRequest) {
         Long merchantId = getMerchantId();
 
         if (idempotencyKey == null || idempotencyKey.isBlank()) {
             throw new IllegalArgumentException("Idempotency-Key header is required for confirm");
         }
 
-        String payloadHash = idempotencyService.hashPayload(toJson(request));
-        Optional<IdempotencyRecord> existing = idempotencyService.findConfirmRecord(merchantId, idempotencyKey, id);
-        if (existing.isPresent()) {
-            if (!existing.get().getPayloadHash().equals(payloadHash)) {
-                throw new IdempotencyConflictException(
-                        "Idempotency key already used with different request payload");
+        String payloadHash = payloadHash(httpRequest, request);
+        return idempotencyCoordinator.execute(merchantId, "CONFIRM", idempotencyKey, id, payloadHash, () -> {
+            Optional<IdempotencyRecord> existing = idempotencyService.findConfirmRecord(merchantId, idempotencyKey, id);
+            if (existing.isPresent()) {
+                PaymentIntent original = paymentIntentRepository.findByIdAndMerchantId(id, merchantId).orElseThrow();
+                return replayFromDatabase(merchantId, "CONFIRM", idempotencyKey, id, existing.get(), original,
+                        payloadHash, request);
             }
-            PaymentIntent original = paymentIntentRepository.findById(id).orElseThrow();
-            return PaymentIntentResponse.from(original);
-        }
-
-        PaymentIntent intent = paymentIntentService.confirm(merchantId, id, idempotencyKey, payloadHash);
-        return PaymentIntentResponse.from(intent);
+            PaymentIntent intent;
+            try {
+                intent = paymentIntentService.confirm(merchantId, id, idempotencyKey, payloadHash);
+            } catch (DataIntegrityViolationException e) {
+                if (IdempotencyService.isConfirmKeyTaken(e)) {
+                    throw expiredKeyReused();
+                }
+                throw e;
+            }
+            return new IdempotencyCache.Replay(payloadHash, PaymentIntentResponse.from(intent));
+        });
     }
 
     @PostMapping("/{id}/cancel")
@@ -132,16 +212,23 @@ public class PaymentIntentController {
     }
 
     @GetMapping("/{id}")
-    @Operation(summary = "Get a payment intent by ID")
-    public PaymentIntentResponse get(@PathVariable UUID id) {
+    @Operation(summary = "Get a payment intent by ID",
+               description = "The ETag is the intent's version; a request with a matching If-None-Match gets "
+                       + "304 Not Modified without a body.")
+    public ResponseEntity<PaymentIntentResponse> get(@PathVariable UUID id) {
         Long merchantId = getMerchantId();
-        PaymentIntent intent = paymentIntentService.getById(merchantId, id)
+        PaymentIntentCache.Entry entry = paymentIntentCache
+                .get(merchantId, id, () -> paymentIntentService.getById(merchantId, id))
                 .orElseThrow(() -> new IllegalArgumentException("Payment intent not found"));
-        return PaymentIntentResponse.from(intent);
+        // Must be revalidated: private to the merchant, and a non-terminal intent can change at any time
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .eTag(entry.etag())
+                .body(entry.response());
     }
 
     @GetMapping
-    @Operation(summary = "List payment intents with filters")
+    @Operation(summary = "List payment intents with filters (offset pagination)")
     public Page<PaymentIntentResponse> list(
             @RequestParam(required = false) PaymentStatus status,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
@@ -154,6 +241,109 @@ public class PaymentIntentController {
                 .map(PaymentIntentResponse::from);
     }
 
+    @GetMapping(params = "pagination=cursor")
+    @Operation(summary = "List payment intents with cursor pagination",
+               description = "Newest first. Pass nextCursor as starting_after for the next page, "
+                       + "or previousCursor as ending_before for the previous one. No total count is computed.")
+    public CursorPage<PaymentIntentResponse> listByCursor(
+            @RequestParam(required = false) PaymentStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(name = "starting_after", required = false) String startingAfter,
+            @RequestParam(name = "ending_before", required = false) String endingBefore,
+            @RequestParam(defaultValue = "20") int size) {
+        Long merchantId = getMerchantId();
+        return paymentIntentService.listByCursor(merchantId, status, from, to, startingAfter, endingBefore, size)
+                .map(PaymentIntentResponse::from);
+    }
+
+    @GetMapping("/export")
+    @Operation(summary = "Export payment intents as NDJSON or CSV",
+               description = "Streams every intent matching the filters, newest first, in a single response.")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(required = false) PaymentStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(defaultValue = "ndjson") String format,
+            HttpServletRequest request) {
+        Long merchantId = getMerchantId();
+        PaymentIntentExporter.Format exportFormat = PaymentIntentExporter.Format.parse(format);
+        PaymentIntentExporter.Export export = paymentIntentExporter.open(merchantId, status, from, to, exportFormat);
+        WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(request);
+        // Only exports may take this long; every other async request keeps the default timeout
+        asyncManager.getAsyncWebRequest().setTimeout(paymentIntentExporter.requestTimeout().toMillis());
+        // The body may never run (timed out waiting for an executor thread, dispatch failed), so the slot is
+        // also returned when the async request ends however it ends
+        asyncManager.registerCallableInterceptor(export, new CallableProcessingInterceptor() {
+            @Override
+            public <T> Object handleTimeout(NativeWebRequest webRequest, Callable<T> task) {
+                export.release();
+                return RESULT_NONE;
+            }
+
+            @Override
+            public <T> Object handleError(NativeWebRequest webRequest, Callable<T> task, Throwable t) {
+                export.release();
+                return RESULT_NONE;
+            }
+
+            @Override
+            public <T> void afterCompletion(NativeWebRequest webRequest, Callable<T> task) {
+                export.release();
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.contentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"payment_intents." + exportFormat.name().toLowerCase(Locale.ROOT) + "\"")
+                .body(export::writeTo);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream payment intent status changes (Server-Sent Events)",
+               description = "Sends a payment_intent.<status> event with the intent as data for every change committed "
+                       + "after the stream opened. Open the stream before reading current state; there is no replay.")
+    public SseEmitter stream() {
+        return paymentIntentStream.subscribe(getMerchantId());
+    }
+
+    private IdempotencyCache.Replay replayFromDatabase(Long merchantId, String operation, String idempotencyKey,
+                                                      UUID paymentIntentId, IdempotencyRecord record,
+                                                      PaymentIntent original, String payloadHash, Object body) {
+        String storedHash = record.getPayloadHash();
+        if (!storedHash.equals(payloadHash) && storedHash.equals(idempotencyService.hashPayload(toJson(body)))) {
+            // Stored before canonical hashing, as the hash of the re-serialized DTO
+            storedHash = payloadHash;
+        }
+        PaymentIntentResponse response = PaymentIntentResponse.from(original);
+        idempotencyCache.put(merchantId, operation, idempotencyKey, paymentIntentId, storedHash, response);
+        return new IdempotencyCache.Replay(storedHash, response);
+    }
+
+    /**
+     * Canonical hash of the request body, computed by {@code PayloadDigestFilter} while the body was read;
+     * falls back to hashing the re-serialized DTO when the filter did not run.
+     */
+    private String payloadHash(HttpServletRequest httpRequest, Object body) {
+        Object streamed = httpRequest.getAttribute(CanonicalJsonDigest.REQUEST_ATTRIBUTE);
+        if (streamed instanceof CanonicalJsonDigest digest && digest.hex() != null) {
+            return digest.hex();
+        }
+        try {
+            return idempotencyService.hashCanonical(objectMapper.writeValueAsBytes(body));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize request", e);
+        }
+    }
+
+    /**
+     * The key is still held by payment_intent's unique index, but its idempotency record has passed
+     * {@code idempotency.retention} and can no longer be replayed.
+     */
+    private static IdempotencyConflictException expiredKeyReused() {
+        return new IdempotencyConflictException("Idempotency key was already used and can no longer be replayed");
+    }
+
     private Long getMerchantId() {
         Long id = MerchantContext.getMerchantId();
         if (id != null) return id;
@@ -0,0 +1,51 @@
+package com.payment.controller;
+
+import com.payment.dto.WebhookEndpointRequest;
+import com.payment.dto.WebhookEndpointResponse;
+import com.payment.security.MerchantContext;
+import com.payment.service.WebhookEndpointService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/webhook_endpoint")
+@Tag(name = "Webhook Endpoint", description = "Where payment intent webhooks are delivered")
+@SecurityRequirement(name = "Bearer")
+public class WebhookEndpointController {
+
+    private final WebhookEndpointService webhookEndpointService;
+
+    public WebhookEndpointController(WebhookEndpointService webhookEndpointService) {
+        this.webhookEndpointService = webhookEndpointService;
+    }
+
+    @PutMapping
+    @Operation(summary = "Set the webhook endpoint and issue a new signing secret")
+    public WebhookEndpointResponse set(@Valid @RequestBody WebhookEndpointRequest request) {
+        WebhookEndpointService.WebhookEndpoint endpoint = webhookEndpointService.set(getMerchantId(), request.url());
+        return new WebhookEndpointResponse(endpoint.url(), endpoint.secret(),
+                "Verify the Webhook-Signature header with this secret. It will not be shown again.");
+    }
+
+    @DeleteMapping
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    @Operation(summary = "Stop webhook delivery")
+    public void remove() {
+        webhookEndpointService.remove(getMerchantId());
+    }
+
+    private Long getMerchantId() {
+        Long id = MerchantContext.getMerchantId();
+        if (id != null) return id;
+        var auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.getPrincipal() instanceof Long principal) {
+            return principal;
+        }
+        throw new IllegalStateException("Merchant not authenticated");
+    }
+}
@@ -9,7 +9,8 @@ import java.util.UUID;
 public class IdempotencyRecord {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "idempotency_record_id_seq")
+    @SequenceGenerator(name = "idempotency_record_id_seq", sequenceName = "idempotency_record_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "merchant_id", nullable = false)
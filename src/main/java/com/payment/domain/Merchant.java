@@ -20,6 +20,15 @@ public class Merchant {
     @Column(name = "password_hash", nullable = false)
     private String passwordHash;
 
+    @Column(name = "rate_limit_tier", nullable = false, length = 32)
+    private String rateLimitTier = "STANDARD";
+
+    @Column(name = "webhook_url", length = 2048)
+    private String webhookUrl;
+
+    @Column(name = "webhook_secret", length = 64)
+    private String webhookSecret;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private Instant createdAt;
 
@@ -60,6 +69,30 @@ public class Merchant {
         this.passwordHash = passwordHash;
     }
 
+    public String getRateLimitTier() {
+        return rateLimitTier;
+    }
+
+    public void setRateLimitTier(String rateLimitTier) {
+        this.rateLimitTier = rateLimitTier;
+    }
+
+    public String getWebhookUrl() {
+        return webhookUrl;
+    }
+
+    public void setWebhookUrl(String webhookUrl) {
+        this.webhookUrl = webhookUrl;
+    }
+
+    public String getWebhookSecret() {
+        return webhookSecret;
+    }
+
+    public void setWebhookSecret(String webhookSecret) {
+        this.webhookSecret = webhookSecret;
+    }
+
     public Instant getCreatedAt() {
         return createdAt;
     }
@@ -1,6 +1,7 @@
 package com.payment.domain;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.PartitionKey;
 import java.time.Instant;
 import java.util.UUID;
 
@@ -9,9 +10,15 @@ import java.util.UUID;
 public class PaymentEvent {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_event_id_seq")
+    @SequenceGenerator(name = "payment_event_id_seq", sequenceName = "payment_event_id_seq", allocationSize = 50)
     private Long id;
 
+    /** Hash partition key, copied from the intent so events live in the same-numbered partition. */
+    @PartitionKey
+    @Column(name = "merchant_id", nullable = false, updatable = false)
+    private Long merchantId;
+
     @Column(name = "payment_intent_id", nullable = false)
     private UUID paymentIntentId;
 
@@ -38,6 +45,14 @@ public class PaymentEvent {
         this.id = id;
     }
 
+    public Long getMerchantId() {
+        return merchantId;
+    }
+
+    public void setMerchantId(Long merchantId) {
+        this.merchantId = merchantId;
+    }
+
     public UUID getPaymentIntentId() {
         return paymentIntentId;
     }
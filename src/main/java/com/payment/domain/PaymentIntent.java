@@ -1,6 +1,7 @@
 package com.payment.domain;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.PartitionKey;
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.UUID;
@@ -12,7 +13,9 @@ public class PaymentIntent {
     @Id
     private UUID id;
 
-    @Column(name = "merchant_id", nullable = false)
+    /** Hash partition key (V11); Hibernate adds it to the WHERE clause of updates and deletes, so they touch one partition. */
+    @PartitionKey
+    @Column(name = "merchant_id", nullable = false, updatable = false)
     private Long merchantId;
 
     @Column(nullable = false, precision = 19, scale = 2)
@@ -58,7 +61,7 @@ public class PaymentIntent {
     @PrePersist
     protected void onCreate() {
         if (id == null) {
-            id = UUID.randomUUID();
+            id = UuidV7.next();
         }
         Instant now = Instant.now();
         createdAt = now;
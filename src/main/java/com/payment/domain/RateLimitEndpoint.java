@@ -0,0 +1,56 @@
+package com.payment.domain;
+
+/**
+ * Payment intent operations that get separate rate limit budgets.
+ */
+public enum RateLimitEndpoint {
+    CREATE,
+    BATCH_CREATE,
+    BATCH_UPDATE,
+    CONFIRM,
+    CANCEL,
+    GET,
+    LIST,
+    EXPORT,
+    OTHER;
+
+    private static final String BASE_PATH = "/api/payment_intents";
+
+    public static RateLimitEndpoint classify(String method, String path) {
+        if (!path.startsWith(BASE_PATH)) {
+            return OTHER;
+        }
+        String rest = path.substring(BASE_PATH.length());
+        if (rest.endsWith("/")) {
+            rest = rest.substring(0, rest.length() - 1);
+        }
+        boolean post = "POST".equals(method);
+        boolean get = "GET".equals(method);
+        if (rest.isEmpty()) {
+            return post ? CREATE : get ? LIST : OTHER;
+        }
+        if (rest.equals("/batch")) {
+            return post ? BATCH_CREATE : OTHER;
+        }
+        if (rest.equals("/batch/confirm") || rest.equals("/batch/cancel")) {
+            return post ? BATCH_UPDATE : OTHER;
+        }
+        if (rest.equals("/export")) {
+            return get ? EXPORT : OTHER;
+        }
+        int slash = rest.indexOf('/', 1);
+        if (slash < 0) {
+            return get ? GET : OTHER;
+        }
+        if (post) {
+            String action = rest.substring(slash + 1);
+            if (action.equals("confirm")) {
+                return CONFIRM;
+            }
+            if (action.equals("cancel")) {
+                return CANCEL;
+            }
+        }
+        return OTHER;
+    }
+}
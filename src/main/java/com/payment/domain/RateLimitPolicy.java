@@ -0,0 +1,94 @@
+package com.payment.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+@Entity
+@Table(name = "rate_limit_policy")
+public class RateLimitPolicy {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 32)
+    private String tier;
+
+    @Column(name = "merchant_id")
+    private Long merchantId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private RateLimitEndpoint endpoint;
+
+    @Column(name = "requests_per_window", nullable = false)
+    private int requestsPerWindow;
+
+    @Column(name = "window_seconds", nullable = false)
+    private int windowSeconds;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = Instant.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getTier() {
+        return tier;
+    }
+
+    public void setTier(String tier) {
+        this.tier = tier;
+    }
+
+    public Long getMerchantId() {
+        return merchantId;
+    }
+
+    public void setMerchantId(Long merchantId) {
+        this.merchantId = merchantId;
+    }
+
+    public RateLimitEndpoint getEndpoint() {
+        return endpoint;
+    }
+
+    public void setEndpoint(RateLimitEndpoint endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public int getRequestsPerWindow() {
+        return requestsPerWindow;
+    }
+
+    public void setRequestsPerWindow(int requestsPerWindow) {
+        this.requestsPerWindow = requestsPerWindow;
+    }
+
+    public int getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    public void setWindowSeconds(int windowSeconds) {
+        this.windowSeconds = windowSeconds;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
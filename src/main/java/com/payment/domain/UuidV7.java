@@ -0,0 +1,52 @@
+package com.payment.domain;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RFC 9562 version 7 UUIDs: a 48-bit Unix millisecond timestamp followed by random bits, so ids sort by
+ * creation time and primary key inserts append to the right edge of the B-tree instead of random pages.
+ * <p>
+ * The 12 {@code rand_a} bits are a counter (RFC 9562 section 6.2, method 1), making ids strictly increasing
+ * within this JVM even within one millisecond. Timestamp and counter share one {@link AtomicLong} advanced
+ * by CAS, so generation is lock-free. When more than 4096 ids are needed in a millisecond, or the clock
+ * goes backwards, the counter carries into the timestamp, which runs slightly ahead until the clock catches up.
+ * The remaining 62 bits come from {@link ThreadLocalRandom}; ids are unique but not unguessable, so they
+ * must not be used as secrets (payment intents are always looked up together with their merchant).
+ */
+public final class UuidV7 {
+
+    private static final int COUNTER_BITS = 12;
+    private static final long VERSION = 7L << 12;
+    private static final long VARIANT = 0x8000_0000_0000_0000L;
+    private static final long RANDOM_MASK = 0x3FFF_FFFF_FFFF_FFFFL;
+
+    /** Unix millis in the high bits, counter in the low {@value #COUNTER_BITS} bits. */
+    private static final AtomicLong LAST = new AtomicLong();
+
+    private UuidV7() {
+    }
+
+    public static UUID next() {
+        long now = System.currentTimeMillis() << COUNTER_BITS;
+        long prev;
+        long next;
+        do {
+            prev = LAST.get();
+            next = Math.max(now, prev + 1);
+        } while (!LAST.compareAndSet(prev, next));
+        long millis = next >>> COUNTER_BITS;
+        long counter = next & ((1L << COUNTER_BITS) - 1);
+        long msb = (millis << 16) | VERSION | counter;
+        long lsb = VARIANT | (ThreadLocalRandom.current().nextLong() & RANDOM_MASK);
+        return new UUID(msb, lsb);
+    }
+
+    /**
+     * @return the Unix millisecond timestamp embedded in a version 7 UUID
+     */
+    public static long timestamp(UUID uuid) {
+        return uuid.getMostSignificantBits() >>> 16;
+    }
+}
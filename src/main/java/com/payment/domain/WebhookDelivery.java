@@ -9,12 +9,16 @@ import java.util.UUID;
 public class WebhookDelivery {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "webhook_delivery_id_seq")
+    @SequenceGenerator(name = "webhook_delivery_id_seq", sequenceName = "webhook_delivery_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "payment_intent_id", nullable = false)
     private UUID paymentIntentId;
 
+    @Column(name = "merchant_id", nullable = false, updatable = false)
+    private Long merchantId;
+
     @Column(name = "event_type", nullable = false)
     private String eventType;
 
@@ -28,12 +32,24 @@ public class WebhookDelivery {
     @Column(name = "last_attempt_at")
     private Instant lastAttemptAt;
 
+    @Column(columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(name = "last_error", length = 512)
+    private String lastError;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private Instant createdAt;
 
     @PrePersist
     protected void onCreate() {
         createdAt = Instant.now();
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
     }
 
     public Long getId() {
@@ -52,6 +68,14 @@ public class WebhookDelivery {
         this.paymentIntentId = paymentIntentId;
     }
 
+    public Long getMerchantId() {
+        return merchantId;
+    }
+
+    public void setMerchantId(Long merchantId) {
+        this.merchantId = merchantId;
+    }
+
     public String getEventType() {
         return eventType;
     }
@@ -84,6 +108,30 @@ public class WebhookDelivery {
         this.lastAttemptAt = lastAttemptAt;
     }
 
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public Instant getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(Instant nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
     public Instant getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,12 @@
+package com.payment.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+import java.util.UUID;
+
+public record BatchCancelPaymentIntentsRequest(
+        @NotEmpty(message = "At least one id is required")
+        List<UUID> ids
+) {
+}
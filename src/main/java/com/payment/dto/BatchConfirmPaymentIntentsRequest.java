@@ -0,0 +1,41 @@
+package com.payment.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Items are validated one by one, so an invalid item fails on its own instead of rejecting the batch.
+ */
+public record BatchConfirmPaymentIntentsRequest(
+        @NotEmpty(message = "At least one item is required")
+        List<Item> items
+) {
+    public record Item(
+            @NotNull(message = "Payment intent id is required")
+            UUID id,
+
+            @NotBlank(message = "Idempotency key is required")
+            @Size(max = 255)
+            String idempotencyKey,
+
+            @NotBlank(message = "Payment method type is required")
+            @Size(max = 32)
+            String paymentMethodType,
+
+            @NotBlank(message = "Payment method token is required")
+            @Size(max = 255)
+            String paymentMethodToken
+    ) {
+        /**
+         * The same confirmation as a single confirm request, whose payload hash it shares.
+         */
+        public ConfirmPaymentRequest toConfirmRequest() {
+            return new ConfirmPaymentRequest(paymentMethodType, paymentMethodToken);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.payment.dto;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Items are validated one by one, so an invalid item fails on its own instead of rejecting the batch.
+ */
+public record BatchCreatePaymentIntentRequest(
+        @NotEmpty(message = "At least one item is required")
+        List<Item> items
+) {
+    public record Item(
+            @NotBlank(message = "Idempotency key is required")
+            @Size(max = 255)
+            String idempotencyKey,
+
+            @NotNull(message = "Amount is required")
+            @DecimalMin(value = "0.01", message = "Amount must be at least 0.01")
+            @Digits(integer = 17, fraction = 2, message = "Amount must have at most 2 decimal places")
+            BigDecimal amount,
+
+            @NotNull(message = "Currency is required")
+            @Size(min = 3, max = 3, message = "Currency must be 3 characters (e.g. SEK, EUR)")
+            String currency,
+
+            @Size(max = 500)
+            String description,
+
+            @Size(max = 255)
+            String customerReference
+    ) {
+        /**
+         * The same intent as a single create request, whose payload hash it shares.
+         */
+        public CreatePaymentIntentRequest toCreateRequest() {
+            return new CreatePaymentIntentRequest(amount, currency, description, customerReference);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.payment.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.payment.service.PaymentIntentBatchService;
+
+import java.util.List;
+
+/**
+ * Per-item results, in request order.
+ */
+public record BatchCreatePaymentIntentResponse(
+        int created,
+        int replayed,
+        int failed,
+        List<ItemResult> results
+) {
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record ItemResult(
+            int index,
+            String idempotencyKey,
+            PaymentIntentBatchService.Outcome outcome,
+            PaymentIntentResponse paymentIntent,
+            String error
+    ) {
+        public static ItemResult from(PaymentIntentBatchService.Result result) {
+            return new ItemResult(result.index(), result.idempotencyKey(), result.outcome(),
+                    result.intent() == null ? null : PaymentIntentResponse.from(result.intent()),
+                    result.error());
+        }
+    }
+
+    public static BatchCreatePaymentIntentResponse from(List<PaymentIntentBatchService.Result> results) {
+        return new BatchCreatePaymentIntentResponse(
+                count(results, PaymentIntentBatchService.Outcome.CREATED),
+                count(results, PaymentIntentBatchService.Outcome.REPLAYED),
+                count(results, PaymentIntentBatchService.Outcome.FAILED),
+                results.stream().map(ItemResult::from).toList());
+    }
+
+    static int count(List<PaymentIntentBatchService.Result> results, PaymentIntentBatchService.Outcome outcome) {
+        return (int) results.stream().filter(result -> result.outcome() == outcome).count();
+    }
+}
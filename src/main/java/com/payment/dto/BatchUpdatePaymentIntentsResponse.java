@@ -0,0 +1,23 @@
+package com.payment.dto;
+
+import com.payment.service.PaymentIntentBatchService;
+
+import java.util.List;
+
+/**
+ * Per-item results of a batch confirm or cancel, in request order.
+ */
+public record BatchUpdatePaymentIntentsResponse(
+        int updated,
+        int replayed,
+        int failed,
+        List<BatchCreatePaymentIntentResponse.ItemResult> results
+) {
+    public static BatchUpdatePaymentIntentsResponse from(List<PaymentIntentBatchService.Result> results) {
+        return new BatchUpdatePaymentIntentsResponse(
+                BatchCreatePaymentIntentResponse.count(results, PaymentIntentBatchService.Outcome.UPDATED),
+                BatchCreatePaymentIntentResponse.count(results, PaymentIntentBatchService.Outcome.REPLAYED),
+                BatchCreatePaymentIntentResponse.count(results, PaymentIntentBatchService.Outcome.FAILED),
+                results.stream().map(BatchCreatePaymentIntentResponse.ItemResult::from).toList());
+    }
+}
@@ -0,0 +1,21 @@
+package com.payment.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated list. {@code hasMore} tells whether more items exist in the direction
+ * being paged. Pass {@code nextCursor} as {@code starting_after} for the following (older) page and
+ * {@code previousCursor} as {@code ending_before} for the preceding (newer) one; each is null when there
+ * is nothing that way.
+ */
+public record CursorPage<T>(
+        List<T> data,
+        boolean hasMore,
+        String nextCursor,
+        String previousCursor
+) {
+    public <R> CursorPage<R> map(Function<? super T, ? extends R> mapper) {
+        return new CursorPage<>(data.stream().<R>map(mapper).toList(), hasMore, nextCursor, previousCursor);
+    }
+}
@@ -0,0 +1,13 @@
+package com.payment.dto;
+
+import java.time.Instant;
+
+/**
+ * Body POSTed to a merchant's webhook endpoint when a payment intent settles.
+ */
+public record MerchantWebhookEvent(
+        String type,
+        Instant created,
+        PaymentIntentResponse data
+) {
+}
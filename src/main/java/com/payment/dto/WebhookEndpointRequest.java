@@ -0,0 +1,13 @@
+package com.payment.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+
+public record WebhookEndpointRequest(
+        @NotBlank(message = "URL is required")
+        @Size(max = 2048)
+        @Pattern(regexp = "https?://\\S+", message = "URL must be an absolute http(s) URL")
+        String url
+) {
+}
@@ -0,0 +1,8 @@
+package com.payment.dto;
+
+public record WebhookEndpointResponse(
+        String url,
+        String secret,
+        String message
+) {
+}
@@ -13,6 +13,7 @@ import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.util.DisconnectedClientHelper;
 
 import java.time.Instant;
 import java.util.List;
@@ -138,6 +139,11 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleGeneric(Exception ex, HttpServletRequest request) {
+        if (DisconnectedClientHelper.isClientDisconnectedException(ex)) {
+            // Client went away mid-response (e.g. during an export); there is nobody left to answer
+            log.debug("Client disconnected: {}", ex.getMessage());
+            return null;
+        }
         log.error("Unexpected error", ex);
         ErrorResponse body = new ErrorResponse(
                 Instant.now().toString(),
@@ -3,6 +3,9 @@ package com.payment.repository;
 import com.payment.domain.ApiKey;
 import com.payment.domain.ApiKeyStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
@@ -14,4 +17,10 @@ public interface ApiKeyRepository extends JpaRepository<ApiKey, Long> {
     List<ApiKey> findByMerchantIdOrderByCreatedAtDesc(Long merchantId);
 
     boolean existsByIdAndMerchantId(Long id, Long merchantId);
+
+    @Modifying
+    @Query("UPDATE ApiKey k SET k.keyHash = :newHash WHERE k.id = :id AND k.keyHash = :expectedHash")
+    int updateKeyHash(@Param("id") Long id,
+                      @Param("expectedHash") String expectedHash,
+                      @Param("newHash") String newHash);
 }
@@ -3,14 +3,20 @@ package com.payment.repository;
 import com.payment.domain.IdempotencyRecord;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, Long> {
 
-    Optional<IdempotencyRecord> findByMerchantIdAndIdempotencyKeyAndOperation(
-            Long merchantId, String idempotencyKey, String operation);
+    Optional<IdempotencyRecord> findByMerchantIdAndIdempotencyKeyAndOperationAndCreatedAtAfter(
+            Long merchantId, String idempotencyKey, String operation, Instant createdAfter);
 
-    Optional<IdempotencyRecord> findByMerchantIdAndIdempotencyKeyAndOperationAndPaymentIntentId(
-            Long merchantId, String idempotencyKey, String operation, UUID paymentIntentId);
+    Optional<IdempotencyRecord> findByMerchantIdAndIdempotencyKeyAndOperationAndPaymentIntentIdAndCreatedAtAfter(
+            Long merchantId, String idempotencyKey, String operation, UUID paymentIntentId, Instant createdAfter);
+
+    List<IdempotencyRecord> findByMerchantIdAndOperationAndIdempotencyKeyInAndCreatedAtAfter(
+            Long merchantId, String operation, Collection<String> idempotencyKeys, Instant createdAfter);
 }
@@ -2,7 +2,10 @@ package com.payment.repository;
 
 import com.payment.domain.Merchant;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface MerchantRepository extends JpaRepository<Merchant, Long> {
@@ -10,4 +13,12 @@ public interface MerchantRepository extends JpaRepository<Merchant, Long> {
     Optional<Merchant> findByEmail(String email);
 
     boolean existsByEmail(String email);
+
+    boolean existsByIdAndWebhookUrlIsNotNull(Long id);
+
+    /**
+     * @return (merchantId, tier) pairs for merchants outside the given (default) tier
+     */
+    @Query("SELECT m.id, m.rateLimitTier FROM Merchant m WHERE m.rateLimitTier <> :tier")
+    List<Object[]> findRateLimitTiersOtherThan(@Param("tier") String tier);
 }
@@ -8,5 +8,5 @@ import java.util.UUID;
 
 public interface PaymentEventRepository extends JpaRepository<PaymentEvent, Long> {
 
-    List<PaymentEvent> findByPaymentIntentIdOrderByCreatedAtAsc(UUID paymentIntentId);
+    List<PaymentEvent> findByMerchantIdAndPaymentIntentIdOrderByCreatedAtAsc(Long merchantId, UUID paymentIntentId);
 }
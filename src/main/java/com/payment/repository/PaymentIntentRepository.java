@@ -1,33 +1,62 @@
 package com.payment.repository;
 
 import com.payment.domain.PaymentIntent;
-import com.payment.domain.PaymentStatus;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
-import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
-public interface PaymentIntentRepository extends JpaRepository<PaymentIntent, UUID> {
+/**
+ * List queries go through {@link JpaSpecificationExecutor} with {@link PaymentIntentSpecifications}.
+ * <p>
+ * payment_intent is hash-partitioned by merchant (V11), so every query names the merchant and reads one partition.
+ * The inherited {@code findById} and {@code findAllById} do not, and probe every partition; use the
+ * merchant-scoped methods instead.
+ */
+public interface PaymentIntentRepository extends JpaRepository<PaymentIntent, UUID>, JpaSpecificationExecutor<PaymentIntent> {
 
     Optional<PaymentIntent> findByIdAndMerchantId(UUID id, Long merchantId);
 
     Optional<PaymentIntent> findByMerchantIdAndIdempotencyKeyCreate(Long merchantId, String idempotencyKey);
 
-    @Query("SELECT p FROM PaymentIntent p WHERE p.merchantId = :merchantId " +
-           "AND (:status IS NULL OR p.status = :status) " +
-           "AND (:from IS NULL OR p.createdAt >= :from) " +
-           "AND (:to IS NULL OR p.createdAt <= :to)")
-    Page<PaymentIntent> findByMerchantIdAndFilters(
-            @Param("merchantId") Long merchantId,
-            @Param("status") PaymentStatus status,
-            @Param("from") Instant from,
-            @Param("to") Instant to,
-            Pageable pageable);
-
-    Optional<PaymentIntent> findByProviderPaymentId(String providerPaymentId);
+    List<PaymentIntent> findByMerchantIdAndIdempotencyKeyCreateIn(Long merchantId, Collection<String> idempotencyKeys);
+
+    /**
+     * Provider callbacks only know the provider's id: its merchant comes from the payment_intent_provider_id
+     * lookup table first, so the intent itself is still read from one partition.
+     */
+    default Optional<PaymentIntent> findByProviderPaymentId(String providerPaymentId) {
+        return findProviderPaymentRef(providerPaymentId)
+                .flatMap(ref -> findByIdAndMerchantId(ref.getPaymentIntentId(), ref.getMerchantId()));
+    }
+
+    interface ProviderPaymentRef {
+        UUID getPaymentIntentId();
+
+        Long getMerchantId();
+    }
+
+    @Query(value = "SELECT payment_intent_id AS \"paymentIntentId\", merchant_id AS \"merchantId\" "
+            + "FROM payment_intent_provider_id WHERE provider_payment_id = :providerPaymentId", nativeQuery = true)
+    Optional<ProviderPaymentRef> findProviderPaymentRef(@Param("providerPaymentId") String providerPaymentId);
+
+    List<PaymentIntent> findByMerchantIdAndIdIn(Long merchantId, Collection<UUID> ids);
+
+    List<PaymentIntent> findByMerchantIdAndIdempotencyKeyConfirmIn(Long merchantId, Collection<String> idempotencyKeys);
+
+    /**
+     * Locks the merchant's intents among {@code ids} with {@code SELECT ... FOR UPDATE SKIP LOCKED}: rows held by
+     * another transaction are left out instead of waited for.
+     */
+    @Query(value = "SELECT * FROM payment_intent WHERE merchant_id = :merchantId AND id IN (:ids) "
+            + "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<PaymentIntent> lockAllSkipLocked(@Param("merchantId") Long merchantId, @Param("ids") Collection<UUID> ids);
+
+    @Query("SELECT p.id FROM PaymentIntent p WHERE p.merchantId = :merchantId AND p.id IN :ids")
+    List<UUID> findIdsByMerchantIdAndIdIn(@Param("merchantId") Long merchantId, @Param("ids") Collection<UUID> ids);
 }
@@ -0,0 +1,11 @@
+package com.payment.repository;
+
+import com.payment.domain.RateLimitPolicy;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+public interface RateLimitPolicyRepository extends JpaRepository<RateLimitPolicy, Long> {
+
+    @Query(value = "SELECT version FROM rate_limit_policy_version WHERE id = 1", nativeQuery = true)
+    long findVersion();
+}
@@ -3,6 +3,7 @@ package com.payment.security;
 import com.payment.domain.ApiKey;
 import com.payment.domain.ApiKeyStatus;
 import com.payment.repository.ApiKeyRepository;
+import com.payment.service.ApiKeyService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -12,7 +13,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -30,12 +30,20 @@ public class ApiKeyAuthFilter extends OncePerRequestFilter {
     private static final String API_KEY_HEADER = "X-API-KEY";
 
     private final ApiKeyRepository apiKeyRepository;
+    private final ApiKeyCache apiKeyCache;
+    private final ApiKeyHasher apiKeyHasher;
+    private final ApiKeyService apiKeyService;
     private final int prefixLength;
-    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
 
     public ApiKeyAuthFilter(ApiKeyRepository apiKeyRepository,
+                            ApiKeyCache apiKeyCache,
+                            ApiKeyHasher apiKeyHasher,
+                            ApiKeyService apiKeyService,
                             @Value("${api-key.prefix-length:8}") int prefixLength) {
         this.apiKeyRepository = apiKeyRepository;
+        this.apiKeyCache = apiKeyCache;
+        this.apiKeyHasher = apiKeyHasher;
+        this.apiKeyService = apiKeyService;
         this.prefixLength = prefixLength;
     }
 
@@ -44,18 +52,16 @@ public class ApiKeyAuthFilter extends OncePerRequestFilter {
             @NonNull HttpServletRequest request,
             @NonNull HttpServletResponse response,
             @NonNull FilterChain filterChain) throws ServletException, IOException {
+        if (SecurityContextHolder.getContext().getAuthentication() != null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
         try {
-            if (SecurityContextHolder.getContext().getAuthentication() != null) {
-                filterChain.doFilter(request, response);
-                return;
-            }
             String rawKey = request.getHeader(API_KEY_HEADER);
             if (StringUtils.hasText(rawKey)) {
-                String prefix = extractPrefix(rawKey);
-                Optional<ApiKey> apiKeyOpt = apiKeyRepository.findByKeyPrefixAndStatus(prefix, ApiKeyStatus.ACTIVE);
-                if (apiKeyOpt.isPresent() && passwordEncoder.matches(rawKey, apiKeyOpt.get().getKeyHash())) {
-                    Long merchantId = apiKeyOpt.get().getMerchantId();
-                    MerchantContext.setMerchantId(merchantId);
+                Long merchantId = resolveMerchantId(rawKey);
+                if (merchantId != null) {
+                    MerchantContext.setMerchantId(request, merchantId);
 
                     UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken(
                             merchantId, null, Collections.emptyList());
@@ -65,9 +71,34 @@ public class ApiKeyAuthFilter extends OncePerRequestFilter {
             }
         } catch (Exception e) {
             log.debug("API key authentication failed: {}", e.getMessage());
-        } finally {
-            filterChain.doFilter(request, response);
-            MerchantContext.clear();
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private Long resolveMerchantId(String rawKey) {
+        String digest = apiKeyCache.digest(rawKey);
+        Long merchantId = apiKeyCache.getMerchantId(digest);
+        if (merchantId != null) {
+            return merchantId;
+        }
+        long stamp = apiKeyCache.stamp();
+        Optional<ApiKey> apiKeyOpt = apiKeyRepository.findByKeyPrefixAndStatus(extractPrefix(rawKey), ApiKeyStatus.ACTIVE);
+        if (apiKeyOpt.isEmpty() || !apiKeyHasher.matches(rawKey, apiKeyOpt.get().getKeyHash())) {
+            return null;
+        }
+        ApiKey apiKey = apiKeyOpt.get();
+        if (apiKeyHasher.needsUpgrade(apiKey.getKeyHash())) {
+            upgradeHash(apiKey, rawKey);
+        }
+        apiKeyCache.put(digest, apiKey.getId(), apiKey.getMerchantId(), stamp);
+        return apiKey.getMerchantId();
+    }
+
+    private void upgradeHash(ApiKey apiKey, String rawKey) {
+        try {
+            apiKeyService.upgradeHash(apiKey.getId(), apiKey.getKeyHash(), rawKey);
+        } catch (Exception e) {
+            log.warn("API key hash upgrade failed: id={}, error={}", apiKey.getId(), e.getMessage());
         }
     }
 
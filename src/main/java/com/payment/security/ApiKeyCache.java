@@ -0,0 +1,144 @@
+package com.payment.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, TTL-based cache of verified API keys, so repeat requests skip the DB lookup and BCrypt check.
+ * Entries are keyed by an HMAC-SHA256 digest of the raw key (never the key itself) under a per-process
+ * random secret, and map to the owning merchant. Revocations evict locally on commit and are broadcast
+ * to other nodes over {@link #REVOCATION_CHANNEL}.
+ */
+@Component
+public class ApiKeyCache implements MessageListener {
+
+    public static final String REVOCATION_CHANNEL = "api_key:revoked";
+
+    private static final Logger log = LoggerFactory.getLogger(ApiKeyCache.class);
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder BASE64 = Base64.getUrlEncoder().withoutPadding();
+
+    private final Cache<String, CachedApiKey> cache;
+    private final StringRedisTemplate redisTemplate;
+    private final ThreadLocal<Mac> mac;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public ApiKeyCache(StringRedisTemplate redisTemplate,
+                       MeterRegistry meterRegistry,
+                       @Value("${api-key.cache.max-size:10000}") long maxSize,
+                       @Value("${api-key.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        SecretKeySpec key = new SecretKeySpec(secret, HMAC_ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance(HMAC_ALGORITHM);
+                instance.init(key);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 not available", e);
+            }
+        });
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "api_key_cache");
+    }
+
+    public String digest(String rawKey) {
+        return BASE64.encodeToString(mac.get().doFinal(rawKey.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @return the merchant owning the key with this digest, or null on a cache miss
+     */
+    public Long getMerchantId(String digest) {
+        CachedApiKey cached = cache.getIfPresent(digest);
+        return cached != null ? cached.merchantId() : null;
+    }
+
+    /**
+     * Stamp to take before loading a key from the database and hand back to {@link #put}.
+     */
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    /**
+     * Caches a verified key, unless a revocation was seen since {@code stamp} was taken; the loaded row
+     * may predate that revocation, so it is safer to verify it again on the next request.
+     */
+    public void put(String digest, Long apiKeyId, Long merchantId, long stamp) {
+        cache.put(digest, new CachedApiKey(apiKeyId, merchantId));
+        if (invalidations.get() != stamp) {
+            cache.invalidate(digest);
+        }
+    }
+
+    public void evict(Long apiKeyId) {
+        invalidations.incrementAndGet();
+        cache.asMap().values().removeIf(cached -> cached.apiKeyId().equals(apiKeyId));
+    }
+
+    /**
+     * Evicts the key on this node and broadcasts the revocation once the current transaction commits,
+     * or immediately when there is none.
+     */
+    public void evictOnCommit(Long apiKeyId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evictAndBroadcast(apiKeyId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evictAndBroadcast(apiKeyId);
+            }
+        });
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            evict(Long.valueOf(body));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed API key revocation message: {}", body);
+        }
+    }
+
+    private void evictAndBroadcast(Long apiKeyId) {
+        evict(apiKeyId);
+        try {
+            redisTemplate.convertAndSend(REVOCATION_CHANNEL, String.valueOf(apiKeyId));
+        } catch (Exception e) {
+            log.warn("Failed to broadcast API key revocation: apiKeyId={}, error={}", apiKeyId, e.getMessage());
+        }
+    }
+
+    private record CachedApiKey(Long apiKeyId, Long merchantId) {
+    }
+}
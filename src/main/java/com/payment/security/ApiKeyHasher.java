@@ -0,0 +1,68 @@
+package com.payment.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * Hashes and verifies API keys.
+ * API keys are 32 random bytes, so a slow KDF adds nothing over a keyed hash: new keys are stored as
+ * HMAC-SHA256 under a server-side pepper, in the versioned format {@code $hmac-sha256$v1$<digest>}.
+ * Legacy BCrypt hashes ({@code $2a$...}) still verify and report {@link #needsUpgrade}. The prefix is the only record
+ * of which scheme produced a hash.
+ */
+@Component
+public class ApiKeyHasher {
+
+    static final String HMAC_PREFIX = "$hmac-sha256$v1$";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder BASE64 = Base64.getUrlEncoder().withoutPadding();
+
+    private final ThreadLocal<Mac> mac;
+    private final BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder();
+
+    public ApiKeyHasher(@Value("${api-key.pepper}") String pepper) {
+        SecretKeySpec key = new SecretKeySpec(pepper.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance(HMAC_ALGORITHM);
+                instance.init(key);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 not available", e);
+            }
+        });
+    }
+
+    public String hash(String rawKey) {
+        return HMAC_PREFIX + BASE64.encodeToString(mac.get().doFinal(rawKey.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public boolean matches(String rawKey, String storedHash) {
+        if (storedHash == null) {
+            return false;
+        }
+        if (isHmac(storedHash)) {
+            return MessageDigest.isEqual(
+                    hash(rawKey).getBytes(StandardCharsets.US_ASCII),
+                    storedHash.getBytes(StandardCharsets.US_ASCII));
+        }
+        return bcrypt.matches(rawKey, storedHash);
+    }
+
+    public boolean needsUpgrade(String storedHash) {
+        return !isHmac(storedHash);
+    }
+
+    private static boolean isHmac(String storedHash) {
+        return storedHash.startsWith(HMAC_PREFIX);
+    }
+}
@@ -35,15 +35,15 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             @NonNull HttpServletRequest request,
             @NonNull HttpServletResponse response,
             @NonNull FilterChain filterChain) throws ServletException, IOException {
+        if (SecurityContextHolder.getContext().getAuthentication() != null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
         try {
-            if (SecurityContextHolder.getContext().getAuthentication() != null) {
-                filterChain.doFilter(request, response);
-                return;
-            }
             String token = extractToken(request);
             if (StringUtils.hasText(token) && jwtTokenProvider.validateToken(token)) {
                 Long merchantId = jwtTokenProvider.getMerchantIdFromToken(token);
-                MerchantContext.setMerchantId(merchantId);
+                MerchantContext.setMerchantId(request, merchantId);
 
                 UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken(
                         merchantId, null, Collections.emptyList());
@@ -52,10 +52,8 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             }
         } catch (Exception e) {
             log.debug("Cannot set merchant authentication: {}", e.getMessage());
-        } finally {
-            filterChain.doFilter(request, response);
-            MerchantContext.clear();
         }
+        filterChain.doFilter(request, response);
     }
 
     private String extractToken(HttpServletRequest request) {
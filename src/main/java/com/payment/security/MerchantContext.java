@@ -1,23 +1,35 @@
 package com.payment.security;
 
-import org.springframework.core.NamedThreadLocal;
+import jakarta.servlet.ServletRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
+/**
+ * The merchant authenticated for the current request. It is stored as a request attribute rather than in a
+ * thread-local, so it lives exactly as long as the request: it follows the request into async dispatches,
+ * needs no clean-up, and cannot leak to the next request on a pooled platform thread or be lost when the
+ * request runs on a virtual thread.
+ */
 public final class MerchantContext {
 
-    private static final ThreadLocal<Long> MERCHANT_ID = new NamedThreadLocal<>("merchantId");
+    private static final String ATTRIBUTE = MerchantContext.class.getName() + ".merchantId";
 
     private MerchantContext() {
     }
 
-    public static void setMerchantId(Long merchantId) {
-        MERCHANT_ID.set(merchantId);
+    public static void setMerchantId(ServletRequest request, Long merchantId) {
+        request.setAttribute(ATTRIBUTE, merchantId);
     }
 
-    public static Long getMerchantId() {
-        return MERCHANT_ID.get();
+    public static Long getMerchantId(ServletRequest request) {
+        return (Long) request.getAttribute(ATTRIBUTE);
     }
 
-    public static void clear() {
-        MERCHANT_ID.remove();
+    /**
+     * @return the merchant of the request Spring MVC is handling on this thread, or null outside a request
+     */
+    public static Long getMerchantId() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes == null ? null : (Long) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
     }
 }
@@ -3,10 +3,11 @@ package com.payment.service;
 import com.payment.domain.ApiKey;
 import com.payment.domain.ApiKeyStatus;
 import com.payment.repository.ApiKeyRepository;
+import com.payment.security.ApiKeyCache;
+import com.payment.security.ApiKeyHasher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -23,16 +24,21 @@ public class ApiKeyService {
 
     private final ApiKeyRepository apiKeyRepository;
     private final AuditService auditService;
+    private final ApiKeyCache apiKeyCache;
+    private final ApiKeyHasher apiKeyHasher;
     private final int prefixLength;
     private final int keyLength;
-    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
 
     public ApiKeyService(ApiKeyRepository apiKeyRepository,
                          AuditService auditService,
+                         ApiKeyCache apiKeyCache,
+                         ApiKeyHasher apiKeyHasher,
                          @Value("${api-key.prefix-length:8}") int prefixLength,
                          @Value("${api-key.key-length:32}") int keyLength) {
         this.apiKeyRepository = apiKeyRepository;
         this.auditService = auditService;
+        this.apiKeyCache = apiKeyCache;
+        this.apiKeyHasher = apiKeyHasher;
         this.prefixLength = prefixLength;
         this.keyLength = keyLength;
     }
@@ -47,7 +53,7 @@ public class ApiKeyService {
         ApiKey apiKey = new ApiKey();
         apiKey.setMerchantId(merchantId);
         apiKey.setKeyPrefix(prefix);
-        apiKey.setKeyHash(passwordEncoder.encode(rawKey));
+        apiKey.setKeyHash(apiKeyHasher.hash(rawKey));
         apiKey.setStatus(ApiKeyStatus.ACTIVE);
         apiKey = apiKeyRepository.save(apiKey);
 
@@ -70,10 +76,23 @@ public class ApiKeyService {
                 .orElseThrow(() -> new IllegalArgumentException("API key not found"));
         apiKey.setStatus(ApiKeyStatus.REVOKED);
         apiKeyRepository.save(apiKey);
+        apiKeyCache.evictOnCommit(apiKeyId);
         log.info("API key revoked: id={}, merchantId={}", apiKeyId, merchantId);
         auditService.log(merchantId, "API_KEY_REVOKED", "apiKeyId=" + apiKeyId);
     }
 
+    /**
+     * Re-hashes a legacy BCrypt key with the current scheme after it has been verified.
+     * Only replaces {@code expectedHash}, so concurrent upgrades of the same key are harmless.
+     */
+    @Transactional
+    public void upgradeHash(Long apiKeyId, String expectedHash, String rawKey) {
+        int updated = apiKeyRepository.updateKeyHash(apiKeyId, expectedHash, apiKeyHasher.hash(rawKey));
+        if (updated > 0) {
+            log.info("API key hash upgraded: id={}, scheme=HMAC-SHA256", apiKeyId);
+        }
+    }
+
     public record CreateApiKeyResult(Long id, String rawKey, String prefix) {
     }
 }
@@ -0,0 +1,169 @@
+package com.payment.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batched inserts into {@code audit_log}. {@link #write} runs on the caller's connection, so it joins the
+ * caller's transaction. {@link #enqueue} hands entries to a bounded queue drained by a single writer thread,
+ * which flushes once {@code audit.async.batch-size} entries are pending or {@code audit.async.flush-interval-ms}
+ * after the first one arrived. Entries that do not fit in the queue are dropped and counted.
+ */
+@Component
+public class AuditLogWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditLogWriter.class);
+    private static final String INSERT_SQL =
+            "INSERT INTO audit_log (actor_merchant_id, action, details, created_at) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<Entry> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Timer syncFlush;
+    private final Timer asyncFlush;
+    private final Counter dropped;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    public AuditLogWriter(JdbcTemplate jdbcTemplate,
+                          MeterRegistry meterRegistry,
+                          @Value("${audit.async.capacity:10000}") int capacity,
+                          @Value("${audit.async.batch-size:500}") int batchSize,
+                          @Value("${audit.async.flush-interval-ms:200}") long flushIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.syncFlush = flushTimer(meterRegistry, "sync");
+        this.asyncFlush = flushTimer(meterRegistry, "async");
+        this.dropped = Counter.builder("audit.dropped")
+                .description("Fire-and-forget audit entries lost to a full queue or a failed flush")
+                .register(meterRegistry);
+        Gauge.builder("audit.queue.depth", queue, BlockingQueue::size)
+                .description("Audit entries waiting for the writer thread")
+                .register(meterRegistry);
+        this.worker = Thread.ofPlatform().name("audit-writer").daemon().unstarted(this::drainLoop);
+    }
+
+    @PostConstruct
+    public void start() {
+        worker.start();
+    }
+
+    /**
+     * Stops accepting queued work and waits for the writer thread to flush what is left.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * Inserts {@code entries} as one JDBC batch, in the current transaction if there is one.
+     */
+    public void write(List<Entry> entries) {
+        if (!entries.isEmpty()) {
+            syncFlush.record(() -> insert(entries));
+        }
+    }
+
+    /**
+     * Queues {@code entry} for the writer thread without blocking.
+     *
+     * @return false if the queue is full and the entry was dropped
+     */
+    public boolean enqueue(Entry entry) {
+        if (running && queue.offer(entry)) {
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    private void drainLoop() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Entry next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                running = false;
+                queue.drainTo(batch);
+            }
+            flushQueued(batch);
+        }
+    }
+
+    private void flushQueued(List<Entry> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            asyncFlush.record(() -> insert(batch));
+        } catch (Exception e) {
+            log.warn("Dropped {} audit entries: {}", batch.size(), e.getMessage());
+            dropped.increment(batch.size());
+        }
+        batch.clear();
+    }
+
+    private void insert(List<Entry> entries) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, entries, entries.size(), (ps, entry) -> {
+            if (entry.actorMerchantId() != null) {
+                ps.setLong(1, entry.actorMerchantId());
+            } else {
+                ps.setNull(1, Types.BIGINT);
+            }
+            ps.setString(2, entry.action());
+            ps.setString(3, entry.details());
+            ps.setTimestamp(4, Timestamp.from(entry.createdAt()));
+        });
+    }
+
+    private static Timer flushTimer(MeterRegistry meterRegistry, String mode) {
+        return Timer.builder("audit.flush")
+                .description("Time to insert one batch of audit entries")
+                .tag("mode", mode)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    public record Entry(Long actorMerchantId, String action, String details, Instant createdAt) {
+    }
+}
@@ -6,26 +6,69 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Audit entries come in two modes. {@link #log} is durable: inside a transaction the entries are
+ * collected and inserted as one batch just before it commits, so they commit or roll back with the
+ * change they describe. {@link #logAsync} is fire-and-forget and goes through {@link AuditLogWriter}'s
+ * queue, for high-volume events such as logins where losing an entry on a crash is acceptable.
+ */
 @Service
 public class AuditService {
 
     private final AuditLogRepository auditLogRepository;
+    private final AuditLogWriter auditLogWriter;
 
-    public AuditService(AuditLogRepository auditLogRepository) {
+    public AuditService(AuditLogRepository auditLogRepository, AuditLogWriter auditLogWriter) {
         this.auditLogRepository = auditLogRepository;
+        this.auditLogWriter = auditLogWriter;
     }
 
-    @Transactional
     public void log(Long actorMerchantId, String action, String details) {
-        AuditLog log = new AuditLog();
-        log.setActorMerchantId(actorMerchantId);
-        log.setAction(action);
-        log.setDetails(details);
-        auditLogRepository.save(log);
+        AuditLogWriter.Entry entry = new AuditLogWriter.Entry(actorMerchantId, action, details, Instant.now());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || !TransactionSynchronizationManager.isActualTransactionActive()) {
+            auditLogWriter.write(List.of(entry));
+            return;
+        }
+        pendingEntries().add(entry);
+    }
+
+    public void logAsync(Long actorMerchantId, String action, String details) {
+        auditLogWriter.enqueue(new AuditLogWriter.Entry(actorMerchantId, action, details, Instant.now()));
     }
 
+    @Transactional(readOnly = true)
     public Page<AuditLog> list(Pageable pageable) {
         return auditLogRepository.findAllByOrderByCreatedAtDesc(pageable);
     }
+
+    @SuppressWarnings("unchecked")
+    private List<AuditLogWriter.Entry> pendingEntries() {
+        List<AuditLogWriter.Entry> pending =
+                (List<AuditLogWriter.Entry>) TransactionSynchronizationManager.getResource(this);
+        if (pending != null) {
+            return pending;
+        }
+        List<AuditLogWriter.Entry> entries = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(this, entries);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                auditLogWriter.write(entries);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(AuditService.this);
+            }
+        });
+        return entries;
+    }
 }
@@ -52,7 +52,7 @@ public class AuthService {
         }
         String token = jwtTokenProvider.createToken(merchant.getId(), merchant.getEmail());
         log.info("Merchant logged in: id={}, email={}", merchant.getId(), merchant.getEmail());
-        auditService.log(merchant.getId(), "MERCHANT_LOGIN", "email=" + email);
+        auditService.logAsync(merchant.getId(), "MERCHANT_LOGIN", "email=" + email);
         return token;
     }
 }
@@ -0,0 +1,189 @@
+package com.payment.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Incremental SHA-256 of a JSON document in canonical form, fed with raw bytes as they are read.
+ * Canonical form: object keys sorted, null members dropped, numbers normalized ({@code 10}, {@code 10.0}
+ * and {@code 1e1} are equal), no insignificant whitespace. Array order is kept.
+ * <p>
+ * Parsing uses Jackson's non-blocking parser, so bytes are consumed as they arrive. Members of an open
+ * object are buffered until it closes, because key order is only known then.
+ * Not thread-safe; use one instance per request.
+ */
+public final class CanonicalJsonDigest {
+
+    /** Request attribute holding the digest of the request body, when one is being computed. */
+    public static final String REQUEST_ATTRIBUTE = CanonicalJsonDigest.class.getName();
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final HexFormat HEX = HexFormat.of();
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private final JsonParser parser;
+    private final Deque<Frame> frames = new ArrayDeque<>();
+    private String hex;
+    private boolean failed;
+
+    public CanonicalJsonDigest() {
+        try {
+            this.parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create JSON parser", e);
+        }
+    }
+
+    /**
+     * Hashes a complete JSON document.
+     *
+     * @return the hex digest, or null if {@code json} is not a single valid JSON value
+     */
+    public static String hash(byte[] json) {
+        CanonicalJsonDigest digest = new CanonicalJsonDigest();
+        digest.update(json, 0, json.length);
+        digest.finish();
+        return digest.hex();
+    }
+
+    /**
+     * Hex-encoded SHA-256 of {@code bytes}, reusing a per-thread {@link MessageDigest}.
+     */
+    public static String sha256Hex(byte[] bytes) {
+        return HEX.formatHex(SHA256.get().digest(bytes));
+    }
+
+    public void update(byte[] buffer, int offset, int length) {
+        if (hex != null || failed || length <= 0) {
+            return;
+        }
+        try {
+            ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).feedInput(buffer, offset, offset + length);
+            drain();
+        } catch (IOException e) {
+            failed = true;
+        }
+    }
+
+    /**
+     * Signals the end of the input, which completes a root value that is a bare number.
+     */
+    public void finish() {
+        if (hex != null || failed) {
+            return;
+        }
+        try {
+            ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).endOfInput();
+            drain();
+        } catch (IOException e) {
+            failed = true;
+        }
+    }
+
+    /**
+     * @return the hex digest once the root JSON value has been read completely, otherwise null
+     */
+    public String hex() {
+        return hex;
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while (hex == null && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            accept(token);
+        }
+    }
+
+    private void accept(JsonToken token) throws IOException {
+        switch (token) {
+            case START_OBJECT -> frames.push(new Frame(true));
+            case START_ARRAY -> frames.push(new Frame(false));
+            case FIELD_NAME -> frames.peek().field = parser.currentName();
+            case END_OBJECT, END_ARRAY -> emit(frames.pop().close());
+            case VALUE_STRING -> emit(quote(parser.getText()));
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> emit(normalize(parser.getDecimalValue()));
+            case VALUE_TRUE -> emit("true");
+            case VALUE_FALSE -> emit("false");
+            case VALUE_NULL -> emit(null);
+            default -> failed = true;
+        }
+    }
+
+    private void emit(String value) {
+        Frame frame = frames.peek();
+        if (frame == null) {
+            hex = sha256Hex((value != null ? value : "null").getBytes(StandardCharsets.UTF_8));
+        } else {
+            frame.add(value);
+        }
+    }
+
+    private static String normalize(BigDecimal number) {
+        return number.signum() == 0 ? "0" : number.stripTrailingZeros().toString();
+    }
+
+    private static String quote(String text) {
+        return '"' + new String(JsonStringEncoder.getInstance().quoteAsString(text)) + '"';
+    }
+
+    private static final class Frame {
+
+        private final boolean object;
+        private final Map<String, String> members;
+        private final StringBuilder elements;
+        private String field;
+
+        Frame(boolean object) {
+            this.object = object;
+            this.members = object ? new TreeMap<>() : null;
+            this.elements = object ? null : new StringBuilder("[");
+        }
+
+        void add(String value) {
+            if (object) {
+                if (value != null) {
+                    members.put(field, value);
+                }
+                return;
+            }
+            if (elements.length() > 1) {
+                elements.append(',');
+            }
+            elements.append(value != null ? value : "null");
+        }
+
+        String close() {
+            if (!object) {
+                return elements.append(']').toString();
+            }
+            StringBuilder sb = new StringBuilder("{");
+            for (Map.Entry<String, String> member : members.entrySet()) {
+                if (sb.length() > 1) {
+                    sb.append(',');
+                }
+                sb.append(quote(member.getKey())).append(':').append(member.getValue());
+            }
+            return sb.append('}').toString();
+        }
+    }
+}
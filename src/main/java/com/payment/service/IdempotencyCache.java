@@ -0,0 +1,132 @@
+package com.payment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.domain.PaymentIntent;
+import com.payment.dto.PaymentIntentResponse;
+import com.payment.repository.PaymentIntentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Redis fast path for idempotent replays: the serialized response stored next to the payload hash.
+ * {@code idempotency_record} remains the source of truth. Entries are written only after the owning
+ * transaction commits, and every Redis failure degrades to a miss so callers fall back to the database.
+ * <p>
+ * A replay answers with the intent's current state, as the database fallback does, not the response as it was
+ * at commit. A stored response in a terminal state is current by definition and is served from the one GET.
+ * Otherwise {@link #find} swaps in the intent from {@link PaymentIntentCache}: a local hit for intents read or
+ * changed on this node within {@code payment.cache.active-ttl-seconds}, else a Redis GET and, for an in-flight
+ * intent nobody has read for that long, a database load by id (still no idempotency_record query). The stored
+ * response is used only if the intent no longer exists.
+ */
+@Component
+public class IdempotencyCache {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyCache.class);
+    private static final String KEY_PREFIX = "idempotency:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final PaymentIntentCache paymentIntentCache;
+    private final PaymentIntentRepository paymentIntentRepository;
+    private final boolean enabled;
+    private final Duration ttl;
+
+    public IdempotencyCache(StringRedisTemplate redisTemplate,
+                            ObjectMapper objectMapper,
+                            PaymentIntentCache paymentIntentCache,
+                            PaymentIntentRepository paymentIntentRepository,
+                            @Value("${idempotency.cache.enabled:true}") boolean enabled,
+                            @Value("${idempotency.cache.ttl-seconds:86400}") long ttlSeconds,
+                            @Value("${idempotency.retention:24h}") Duration retention) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.paymentIntentCache = paymentIntentCache;
+        this.paymentIntentRepository = paymentIntentRepository;
+        this.enabled = enabled;
+        // A cached replay must not outlive the record it stands for
+        Duration configured = Duration.ofSeconds(ttlSeconds);
+        this.ttl = configured.compareTo(retention) < 0 ? configured : retention;
+    }
+
+    /**
+     * @param paymentIntentId the intent for CONFIRM keys, which are scoped per intent; null for CREATE
+     */
+    public Optional<Replay> find(Long merchantId, String operation, String idempotencyKey, UUID paymentIntentId) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Replay replay;
+        try {
+            String json = redisTemplate.opsForValue().get(key(merchantId, operation, idempotencyKey, paymentIntentId));
+            if (json == null) {
+                return Optional.empty();
+            }
+            replay = objectMapper.readValue(json, Replay.class);
+        } catch (Exception e) {
+            log.warn("Idempotency cache read failed, falling back to database: {}", e.getMessage());
+            return Optional.empty();
+        }
+        if (PaymentStateMachine.isTerminal(replay.response().status())) {
+            return Optional.of(replay);
+        }
+        UUID intentId = replay.response().id();
+        return Optional.of(paymentIntentCache
+                .get(merchantId, intentId, () -> paymentIntentRepository.findByIdAndMerchantId(intentId, merchantId))
+                .map(current -> new Replay(replay.payloadHash(), current.response()))
+                .orElse(replay));
+    }
+
+    public void put(Long merchantId, String operation, String idempotencyKey, UUID paymentIntentId,
+                    String payloadHash, PaymentIntentResponse response) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            redisTemplate.opsForValue().set(key(merchantId, operation, idempotencyKey, paymentIntentId),
+                    objectMapper.writeValueAsString(new Replay(payloadHash, response)), ttl);
+        } catch (Exception e) {
+            log.warn("Idempotency cache write failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Caches the response for {@code intent} once the current transaction commits, so a rolled-back
+     * request never becomes replayable. The response is built at commit time, from the final state.
+     */
+    public void putOnCommit(Long merchantId, String operation, String idempotencyKey, UUID paymentIntentId,
+                            String payloadHash, PaymentIntent intent) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            put(merchantId, operation, idempotencyKey, paymentIntentId, payloadHash, PaymentIntentResponse.from(intent));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put(merchantId, operation, idempotencyKey, paymentIntentId, payloadHash,
+                        PaymentIntentResponse.from(intent));
+            }
+        });
+    }
+
+    static String key(Long merchantId, String operation, String idempotencyKey, UUID paymentIntentId) {
+        return paymentIntentId == null
+                ? KEY_PREFIX + merchantId + ":" + operation + ":" + idempotencyKey
+                : KEY_PREFIX + merchantId + ":" + operation + ":" + paymentIntentId + ":" + idempotencyKey;
+    }
+
+    public record Replay(String payloadHash, PaymentIntentResponse response) {
+    }
+}
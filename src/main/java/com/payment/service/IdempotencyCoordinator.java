@@ -0,0 +1,154 @@
+package com.payment.service;
+
+import com.payment.dto.PaymentIntentResponse;
+import com.payment.exception.IdempotencyConflictException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent requests that share an idempotency key, so only one of them reaches the database.
+ * Duplicates on this node join the leader's in-flight future. Across nodes, the leader holds a Redis
+ * {@code SET NX} lease, and other nodes poll the {@link IdempotencyCache} until the leader's result appears.
+ * If Redis is unavailable, only the local single-flight applies and the unique indexes remain the backstop.
+ */
+@Component
+public class IdempotencyCoordinator {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyCoordinator.class);
+    private static final String LOCK_PREFIX = "lock:";
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    private final IdempotencyCache idempotencyCache;
+    private final StringRedisTemplate redisTemplate;
+    private final Duration leaseTime;
+    private final long waitMs;
+    private final long pollMs;
+    private final ConcurrentMap<String, CompletableFuture<IdempotencyCache.Replay>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyCoordinator(IdempotencyCache idempotencyCache,
+                                  StringRedisTemplate redisTemplate,
+                                  @Value("${idempotency.lock.lease-ms:10000}") long leaseMs,
+                                  @Value("${idempotency.lock.wait-ms:5000}") long waitMs,
+                                  @Value("${idempotency.lock.poll-ms:20}") long pollMs) {
+        this.idempotencyCache = idempotencyCache;
+        this.redisTemplate = redisTemplate;
+        this.leaseTime = Duration.ofMillis(leaseMs);
+        this.waitMs = waitMs;
+        this.pollMs = pollMs;
+    }
+
+    /**
+     * Returns the response for an idempotent request, running {@code work} at most once per key at a time.
+     * {@code work} must look up an existing idempotency record before performing the operation, and must
+     * return the stored payload hash with the response.
+     *
+     * @throws IdempotencyConflictException if the key was used with a different payload, or another node
+     *                                      is still processing it after {@code idempotency.lock.wait-ms}
+     */
+    public PaymentIntentResponse execute(Long merchantId, String operation, String idempotencyKey,
+                                         UUID paymentIntentId, String payloadHash,
+                                         Supplier<IdempotencyCache.Replay> work) {
+        Optional<IdempotencyCache.Replay> cached = idempotencyCache.find(merchantId, operation, idempotencyKey, paymentIntentId);
+        if (cached.isPresent()) {
+            return verify(cached.get(), payloadHash);
+        }
+
+        String key = IdempotencyCache.key(merchantId, operation, idempotencyKey, paymentIntentId);
+        CompletableFuture<IdempotencyCache.Replay> flight = new CompletableFuture<>();
+        CompletableFuture<IdempotencyCache.Replay> leader = inFlight.putIfAbsent(key, flight);
+        if (leader != null) {
+            return verify(join(leader), payloadHash);
+        }
+        try {
+            IdempotencyCache.Replay replay = runWithLease(key, merchantId, operation, idempotencyKey, paymentIntentId, work);
+            flight.complete(replay);
+            return verify(replay, payloadHash);
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private IdempotencyCache.Replay runWithLease(String key, Long merchantId, String operation, String idempotencyKey,
+                                                 UUID paymentIntentId, Supplier<IdempotencyCache.Replay> work) {
+        String lockKey = LOCK_PREFIX + key;
+        String token = UUID.randomUUID().toString();
+        long deadline = System.nanoTime() + Duration.ofMillis(waitMs).toNanos();
+        while (true) {
+            if (tryAcquire(lockKey, token)) {
+                try {
+                    return work.get();
+                } finally {
+                    release(lockKey, token);
+                }
+            }
+            Optional<IdempotencyCache.Replay> done = idempotencyCache.find(merchantId, operation, idempotencyKey, paymentIntentId);
+            if (done.isPresent()) {
+                return done.get();
+            }
+            if (System.nanoTime() - deadline > 0) {
+                throw new IdempotencyConflictException("A request with this Idempotency-Key is already in progress");
+            }
+            try {
+                Thread.sleep(pollMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for idempotent request", e);
+            }
+        }
+    }
+
+    private boolean tryAcquire(String lockKey, String token) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(lockKey, token, leaseTime));
+        } catch (Exception e) {
+            log.warn("Idempotency lease unavailable, continuing without cross-node lock: {}", e.getMessage());
+            return true;
+        }
+    }
+
+    private void release(String lockKey, String token) {
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(lockKey), token);
+        } catch (Exception e) {
+            log.warn("Failed to release idempotency lease {}: {}", lockKey, e.getMessage());
+        }
+    }
+
+    private static IdempotencyCache.Replay join(CompletableFuture<IdempotencyCache.Replay> leader) {
+        try {
+            return leader.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static PaymentIntentResponse verify(IdempotencyCache.Replay replay, String payloadHash) {
+        if (!replay.payloadHash().equals(payloadHash)) {
+            throw new IdempotencyConflictException("Idempotency key already used with different request payload");
+        }
+        return replay.response();
+    }
+}
@@ -0,0 +1,58 @@
+package com.payment.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.LocalDate;
+
+/**
+ * Keeps the daily partitions of {@code idempotency_record} ahead of time and drops partitions whose
+ * records are all past {@code idempotency.retention}. Dropping a partition replaces a bulk DELETE, so
+ * expiry produces no dead tuples and no vacuum load. Safe to run on every node: the database function
+ * takes an advisory lock and the other callers skip.
+ */
+@Service
+public class IdempotencyPartitionMaintenance {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyPartitionMaintenance.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IdempotencyService idempotencyService;
+    private final int daysAhead;
+    private final Clock clock = Clock.systemUTC();
+
+    public IdempotencyPartitionMaintenance(JdbcTemplate jdbcTemplate,
+                                           IdempotencyService idempotencyService,
+                                           @Value("${idempotency.partition.days-ahead:7}") int daysAhead) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.idempotencyService = idempotencyService;
+        this.daysAhead = daysAhead;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${idempotency.partition.cron:0 15 * * * *}", zone = "UTC")
+    public void maintain() {
+        LocalDate today = LocalDate.now(clock);
+        try {
+            Integer dropped = jdbcTemplate.queryForObject(
+                    "SELECT maintain_idempotency_record_partitions(?, ?, ?)", Integer.class,
+                    Date.valueOf(today), Date.valueOf(today.plusDays(daysAhead)),
+                    Timestamp.from(idempotencyService.retentionCutoff()));
+            if (dropped != null && dropped > 0) {
+                log.info("Dropped {} expired idempotency record partitions (retention {})",
+                        dropped, idempotencyService.getRetention());
+            }
+        } catch (Exception e) {
+            log.warn("Idempotency record partition maintenance failed: {}", e.getMessage());
+        }
+    }
+}
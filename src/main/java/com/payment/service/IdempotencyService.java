@@ -4,34 +4,86 @@ import com.payment.domain.IdempotencyRecord;
 import com.payment.repository.IdempotencyRecordRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.regex.Pattern;
 
 @Service
 public class IdempotencyService {
 
     private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+    // payment_intent's unique indexes on the idempotency keys (V11). A violation names the partition's index.
+    private static final Pattern CREATE_KEY_INDEX = Pattern.compile(
+            "idx_payment_intent_idempotency_create|payment_intent_p\\d+_merchant_id_idempotency_key_create_idx");
+    private static final Pattern CONFIRM_KEY_INDEX = Pattern.compile(
+            "idx_payment_intent_idempotency_confirm|payment_intent_p\\d+_merchant_id_idempotency_key_confirm_idx");
 
     private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final Duration retention;
 
-    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository) {
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+                              @Value("${idempotency.retention:24h}") Duration retention) {
         this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.retention = retention;
     }
 
+    /**
+     * Records older than {@code idempotency.retention} are treated as absent, even before their
+     * partition has been dropped.
+     */
     public Optional<IdempotencyRecord> findCreateRecord(Long merchantId, String idempotencyKey) {
-        return idempotencyRecordRepository.findByMerchantIdAndIdempotencyKeyAndOperation(
-                merchantId, idempotencyKey, "CREATE");
+        return idempotencyRecordRepository.findByMerchantIdAndIdempotencyKeyAndOperationAndCreatedAtAfter(
+                merchantId, idempotencyKey, "CREATE", retentionCutoff());
     }
 
     public Optional<IdempotencyRecord> findConfirmRecord(Long merchantId, String idempotencyKey, UUID paymentIntentId) {
-        return idempotencyRecordRepository.findByMerchantIdAndIdempotencyKeyAndOperationAndPaymentIntentId(
-                merchantId, idempotencyKey, "CONFIRM", paymentIntentId);
+        return idempotencyRecordRepository.findByMerchantIdAndIdempotencyKeyAndOperationAndPaymentIntentIdAndCreatedAtAfter(
+                merchantId, idempotencyKey, "CONFIRM", paymentIntentId, retentionCutoff());
+    }
+
+    /**
+     * CREATE records for any of {@code idempotencyKeys} that are still within the retention, by key.
+     */
+    public Map<String, IdempotencyRecord> findCreateRecords(Long merchantId, Collection<String> idempotencyKeys) {
+        return findRecords(merchantId, "CREATE", idempotencyKeys);
+    }
+
+    /**
+     * CONFIRM records for any of {@code idempotencyKeys} that are still within the retention, by key.
+     */
+    public Map<String, IdempotencyRecord> findConfirmRecords(Long merchantId, Collection<String> idempotencyKeys) {
+        return findRecords(merchantId, "CONFIRM", idempotencyKeys);
+    }
+
+    private Map<String, IdempotencyRecord> findRecords(Long merchantId, String operation, Collection<String> idempotencyKeys) {
+        Map<String, IdempotencyRecord> records = new HashMap<>();
+        idempotencyRecordRepository.findByMerchantIdAndOperationAndIdempotencyKeyInAndCreatedAtAfter(
+                        merchantId, operation, idempotencyKeys, retentionCutoff())
+                .forEach(record -> records.put(record.getIdempotencyKey(), record));
+        return records;
+    }
+
+    public Duration getRetention() {
+        return retention;
+    }
+
+    /**
+     * Oldest creation time of a record that is still honored.
+     */
+    public Instant retentionCutoff() {
+        return Instant.now().minus(retention);
     }
 
     @Transactional
@@ -56,17 +108,45 @@ public class IdempotencyService {
         return idempotencyRecordRepository.save(record);
     }
 
-    public String hashPayload(String payload) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(payload.getBytes(StandardCharsets.UTF_8));
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hash) {
-                sb.append(String.format("%02x", b));
+    /**
+     * Whether {@code e} is a create idempotency key already held by another payment intent, as opposed to any
+     * other integrity violation.
+     */
+    public static boolean isCreateKeyTaken(DataIntegrityViolationException e) {
+        return violates(e, CREATE_KEY_INDEX);
+    }
+
+    /**
+     * Whether {@code e} is a confirm idempotency key already held by another payment intent.
+     */
+    public static boolean isConfirmKeyTaken(DataIntegrityViolationException e) {
+        return violates(e, CONFIRM_KEY_INDEX);
+    }
+
+    private static boolean violates(DataIntegrityViolationException e, Pattern index) {
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return violation.getConstraintName() != null && index.matcher(violation.getConstraintName()).matches();
             }
-            return sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("SHA-256 not available", e);
         }
+        return false;
+    }
+
+    /**
+     * SHA-256 of the payload exactly as given. Used for records stored before canonical hashing.
+     */
+    public String hashPayload(String payload) {
+        return CanonicalJsonDigest.sha256Hex(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Canonical JSON hash of a serialized request body; see {@link CanonicalJsonDigest}.
+     */
+    public String hashCanonical(byte[] json) {
+        String hash = CanonicalJsonDigest.hash(json);
+        if (hash == null) {
+            throw new IllegalArgumentException("Request body is not valid JSON");
+        }
+        return hash;
     }
 }
@@ -0,0 +1,34 @@
+package com.payment.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps published messages in memory, in publication order. Stands in for Redis in tests and local runs
+ * ({@code outbox.broker=in-memory}); nothing is retained across restarts.
+ */
+@Component
+@ConditionalOnProperty(name = "outbox.broker", havingValue = "in-memory")
+public class InMemoryOutboxBroker implements OutboxBroker {
+
+    private final List<Message> messages = new ArrayList<>();
+
+    @Override
+    public synchronized void publish(List<Message> batch) {
+        messages.addAll(batch);
+    }
+
+    /**
+     * @return everything published so far
+     */
+    public synchronized List<Message> published() {
+        return List.copyOf(messages);
+    }
+
+    public synchronized void clear() {
+        messages.clear();
+    }
+}
@@ -0,0 +1,125 @@
+package com.payment.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process pre-admission tier in front of {@link RateLimitService}.
+ * Each node leases a batch of permits per key from Redis and admits requests locally until the lease
+ * is used up or expires, so Redis sees roughly one call per lease instead of one per request.
+ * <p>
+ * Leased permits are debited from the shared budget up front, so the global limit is never exceeded.
+ * The error is on the other side: permits a node leased but did not use are lost to other nodes,
+ * so each node can under-admit by at most one lease, which is capped at {@code max-error} x limit.
+ */
+@Service
+public class LocalRateLimiter {
+
+    private final RateLimitService rateLimitService;
+    private final boolean enabled;
+    private final int leaseSize;
+    private final double maxError;
+    private final long leaseTtlNanos;
+    private final Cache<String, LocalBucket> buckets;
+
+    public LocalRateLimiter(RateLimitService rateLimitService,
+                            @Value("${rate-limit.local.enabled:false}") boolean enabled,
+                            @Value("${rate-limit.local.lease-size:10}") int leaseSize,
+                            @Value("${rate-limit.local.max-error:0.1}") double maxError,
+                            @Value("${rate-limit.local.lease-ttl-ms:1000}") long leaseTtlMs) {
+        this.rateLimitService = rateLimitService;
+        this.enabled = enabled;
+        this.leaseSize = leaseSize;
+        this.maxError = maxError;
+        this.leaseTtlNanos = TimeUnit.MILLISECONDS.toNanos(leaseTtlMs);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterAccess(Duration.ofMillis(Math.max(leaseTtlMs, 1000) * 10))
+                .build();
+    }
+
+    public RateLimitService.RateLimitResult checkAndIncrement(String key) {
+        return checkAndIncrement(key, rateLimitService.getDefaultBudget());
+    }
+
+    public RateLimitService.RateLimitResult checkAndIncrement(String key, RateLimitPolicyTable.Budget budget) {
+        if (!enabled) {
+            return rateLimitService.checkAndIncrement(key, budget);
+        }
+        LocalBucket bucket = buckets.get(key, k -> new LocalBucket());
+        // Holding the bucket lock across the Redis call collapses concurrent refills for a key into one.
+        // A ReentrantLock rather than synchronized, which would pin a virtual thread to its carrier for the call.
+        bucket.lock.lock();
+        try {
+            return bucket.take(key, budget);
+        } finally {
+            bucket.lock.unlock();
+        }
+    }
+
+    int effectiveLeaseSize(RateLimitPolicyTable.Budget budget) {
+        int maxLease = (int) (budget.limit() * maxError);
+        return Math.max(1, Math.min(leaseSize, maxLease));
+    }
+
+    private final class LocalBucket {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private int tokens;
+        private long leaseExpiresAt;
+        private long rejectedUntil;
+        private int limit;
+        private int remaining;
+        private long resetAt;
+
+        LocalBucket() {
+            long now = System.nanoTime();
+            leaseExpiresAt = now;
+            rejectedUntil = now;
+            resetAt = now;
+        }
+
+        RateLimitService.RateLimitResult take(String key, RateLimitPolicyTable.Budget budget) {
+            limit = budget.limit();
+            long now = System.nanoTime();
+            if (now - rejectedUntil < 0) {
+                return rejected(now);
+            }
+            if (tokens > 0 && now - leaseExpiresAt < 0) {
+                tokens--;
+                return allowed(now);
+            }
+            RateLimitService.RateLimitLease lease = rateLimitService.lease(key, effectiveLeaseSize(budget), budget);
+            remaining = lease.remaining();
+            resetAt = now + TimeUnit.MILLISECONDS.toNanos(lease.resetMillis());
+            if (lease.granted() == 0) {
+                tokens = 0;
+                rejectedUntil = now + TimeUnit.MILLISECONDS.toNanos(lease.retryAfterMillis());
+                return rejected(now);
+            }
+            tokens = lease.granted() - 1;
+            leaseExpiresAt = now + leaseTtlNanos;
+            return allowed(now);
+        }
+
+        private RateLimitService.RateLimitResult allowed(long now) {
+            return new RateLimitService.RateLimitResult(true, limit,
+                    remaining + tokens, secondsUntil(resetAt, now), 0);
+        }
+
+        private RateLimitService.RateLimitResult rejected(long now) {
+            return new RateLimitService.RateLimitResult(false, limit,
+                    0, secondsUntil(resetAt, now), Math.max(1, secondsUntil(rejectedUntil, now)));
+        }
+
+        private int secondsUntil(long deadline, long now) {
+            return RateLimitService.toSeconds(TimeUnit.NANOSECONDS.toMillis(deadline - now));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.payment.service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Where {@link OutboxRelay} publishes payment intent state changes: {@link RedisStreamOutboxBroker} by default,
+ * {@link InMemoryOutboxBroker} for tests and local runs without Redis ({@code outbox.broker}).
+ */
+public interface OutboxBroker {
+
+    /**
+     * Publishes {@code messages} in order. Returns only once all of them are accepted; on an exception the relay
+     * keeps the rows and publishes them again, so a message can be delivered more than once.
+     */
+    void publish(List<Message> messages);
+
+    /**
+     * One state change. {@code id} is unique per message and {@code intentVersion} increases per intent, so
+     * consumers can drop duplicates and reorder.
+     */
+    record Message(long id, UUID paymentIntentId, long merchantId, String type, long intentVersion,
+                   Instant occurredAt, String payload) {
+
+        public Map<String, String> fields() {
+            return Map.of(
+                    "id", String.valueOf(id),
+                    "paymentIntentId", paymentIntentId.toString(),
+                    "merchantId", String.valueOf(merchantId),
+                    "type", type,
+                    "intentVersion", String.valueOf(intentVersion),
+                    "occurredAt", occurredAt.toString(),
+                    "payload", payload);
+        }
+    }
+}
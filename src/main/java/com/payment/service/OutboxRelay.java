@@ -0,0 +1,163 @@
+package com.payment.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Array;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tails {@code outbox_event} and publishes it to the {@link OutboxBroker}. Each of {@code outbox.relay.workers}
+ * workers repeatedly, in one transaction, locks the oldest {@code batch-size} rows with
+ * {@code FOR UPDATE SKIP LOCKED}, publishes them as one batch and deletes them. A worker that finds a full batch
+ * continues at once; otherwise it waits {@code poll-ms}. Rows locked by other workers or nodes are skipped, so
+ * relays scale out without coordination. A publish failure rolls the batch back for the next attempt.
+ * <p>
+ * Delivery is at least once, and with several workers messages of one intent can be published out of order;
+ * consumers use {@link OutboxBroker.Message#id()} and {@link OutboxBroker.Message#intentVersion()}. A single
+ * worker on a single node publishes in commit order for any one intent.
+ */
+@Component
+@ConditionalOnProperty(name = "outbox.relay.enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private static final String CLAIM_SQL = """
+            SELECT id, payment_intent_id, merchant_id, event_type, intent_version, payload, created_at
+            FROM outbox_event
+            ORDER BY id
+            LIMIT ?
+            FOR UPDATE SKIP LOCKED
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxBroker broker;
+    private final int workerCount;
+    private final int batchSize;
+    private final long pollMs;
+    private final Counter published;
+    private final Timer batches;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    public OutboxRelay(JdbcTemplate jdbcTemplate,
+                       PlatformTransactionManager transactionManager,
+                       OutboxBroker broker,
+                       MeterRegistry meterRegistry,
+                       @Value("${outbox.relay.workers:1}") int workerCount,
+                       @Value("${outbox.relay.batch-size:500}") int batchSize,
+                       @Value("${outbox.relay.poll-ms:100}") long pollMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.broker = broker;
+        this.workerCount = workerCount;
+        this.batchSize = batchSize;
+        this.pollMs = pollMs;
+        this.published = Counter.builder("outbox.published")
+                .description("Outbox events published to the broker")
+                .register(meterRegistry);
+        this.batches = Timer.builder("outbox.relay")
+                .description("Time to lock, publish and delete one batch of outbox events")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(Thread.ofPlatform().name("outbox-relay-" + i).daemon().start(this::relayLoop));
+        }
+        log.info("Outbox relay started: workers={}, batchSize={}, broker={}",
+                workerCount, batchSize, broker.getClass().getSimpleName());
+    }
+
+    /**
+     * Stops after the batch in progress; unpublished rows stay in the outbox.
+     */
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        workers.clear();
+    }
+
+    /**
+     * Publishes one batch.
+     *
+     * @return the number of events published
+     */
+    public int relayBatch() {
+        Integer count = transactionTemplate.execute(status -> {
+            List<OutboxBroker.Message> messages = jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> new OutboxBroker.Message(
+                    rs.getLong("id"), rs.getObject("payment_intent_id", UUID.class), rs.getLong("merchant_id"),
+                    rs.getString("event_type"), rs.getLong("intent_version"),
+                    rs.getTimestamp("created_at").toInstant(), rs.getString("payload")), batchSize);
+            if (messages.isEmpty()) {
+                return 0;
+            }
+            broker.publish(messages);
+            Long[] ids = messages.stream().map(OutboxBroker.Message::id).toArray(Long[]::new);
+            jdbcTemplate.update(connection -> {
+                var statement = connection.prepareStatement("DELETE FROM outbox_event WHERE id = ANY(?)");
+                Array array = connection.createArrayOf("bigint", ids);
+                statement.setArray(1, array);
+                return statement;
+            });
+            return messages.size();
+        });
+        return count == null ? 0 : count;
+    }
+
+    private void relayLoop() {
+        while (running) {
+            try {
+                long start = System.nanoTime();
+                int count = relayBatch();
+                if (count > 0) {
+                    batches.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    published.increment(count);
+                }
+                if (count < batchSize) {
+                    Thread.sleep(pollMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Outbox relay batch failed, retrying: {}", e.getMessage());
+                try {
+                    Thread.sleep(pollMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
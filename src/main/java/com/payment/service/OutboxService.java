@@ -0,0 +1,152 @@
+package com.payment.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.domain.PaymentEventType;
+import com.payment.domain.PaymentIntent;
+import com.payment.dto.PaymentIntentResponse;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes payment intent state changes to {@code outbox_event}, for {@link OutboxRelay} to publish. Like
+ * {@link AuditService#log}, entries are collected during the transaction and inserted as one JDBC batch just
+ * before it commits, so an event exists exactly when the change it describes does. The persistence context is
+ * flushed first, so each entry carries the intent as committed, including the version it commits at; consumers
+ * order and deduplicate per intent on that version. Once the transaction commits, the same changes refresh
+ * {@link PaymentIntentCache}, pin the merchant's reads to the primary ({@link ReadYourWrites}) and are handed to
+ * {@link PaymentIntentStream} for live subscribers.
+ */
+@Service
+public class OutboxService {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO outbox_event (payment_intent_id, merchant_id, event_type, intent_version, payload, created_at)
+            VALUES (?, ?, ?, ?, ?, ?)
+            """;
+    // Exceptions thrown from a synchronization bypass the transaction manager's translation
+    private static final HibernateJpaDialect JPA_DIALECT = new HibernateJpaDialect();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final PaymentIntentCache paymentIntentCache;
+    private final ReadYourWrites readYourWrites;
+    private final PaymentIntentStream paymentIntentStream;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public OutboxService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, PaymentIntentCache paymentIntentCache,
+                         ReadYourWrites readYourWrites, PaymentIntentStream paymentIntentStream) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.paymentIntentCache = paymentIntentCache;
+        this.readYourWrites = readYourWrites;
+        this.paymentIntentStream = paymentIntentStream;
+    }
+
+    private record Entry(PaymentIntent intent, PaymentEventType type, Instant occurredAt) {
+    }
+
+    private record Row(PaymentEventType type, Instant occurredAt, PaymentIntentStream.StatusChange change) {
+    }
+
+    /**
+     * Records that {@code intent} changed. Its state is read when the transaction commits.
+     */
+    public void append(PaymentIntent intent, PaymentEventType type) {
+        Entry entry = new Entry(intent, type, Instant.now());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || !TransactionSynchronizationManager.isActualTransactionActive()) {
+            List<Row> rows = rows(List.of(entry));
+            insert(rows);
+            publish(rows);
+            return;
+        }
+        pendingEntries().add(entry);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Entry> pendingEntries() {
+        List<Entry> pending = (List<Entry>) TransactionSynchronizationManager.getResource(this);
+        if (pending != null) {
+            return pending;
+        }
+        List<Entry> entries = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(this, entries);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private List<Row> rows = List.of();
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                // Assigns the versions the intents commit at
+                try {
+                    entityManager.flush();
+                } catch (RuntimeException e) {
+                    DataAccessException translated = JPA_DIALECT.translateExceptionIfPossible(e);
+                    throw translated != null ? translated : e;
+                }
+                rows = rows(entries);
+                insert(rows);
+            }
+
+            @Override
+            public void afterCommit() {
+                publish(rows);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(OutboxService.this);
+            }
+        });
+        return entries;
+    }
+
+    private List<Row> rows(List<Entry> entries) {
+        return entries.stream().map(entry -> {
+            PaymentIntent intent = entry.intent();
+            return new Row(entry.type(), entry.occurredAt(), new PaymentIntentStream.StatusChange(intent.getId(),
+                    intent.getMerchantId(), intent.getStatus(), intent.getVersion() == null ? 0 : intent.getVersion(),
+                    payload(intent)));
+        }).toList();
+    }
+
+    private void insert(List<Row> rows) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), (ps, row) -> {
+            PaymentIntentStream.StatusChange change = row.change();
+            ps.setObject(1, change.paymentIntentId());
+            ps.setLong(2, change.merchantId());
+            ps.setString(3, row.type().name());
+            ps.setLong(4, change.version());
+            ps.setString(5, change.payload());
+            ps.setTimestamp(6, Timestamp.from(row.occurredAt()));
+        });
+    }
+
+    private void publish(List<Row> rows) {
+        List<PaymentIntentStream.StatusChange> changes = rows.stream().map(Row::change).toList();
+        paymentIntentCache.update(changes);
+        readYourWrites.recordCommitted(changes);
+        paymentIntentStream.publish(changes);
+    }
+
+    private String payload(PaymentIntent intent) {
+        try {
+            return objectMapper.writeValueAsString(PaymentIntentResponse.from(intent));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize outbox event", e);
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package com.payment.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.domain.IdempotencyRecord;
+import com.payment.domain.PaymentEvent;
+import com.payment.domain.PaymentIntent;
+import com.payment.dto.BatchConfirmPaymentIntentsRequest;
+import com.payment.dto.BatchCreatePaymentIntentRequest;
+import com.payment.repository.PaymentEventRepository;
+import com.payment.repository.PaymentIntentRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Creates, confirms or cancels many payment intents in one request, with one result per item.
+ * <p>
+ * <b>Create.</b>
+ * Items are validated and checked against existing idempotency records in bulk, with one query per
+ * lookup. Replays and failures are answered without writing anything. New items are then inserted
+ * {@code payment.batch.chunk-size} at a time, one transaction per chunk
+ * ({@link PaymentIntentService#createBatch}). This bounds lock hold time and the persistence context
+ * while keeping the cost per intent close to a multi-row insert. If a chunk hits a key taken concurrently,
+ * it rolls back and its items are retried one by one, so only the conflicting item fails.
+ * <p>
+ * <b>Confirm and cancel.</b> The whole batch runs in one transaction. All target rows are locked with a
+ * single {@code SELECT ... FOR UPDATE SKIP LOCKED}. Transitions are then checked against
+ * {@link PaymentStateMachine} and applied in memory, and events, idempotency records and version-checked
+ * updates are flushed as JDBC batches at commit. An item whose row is locked by a concurrent request,
+ * which would otherwise hit an optimistic lock failure, fails on its own with a retryable error. So does
+ * an item whose transition is not allowed. If a confirm key is taken concurrently, the transaction rolls
+ * back and its items are retried one by one, as for create.
+ */
+@Service
+public class PaymentIntentBatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentIntentBatchService.class);
+
+    public enum Outcome {
+        CREATED,
+        UPDATED,
+        REPLAYED,
+        FAILED
+    }
+
+    /**
+     * @param intent the created or replayed intent; null when the item failed
+     * @param error  why the item failed; null otherwise
+     */
+    public record Result(int index, String idempotencyKey, Outcome outcome, PaymentIntent intent, String error) {
+    }
+
+    private final PaymentIntentService paymentIntentService;
+    private final PaymentIntentRepository paymentIntentRepository;
+    private final PaymentEventRepository paymentEventRepository;
+    private final IdempotencyService idempotencyService;
+    private final AuditService auditService;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxItems;
+    private final int chunkSize;
+
+    public PaymentIntentBatchService(PaymentIntentService paymentIntentService,
+                                     PaymentIntentRepository paymentIntentRepository,
+                                     PaymentEventRepository paymentEventRepository,
+                                     IdempotencyService idempotencyService,
+                                     AuditService auditService,
+                                     Validator validator,
+                                     ObjectMapper objectMapper,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${payment.batch.max-items:1000}") int maxItems,
+                                     @Value("${payment.batch.chunk-size:250}") int chunkSize) {
+        this.paymentIntentService = paymentIntentService;
+        this.paymentIntentRepository = paymentIntentRepository;
+        this.paymentEventRepository = paymentEventRepository;
+        this.idempotencyService = idempotencyService;
+        this.auditService = auditService;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxItems = maxItems;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return one result per item, in request order
+     */
+    public List<Result> create(Long merchantId, List<BatchCreatePaymentIntentRequest.Item> items) {
+        checkSize(items.size());
+        Result[] results = new Result[items.size()];
+        Map<String, Integer> pending = new HashMap<>();
+        Map<String, String> payloadHashes = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            BatchCreatePaymentIntentRequest.Item item = items.get(i);
+            String invalid = item == null ? "Item is required" : violations(item);
+            if (invalid != null) {
+                results[i] = failed(i, item == null ? null : item.idempotencyKey(), invalid);
+            } else if (pending.putIfAbsent(item.idempotencyKey(), i) != null) {
+                results[i] = failed(i, item.idempotencyKey(), "Duplicate idempotency key in batch");
+            } else {
+                payloadHashes.put(item.idempotencyKey(), payloadHash(item));
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            resolveUsedKeys(merchantId, pending, payloadHashes, results);
+        }
+
+        List<Integer> toCreate = pending.values().stream().sorted().toList();
+        for (int from = 0; from < toCreate.size(); from += chunkSize) {
+            List<Integer> chunk = toCreate.subList(from, Math.min(toCreate.size(), from + chunkSize));
+            createChunk(merchantId, items, chunk, payloadHashes, results);
+        }
+        return List.of(results);
+    }
+
+    /**
+     * Confirms each intent under its item's idempotency key. An item whose key was already used to confirm
+     * the same intent with the same payment method is replayed.
+     *
+     * @return one result per item, in request order
+     */
+    public List<Result> confirm(Long merchantId, List<BatchConfirmPaymentIntentsRequest.Item> items) {
+        checkSize(items.size());
+        Result[] results = new Result[items.size()];
+        Set<UUID> ids = new HashSet<>();
+        Set<String> keys = new HashSet<>();
+        List<Integer> valid = new ArrayList<>(items.size());
+        String[] payloadHashes = new String[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            BatchConfirmPaymentIntentsRequest.Item item = items.get(i);
+            String invalid = item == null ? "Item is required" : violations(item);
+            if (invalid != null) {
+                results[i] = failed(i, item == null ? null : item.idempotencyKey(), invalid);
+            } else if (!ids.add(item.id())) {
+                results[i] = failed(i, item.idempotencyKey(), "Duplicate payment intent id in batch");
+            } else if (!keys.add(item.idempotencyKey())) {
+                results[i] = failed(i, item.idempotencyKey(), "Duplicate idempotency key in batch");
+            } else {
+                valid.add(i);
+                payloadHashes[i] = payloadHash(item.toConfirmRequest());
+            }
+        }
+        if (valid.isEmpty()) {
+            return List.of(results);
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    confirmValid(merchantId, items, valid, payloadHashes, results));
+        } catch (DataIntegrityViolationException e) {
+            if (!IdempotencyService.isConfirmKeyTaken(e)) {
+                throw e;
+            }
+            log.info("Batch confirm of {} hit a concurrently used idempotency key; retrying item by item", valid.size());
+            for (int index : valid) {
+                confirmOne(merchantId, items, index, payloadHashes, results);
+            }
+        }
+        log.info("Payment intents confirmed in batch: count={}, merchantId={}", count(results, Outcome.UPDATED), merchantId);
+        return List.of(results);
+    }
+
+    private void confirmOne(Long merchantId, List<BatchConfirmPaymentIntentsRequest.Item> items, int index,
+                            String[] payloadHashes, Result[] results) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    confirmValid(merchantId, items, List.of(index), payloadHashes, results));
+        } catch (DataIntegrityViolationException e) {
+            if (!IdempotencyService.isConfirmKeyTaken(e)) {
+                throw e;
+            }
+            results[index] = failed(index, items.get(index).idempotencyKey(),
+                    "Idempotency key is being used by a concurrent request");
+        }
+    }
+
+    /**
+     * Confirms the items at {@code indexes}, which passed validation and have distinct ids and keys, in the
+     * current transaction. Results written here are overwritten if the transaction rolls back and is retried.
+     */
+    private void confirmValid(Long merchantId, List<BatchConfirmPaymentIntentsRequest.Item> items, List<Integer> indexes,
+                              String[] payloadHashes, Result[] results) {
+        Map<UUID, Integer> pending = new HashMap<>();
+        Map<String, Integer> byKey = new HashMap<>();
+        for (int index : indexes) {
+            pending.put(items.get(index).id(), index);
+            byKey.put(items.get(index).idempotencyKey(), index);
+        }
+
+        Map<UUID, Integer> replays = new HashMap<>();
+        idempotencyService.findConfirmRecords(merchantId, byKey.keySet()).forEach((key, record) -> {
+            int index = byKey.remove(key);
+            UUID id = items.get(index).id();
+            pending.remove(id);
+            if (!record.getPaymentIntentId().equals(id)) {
+                results[index] = failed(index, key, "Idempotency key already used for another payment intent");
+            } else if (!record.getPayloadHash().equals(payloadHashes[index])) {
+                results[index] = failed(index, key, "Idempotency key already used with a different payload");
+            } else {
+                replays.put(id, index);
+            }
+        });
+        if (!byKey.isEmpty()) {
+            // Still held by payment_intent's unique index after the record passed idempotency.retention
+            for (PaymentIntent holder : paymentIntentRepository.findByMerchantIdAndIdempotencyKeyConfirmIn(
+                    merchantId, byKey.keySet())) {
+                int index = byKey.get(holder.getIdempotencyKeyConfirm());
+                if (!holder.getId().equals(items.get(index).id())) {
+                    pending.remove(items.get(index).id());
+                    results[index] = failed(index, holder.getIdempotencyKeyConfirm(),
+                            "Idempotency key already used for another payment intent");
+                }
+            }
+        }
+        if (!replays.isEmpty()) {
+            for (PaymentIntent intent : paymentIntentRepository.findByMerchantIdAndIdIn(merchantId, replays.keySet())) {
+                int index = replays.get(intent.getId());
+                results[index] = new Result(index, items.get(index).idempotencyKey(), Outcome.REPLAYED, intent, null);
+            }
+        }
+
+        List<PaymentEvent> events = new ArrayList<>(pending.size());
+        for (PaymentIntent intent : lock(merchantId, pending.keySet())) {
+            int index = pending.remove(intent.getId());
+            String key = items.get(index).idempotencyKey();
+            if (!PaymentStateMachine.canConfirm(intent.getStatus())) {
+                results[index] = failed(index, key, "Cannot confirm payment in status: " + intent.getStatus());
+                continue;
+            }
+            events.add(paymentIntentService.applyConfirm(intent, key));
+            idempotencyService.storeConfirm(merchantId, key, intent.getId(), payloadHashes[index]);
+            auditService.log(merchantId, "PAYMENT_CONFIRMED", "intentId=" + intent.getId() + ", status=" + intent.getStatus());
+            results[index] = new Result(index, key, Outcome.UPDATED, intent, null);
+        }
+        paymentEventRepository.saveAll(events);
+        unresolved(merchantId, pending, results, index -> items.get(index).idempotencyKey());
+    }
+
+    /**
+     * @return one result per id, in request order
+     */
+    @Transactional
+    public List<Result> cancel(Long merchantId, List<UUID> ids) {
+        checkSize(ids.size());
+        Result[] results = new Result[ids.size()];
+        Map<UUID, Integer> pending = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            UUID id = ids.get(i);
+            if (id == null) {
+                results[i] = failed(i, null, "Payment intent id is required");
+            } else if (pending.putIfAbsent(id, i) != null) {
+                results[i] = failed(i, null, "Duplicate payment intent id in batch");
+            }
+        }
+
+        List<PaymentEvent> events = new ArrayList<>(pending.size());
+        for (PaymentIntent intent : lock(merchantId, pending.keySet())) {
+            int index = pending.remove(intent.getId());
+            if (!PaymentStateMachine.canCancel(intent.getStatus())) {
+                results[index] = failed(index, null, "Cannot cancel payment in status: " + intent.getStatus());
+                continue;
+            }
+            events.add(paymentIntentService.applyCancel(intent));
+            auditService.log(merchantId, "PAYMENT_CANCELED", "intentId=" + intent.getId());
+            results[index] = new Result(index, null, Outcome.UPDATED, intent, null);
+        }
+        paymentEventRepository.saveAll(events);
+        unresolved(merchantId, pending, results, index -> null);
+        log.info("Payment intents canceled in batch: count={}, merchantId={}", events.size(), merchantId);
+        return List.of(results);
+    }
+
+    private List<PaymentIntent> lock(Long merchantId, Collection<UUID> ids) {
+        return ids.isEmpty() ? List.of() : paymentIntentRepository.lockAllSkipLocked(merchantId, ids);
+    }
+
+    /**
+     * Fails the items whose intent was neither locked nor answered otherwise: it is either held by a
+     * concurrent request or does not belong to the merchant.
+     */
+    private void unresolved(Long merchantId, Map<UUID, Integer> pending, Result[] results,
+                            IntFunction<String> idempotencyKey) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Set<UUID> existing = new HashSet<>(paymentIntentRepository.findIdsByMerchantIdAndIdIn(merchantId, pending.keySet()));
+        pending.forEach((id, index) -> results[index] = failed(index, idempotencyKey.apply(index), existing.contains(id)
+                ? "Payment intent is being modified by a concurrent request; retry"
+                : "Payment intent not found"));
+    }
+
+    /**
+     * Answers items whose key was already used, and removes them from {@code pending}.
+     */
+    private void resolveUsedKeys(Long merchantId, Map<String, Integer> pending, Map<String, String> payloadHashes,
+                                 Result[] results) {
+        Map<String, IdempotencyRecord> records = idempotencyService.findCreateRecords(merchantId, pending.keySet());
+        Map<UUID, PaymentIntent> originals = paymentIntentRepository.findByMerchantIdAndIdIn(merchantId,
+                        records.values().stream().map(IdempotencyRecord::getPaymentIntentId).toList())
+                .stream()
+                .collect(Collectors.toMap(PaymentIntent::getId, Function.identity()));
+        for (IdempotencyRecord record : records.values()) {
+            String key = record.getIdempotencyKey();
+            int index = pending.remove(key);
+            PaymentIntent original = originals.get(record.getPaymentIntentId());
+            if (!record.getPayloadHash().equals(payloadHashes.get(key))) {
+                results[index] = failed(index, key, "Idempotency key already used with a different payload");
+            } else if (original == null) {
+                results[index] = failed(index, key, "Payment intent for this idempotency key no longer exists");
+            } else {
+                results[index] = new Result(index, key, Outcome.REPLAYED, original, null);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        // Still held by payment_intent's unique index after the record passed idempotency.retention
+        for (PaymentIntent expired : paymentIntentRepository.findByMerchantIdAndIdempotencyKeyCreateIn(
+                merchantId, pending.keySet())) {
+            String key = expired.getIdempotencyKeyCreate();
+            int index = pending.remove(key);
+            results[index] = failed(index, key, "Idempotency key was already used and can no longer be replayed");
+        }
+    }
+
+    private void createChunk(Long merchantId, List<BatchCreatePaymentIntentRequest.Item> items, List<Integer> chunk,
+                             Map<String, String> payloadHashes, Result[] results) {
+        List<PaymentIntentService.NewIntent> newIntents = new ArrayList<>(chunk.size());
+        for (int index : chunk) {
+            newIntents.add(newIntent(items.get(index), payloadHashes));
+        }
+        List<PaymentIntent> created;
+        try {
+            created = paymentIntentService.createBatch(merchantId, newIntents);
+        } catch (DataIntegrityViolationException e) {
+            log.info("Batch chunk of {} hit a concurrently used idempotency key; retrying item by item", chunk.size());
+            for (int index : chunk) {
+                createOne(merchantId, items.get(index), index, payloadHashes, results);
+            }
+            return;
+        }
+        for (int i = 0; i < chunk.size(); i++) {
+            int index = chunk.get(i);
+            results[index] = new Result(index, items.get(index).idempotencyKey(), Outcome.CREATED, created.get(i), null);
+        }
+    }
+
+    private void createOne(Long merchantId, BatchCreatePaymentIntentRequest.Item item, int index,
+                           Map<String, String> payloadHashes, Result[] results) {
+        try {
+            PaymentIntent intent = paymentIntentService.createBatch(merchantId, List.of(newIntent(item, payloadHashes))).get(0);
+            results[index] = new Result(index, item.idempotencyKey(), Outcome.CREATED, intent, null);
+        } catch (DataIntegrityViolationException e) {
+            results[index] = failed(index, item.idempotencyKey(), "Idempotency key is being used by a concurrent request");
+        }
+    }
+
+    private static PaymentIntentService.NewIntent newIntent(BatchCreatePaymentIntentRequest.Item item,
+                                                            Map<String, String> payloadHashes) {
+        return new PaymentIntentService.NewIntent(item.amount(), item.currency(), item.description(),
+                item.customerReference(), item.idempotencyKey(), payloadHashes.get(item.idempotencyKey()));
+    }
+
+    private void checkSize(int items) {
+        if (items > maxItems) {
+            throw new IllegalArgumentException("A batch can hold at most " + maxItems + " items");
+        }
+    }
+
+    private <T> String violations(T item) {
+        Set<ConstraintViolation<T>> violations = validator.validate(item);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .sorted(Comparator.comparing(v -> v.getPropertyPath().toString()))
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .collect(Collectors.joining("; "));
+    }
+
+    private String payloadHash(BatchCreatePaymentIntentRequest.Item item) {
+        return payloadHash(item.toCreateRequest());
+    }
+
+    /**
+     * Canonical hash of an item as the equivalent single request, so a key can be replayed through either endpoint.
+     */
+    private String payloadHash(Object singleRequest) {
+        try {
+            return idempotencyService.hashCanonical(objectMapper.writeValueAsBytes(singleRequest));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize request", e);
+        }
+    }
+
+    private static long count(Result[] results, Outcome outcome) {
+        return Arrays.stream(results).filter(result -> result.outcome() == outcome).count();
+    }
+
+    private static Result failed(int index, String idempotencyKey, String error) {
+        return new Result(index, idempotencyKey, Outcome.FAILED, null, error);
+    }
+}
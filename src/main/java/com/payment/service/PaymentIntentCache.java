@@ -0,0 +1,274 @@
+package com.payment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.payment.domain.PaymentIntent;
+import com.payment.dto.PaymentIntentResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Read-through cache of payment intents by id, in front of {@code findByIdAndMerchantId}: a bounded local
+ * Caffeine cache, then Redis, then the database. Intents in a terminal state never change again and are kept for
+ * {@code payment.cache.terminal-ttl-seconds}; the others only for {@code payment.cache.active-ttl-seconds}, which
+ * bounds how stale they can get if a refresh is lost.
+ * <p>
+ * Every committed change is written to both levels by {@link OutboxService} after commit, instead of being
+ * deleted: a reader that loaded the intent before the commit would otherwise put the old state back. Writes carry
+ * the intent's optimistic-lock version and never replace a newer one, in Redis through a script. Other nodes are
+ * told over {@link #EVICTION_CHANNEL} to drop older local copies. Every Redis failure degrades to a miss.
+ */
+@Component
+public class PaymentIntentCache implements MessageListener {
+
+    public static final String EVICTION_CHANNEL = "payment_intent:evicted";
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentIntentCache.class);
+    private static final String KEY_PREFIX = "payment_intent_cache:";
+
+    /**
+     * ARGV holds value, version and TTL in milliseconds for each key. Keys already holding the same or a later
+     * version are left alone.
+     */
+    private static final RedisScript<Long> PUT_IF_NEWER_SCRIPT = new DefaultRedisScript<>("""
+            local written = 0
+            for i, key in ipairs(KEYS) do
+              local version = tonumber(ARGV[3 * i - 1])
+              local current = redis.call('GET', key)
+              if not current or cjson.decode(current)['version'] < version then
+                redis.call('SET', key, ARGV[3 * i - 2], 'PX', ARGV[3 * i])
+                written = written + 1
+              end
+            end
+            return written
+            """, Long.class);
+
+    /**
+     * A cached intent, at the version it was read or committed at.
+     */
+    public record Entry(Long merchantId, long version, PaymentIntentResponse response) {
+
+        public static Entry of(PaymentIntent intent) {
+            return new Entry(intent.getMerchantId(), intent.getVersion() == null ? 0 : intent.getVersion(),
+                    PaymentIntentResponse.from(intent));
+        }
+
+        public UUID id() {
+            return response.id();
+        }
+
+        /**
+         * Strong validator for the response: the version changes with every committed change of the intent.
+         */
+        public String etag() {
+            return "\"" + version + "\"";
+        }
+
+        boolean terminal() {
+            return PaymentStateMachine.isTerminal(response.status());
+        }
+
+        private static Entry newer(Entry a, Entry b) {
+            return b.version > a.version ? b : a;
+        }
+    }
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Duration terminalTtl;
+    private final Duration activeTtl;
+    private final Cache<UUID, Entry> local;
+    private final AtomicLong invalidations = new AtomicLong();
+    private final Counter remoteHits;
+    private final Counter remoteMisses;
+
+    public PaymentIntentCache(StringRedisTemplate redisTemplate,
+                              ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${payment.cache.enabled:true}") boolean enabled,
+                              @Value("${payment.cache.local-max-size:10000}") long localMaxSize,
+                              @Value("${payment.cache.terminal-ttl-seconds:86400}") long terminalTtlSeconds,
+                              @Value("${payment.cache.active-ttl-seconds:10}") long activeTtlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.terminalTtl = Duration.ofSeconds(terminalTtlSeconds);
+        this.activeTtl = Duration.ofSeconds(activeTtlSeconds);
+        this.local = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfter(new Expiry<UUID, Entry>() {
+                    @Override
+                    public long expireAfterCreate(UUID id, Entry entry, long currentTime) {
+                        return ttl(entry).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(UUID id, Entry entry, long currentTime, long currentDuration) {
+                        return ttl(entry).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(UUID id, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, local, "payment_intent_cache");
+        this.remoteHits = Counter.builder("payment_intent.cache.remote")
+                .tag("result", "hit")
+                .description("Payment intent cache lookups in Redis after a local miss")
+                .register(meterRegistry);
+        this.remoteMisses = Counter.builder("payment_intent.cache.remote")
+                .tag("result", "miss")
+                .description("Payment intent cache lookups in Redis after a local miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param loader reads the intent from the database, scoped to {@code merchantId}
+     * @return the intent if it exists and belongs to the merchant
+     */
+    public Optional<Entry> get(Long merchantId, UUID id, Supplier<Optional<PaymentIntent>> loader) {
+        if (!enabled) {
+            return loader.get().map(Entry::of);
+        }
+        Entry entry = local.getIfPresent(id);
+        if (entry == null) {
+            long stamp = invalidations.get();
+            entry = remote(id);
+            if (entry == null) {
+                Optional<PaymentIntent> loaded = loader.get();
+                if (loaded.isEmpty()) {
+                    return Optional.empty();
+                }
+                entry = Entry.of(loaded.get());
+                putRemote(List.of(entry));
+            }
+            putLocal(entry, stamp);
+        }
+        // Ids are global; another merchant's intent is reported as missing, as the database query would
+        return entry.merchantId().equals(merchantId) ? Optional.of(entry) : Optional.empty();
+    }
+
+    /**
+     * Caches committed changes on both levels and tells other nodes to drop older copies. Called after commit.
+     */
+    public void update(List<PaymentIntentStream.StatusChange> changes) {
+        if (!enabled || changes.isEmpty()) {
+            return;
+        }
+        Map<UUID, Entry> latest = new LinkedHashMap<>();
+        for (PaymentIntentStream.StatusChange change : changes) {
+            try {
+                Entry entry = new Entry(change.merchantId(), change.version(),
+                        objectMapper.readValue(change.payload(), PaymentIntentResponse.class));
+                latest.merge(entry.id(), entry, Entry::newer);
+            } catch (Exception e) {
+                log.warn("Failed to read committed payment intent {}: {}", change.paymentIntentId(), e.getMessage());
+            }
+        }
+        latest.values().forEach(entry -> local.asMap().merge(entry.id(), entry, Entry::newer));
+        putRemote(new ArrayList<>(latest.values()));
+        try {
+            redisTemplate.convertAndSend(EVICTION_CHANNEL, latest.values().stream()
+                    .map(entry -> entry.id() + ":" + entry.version())
+                    .collect(Collectors.joining(",")));
+        } catch (Exception e) {
+            log.warn("Failed to broadcast payment intent cache eviction: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Drops local copies older than the announced versions; the message is {@code <id>:<version>,...}.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        invalidations.incrementAndGet();
+        for (String item : body.split(",")) {
+            try {
+                int colon = item.lastIndexOf(':');
+                UUID id = UUID.fromString(item.substring(0, colon));
+                long version = Long.parseLong(item.substring(colon + 1));
+                local.asMap().computeIfPresent(id, (key, entry) -> entry.version() < version ? null : entry);
+            } catch (RuntimeException e) {
+                log.warn("Ignoring malformed payment intent cache eviction: {}", item);
+            }
+        }
+    }
+
+    /**
+     * Caches a loaded entry locally, unless an eviction was seen since {@code stamp} was taken; the entry may
+     * predate it.
+     */
+    private void putLocal(Entry entry, long stamp) {
+        local.asMap().merge(entry.id(), entry, Entry::newer);
+        if (invalidations.get() != stamp) {
+            local.invalidate(entry.id());
+        }
+    }
+
+    private Entry remote(UUID id) {
+        try {
+            String json = redisTemplate.opsForValue().get(KEY_PREFIX + id);
+            if (json == null) {
+                remoteMisses.increment();
+                return null;
+            }
+            remoteHits.increment();
+            return objectMapper.readValue(json, Entry.class);
+        } catch (Exception e) {
+            log.warn("Payment intent cache read failed, falling back to database: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void putRemote(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        try {
+            List<String> keys = new ArrayList<>(entries.size());
+            List<String> args = new ArrayList<>(entries.size() * 3);
+            for (Entry entry : entries) {
+                keys.add(KEY_PREFIX + entry.id());
+                args.add(objectMapper.writeValueAsString(entry));
+                args.add(String.valueOf(entry.version()));
+                args.add(String.valueOf(ttl(entry).toMillis()));
+            }
+            redisTemplate.execute(PUT_IF_NEWER_SCRIPT, keys, args.toArray());
+        } catch (Exception e) {
+            log.warn("Payment intent cache write failed: {}", e.getMessage());
+        }
+    }
+
+    private Duration ttl(Entry entry) {
+        return entry.terminal() ? terminalTtl : activeTtl;
+    }
+}
@@ -0,0 +1,285 @@
+package com.payment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.domain.PaymentStatus;
+import com.payment.dto.PaymentIntentResponse;
+import com.payment.exception.RateLimitExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streams every payment intent matching the list filters, newest first, as NDJSON or CSV.
+ * <p>
+ * Rows are read through a server-side cursor: the query runs in a read-only transaction with a forward-only
+ * statement and {@code export.fetch-size}, so PostgreSQL hands over one batch at a time and memory stays flat
+ * however many rows match. Each row is written straight to the response. A slow client blocks the write,
+ * which stops the next fetch. A client that disconnects makes the write fail, which ends the export, rolls back
+ * the transaction and closes the cursor. Each export holds a pooled connection for its whole duration, so at most
+ * {@code export.max-concurrent} run at once; further requests get 429. A response that takes longer than
+ * {@code export.request-timeout} is cut off.
+ */
+@Service
+public class PaymentIntentExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentIntentExporter.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String CSV_HEADER = "id,status,amount,currency,description,customer_reference,"
+            + "provider_payment_id,failure_code,failure_message,created_at,updated_at\n";
+
+    public enum Format {
+        NDJSON("application/x-ndjson"),
+        CSV("text/csv");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public static Format parse(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported export format: " + value);
+            }
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+    private final Semaphore permits;
+    private final Duration requestTimeout;
+    private final Counter rows;
+    private final Timer completed;
+    private final Timer aborted;
+
+    public PaymentIntentExporter(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${export.fetch-size:1000}") int fetchSize,
+                                 @Value("${export.max-concurrent:4}") int maxConcurrent,
+                                 @Value("${export.request-timeout:30m}") Duration requestTimeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+        this.permits = new Semaphore(maxConcurrent);
+        this.requestTimeout = requestTimeout;
+        this.rows = Counter.builder("export.rows")
+                .description("Payment intents written by exports")
+                .register(meterRegistry);
+        this.completed = exportTimer(meterRegistry, "completed");
+        this.aborted = exportTimer(meterRegistry, "aborted");
+    }
+
+    /**
+     * How long one export response may take before the request times out.
+     */
+    public Duration requestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * Reserves one of the {@code export.max-concurrent} slots. {@link Export#writeTo} releases it when it finishes;
+     * a request that ends without running it (timed out while queued, failed) must call {@link Export#release}.
+     *
+     * @throws RateLimitExceededException when all slots are taken
+     */
+    public Export open(Long merchantId, PaymentStatus status, Instant from, Instant to, Format format) {
+        if (!permits.tryAcquire()) {
+            throw new RateLimitExceededException("Too many concurrent exports", 1);
+        }
+        return new Export(merchantId, status, from, to, format);
+    }
+
+    public final class Export {
+
+        private final Long merchantId;
+        private final PaymentStatus status;
+        private final Instant from;
+        private final Instant to;
+        private final Format format;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Export(Long merchantId, PaymentStatus status, Instant from, Instant to, Format format) {
+            this.merchantId = merchantId;
+            this.status = status;
+            this.from = from;
+            this.to = to;
+            this.format = format;
+        }
+
+        public Format format() {
+            return format;
+        }
+
+        /**
+         * Returns the export's slot. Safe to call more than once and from any thread; only the first call counts.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+
+        /**
+         * Writes the whole export to {@code out}. May be called once. When the client goes away the export
+         * stops, the cursor is closed, and this returns normally: there is nobody left to report an error to.
+         */
+        public void writeTo(OutputStream out) {
+            long start = System.nanoTime();
+            long[] written = {0};
+            try {
+                OutputStream buffered = new BufferedOutputStream(out, BUFFER_SIZE);
+                readOnlyTransaction.executeWithoutResult(tx -> {
+                    try {
+                        if (format == Format.CSV) {
+                            buffered.write(CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+                        }
+                        jdbcTemplate.query(this::prepare, rs -> {
+                            try {
+                                write(buffered, row(rs));
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                            written[0]++;
+                        });
+                        buffered.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                completed.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            } catch (UncheckedIOException e) {
+                aborted.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                log.debug("Export for merchant {} aborted after {} rows: {}", merchantId, written[0], e.getMessage());
+            } finally {
+                rows.increment(written[0]);
+                release();
+            }
+        }
+
+        private PreparedStatement prepare(Connection connection) throws SQLException {
+            StringBuilder sql = new StringBuilder("SELECT id, status, amount, currency, description, customer_reference, "
+                    + "provider_payment_id, failure_code, failure_message, created_at, updated_at "
+                    + "FROM payment_intent WHERE merchant_id = ?");
+            List<Object> args = new ArrayList<>(4);
+            args.add(merchantId);
+            // Same predicate shapes as PaymentIntentSpecifications, so the list indexes serve the order
+            if (status != null) {
+                sql.append(" AND status = ?");
+                args.add(status.name());
+            }
+            if (from != null) {
+                sql.append(" AND created_at >= ?");
+                args.add(Timestamp.from(from));
+            }
+            if (to != null) {
+                sql.append(" AND created_at <= ?");
+                args.add(Timestamp.from(to));
+            }
+            sql.append(" ORDER BY created_at DESC, id DESC");
+            PreparedStatement ps = connection.prepareStatement(sql.toString(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < args.size(); i++) {
+                ps.setObject(i + 1, args.get(i));
+            }
+            return ps;
+        }
+
+        private void write(OutputStream out, PaymentIntentResponse intent) throws IOException {
+            if (format == Format.NDJSON) {
+                out.write(objectMapper.writeValueAsBytes(intent));
+                out.write('\n');
+                return;
+            }
+            StringBuilder line = new StringBuilder(256);
+            csv(line, intent.id()).append(',');
+            csv(line, intent.status()).append(',');
+            csv(line, intent.amount().toPlainString()).append(',');
+            csv(line, intent.currency()).append(',');
+            csv(line, intent.description()).append(',');
+            csv(line, intent.customerReference()).append(',');
+            csv(line, intent.providerPaymentId()).append(',');
+            csv(line, intent.failureCode()).append(',');
+            csv(line, intent.failureMessage()).append(',');
+            csv(line, intent.createdAt()).append(',');
+            csv(line, intent.updatedAt()).append('\n');
+            out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static PaymentIntentResponse row(ResultSet rs) throws SQLException {
+        return new PaymentIntentResponse(
+                rs.getObject("id", UUID.class),
+                PaymentStatus.valueOf(rs.getString("status")),
+                rs.getBigDecimal("amount"),
+                rs.getString("currency"),
+                rs.getString("description"),
+                rs.getString("customer_reference"),
+                rs.getString("provider_payment_id"),
+                rs.getString("failure_code"),
+                rs.getString("failure_message"),
+                rs.getTimestamp("created_at").toInstant(),
+                rs.getTimestamp("updated_at").toInstant()
+        );
+    }
+
+    /**
+     * Appends {@code value} as an RFC 4180 field: quoted when it contains a comma, quote or line break.
+     */
+    static StringBuilder csv(StringBuilder line, Object value) {
+        if (value == null) {
+            return line;
+        }
+        String s = value.toString();
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+            return line.append(s);
+        }
+        return line.append('"').append(s.replace("\"", "\"\"")).append('"');
+    }
+
+    private static Timer exportTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("export.duration")
+                .description("Time to stream one payment intent export")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
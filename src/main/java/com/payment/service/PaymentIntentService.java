@@ -3,21 +3,32 @@ package com.payment.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.payment.domain.*;
+import com.payment.dto.CursorPage;
+import com.payment.dto.MerchantWebhookEvent;
+import com.payment.dto.PaymentIntentResponse;
 import com.payment.repository.PaymentEventRepository;
 import com.payment.repository.PaymentIntentRepository;
+import com.payment.repository.PaymentIntentSpecifications;
+import com.payment.repository.MerchantRepository;
 import com.payment.repository.WebhookDeliveryRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -25,56 +36,62 @@ import java.util.UUID;
 public class PaymentIntentService {
 
     private static final Logger log = LoggerFactory.getLogger(PaymentIntentService.class);
+    private static final int MAX_PAGE_SIZE = 100;
 
     private final PaymentIntentRepository paymentIntentRepository;
     private final PaymentEventRepository paymentEventRepository;
     private final WebhookDeliveryRepository webhookDeliveryRepository;
+    private final MerchantRepository merchantRepository;
     private final IdempotencyService idempotencyService;
+    private final IdempotencyCache idempotencyCache;
     private final AuditService auditService;
+    private final OutboxService outboxService;
+    private final ApplicationEventPublisher eventPublisher;
     private final ObjectMapper objectMapper;
 
-    private final boolean simulateSuccess;
-    private final long simulateTimeoutMs;
-
     public PaymentIntentService(PaymentIntentRepository paymentIntentRepository,
                                 PaymentEventRepository paymentEventRepository,
                                 WebhookDeliveryRepository webhookDeliveryRepository,
+                                MerchantRepository merchantRepository,
                                 IdempotencyService idempotencyService,
+                                IdempotencyCache idempotencyCache,
                                 AuditService auditService,
-                                ObjectMapper objectMapper,
-                                @Value("${payment.provider.simulate-success:true}") boolean simulateSuccess,
-                                @Value("${payment.provider.simulate-timeout-ms:5000}") long simulateTimeoutMs) {
+                                OutboxService outboxService,
+                                ApplicationEventPublisher eventPublisher,
+                                ObjectMapper objectMapper) {
         this.paymentIntentRepository = paymentIntentRepository;
         this.paymentEventRepository = paymentEventRepository;
         this.webhookDeliveryRepository = webhookDeliveryRepository;
+        this.merchantRepository = merchantRepository;
         this.idempotencyService = idempotencyService;
+        this.idempotencyCache = idempotencyCache;
         this.auditService = auditService;
+        this.outboxService = outboxService;
+        this.eventPublisher = eventPublisher;
         this.objectMapper = objectMapper;
-        this.simulateSuccess = simulateSuccess;
-        this.simulateTimeoutMs = simulateTimeoutMs;
+    }
+
+    /**
+     * One item of {@link #createBatch}, already validated.
+     */
+    public record NewIntent(BigDecimal amount, String currency, String description, String customerReference,
+                            String idempotencyKey, String payloadHash) {
     }
 
     @Transactional
     public PaymentIntent create(Long merchantId, BigDecimal amount, String currency,
                                String description, String customerReference,
                                String idempotencyKey, String payloadHash) {
-        PaymentIntent intent = new PaymentIntent();
-        intent.setMerchantId(merchantId);
-        intent.setAmount(amount.setScale(2, java.math.RoundingMode.HALF_UP));
-        intent.setCurrency(currency);
-        intent.setStatus(PaymentStatus.CREATED);
-        intent.setDescription(description);
-        intent.setCustomerReference(customerReference);
-        if (idempotencyKey != null) {
-            intent.setIdempotencyKeyCreate(idempotencyKey);
-        }
+        PaymentIntent intent = newIntent(merchantId, amount, currency, description, customerReference, idempotencyKey);
         intent = paymentIntentRepository.save(intent);
 
-        PaymentEvent event = createEvent(intent.getId(), PaymentEventType.INTENT_CREATED, null);
+        PaymentEvent event = createEvent(intent, PaymentEventType.INTENT_CREATED, null);
         paymentEventRepository.save(event);
+        outboxService.append(intent, PaymentEventType.INTENT_CREATED);
 
         if (idempotencyKey != null && payloadHash != null) {
             idempotencyService.storeCreate(merchantId, idempotencyKey, payloadHash, intent.getId());
+            idempotencyCache.putOnCommit(merchantId, "CREATE", idempotencyKey, null, payloadHash, intent);
         }
 
         auditService.log(merchantId, "PAYMENT_INTENT_CREATED", "intentId=" + intent.getId() + ", amount=" + amount + " " + currency);
@@ -82,6 +99,40 @@ public class PaymentIntentService {
         return intent;
     }
 
+    /**
+     * Creates all {@code items} in one transaction. Intents, their INTENT_CREATED events, idempotency records
+     * and audit entries are each written as JDBC batches, so the cost per intent is close to that of a
+     * multi-row insert. Replays are not cached in Redis here; they are served from idempotency_record.
+     *
+     * @throws org.springframework.dao.DataIntegrityViolationException when an idempotency key is already
+     *         taken, in which case nothing is created
+     */
+    @Transactional
+    public List<PaymentIntent> createBatch(Long merchantId, List<NewIntent> items) {
+        List<PaymentIntent> intents = new ArrayList<>(items.size());
+        for (NewIntent item : items) {
+            intents.add(newIntent(merchantId, item.amount(), item.currency(), item.description(),
+                    item.customerReference(), item.idempotencyKey()));
+        }
+        intents = paymentIntentRepository.saveAll(intents);
+
+        List<PaymentEvent> events = new ArrayList<>(intents.size());
+        for (int i = 0; i < intents.size(); i++) {
+            PaymentIntent intent = intents.get(i);
+            NewIntent item = items.get(i);
+            events.add(createEvent(intent, PaymentEventType.INTENT_CREATED, null));
+            outboxService.append(intent, PaymentEventType.INTENT_CREATED);
+            if (item.idempotencyKey() != null && item.payloadHash() != null) {
+                idempotencyService.storeCreate(merchantId, item.idempotencyKey(), item.payloadHash(), intent.getId());
+            }
+            auditService.log(merchantId, "PAYMENT_INTENT_CREATED",
+                    "intentId=" + intent.getId() + ", amount=" + item.amount() + " " + item.currency());
+        }
+        paymentEventRepository.saveAll(events);
+        log.info("Payment intents created in batch: count={}, merchantId={}", intents.size(), merchantId);
+        return intents;
+    }
+
     @Transactional
     public PaymentIntent confirm(Long merchantId, UUID intentId, String idempotencyKey, String payloadHash) {
         PaymentIntent intent = paymentIntentRepository.findByIdAndMerchantId(intentId, merchantId)
@@ -91,31 +142,10 @@ public class PaymentIntentService {
             throw new IllegalStateException("Cannot confirm payment in status: " + intent.getStatus());
         }
 
-        PaymentStateMachine.validateTransition(intent.getStatus(), PaymentStatus.PROCESSING);
-        intent.setStatus(PaymentStatus.PROCESSING);
-
-        String providerPaymentId = "pay_sim_" + UUID.randomUUID().toString().replace("-", "").substring(0, 24);
-        intent.setProviderPaymentId(providerPaymentId);
-
-        PaymentEvent confirmEvent = createEvent(intent.getId(), PaymentEventType.CONFIRM_REQUESTED,
-                "{\"providerPaymentId\":\"" + providerPaymentId + "\"}");
-        paymentEventRepository.save(confirmEvent);
-
+        paymentEventRepository.save(applyConfirm(intent, idempotencyKey));
         if (idempotencyKey != null && payloadHash != null) {
             idempotencyService.storeConfirm(merchantId, idempotencyKey, intentId, payloadHash);
         }
-        intent.setIdempotencyKeyConfirm(idempotencyKey);
-
-        if (simulateSuccess) {
-            intent.setStatus(PaymentStatus.SUCCEEDED);
-            paymentEventRepository.save(createEvent(intent.getId(), PaymentEventType.SUCCEEDED, null));
-        } else {
-            intent.setStatus(PaymentStatus.FAILED);
-            intent.setFailureCode("provider_error");
-            intent.setFailureMessage("Simulated provider failure");
-            paymentEventRepository.save(createEvent(intent.getId(), PaymentEventType.FAILED,
-                    "{\"failureCode\":\"provider_error\"}"));
-        }
 
         try {
             intent = paymentIntentRepository.save(intent);
@@ -125,6 +155,9 @@ public class PaymentIntentService {
             log.info("Confirm idempotent (concurrent): id={}, merchantId={}, status={}", intentId, merchantId, intent.getStatus());
             return intent;
         }
+        if (idempotencyKey != null && payloadHash != null) {
+            idempotencyCache.putOnCommit(merchantId, "CONFIRM", idempotencyKey, intentId, payloadHash, intent);
+        }
         auditService.log(merchantId, "PAYMENT_CONFIRMED", "intentId=" + intentId + ", status=" + intent.getStatus());
         log.info("Payment confirmed: id={}, merchantId={}, status={}", intentId, merchantId, intent.getStatus());
         return intent;
@@ -139,10 +172,7 @@ public class PaymentIntentService {
             throw new IllegalStateException("Cannot cancel payment in status: " + intent.getStatus());
         }
 
-        PaymentStateMachine.validateTransition(intent.getStatus(), PaymentStatus.CANCELED);
-        intent.setStatus(PaymentStatus.CANCELED);
-
-        paymentEventRepository.save(createEvent(intent.getId(), PaymentEventType.CANCELED, null));
+        paymentEventRepository.save(applyCancel(intent));
         intent = paymentIntentRepository.save(intent);
 
         auditService.log(merchantId, "PAYMENT_CANCELED", "intentId=" + intentId);
@@ -150,19 +180,73 @@ public class PaymentIntentService {
         return intent;
     }
 
+    /**
+     * Moves a confirmable intent to PROCESSING in memory and requests the provider charge, which
+     * {@link ProviderChargeDispatcher} sends once the current transaction commits. The change is added to the
+     * outbox.
+     *
+     * @return the event to store
+     */
+    public PaymentEvent applyConfirm(PaymentIntent intent, String idempotencyKey) {
+        PaymentStateMachine.validateTransition(intent.getStatus(), PaymentStatus.PROCESSING);
+        intent.setStatus(PaymentStatus.PROCESSING);
+
+        String providerPaymentId = "pay_sim_" + UUID.randomUUID().toString().replace("-", "").substring(0, 24);
+        intent.setProviderPaymentId(providerPaymentId);
+        intent.setIdempotencyKeyConfirm(idempotencyKey);
+
+        eventPublisher.publishEvent(new PaymentProvider.ChargeRequest(intent.getId(), providerPaymentId,
+                intent.getAmount(), intent.getCurrency()));
+        outboxService.append(intent, PaymentEventType.CONFIRM_REQUESTED);
+        return createEvent(intent, PaymentEventType.CONFIRM_REQUESTED,
+                "{\"providerPaymentId\":\"" + providerPaymentId + "\"}");
+    }
+
+    /**
+     * Cancels a cancelable intent in memory and adds the change to the outbox.
+     *
+     * @return the event to store
+     */
+    public PaymentEvent applyCancel(PaymentIntent intent) {
+        PaymentStateMachine.validateTransition(intent.getStatus(), PaymentStatus.CANCELED);
+        intent.setStatus(PaymentStatus.CANCELED);
+        outboxService.append(intent, PaymentEventType.CANCELED);
+        return createEvent(intent, PaymentEventType.CANCELED, null);
+    }
+
     @Transactional
     public PaymentIntent handleProviderWebhook(String providerPaymentId, String status, String failureCode, String failureMessage) {
+        PaymentStatus targetStatus = "SUCCEEDED".equalsIgnoreCase(status) ? PaymentStatus.SUCCEEDED : PaymentStatus.FAILED;
+        return settle(providerPaymentId, targetStatus, failureCode, failureMessage, "WEBHOOK_PROCESSED",
+                "{\"providerPaymentId\":\"" + providerPaymentId + "\",\"status\":\"" + status + "\"}");
+    }
+
+    /**
+     * Applies the provider's answer to an asynchronous charge, through the same path as a provider webhook.
+     * Whichever of the two arrives second finds the intent terminal and changes nothing.
+     */
+    @Transactional
+    public PaymentIntent completeCharge(String providerPaymentId, PaymentProvider.ChargeResult result) {
+        PaymentStatus targetStatus = result.succeeded() ? PaymentStatus.SUCCEEDED : PaymentStatus.FAILED;
+        String payload = result.succeeded()
+                ? "{\"providerPaymentId\":\"" + providerPaymentId + "\"}"
+                : "{\"providerPaymentId\":\"" + providerPaymentId + "\",\"failureCode\":\"" + result.failureCode() + "\"}";
+        return settle(providerPaymentId, targetStatus, result.failureCode(), result.failureMessage(),
+                "PROVIDER_RESULT_APPLIED", payload);
+    }
+
+    private PaymentIntent settle(String providerPaymentId, PaymentStatus targetStatus, String failureCode,
+                                 String failureMessage, String auditAction, String eventPayload) {
         PaymentIntent intent = paymentIntentRepository.findByProviderPaymentId(providerPaymentId)
                 .orElse(null);
 
         if (intent == null) {
-            log.warn("Webhook for unknown providerPaymentId: {}", providerPaymentId);
+            log.warn("Provider result for unknown providerPaymentId: {}", providerPaymentId);
             return null;
         }
 
-        PaymentStatus targetStatus = "SUCCEEDED".equalsIgnoreCase(status) ? PaymentStatus.SUCCEEDED : PaymentStatus.FAILED;
         if (!PaymentStateMachine.canTransition(intent.getStatus(), targetStatus)) {
-            log.info("Webhook idempotent: intent {} already in terminal state {}", intent.getId(), intent.getStatus());
+            log.info("Provider result idempotent: intent {} already in state {}", intent.getId(), intent.getStatus());
             return intent;
         }
 
@@ -173,43 +257,123 @@ public class PaymentIntentService {
         }
 
         PaymentEventType eventType = targetStatus == PaymentStatus.SUCCEEDED ? PaymentEventType.SUCCEEDED : PaymentEventType.FAILED;
-        paymentEventRepository.save(createEvent(intent.getId(), eventType,
-                "{\"providerPaymentId\":\"" + providerPaymentId + "\",\"status\":\"" + status + "\"}"));
+        paymentEventRepository.save(createEvent(intent, eventType, eventPayload));
+        outboxService.append(intent, eventType);
 
         intent = paymentIntentRepository.save(intent);
 
-        WebhookDelivery delivery = new WebhookDelivery();
-        delivery.setPaymentIntentId(intent.getId());
-        delivery.setEventType(status);
-        delivery.setStatus(WebhookDeliveryStatus.DELIVERED);
-        delivery.setAttempts(1);
-        delivery.setLastAttemptAt(Instant.now());
-        webhookDeliveryRepository.save(delivery);
+        // Queued for WebhookDeliveryEngine, which sends it to the merchant once this transaction commits. Merchants
+        // without an endpoint get nothing queued; setting one later does not replay earlier events.
+        if (merchantRepository.existsByIdAndWebhookUrlIsNotNull(intent.getMerchantId())) {
+            WebhookDelivery delivery = new WebhookDelivery();
+            delivery.setPaymentIntentId(intent.getId());
+            delivery.setMerchantId(intent.getMerchantId());
+            delivery.setEventType(targetStatus.name());
+            delivery.setStatus(WebhookDeliveryStatus.PENDING);
+            delivery.setPayload(webhookPayload(targetStatus, intent));
+            webhookDeliveryRepository.save(delivery);
+        }
+
+        auditService.log(intent.getMerchantId(), auditAction, "intentId=" + intent.getId() + ", status=" + targetStatus);
+        log.info("Provider result applied: intentId={}, providerPaymentId={}, status={}", intent.getId(), providerPaymentId, targetStatus);
+        return intent;
+    }
 
-        auditService.log(intent.getMerchantId(), "WEBHOOK_PROCESSED", "intentId=" + intent.getId() + ", status=" + status);
-        log.info("Webhook processed: intentId={}, providerPaymentId={}, status={}", intent.getId(), providerPaymentId, status);
+    private static PaymentIntent newIntent(Long merchantId, BigDecimal amount, String currency,
+                                           String description, String customerReference, String idempotencyKey) {
+        PaymentIntent intent = new PaymentIntent();
+        intent.setMerchantId(merchantId);
+        intent.setAmount(amount.setScale(2, java.math.RoundingMode.HALF_UP));
+        intent.setCurrency(currency);
+        intent.setStatus(PaymentStatus.CREATED);
+        intent.setDescription(description);
+        intent.setCustomerReference(customerReference);
+        if (idempotencyKey != null) {
+            intent.setIdempotencyKeyCreate(idempotencyKey);
+        }
         return intent;
     }
 
+    @Transactional(readOnly = true)
     public Optional<PaymentIntent> getById(Long merchantId, UUID intentId) {
         return paymentIntentRepository.findByIdAndMerchantId(intentId, merchantId);
     }
 
+    /**
+     * Offset-paginated list, newest first. Unsorted page requests get the index order, so deep pages
+     * stay stable.
+     */
+    @Transactional(readOnly = true)
     public Page<PaymentIntent> list(Long merchantId, PaymentStatus status, Instant from, Instant to, Pageable pageable) {
-        return paymentIntentRepository.findByMerchantIdAndFilters(merchantId, status, from, to, pageable);
+        Pageable sorted = pageable.getSort().isSorted()
+                ? pageable
+                : PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), PaymentIntentSpecifications.NEWEST_FIRST);
+        return paymentIntentRepository.findAll(PaymentIntentSpecifications.filtered(merchantId, status, from, to), sorted);
+    }
+
+    /**
+     * Keyset-paginated list, newest first. At most one of {@code startingAfter} and {@code endingBefore}
+     * may be given; with neither, returns the first page.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<PaymentIntent> listByCursor(Long merchantId, PaymentStatus status, Instant from, Instant to,
+                                                  String startingAfter, String endingBefore, int limit) {
+        if (startingAfter != null && endingBefore != null) {
+            throw new IllegalArgumentException("Use either starting_after or ending_before, not both");
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        Specification<PaymentIntent> filters = PaymentIntentSpecifications.filtered(merchantId, status, from, to);
+        if (endingBefore != null) {
+            PaymentIntentCursor cursor = PaymentIntentCursor.decode(endingBefore);
+            List<PaymentIntent> newer = fetch(filters.and(PaymentIntentSpecifications.after(cursor.createdAt(), cursor.id())),
+                    PaymentIntentSpecifications.OLDEST_FIRST, limit + 1);
+            boolean hasMore = newer.size() > limit;
+            List<PaymentIntent> page = new ArrayList<>(newer.subList(0, Math.min(limit, newer.size())));
+            Collections.reverse(page);
+            return cursorPage(page, hasMore, !page.isEmpty(), hasMore);
+        }
+        if (startingAfter != null) {
+            PaymentIntentCursor cursor = PaymentIntentCursor.decode(startingAfter);
+            filters = filters.and(PaymentIntentSpecifications.before(cursor.createdAt(), cursor.id()));
+        }
+        List<PaymentIntent> older = fetch(filters, PaymentIntentSpecifications.NEWEST_FIRST, limit + 1);
+        boolean hasMore = older.size() > limit;
+        List<PaymentIntent> page = older.subList(0, Math.min(limit, older.size()));
+        return cursorPage(page, hasMore, hasMore, startingAfter != null && !page.isEmpty());
+    }
+
+    private List<PaymentIntent> fetch(Specification<PaymentIntent> specification, Sort sort, int limit) {
+        return paymentIntentRepository.findBy(specification, query -> query.sortBy(sort).limit(limit).all());
+    }
+
+    private static CursorPage<PaymentIntent> cursorPage(List<PaymentIntent> page, boolean hasMore,
+                                                        boolean hasOlder, boolean hasNewer) {
+        String next = hasOlder ? PaymentIntentCursor.of(page.get(page.size() - 1)).encode() : null;
+        String previous = hasNewer ? PaymentIntentCursor.of(page.get(0)).encode() : null;
+        return new CursorPage<>(List.copyOf(page), hasMore, next, previous);
     }
 
-    public List<PaymentEvent> getEvents(UUID paymentIntentId) {
-        return paymentEventRepository.findByPaymentIntentIdOrderByCreatedAtAsc(paymentIntentId);
+    @Transactional(readOnly = true)
+    public List<PaymentEvent> getEvents(Long merchantId, UUID paymentIntentId) {
+        return paymentEventRepository.findByMerchantIdAndPaymentIntentIdOrderByCreatedAtAsc(merchantId, paymentIntentId);
     }
 
-    public Optional<PaymentIntent> getByIdForEvents(UUID intentId) {
-        return paymentIntentRepository.findById(intentId);
+    private String webhookPayload(PaymentStatus status, PaymentIntent intent) {
+        MerchantWebhookEvent event = new MerchantWebhookEvent("payment_intent." + status.name().toLowerCase(Locale.ROOT),
+                Instant.now(), PaymentIntentResponse.from(intent));
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize webhook event", e);
+        }
     }
 
-    private PaymentEvent createEvent(UUID paymentIntentId, PaymentEventType type, String payload) {
+    private PaymentEvent createEvent(PaymentIntent intent, PaymentEventType type, String payload) {
         PaymentEvent event = new PaymentEvent();
-        event.setPaymentIntentId(paymentIntentId);
+        event.setMerchantId(intent.getMerchantId());
+        event.setPaymentIntentId(intent.getId());
         event.setType(type);
         event.setPayload(payload);
         return event;
@@ -0,0 +1,299 @@
+package com.payment.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.domain.PaymentStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans committed payment intent status changes out to Server-Sent Event subscribers. Changes are published on
+ * the Redis channel {@code payment_intent:status:<merchantId>}; every node pattern-subscribes to all of them and
+ * skips merchants without a local subscriber before parsing the message.
+ * <p>
+ * An idle subscriber holds no thread: its response is in servlet async mode. Each subscriber has a queue of at
+ * most {@code payment.stream.buffer-size} events, drained by a platform writer thread of its own while the queue
+ * is non-empty ({@code SseEmitter.send} is synchronized and would pin a virtual thread while the socket blocks).
+ * Writers are never shared, so a client that stops reading blocks only its own thread, never another subscriber's
+ * events. A subscriber is evicted when its queue overflows or a send has been blocked for longer than
+ * {@code payment.stream.write-timeout-ms}: its queue is dropped and its stream completed, and it reconnects and
+ * re-reads the intents it cares about. Tomcat does not abort a blocked write on interrupt, so an evicted writer's
+ * thread is released when the connector's own write timeout fails the send. Heartbeat comments go through the
+ * same queue, so a stalled connection is evicted even when no payment changes. There is no replay; events
+ * committed before a subscription are not sent.
+ */
+@Component
+public class PaymentIntentStream implements MessageListener {
+
+    public static final String CHANNEL_PREFIX = "payment_intent:status:";
+    public static final String CHANNEL_PATTERN = CHANNEL_PREFIX + "*";
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentIntentStream.class);
+    private static final TypeReference<List<StatusChange>> CHANGES = new TypeReference<>() {
+    };
+
+    /**
+     * A committed change; {@code payload} is the intent as {@code PaymentIntentResponse} JSON.
+     */
+    public record StatusChange(UUID paymentIntentId, Long merchantId, PaymentStatus status, long version,
+                               String payload) {
+    }
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final long writeTimeoutNanos;
+    private final long timeoutMs;
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ExecutorService writers;
+    private final ScheduledExecutorService timers;
+    private final Counter evicted;
+
+    public PaymentIntentStream(StringRedisTemplate redisTemplate,
+                               ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry,
+                               @Value("${payment.stream.buffer-size:256}") int bufferSize,
+                               @Value("${payment.stream.write-timeout-ms:10000}") long writeTimeoutMs,
+                               @Value("${payment.stream.heartbeat-ms:15000}") long heartbeatMs,
+                               @Value("${payment.stream.timeout-ms:1800000}") long timeoutMs) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMs);
+        this.timeoutMs = timeoutMs;
+        // Unbounded, but at most one thread per subscriber with queued events
+        this.writers = Executors.newCachedThreadPool(
+                Thread.ofPlatform().name("payment-intent-stream-", 0).daemon().factory());
+        this.timers = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("payment-intent-stream-timer").daemon().factory());
+        timers.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        long stallCheckMs = Math.max(writeTimeoutMs / 2, 1);
+        timers.scheduleWithFixedDelay(this::evictStalled, stallCheckMs, stallCheckMs, TimeUnit.MILLISECONDS);
+        this.evicted = Counter.builder("payment_intent.stream.evicted")
+                .description("Stream subscribers dropped because their buffer overflowed or a write stalled")
+                .register(meterRegistry);
+        Gauge.builder("payment_intent.stream.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open payment intent streams on this node")
+                .register(meterRegistry);
+    }
+
+    public SseEmitter subscribe(Long merchantId) {
+        return subscribe(merchantId, new SseEmitter(timeoutMs));
+    }
+
+    /**
+     * Registers {@code emitter} for the merchant's changes and sends a {@code subscribed} comment, after which
+     * every change committed for the merchant is delivered.
+     */
+    public SseEmitter subscribe(Long merchantId, SseEmitter emitter) {
+        try {
+            // Buffered until MVC takes the emitter, then written and the response committed on the request thread,
+            // before any writer thread can race the security filters still adding headers there
+            emitter.send(SseEmitter.event().comment("subscribed"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Subscriber subscriber = new Subscriber(merchantId, emitter);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+        subscribers.computeIfAbsent(merchantId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        subscriberCount.incrementAndGet();
+        return emitter;
+    }
+
+    /**
+     * @return open streams for the merchant on this node
+     */
+    public int subscriberCount(Long merchantId) {
+        Set<Subscriber> local = subscribers.get(merchantId);
+        return local == null ? 0 : local.size();
+    }
+
+    /**
+     * Broadcasts committed changes, one message per merchant. A failed publish is logged and not retried;
+     * the changes are already committed and also reach the outbox.
+     */
+    public void publish(List<StatusChange> changes) {
+        Map<Long, List<StatusChange>> byMerchant = new LinkedHashMap<>();
+        for (StatusChange change : changes) {
+            byMerchant.computeIfAbsent(change.merchantId(), id -> new ArrayList<>()).add(change);
+        }
+        byMerchant.forEach((merchantId, merchantChanges) -> {
+            try {
+                redisTemplate.convertAndSend(CHANNEL_PREFIX + merchantId, objectMapper.writeValueAsString(merchantChanges));
+            } catch (Exception e) {
+                log.warn("Failed to publish payment intent status changes: merchantId={}, error={}",
+                        merchantId, e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        Long merchantId;
+        try {
+            merchantId = Long.valueOf(channel.substring(CHANNEL_PREFIX.length()));
+        } catch (RuntimeException e) {
+            log.warn("Ignoring payment intent status message on unexpected channel: {}", channel);
+            return;
+        }
+        Set<Subscriber> local = subscribers.get(merchantId);
+        if (local == null || local.isEmpty()) {
+            return;
+        }
+        List<StatusChange> changes;
+        try {
+            changes = objectMapper.readValue(message.getBody(), CHANGES);
+        } catch (IOException e) {
+            log.warn("Ignoring malformed payment intent status message: merchantId={}", merchantId);
+            return;
+        }
+        for (StatusChange change : changes) {
+            for (Subscriber subscriber : local) {
+                // A builder accumulates lines, so every subscriber needs its own
+                subscriber.offer(event(change));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        timers.shutdownNow();
+        subscribers.values().forEach(local -> local.forEach(subscriber -> subscriber.emitter.complete()));
+        writers.shutdownNow();
+    }
+
+    private static SseEmitter.SseEventBuilder event(StatusChange change) {
+        return SseEmitter.event()
+                .id(change.paymentIntentId() + ":" + change.version())
+                .name("payment_intent." + change.status().name().toLowerCase(Locale.ROOT))
+                .data(change.payload());
+    }
+
+    private void heartbeat() {
+        subscribers.values().forEach(local -> local.forEach(subscriber ->
+                subscriber.offer(SseEmitter.event().comment("heartbeat"))));
+    }
+
+    private void evictStalled() {
+        long now = System.nanoTime();
+        subscribers.values().forEach(local -> local.forEach(subscriber -> {
+            if (subscriber.sending && now - subscriber.sendStartedNanos > writeTimeoutNanos) {
+                subscriber.evict("write stalled");
+            }
+        }));
+    }
+
+    private final class Subscriber {
+
+        private final Long merchantId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean writing = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile long sendStartedNanos;
+        private volatile boolean sending;
+
+        Subscriber(Long merchantId, SseEmitter emitter) {
+            this.merchantId = merchantId;
+            this.emitter = emitter;
+        }
+
+        void offer(SseEmitter.SseEventBuilder event) {
+            if (closed.get()) {
+                return;
+            }
+            if (!buffer.offer(event)) {
+                evict("buffer overflowed");
+                return;
+            }
+            if (writing.compareAndSet(false, true)) {
+                writers.execute(this::write);
+            }
+        }
+
+        private void write() {
+            try {
+                do {
+                    SseEmitter.SseEventBuilder event;
+                    while (!closed.get() && (event = buffer.poll()) != null) {
+                        sendStartedNanos = System.nanoTime();
+                        sending = true;
+                        try {
+                            emitter.send(event);
+                        } finally {
+                            sending = false;
+                        }
+                    }
+                    writing.set(false);
+                    // An event offered after the last poll but before the flag was cleared is written here
+                } while (!closed.get() && !buffer.isEmpty() && writing.compareAndSet(false, true));
+            } catch (IOException | IllegalStateException e) {
+                // The client went away or the stream already completed
+                writing.set(false);
+                close();
+            }
+        }
+
+        void evict(String reason) {
+            if (!close()) {
+                return;
+            }
+            evicted.increment();
+            log.info("Evicting slow payment intent stream subscriber: merchantId={}, reason={}", merchantId, reason);
+            // Not synchronized, so it does not wait for a send blocked on the socket; that send fails once the
+            // connection times out
+            emitter.complete();
+        }
+
+        /**
+         * @return false if the subscriber was already closed
+         */
+        boolean close() {
+            if (!closed.compareAndSet(false, true)) {
+                return false;
+            }
+            buffer.clear();
+            subscribers.computeIfPresent(merchantId, (id, local) -> {
+                local.remove(this);
+                return local.isEmpty() ? null : local;
+            });
+            subscriberCount.decrementAndGet();
+            return true;
+        }
+    }
+}
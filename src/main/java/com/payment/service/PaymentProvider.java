@@ -0,0 +1,40 @@
+package com.payment.service;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Adapter for the external payment provider that charges confirmed intents.
+ * <p>
+ * {@link #charge} must not block: it returns as soon as the request is handed off, and the future completes
+ * when the provider answers. Callers never hold a database connection while waiting. A provider that also
+ * reports results by webhook may complete the same charge twice; {@link PaymentIntentService#completeCharge}
+ * ignores whichever result arrives second.
+ * <p>
+ * A charge that got no answer is sent again with the same {@link ChargeRequest#providerPaymentId()} by
+ * {@link ProviderChargeReconciler}. Adapters pass that id to the provider as its idempotency key, so a repeated
+ * request returns the outcome of the first instead of charging twice.
+ */
+public interface PaymentProvider {
+
+    CompletableFuture<ChargeResult> charge(ChargeRequest request);
+
+    record ChargeRequest(UUID paymentIntentId, String providerPaymentId, BigDecimal amount, String currency) {
+    }
+
+    /**
+     * @param failureCode    provider's reason for a failed charge; null when it succeeded
+     * @param failureMessage human-readable reason; null when it succeeded
+     */
+    record ChargeResult(boolean succeeded, String failureCode, String failureMessage) {
+
+        public static ChargeResult success() {
+            return new ChargeResult(true, null, null);
+        }
+
+        public static ChargeResult failure(String failureCode, String failureMessage) {
+            return new ChargeResult(false, failureCode, failureMessage);
+        }
+    }
+}
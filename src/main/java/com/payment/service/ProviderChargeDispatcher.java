@@ -0,0 +1,138 @@
+package com.payment.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Second half of confirm. {@link PaymentIntentService#confirm} commits the intent as PROCESSING and publishes a
+ * {@link PaymentProvider.ChargeRequest}; once that transaction has committed and released its connection, this
+ * hands the charge to the {@link PaymentProvider} and returns. When the provider answers, the result is applied
+ * by {@link PaymentIntentService#completeCharge} on one of {@code payment.provider.completion-threads} threads,
+ * in a short transaction of its own; they are virtual threads when {@code spring.threads.virtual.enabled} is set.
+ * Confirm throughput is therefore bounded by database work, not by pool size divided by provider latency.
+ * <p>
+ * A charge the provider has not answered within {@code payment.provider.timeout-ms} is left PROCESSING: whether
+ * the provider charged it is unknown, so it is not failed. The provider webhook may still settle it; otherwise
+ * {@link ProviderChargeReconciler} sends it again, as it does for charges lost to a restart between commit and
+ * hand-off.
+ */
+@Component
+public class ProviderChargeDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(ProviderChargeDispatcher.class);
+
+    private final PaymentProvider paymentProvider;
+    private final PaymentIntentService paymentIntentService;
+    private final long timeoutMs;
+    private final ExecutorService completions;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Timer succeeded;
+    private final Timer failed;
+    private final Timer timedOut;
+    private final Timer errored;
+
+    public ProviderChargeDispatcher(PaymentProvider paymentProvider,
+                                    PaymentIntentService paymentIntentService,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${payment.provider.timeout-ms:5000}") long timeoutMs,
+                                    @Value("${payment.provider.completion-threads:4}") int completionThreads,
+                                    @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.paymentProvider = paymentProvider;
+        this.paymentIntentService = paymentIntentService;
+        this.timeoutMs = timeoutMs;
+        // Still a fixed number of threads with virtual threads on: it bounds the connections results compete for
+        this.completions = Executors.newFixedThreadPool(completionThreads, virtualThreads
+                ? Thread.ofVirtual().name("provider-completion-", 0).factory()
+                : Thread.ofPlatform().name("provider-completion-", 0).daemon().factory());
+        Gauge.builder("provider.charge.in-flight", inFlight, AtomicInteger::get)
+                .description("Charges sent to the provider and not yet answered")
+                .register(meterRegistry);
+        this.succeeded = chargeTimer(meterRegistry, "succeeded");
+        this.failed = chargeTimer(meterRegistry, "failed");
+        this.timedOut = chargeTimer(meterRegistry, "timeout");
+        this.errored = chargeTimer(meterRegistry, "error");
+    }
+
+    /**
+     * Stops applying results; charges still in flight stay PROCESSING for the webhook or the reconciler.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        completions.shutdown();
+        completions.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Runs after the confirming transaction commits, so a rolled-back confirm never reaches the provider.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChargeRequested(PaymentProvider.ChargeRequest request) {
+        dispatch(request);
+    }
+
+    /**
+     * Hands a charge to the provider and applies its answer when it arrives. Also used by
+     * {@link ProviderChargeReconciler} for charges that never got one.
+     */
+    public void dispatch(PaymentProvider.ChargeRequest request) {
+        long start = System.nanoTime();
+        inFlight.incrementAndGet();
+        paymentProvider.charge(request)
+                .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .whenCompleteAsync((result, error) -> {
+                    inFlight.decrementAndGet();
+                    complete(request, result, error, System.nanoTime() - start);
+                }, completions);
+    }
+
+    private void complete(PaymentProvider.ChargeRequest request, PaymentProvider.ChargeResult result,
+                          Throwable error, long nanos) {
+        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+        if (cause instanceof TimeoutException) {
+            timedOut.record(nanos, TimeUnit.NANOSECONDS);
+            log.warn("Provider did not answer within {} ms, awaiting webhook or reconciler: intentId={}, providerPaymentId={}",
+                    timeoutMs, request.paymentIntentId(), request.providerPaymentId());
+            return;
+        }
+        if (cause != null) {
+            errored.record(nanos, TimeUnit.NANOSECONDS);
+            log.error("Provider charge failed, awaiting webhook or reconciler: intentId={}, providerPaymentId={}",
+                    request.paymentIntentId(), request.providerPaymentId(), cause);
+            return;
+        }
+        (result.succeeded() ? succeeded : failed).record(nanos, TimeUnit.NANOSECONDS);
+        try {
+            try {
+                paymentIntentService.completeCharge(request.providerPaymentId(), result);
+            } catch (ObjectOptimisticLockingFailureException e) {
+                // A provider webhook updated the intent concurrently; once it is terminal this is a no-op
+                paymentIntentService.completeCharge(request.providerPaymentId(), result);
+            }
+        } catch (RuntimeException e) {
+            log.error("Applying provider result failed, awaiting webhook or reconciler: intentId={}, providerPaymentId={}",
+                    request.paymentIntentId(), request.providerPaymentId(), e);
+        }
+    }
+
+    private static Timer chargeTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("provider.charge")
+                .description("Time from handing a charge to the provider until it answered")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
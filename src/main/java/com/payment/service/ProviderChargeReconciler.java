@@ -0,0 +1,111 @@
+package com.payment.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Recovers charges that never got a result. The hand-off from a committed confirm to the provider is in memory
+ * ({@link ProviderChargeDispatcher}), so a restart after commit, a provider timeout or an error applying the
+ * answer leaves the intent PROCESSING with nothing left to settle it. Every {@code interval-ms} this claims up to
+ * {@code batch-size} intents that have been PROCESSING for longer than {@code after-ms} and dispatches their
+ * charges again, with the same provider payment id, which the provider treats as an idempotency key.
+ * <p>
+ * The claim moves {@code updated_at} forward in the same {@code FOR UPDATE SKIP LOCKED} statement, so other nodes
+ * skip the intent until {@code after-ms} has passed again; an unanswered charge is retried at that interval.
+ * Whichever result arrives first settles the intent, and later ones find it terminal.
+ */
+@Component
+@ConditionalOnProperty(name = "payment.provider.reconcile.enabled", havingValue = "true", matchIfMissing = true)
+public class ProviderChargeReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(ProviderChargeReconciler.class);
+
+    // MATERIALIZED so the locking SELECT runs once; as a subquery PostgreSQL may re-run it for a row changed
+    // concurrently and claim more than LIMIT intents
+    private static final String CLAIM_SQL = """
+            WITH stale AS MATERIALIZED (
+                SELECT id, merchant_id FROM payment_intent
+                WHERE status = 'PROCESSING' AND updated_at < now() - ? * interval '1 millisecond'
+                ORDER BY updated_at
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED)
+            UPDATE payment_intent p SET updated_at = now()
+            FROM stale
+            WHERE p.id = stale.id AND p.merchant_id = stale.merchant_id
+            RETURNING p.id, p.provider_payment_id, p.amount, p.currency
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ProviderChargeDispatcher dispatcher;
+    private final long afterMs;
+    private final int batchSize;
+    private final Counter reconciled;
+
+    public ProviderChargeReconciler(JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    ProviderChargeDispatcher dispatcher,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${payment.provider.timeout-ms:5000}") long timeoutMs,
+                                    @Value("${payment.provider.reconcile.after-ms:60000}") long afterMs,
+                                    @Value("${payment.provider.reconcile.batch-size:100}") int batchSize) {
+        if (afterMs <= timeoutMs) {
+            throw new IllegalArgumentException("payment.provider.reconcile.after-ms must exceed payment.provider.timeout-ms");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.dispatcher = dispatcher;
+        this.afterMs = afterMs;
+        this.batchSize = batchSize;
+        this.reconciled = Counter.builder("provider.charge.reconciled")
+                .description("Charges of intents left PROCESSING that were sent to the provider again")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${payment.provider.reconcile.interval-ms:30000}",
+            initialDelayString = "${payment.provider.reconcile.interval-ms:30000}")
+    public void run() {
+        try {
+            int count;
+            do {
+                count = reconcile();
+            } while (count == batchSize);
+        } catch (RuntimeException e) {
+            log.warn("Provider charge reconciliation failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Claims one batch of stale PROCESSING intents and dispatches their charges once the claim has committed.
+     *
+     * @return the number of charges dispatched
+     */
+    public int reconcile() {
+        List<PaymentProvider.ChargeRequest> stale = transactionTemplate.execute(status -> jdbcTemplate.query(CLAIM_SQL,
+                (rs, rowNum) -> new PaymentProvider.ChargeRequest(rs.getObject("id", UUID.class),
+                        rs.getString("provider_payment_id"), rs.getBigDecimal("amount"), rs.getString("currency")),
+                afterMs, batchSize));
+        if (stale == null || stale.isEmpty()) {
+            return 0;
+        }
+        for (PaymentProvider.ChargeRequest request : stale) {
+            log.warn("Intent PROCESSING for over {} ms without a provider result, charging again: intentId={}, providerPaymentId={}",
+                    afterMs, request.paymentIntentId(), request.providerPaymentId());
+            dispatcher.dispatch(request);
+        }
+        reconciled.increment(stale.size());
+        return stale.size();
+    }
+}
@@ -0,0 +1,27 @@
+package com.payment.service;
+
+/**
+ * Rate limiting algorithms, each backed by a Lua script that decides and updates state in one Redis call.
+ */
+public enum RateLimitAlgorithm {
+    FIXED_WINDOW("scripts/rate_limit/fixed_window.lua"),
+    SLIDING_WINDOW_LOG("scripts/rate_limit/sliding_window_log.lua"),
+    GCRA("scripts/rate_limit/gcra.lua");
+
+    private final String scriptLocation;
+
+    RateLimitAlgorithm(String scriptLocation) {
+        this.scriptLocation = scriptLocation;
+    }
+
+    public String getScriptLocation() {
+        return scriptLocation;
+    }
+
+    /**
+     * Parses the {@code rate-limit.algorithm} property, e.g. {@code gcra} or {@code sliding-window-log}.
+     */
+    public static RateLimitAlgorithm fromProperty(String value) {
+        return valueOf(value.trim().toUpperCase().replace('-', '_'));
+    }
+}
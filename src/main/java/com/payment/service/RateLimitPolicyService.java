@@ -0,0 +1,74 @@
+package com.payment.service;
+
+import com.payment.domain.RateLimitEndpoint;
+import com.payment.repository.MerchantRepository;
+import com.payment.repository.RateLimitPolicyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loads rate limit policies from the database into a {@link RateLimitPolicyTable} and swaps in a
+ * recompiled table whenever the trigger-maintained policy version changes.
+ */
+@Service
+public class RateLimitPolicyService {
+
+    private static final Logger log = LoggerFactory.getLogger(RateLimitPolicyService.class);
+
+    private final RateLimitPolicyRepository policyRepository;
+    private final MerchantRepository merchantRepository;
+    private final RateLimitPolicyTable.Budget fallback;
+
+    private volatile RateLimitPolicyTable table;
+    private volatile long loadedVersion = -1;
+
+    public RateLimitPolicyService(RateLimitPolicyRepository policyRepository,
+                                  MerchantRepository merchantRepository,
+                                  @Value("${rate-limit.requests-per-minute:60}") int requestsPerMinute,
+                                  @Value("${rate-limit.window-seconds:60}") int windowSeconds) {
+        this.policyRepository = policyRepository;
+        this.merchantRepository = merchantRepository;
+        this.fallback = new RateLimitPolicyTable.Budget(requestsPerMinute, windowSeconds);
+        this.table = RateLimitPolicyTable.fallbackOnly(fallback);
+    }
+
+    public RateLimitPolicyTable.Budget resolve(Long merchantId, RateLimitEndpoint endpoint) {
+        return table.resolve(merchantId, endpoint);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reload(policyRepository.findVersion());
+    }
+
+    @Scheduled(fixedDelayString = "${rate-limit.policy.refresh-ms:10000}",
+               initialDelayString = "${rate-limit.policy.refresh-ms:10000}")
+    public void refreshIfChanged() {
+        try {
+            long version = policyRepository.findVersion();
+            if (version != loadedVersion) {
+                reload(version);
+            }
+        } catch (Exception e) {
+            log.warn("Rate limit policy refresh failed, keeping version {}: {}", loadedVersion, e.getMessage());
+        }
+    }
+
+    private void reload(long version) {
+        Map<Long, String> merchantTiers = new HashMap<>();
+        for (Object[] row : merchantRepository.findRateLimitTiersOtherThan(RateLimitPolicyTable.DEFAULT_TIER)) {
+            merchantTiers.put((Long) row[0], (String) row[1]);
+        }
+        table = RateLimitPolicyTable.compile(policyRepository.findAll(), merchantTiers, fallback);
+        loadedVersion = version;
+        log.info("Rate limit policies loaded: version={}, merchantTiers={}", version, merchantTiers.size());
+    }
+}
@@ -0,0 +1,98 @@
+package com.payment.service;
+
+import com.payment.domain.RateLimitEndpoint;
+import com.payment.domain.RateLimitPolicy;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, fully resolved lookup table of rate limit budgets.
+ * Resolution order for a merchant and endpoint: merchant override, merchant's tier, default tier,
+ * then the global fallback. Compiling flattens that chain so {@link #resolve} is two map lookups.
+ */
+public final class RateLimitPolicyTable {
+
+    public static final String DEFAULT_TIER = "STANDARD";
+
+    private static final RateLimitEndpoint[] ENDPOINTS = RateLimitEndpoint.values();
+
+    private final Budget[] defaultBudgets;
+    private final Map<String, Budget[]> tierBudgets;
+    private final Map<Long, Budget[]> merchantBudgets;
+
+    private RateLimitPolicyTable(Budget[] defaultBudgets, Map<String, Budget[]> tierBudgets,
+                                 Map<Long, Budget[]> merchantBudgets) {
+        this.defaultBudgets = defaultBudgets;
+        this.tierBudgets = tierBudgets;
+        this.merchantBudgets = merchantBudgets;
+    }
+
+    public static RateLimitPolicyTable fallbackOnly(Budget fallback) {
+        return compile(List.of(), Map.of(), fallback);
+    }
+
+    /**
+     * @param merchantTiers tiers of merchants outside {@link #DEFAULT_TIER}
+     */
+    public static RateLimitPolicyTable compile(List<RateLimitPolicy> policies, Map<Long, String> merchantTiers,
+                                               Budget fallback) {
+        Map<String, Budget[]> tierRows = new HashMap<>();
+        Map<Long, Budget[]> merchantRows = new HashMap<>();
+        for (RateLimitPolicy policy : policies) {
+            Budget budget = new Budget(policy.getRequestsPerWindow(), policy.getWindowSeconds());
+            Budget[] row = policy.getMerchantId() != null
+                    ? merchantRows.computeIfAbsent(policy.getMerchantId(), id -> new Budget[ENDPOINTS.length])
+                    : tierRows.computeIfAbsent(policy.getTier(), tier -> new Budget[ENDPOINTS.length]);
+            row[policy.getEndpoint().ordinal()] = budget;
+        }
+
+        Budget[] defaults = new Budget[ENDPOINTS.length];
+        Arrays.fill(defaults, fallback);
+        defaults = overlay(defaults, tierRows.get(DEFAULT_TIER));
+
+        Map<String, Budget[]> tiers = new HashMap<>();
+        for (Map.Entry<String, Budget[]> entry : tierRows.entrySet()) {
+            tiers.put(entry.getKey(), overlay(defaults, entry.getValue()));
+        }
+
+        Map<Long, Budget[]> merchants = new HashMap<>();
+        for (Map.Entry<Long, String> entry : merchantTiers.entrySet()) {
+            Budget[] tierRow = tiers.get(entry.getValue());
+            if (tierRow != null) {
+                merchants.put(entry.getKey(), tierRow);
+            }
+        }
+        for (Map.Entry<Long, Budget[]> entry : merchantRows.entrySet()) {
+            Budget[] base = merchants.getOrDefault(entry.getKey(), defaults);
+            merchants.put(entry.getKey(), overlay(base, entry.getValue()));
+        }
+        return new RateLimitPolicyTable(defaults, Map.copyOf(tiers), Map.copyOf(merchants));
+    }
+
+    public Budget resolve(Long merchantId, RateLimitEndpoint endpoint) {
+        Budget[] row = merchantId != null ? merchantBudgets.get(merchantId) : null;
+        return (row != null ? row : defaultBudgets)[endpoint.ordinal()];
+    }
+
+    public Budget resolveTier(String tier, RateLimitEndpoint endpoint) {
+        return tierBudgets.getOrDefault(tier, defaultBudgets)[endpoint.ordinal()];
+    }
+
+    private static Budget[] overlay(Budget[] base, Budget[] overrides) {
+        Budget[] result = base.clone();
+        if (overrides != null) {
+            for (int i = 0; i < result.length; i++) {
+                if (overrides[i] != null) {
+                    result[i] = overrides[i];
+                }
+            }
+        }
+        return result;
+    }
+
+    public record Budget(int limit, int windowSeconds) {
+    }
+}
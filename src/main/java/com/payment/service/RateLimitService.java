@@ -3,10 +3,14 @@ package com.payment.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.TimeUnit;
+import java.util.List;
 
 @Service
 public class RateLimitService {
@@ -15,38 +19,86 @@ public class RateLimitService {
     private static final String RATE_LIMIT_PREFIX = "rate_limit:";
 
     private final StringRedisTemplate redisTemplate;
-    private final int requestsPerMinute;
-    private final int windowSeconds;
+    private final RedisScript<List> script;
+    private final RateLimitPolicyTable.Budget defaultBudget;
 
     public RateLimitService(StringRedisTemplate redisTemplate,
                             @Value("${rate-limit.requests-per-minute:60}") int requestsPerMinute,
-                            @Value("${rate-limit.window-seconds:60}") int windowSeconds) {
+                            @Value("${rate-limit.window-seconds:60}") int windowSeconds,
+                            @Value("${rate-limit.algorithm:gcra}") String algorithm) {
         this.redisTemplate = redisTemplate;
-        this.requestsPerMinute = requestsPerMinute;
-        this.windowSeconds = windowSeconds;
+        this.defaultBudget = new RateLimitPolicyTable.Budget(requestsPerMinute, windowSeconds);
+        this.script = loadScript(RateLimitAlgorithm.fromProperty(algorithm));
     }
 
     /**
-     * Check and increment rate limit for the given key (e.g. API key prefix).
-     * @return remaining seconds until retry if rate limited, or 0 if allowed
+     * Check and increment rate limit for the given key (e.g. merchant and endpoint) in a single Redis round trip.
+     * @return the decision plus the limit, remaining budget and reset time for rate limit headers
      */
-    public int checkAndIncrement(String key) {
-        String redisKey = RATE_LIMIT_PREFIX + key;
-        Long count = redisTemplate.opsForValue().increment(redisKey);
-        if (count == null) {
-            count = 1L;
-        }
-        if (count == 1) {
-            redisTemplate.expire(redisKey, windowSeconds, TimeUnit.SECONDS);
-        }
-        Long ttl = redisTemplate.getExpire(redisKey, TimeUnit.SECONDS);
-        if (ttl == null) {
-            ttl = (long) windowSeconds;
+    public RateLimitResult checkAndIncrement(String key) {
+        return checkAndIncrement(key, defaultBudget);
+    }
+
+    public RateLimitResult checkAndIncrement(String key, RateLimitPolicyTable.Budget budget) {
+        RateLimitLease lease = lease(key, 1, budget);
+        if (lease.granted() == 0) {
+            log.debug("Rate limit exceeded for key: {}, retryAfter={}ms", key, lease.retryAfterMillis());
         }
-        if (count > requestsPerMinute) {
-            log.debug("Rate limit exceeded for key: {}, count={}", key, count);
-            return ttl != null ? ttl.intValue() : windowSeconds;
+        return new RateLimitResult(
+                lease.granted() > 0,
+                lease.limit(),
+                lease.remaining(),
+                toSeconds(lease.resetMillis()),
+                toSeconds(lease.retryAfterMillis()));
+    }
+
+    /**
+     * Takes up to {@code permits} from the key's budget in a single Redis round trip.
+     * Fewer (possibly zero) permits are granted when the budget is nearly exhausted.
+     */
+    public RateLimitLease lease(String key, int permits) {
+        return lease(key, permits, defaultBudget);
+    }
+
+    public RateLimitLease lease(String key, int permits, RateLimitPolicyTable.Budget budget) {
+        List<?> reply = redisTemplate.execute(script, List.of(RATE_LIMIT_PREFIX + key),
+                String.valueOf(budget.limit()), String.valueOf(budget.windowSeconds()), String.valueOf(permits));
+        if (reply == null || reply.size() < 4) {
+            throw new IllegalStateException("Unexpected rate limit script reply: " + reply);
         }
-        return 0;
+        return new RateLimitLease(
+                ((Number) reply.get(0)).intValue(),
+                budget.limit(),
+                ((Number) reply.get(1)).intValue(),
+                ((Number) reply.get(2)).longValue(),
+                ((Number) reply.get(3)).longValue());
+    }
+
+    public RateLimitPolicyTable.Budget getDefaultBudget() {
+        return defaultBudget;
+    }
+
+    static int toSeconds(long millis) {
+        return (int) Math.max(0, (millis + 999) / 1000);
+    }
+
+    private static RedisScript<List> loadScript(RateLimitAlgorithm algorithm) {
+        DefaultRedisScript<List> redisScript = new DefaultRedisScript<>();
+        redisScript.setScriptSource(new ResourceScriptSource(new ClassPathResource(algorithm.getScriptLocation())));
+        redisScript.setResultType(List.class);
+        return redisScript;
+    }
+
+    /**
+     * Permits taken from Redis in one call, with the budget state after the grant.
+     */
+    public record RateLimitLease(int granted, int limit, int remaining, long resetMillis, long retryAfterMillis) {
+    }
+
+    /**
+     * @param retryAfterSeconds seconds until retry if rate limited, or 0 if allowed
+     * @param resetSeconds seconds until the limit resets, as reported in X-RateLimit-Reset
+     */
+    public record RateLimitResult(boolean allowed, int limit, int remaining, int resetSeconds, int retryAfterSeconds) {
     }
 }
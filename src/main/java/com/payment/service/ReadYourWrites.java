@@ -0,0 +1,60 @@
+package com.payment.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Merchants whose payment intents changed within the last {@code datasource.replica.max-lag-ms}. Their reads go to
+ * the primary, since a replica may be that far behind and not have the change yet. Changes committed on this node
+ * are recorded by {@link OutboxService} after commit; changes committed on other nodes are learned from the
+ * {@link PaymentIntentStream} messages that are published for every transaction anyway, so stickiness costs no
+ * extra round trip. Nothing is recorded when no replica is configured.
+ */
+@Component
+public class ReadYourWrites implements MessageListener {
+
+    private final boolean enabled;
+    private final Cache<Long, Boolean> recentWriters;
+
+    public ReadYourWrites(@Value("${datasource.replica.urls:}") String replicaUrls,
+                          @Value("${datasource.replica.max-lag-ms:5000}") long maxLagMs) {
+        this.enabled = !replicaUrls.isBlank();
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(maxLagMs))
+                .build();
+    }
+
+    public void recordCommitted(List<PaymentIntentStream.StatusChange> changes) {
+        if (enabled) {
+            changes.forEach(change -> recentWriters.put(change.merchantId(), Boolean.TRUE));
+        }
+    }
+
+    /**
+     * @return whether the merchant changed an intent recently enough that a replica may not have it yet
+     */
+    public boolean wroteRecently(Long merchantId) {
+        return recentWriters.getIfPresent(merchantId) != null;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        if (!enabled) {
+            return;
+        }
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        try {
+            recentWriters.put(Long.valueOf(channel.substring(PaymentIntentStream.CHANNEL_PREFIX.length())), Boolean.TRUE);
+        } catch (RuntimeException e) {
+            // PaymentIntentStream logs malformed channels
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.payment.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Appends messages to the Redis stream {@code outbox.redis.stream} with XADD, one pipelined round trip per
+ * batch. The stream is trimmed to about {@code outbox.redis.max-length} entries; consumers read it with
+ * XREAD or consumer groups.
+ */
+@Component
+@ConditionalOnProperty(name = "outbox.broker", havingValue = "redis", matchIfMissing = true)
+public class RedisStreamOutboxBroker implements OutboxBroker {
+
+    private final StringRedisTemplate redisTemplate;
+    private final String stream;
+    private final XAddOptions options;
+
+    public RedisStreamOutboxBroker(StringRedisTemplate redisTemplate,
+                                   @Value("${outbox.redis.stream:payment-intent-events}") String stream,
+                                   @Value("${outbox.redis.max-length:1000000}") long maxLength) {
+        this.redisTemplate = redisTemplate;
+        this.stream = stream;
+        this.options = XAddOptions.maxlen(maxLength).approximateTrimming(true);
+    }
+
+    @Override
+    public void publish(List<Message> messages) {
+        // A failed XADD surfaces when the pipeline is closed, so the batch is not acknowledged
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection commands = (StringRedisConnection) connection;
+            for (Message message : messages) {
+                commands.xAdd(StreamRecords.string(message.fields()).withStreamKey(stream), options);
+            }
+            return null;
+        });
+    }
+
+    public String getStream() {
+        return stream;
+    }
+}
@@ -0,0 +1,67 @@
+package com.payment.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local stand-in for a payment provider. Each charge answers after a log-normal latency given by its median
+ * ({@code payment.provider.simulated.latency-median-ms}) and 99th percentile
+ * ({@code payment.provider.simulated.latency-p99-ms}). A fraction {@code payment.provider.simulated.failure-rate}
+ * of charges are declined, and all of them are when {@code payment.provider.simulate-success} is false.
+ * Waiting charges are timers on one scheduler thread, so thousands can be in flight at once.
+ */
+@Component
+public class SimulatedPaymentProvider implements PaymentProvider {
+
+    /** z-score of the 99th percentile of a standard normal distribution */
+    private static final double Z_99 = 2.326;
+
+    private final boolean simulateSuccess;
+    private final double failureRate;
+    private final double latencyMu;
+    private final double latencySigma;
+    private final boolean instant;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("provider-simulator").daemon().factory());
+
+    public SimulatedPaymentProvider(@Value("${payment.provider.simulate-success:true}") boolean simulateSuccess,
+                                    @Value("${payment.provider.simulated.failure-rate:0.0}") double failureRate,
+                                    @Value("${payment.provider.simulated.latency-median-ms:200}") long latencyMedianMs,
+                                    @Value("${payment.provider.simulated.latency-p99-ms:1000}") long latencyP99Ms) {
+        if (failureRate < 0 || failureRate > 1) {
+            throw new IllegalArgumentException("payment.provider.simulated.failure-rate must be between 0 and 1");
+        }
+        this.simulateSuccess = simulateSuccess;
+        this.failureRate = failureRate;
+        this.instant = latencyMedianMs <= 0;
+        this.latencyMu = instant ? 0 : Math.log(latencyMedianMs);
+        this.latencySigma = instant ? 0 : Math.log(Math.max(latencyP99Ms, latencyMedianMs) / (double) latencyMedianMs) / Z_99;
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public CompletableFuture<ChargeResult> charge(ChargeRequest request) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        ChargeResult result = !simulateSuccess || random.nextDouble() < failureRate
+                ? ChargeResult.failure("provider_error", "Simulated provider failure")
+                : ChargeResult.success();
+        if (instant) {
+            return CompletableFuture.completedFuture(result);
+        }
+        long latencyMicros = (long) (Math.exp(latencyMu + latencySigma * random.nextGaussian()) * 1000);
+        CompletableFuture<ChargeResult> future = new CompletableFuture<>();
+        scheduler.schedule(() -> future.complete(result), latencyMicros, TimeUnit.MICROSECONDS);
+        return future;
+    }
+}
@@ -0,0 +1,437 @@
+package com.payment.service;
+
+import com.payment.domain.WebhookDeliveryStatus;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Delivers queued {@code webhook_delivery} rows to merchant endpoints.
+ * <p>
+ * Each of {@code webhook.delivery.workers} workers claims up to {@code batch-size} due PENDING rows in one
+ * statement: {@code SELECT ... FOR UPDATE SKIP LOCKED} picks rows no other node is claiming, and the same
+ * statement increments {@code attempts} and moves {@code next_attempt_at} forward by {@code lease-ms}, so the
+ * claim is committed before anything is sent and other nodes skip the rows until the lease runs out. The
+ * claimed rows are POSTed concurrently over one shared non-blocking {@link HttpClient}, at most
+ * {@code max-connections-per-host} at a time per endpoint host; a worker claims again as soon as its
+ * deliveries answer, so throughput grows with the number of workers and nodes.
+ * <p>
+ * Outcomes are written back in one JDBC batch per claim. The attempt number acts as a fencing token: a result
+ * only applies if the row is still PENDING at that attempt, so a node whose lease ran out cannot overwrite a
+ * newer attempt. A failed attempt is retried after exponential backoff with jitter until {@code max-attempts},
+ * then marked FAILED. Delivery is at least once; receivers deduplicate on the {@code Webhook-Id} header.
+ * <p>
+ * The endpoint URL is checked against {@link WebhookUrlPolicy} again before each attempt, since its host may
+ * resolve differently than when it was registered. A URL the policy rejects fails the delivery permanently; a
+ * host that does not resolve is retried.
+ */
+@Component
+@ConditionalOnProperty(name = "webhook.delivery.enabled", havingValue = "true", matchIfMissing = true)
+public class WebhookDeliveryEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookDeliveryEngine.class);
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int MAX_ERROR_LENGTH = 512;
+
+    // MATERIALIZED: as a subquery in the UPDATE, the locking SELECT can be re-run when a row it returned was
+    // changed concurrently, and then claims more than LIMIT rows
+    private static final String CLAIM_SQL = """
+            WITH due AS MATERIALIZED (
+                SELECT id FROM webhook_delivery
+                WHERE status = 'PENDING' AND next_attempt_at <= now()
+                ORDER BY next_attempt_at
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED)
+            UPDATE webhook_delivery d
+            SET attempts = d.attempts + 1, last_attempt_at = now(), next_attempt_at = now() + ? * interval '1 millisecond'
+            FROM due, merchant m
+            WHERE d.id = due.id AND m.id = d.merchant_id
+            RETURNING d.id, d.attempts, d.payload, m.webhook_url, m.webhook_secret
+            """;
+
+    private static final String RECORD_SQL = """
+            UPDATE webhook_delivery
+            SET status = ?, next_attempt_at = now() + ? * interval '1 millisecond', last_error = ?
+            WHERE id = ? AND attempts = ? AND status = 'PENDING'
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final WebhookUrlPolicy urlPolicy;
+    private final HttpClient httpClient;
+    private final Executor handoff;
+    private final int workerCount;
+    private final int batchSize;
+    private final int maxConnectionsPerHost;
+    private final Duration timeout;
+    private final long leaseMs;
+    private final int maxAttempts;
+    private final long backoffInitialMs;
+    private final long backoffMaxMs;
+    private final long pollMs;
+    private final boolean virtualThreads;
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+    private final Queue<Outcome> outcomes = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Timer delivered;
+    private final Timer retried;
+    private final Timer failed;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    public WebhookDeliveryEngine(JdbcTemplate jdbcTemplate,
+                                 MeterRegistry meterRegistry,
+                                 WebhookUrlPolicy urlPolicy,
+                                 @Value("${webhook.delivery.workers:2}") int workerCount,
+                                 @Value("${webhook.delivery.batch-size:50}") int batchSize,
+                                 @Value("${webhook.delivery.max-connections-per-host:20}") int maxConnectionsPerHost,
+                                 @Value("${webhook.delivery.timeout-ms:10000}") long timeoutMs,
+                                 @Value("${webhook.delivery.lease-ms:60000}") long leaseMs,
+                                 @Value("${webhook.delivery.max-attempts:8}") int maxAttempts,
+                                 @Value("${webhook.delivery.backoff.initial-ms:30000}") long backoffInitialMs,
+                                 @Value("${webhook.delivery.backoff.max-ms:3600000}") long backoffMaxMs,
+                                 @Value("${webhook.delivery.poll-ms:500}") long pollMs,
+                                 @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.urlPolicy = urlPolicy;
+        this.workerCount = workerCount;
+        this.batchSize = batchSize;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.leaseMs = leaseMs;
+        this.maxAttempts = maxAttempts;
+        this.backoffInitialMs = backoffInitialMs;
+        this.backoffMaxMs = backoffMaxMs;
+        this.pollMs = pollMs;
+        this.virtualThreads = virtualThreads;
+        // HTTP/1.1, so the per-host limit on concurrent requests is also a limit on connections per host
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+        this.handoff = virtualThreads
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newCachedThreadPool(Thread.ofPlatform().name("webhook-delivery-handoff-", 0).daemon().factory());
+        Gauge.builder("webhook.delivery.in-flight", inFlight, AtomicInteger::get)
+                .description("Webhook deliveries claimed and not yet answered")
+                .register(meterRegistry);
+        this.delivered = deliveryTimer(meterRegistry, "delivered");
+        this.retried = deliveryTimer(meterRegistry, "retried");
+        this.failed = deliveryTimer(meterRegistry, "failed");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        Thread.Builder builder = virtualThreads
+                ? Thread.ofVirtual().name("webhook-delivery-", 0)
+                : Thread.ofPlatform().name("webhook-delivery-", 0).daemon();
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(builder.start(new Worker()));
+        }
+        log.info("Webhook delivery started: workers={}, batchSize={}, maxConnectionsPerHost={}",
+                workerCount, batchSize, maxConnectionsPerHost);
+    }
+
+    /**
+     * Stops claiming. Deliveries still in flight are claimed again by any node once their lease runs out.
+     */
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        workers.clear();
+        recordOutcomes();
+    }
+
+    /**
+     * Delay before retrying after failed attempt {@code attempt} (1-based): the exponential delay
+     * {@code initialMs * 2^(attempt - 1)}, capped at {@code maxMs}, of which the upper half is random, so
+     * deliveries that failed together do not retry together.
+     *
+     * @param random uniformly distributed in [0, 1)
+     */
+    public static long backoffMs(int attempt, long initialMs, long maxMs, double random) {
+        long delay = initialMs << Math.min(attempt - 1, 30);
+        if (delay <= 0 || delay > maxMs) {
+            delay = maxMs;
+        }
+        return delay / 2 + (long) (random * (delay - delay / 2));
+    }
+
+    /**
+     * Value of the {@code Webhook-Signature} header: {@code t=<unix seconds>,v1=<hex HMAC-SHA256>} over
+     * {@code <unix seconds>.<body>} keyed with the endpoint secret. The timestamp lets receivers reject replays.
+     */
+    public static String signature(String secret, long timestamp, String body) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+            byte[] digest = mac.doFinal((timestamp + "." + body).getBytes(StandardCharsets.UTF_8));
+            return "t=" + timestamp + ",v1=" + HexFormat.of().formatHex(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    private record Claimed(long id, int attempt, String payload, String url, String secret, long leaseDeadline) {
+    }
+
+    private record Outcome(long id, int attempt, WebhookDeliveryStatus status, long retryInMs, String error) {
+    }
+
+    private final class Worker implements Runnable {
+
+        private final Semaphore capacity = new Semaphore(batchSize);
+        private final int refill = Math.max(1, batchSize / 2);
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    // Claim once half the batch has answered rather than one row per answer, unless that takes
+                    // longer than a poll interval
+                    int permits;
+                    if (capacity.tryAcquire(refill, pollMs, TimeUnit.MILLISECONDS)) {
+                        permits = refill + capacity.drainPermits();
+                    } else {
+                        capacity.acquire();
+                        permits = 1 + capacity.drainPermits();
+                    }
+                    recordOutcomes();
+                    List<Claimed> claimed = claim(permits);
+                    capacity.release(permits - claimed.size());
+                    for (Claimed delivery : claimed) {
+                        dispatch(delivery, capacity);
+                    }
+                    if (claimed.size() < permits) {
+                        // Caught up; anything due later, or just queued, is picked up on the next poll
+                        Thread.sleep(pollMs);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    log.warn("Webhook delivery claim failed: {}", e.getMessage());
+                    sleepQuietly();
+                }
+            }
+        }
+
+        private void sleepQuietly() {
+            try {
+                Thread.sleep(pollMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private List<Claimed> claim(int limit) {
+        long leaseDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(leaseMs);
+        return jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> new Claimed(rs.getLong("id"), rs.getInt("attempts"),
+                rs.getString("payload"), rs.getString("webhook_url"), rs.getString("webhook_secret"), leaseDeadline),
+                limit, leaseMs);
+    }
+
+    private void dispatch(Claimed delivery, Semaphore capacity) {
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        if (delivery.url() == null) {
+            finish(delivery, capacity, start, null, "No webhook endpoint configured", false);
+            return;
+        }
+        URI uri;
+        try {
+            uri = urlPolicy.check(delivery.url());
+        } catch (IllegalArgumentException e) {
+            finish(delivery, capacity, start, null, e.getMessage(), false);
+            return;
+        } catch (UnknownHostException e) {
+            finish(delivery, capacity, start, null, "Webhook URL host cannot be resolved: " + e.getMessage(), true);
+            return;
+        }
+        Host host = hosts.computeIfAbsent(uri.getScheme() + "://" + uri.getAuthority(), key -> new Host());
+        host.submit(() -> send(delivery, uri, host, capacity, start));
+    }
+
+    private void send(Claimed delivery, URI uri, Host host, Semaphore capacity, long start) {
+        if (System.nanoTime() > delivery.leaseDeadline()) {
+            // Waited for the host past the lease; another node may already own this attempt
+            host.done();
+            inFlight.decrementAndGet();
+            capacity.release();
+            return;
+        }
+        long timestamp = System.currentTimeMillis() / 1000;
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(uri)
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .header("Webhook-Id", String.valueOf(delivery.id()))
+                    .header("Webhook-Signature", signature(delivery.secret(), timestamp, delivery.payload()))
+                    .POST(HttpRequest.BodyPublishers.ofString(delivery.payload()))
+                    .build();
+        } catch (RuntimeException e) {
+            host.done();
+            finish(delivery, capacity, start, null, "Cannot build webhook request: " + e, false);
+            return;
+        }
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    host.done();
+                    if (error != null) {
+                        finish(delivery, capacity, start, null, error.toString(), true);
+                    } else if (response.statusCode() / 100 == 2) {
+                        finish(delivery, capacity, start, response.statusCode(), null, true);
+                    } else {
+                        finish(delivery, capacity, start, response.statusCode(), "HTTP " + response.statusCode(), true);
+                    }
+                });
+    }
+
+    private void finish(Claimed delivery, Semaphore capacity, long start, Integer statusCode, String error,
+                        boolean retryable) {
+        long nanos = System.nanoTime() - start;
+        Outcome outcome;
+        if (error == null) {
+            delivered.record(nanos, TimeUnit.NANOSECONDS);
+            outcome = new Outcome(delivery.id(), delivery.attempt(), WebhookDeliveryStatus.DELIVERED, 0, null);
+        } else if (retryable && delivery.attempt() < maxAttempts) {
+            retried.record(nanos, TimeUnit.NANOSECONDS);
+            long retryInMs = backoffMs(delivery.attempt(), backoffInitialMs, backoffMaxMs,
+                    ThreadLocalRandom.current().nextDouble());
+            outcome = new Outcome(delivery.id(), delivery.attempt(), WebhookDeliveryStatus.PENDING, retryInMs, error);
+            log.debug("Webhook delivery failed, retrying in {} ms: id={}, attempt={}, error={}",
+                    retryInMs, delivery.id(), delivery.attempt(), error);
+        } else {
+            failed.record(nanos, TimeUnit.NANOSECONDS);
+            outcome = new Outcome(delivery.id(), delivery.attempt(), WebhookDeliveryStatus.FAILED, 0, error);
+            log.warn("Webhook delivery failed permanently: id={}, attempts={}, status={}, error={}",
+                    delivery.id(), delivery.attempt(), statusCode, error);
+        }
+        outcomes.add(outcome);
+        inFlight.decrementAndGet();
+        capacity.release();
+    }
+
+    private void recordOutcomes() {
+        List<Outcome> batch = new ArrayList<>();
+        for (Outcome outcome; (outcome = outcomes.poll()) != null; ) {
+            batch.add(outcome);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(RECORD_SQL, batch, batch.size(), (ps, outcome) -> {
+                ps.setString(1, outcome.status().name());
+                ps.setLong(2, outcome.retryInMs());
+                ps.setString(3, truncate(outcome.error()));
+                ps.setLong(4, outcome.id());
+                ps.setInt(5, outcome.attempt());
+            });
+        } catch (RuntimeException e) {
+            // Leases run out and the deliveries are claimed again
+            log.warn("Recording {} webhook delivery outcomes failed: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    private static String truncate(String error) {
+        return error == null || error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    /**
+     * Deliveries to one endpoint host: at most {@code max-connections-per-host} in flight, the rest queued
+     * without holding a thread and started as earlier ones answer. The next one starts on {@code handoff}, not
+     * inside {@code done()}: a queued send that gives up at once (lease expired) calls {@code done()} again, which
+     * would otherwise recurse through the whole queue on one stack.
+     */
+    private final class Host {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Queue<Runnable> waiting = new ArrayDeque<>();
+        private int active;
+
+        void submit(Runnable send) {
+            lock.lock();
+            try {
+                if (active >= maxConnectionsPerHost) {
+                    waiting.add(send);
+                    return;
+                }
+                active++;
+            } finally {
+                lock.unlock();
+            }
+            send.run();
+        }
+
+        void done() {
+            Runnable next;
+            lock.lock();
+            try {
+                next = waiting.poll();
+                if (next == null) {
+                    active--;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (next != null) {
+                handoff.execute(next);
+            }
+        }
+    }
+
+    private static Timer deliveryTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("webhook.delivery")
+                .description("Time from claiming a webhook delivery until the merchant endpoint answered")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,69 @@
+package com.payment.service;
+
+import com.payment.domain.Merchant;
+import com.payment.repository.MerchantRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.net.UnknownHostException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * The endpoint each merchant receives payment intent webhooks on. Setting it issues a new signing secret, so
+ * deliveries already queued are signed with the new one. The URL must pass {@link WebhookUrlPolicy}.
+ */
+@Service
+public class WebhookEndpointService {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Base64.Encoder BASE64 = Base64.getUrlEncoder().withoutPadding();
+
+    private final MerchantRepository merchantRepository;
+    private final AuditService auditService;
+    private final WebhookUrlPolicy urlPolicy;
+
+    public WebhookEndpointService(MerchantRepository merchantRepository, AuditService auditService,
+                                  WebhookUrlPolicy urlPolicy) {
+        this.merchantRepository = merchantRepository;
+        this.auditService = auditService;
+        this.urlPolicy = urlPolicy;
+    }
+
+    public record WebhookEndpoint(String url, String secret) {
+    }
+
+    /**
+     * @throws IllegalArgumentException when the URL is not allowed or its host does not resolve
+     */
+    @Transactional
+    public WebhookEndpoint set(Long merchantId, String url) {
+        try {
+            urlPolicy.check(url);
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Webhook URL host cannot be resolved");
+        }
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        String secret = "whsec_" + BASE64.encodeToString(bytes);
+
+        Merchant merchant = merchant(merchantId);
+        merchant.setWebhookUrl(url);
+        merchant.setWebhookSecret(secret);
+        auditService.log(merchantId, "WEBHOOK_ENDPOINT_SET", "url=" + url);
+        return new WebhookEndpoint(url, secret);
+    }
+
+    @Transactional
+    public void remove(Long merchantId) {
+        Merchant merchant = merchant(merchantId);
+        merchant.setWebhookUrl(null);
+        merchant.setWebhookSecret(null);
+        auditService.log(merchantId, "WEBHOOK_ENDPOINT_REMOVED", null);
+    }
+
+    private Merchant merchant(Long merchantId) {
+        return merchantRepository.findById(merchantId)
+                .orElseThrow(() -> new IllegalArgumentException("Merchant not found"));
+    }
+}
@@ -0,0 +1,95 @@
+package com.payment.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.util.Locale;
+
+/**
+ * Which URLs merchants may have webhooks POSTed to. Endpoint URLs are merchant-supplied, so without this any
+ * merchant could make the server send signed requests to itself, to cloud metadata services (169.254.169.254) or to
+ * hosts on the internal network. URLs must be https, and every address their host resolves to must be public:
+ * not loopback, link-local, private (RFC 1918, IPv6 unique local), carrier-grade NAT, multicast or unspecified.
+ * <p>
+ * Checked when the endpoint is set and again before every delivery, since the host's DNS records can change in
+ * between. The delivery's own connection resolves the host through the same JVM address cache moments later.
+ * {@code webhook.endpoint.require-https} and {@code allow-private-addresses} relax the policy for local
+ * development and tests.
+ */
+@Component
+public class WebhookUrlPolicy {
+
+    private final boolean requireHttps;
+    private final boolean allowPrivateAddresses;
+
+    public WebhookUrlPolicy(@Value("${webhook.endpoint.require-https:true}") boolean requireHttps,
+                            @Value("${webhook.endpoint.allow-private-addresses:false}") boolean allowPrivateAddresses) {
+        this.requireHttps = requireHttps;
+        this.allowPrivateAddresses = allowPrivateAddresses;
+    }
+
+    /**
+     * Parses {@code url} and checks it against the policy, resolving its host.
+     *
+     * @throws IllegalArgumentException when the URL is malformed or not allowed
+     * @throws UnknownHostException     when the host does not resolve (possibly temporarily)
+     */
+    public URI check(String url) throws UnknownHostException {
+        URI uri;
+        try {
+            uri = new URI(url);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Webhook URL is malformed: " + e.getMessage());
+        }
+        String scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase(Locale.ROOT);
+        if (!scheme.equals("https") && (requireHttps || !scheme.equals("http"))) {
+            throw new IllegalArgumentException(requireHttps ? "Webhook URL must use https" : "Webhook URL must use http(s)");
+        }
+        if (uri.getHost() == null) {
+            throw new IllegalArgumentException("Webhook URL has no host");
+        }
+        if (uri.getRawUserInfo() != null) {
+            throw new IllegalArgumentException("Webhook URL must not contain credentials");
+        }
+        if (!allowPrivateAddresses) {
+            for (InetAddress address : InetAddress.getAllByName(uri.getHost())) {
+                if (!isPublic(address)) {
+                    throw new IllegalArgumentException("Webhook URL host resolves to a non-public address");
+                }
+            }
+        }
+        return uri;
+    }
+
+    static boolean isPublic(InetAddress address) {
+        if (address.isAnyLocalAddress() || address.isLoopbackAddress() || address.isLinkLocalAddress()
+                || address.isSiteLocalAddress() || address.isMulticastAddress()) {
+            return false;
+        }
+        byte[] bytes = address.getAddress();
+        if (address instanceof Inet4Address) {
+            int first = bytes[0] & 0xff;
+            int second = bytes[1] & 0xff;
+            return first != 0                                    // 0.0.0.0/8 "this network"
+                    && !(first == 100 && (second & 0xc0) == 64)   // 100.64.0.0/10 carrier-grade NAT
+                    && !(first == 192 && second == 0 && (bytes[2] & 0xff) == 0) // 192.0.0.0/24 protocol assignments
+                    && !(first == 198 && (second & 0xfe) == 18)   // 198.18.0.0/15 benchmarking
+                    && first < 240;                               // 240.0.0.0/4 reserved, broadcast
+        }
+        if (address instanceof Inet6Address) {
+            // IPv4-mapped addresses arrive as Inet4Address; IPv4-compatible ones (::/96) would bypass the checks above
+            boolean ipv4Compatible = true;
+            for (int i = 0; i < 12; i++) {
+                ipv4Compatible &= bytes[i] == 0;
+            }
+            return !ipv4Compatible && (bytes[0] & 0xfe) != 0xfc; // fc00::/7 unique local
+        }
+        return false;
+    }
+}
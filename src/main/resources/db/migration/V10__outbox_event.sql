@@ -0,0 +1,12 @@
+-- Transactional outbox: one row per payment intent state change, inserted in the transaction that makes the
+-- change and deleted once OutboxRelay has published it. Rows carry everything the relay publishes, so there is no
+-- foreign key and the relay never joins.
+CREATE TABLE outbox_event (
+    id BIGSERIAL PRIMARY KEY,
+    payment_intent_id UUID NOT NULL,
+    merchant_id BIGINT NOT NULL,
+    event_type VARCHAR(64) NOT NULL,
+    intent_version BIGINT NOT NULL,
+    payload TEXT NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
@@ -0,0 +1,153 @@
+-- Hash-partition payment_intent and payment_event on merchant_id into 16 partitions each, so every index, and every
+-- vacuum, covers one sixteenth of the merchants instead of all of them. Every query names the merchant, so the
+-- planner reads a single partition; the one lookup that does not know the merchant, by provider_payment_id, goes
+-- through payment_intent_provider_id first. Both tables use the same modulus, so an intent's events live in the
+-- partition with the same number as the intent.
+--
+-- A primary key or unique index on a partitioned table must include the partition key: payment_intent's key becomes
+-- (id, merchant_id), and the tables referencing it carry merchant_id so their foreign keys can name it. Ids are
+-- UUIDv7 from the application, and an id is only ever looked up together with its merchant.
+--
+-- The copy holds an exclusive lock on both tables for its duration; run it in a maintenance window on large tables.
+-- Changing the partition count later means another copy.
+
+ALTER TABLE payment_event DROP CONSTRAINT payment_event_payment_intent_id_fkey;
+ALTER TABLE webhook_delivery DROP CONSTRAINT webhook_delivery_payment_intent_id_fkey;
+-- V5 created this one while idempotency_record_legacy still held the default name
+ALTER TABLE idempotency_record DROP CONSTRAINT idempotency_record_payment_intent_id_fkey1;
+
+ALTER TABLE payment_intent RENAME TO payment_intent_legacy;
+ALTER TABLE payment_event RENAME TO payment_event_legacy;
+DROP INDEX idx_payment_intent_merchant_created;
+DROP INDEX idx_payment_intent_merchant_status_created;
+DROP INDEX idx_payment_intent_idempotency_create;
+DROP INDEX idx_payment_intent_idempotency_confirm;
+DROP INDEX idx_payment_intent_provider;
+DROP INDEX idx_payment_intent_processing;
+DROP INDEX idx_payment_event_intent;
+DROP INDEX idx_payment_event_created;
+ALTER SEQUENCE payment_event_id_seq OWNED BY NONE;
+
+CREATE TABLE payment_intent (
+    id UUID NOT NULL,
+    merchant_id BIGINT NOT NULL REFERENCES merchant(id) ON DELETE CASCADE,
+    amount DECIMAL(19, 2) NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    status VARCHAR(32) NOT NULL,
+    description VARCHAR(500),
+    customer_reference VARCHAR(255),
+    idempotency_key_create VARCHAR(255),
+    idempotency_key_confirm VARCHAR(255),
+    provider_payment_id VARCHAR(255),
+    failure_code VARCHAR(64),
+    failure_message VARCHAR(500),
+    version BIGINT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, merchant_id)
+) PARTITION BY HASH (merchant_id);
+
+-- Merchant-scoped events; the merchant is copied from the intent
+CREATE TABLE payment_event (
+    id BIGINT NOT NULL DEFAULT nextval('payment_event_id_seq'),
+    merchant_id BIGINT NOT NULL,
+    payment_intent_id UUID NOT NULL,
+    type VARCHAR(64) NOT NULL,
+    payload TEXT,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, merchant_id),
+    FOREIGN KEY (payment_intent_id, merchant_id) REFERENCES payment_intent(id, merchant_id) ON DELETE CASCADE
+) PARTITION BY HASH (merchant_id);
+
+ALTER SEQUENCE payment_event_id_seq OWNED BY payment_event.id;
+
+DO $$
+BEGIN
+    FOR i IN 0..15 LOOP
+        EXECUTE format('CREATE TABLE payment_intent_p%s PARTITION OF payment_intent '
+                       'FOR VALUES WITH (MODULUS 16, REMAINDER %s)', lpad(i::text, 2, '0'), i);
+        EXECUTE format('CREATE TABLE payment_event_p%s PARTITION OF payment_event '
+                       'FOR VALUES WITH (MODULUS 16, REMAINDER %s)', lpad(i::text, 2, '0'), i);
+    END LOOP;
+END;
+$$;
+
+INSERT INTO payment_intent (id, merchant_id, amount, currency, status, description, customer_reference,
+                            idempotency_key_create, idempotency_key_confirm, provider_payment_id, failure_code,
+                            failure_message, version, created_at, updated_at)
+SELECT id, merchant_id, amount, currency, status, description, customer_reference,
+       idempotency_key_create, idempotency_key_confirm, provider_payment_id, failure_code,
+       failure_message, version, created_at, updated_at
+FROM payment_intent_legacy;
+
+INSERT INTO payment_event (id, merchant_id, payment_intent_id, type, payload, created_at)
+SELECT e.id, i.merchant_id, e.payment_intent_id, e.type, e.payload, e.created_at
+FROM payment_event_legacy e JOIN payment_intent_legacy i ON i.id = e.payment_intent_id;
+
+-- Same indexes as before, now per partition (V7, V8, V8_1). The unique ones already led with merchant_id.
+CREATE INDEX idx_payment_intent_merchant_created ON payment_intent(merchant_id, created_at DESC, id DESC);
+CREATE INDEX idx_payment_intent_merchant_status_created ON payment_intent(merchant_id, status, created_at DESC, id DESC);
+CREATE UNIQUE INDEX idx_payment_intent_idempotency_create ON payment_intent(merchant_id, idempotency_key_create)
+    WHERE idempotency_key_create IS NOT NULL;
+CREATE UNIQUE INDEX idx_payment_intent_idempotency_confirm ON payment_intent(merchant_id, idempotency_key_confirm)
+    WHERE idempotency_key_confirm IS NOT NULL;
+CREATE INDEX idx_payment_intent_processing ON payment_intent(updated_at) WHERE status = 'PROCESSING';
+-- An intent's timeline, in order. Nothing reads events by created_at alone, so that index is not recreated.
+CREATE INDEX idx_payment_event_intent ON payment_event(payment_intent_id, created_at);
+
+-- Global lookup for provider callbacks, which know the provider's id but not the merchant. Its primary key keeps
+-- provider_payment_id unique across merchants, as the old unique index did. Maintained by the triggers below, so
+-- every write path, including batched JPA updates, keeps it in step within the same transaction.
+CREATE TABLE payment_intent_provider_id (
+    provider_payment_id VARCHAR(255) PRIMARY KEY,
+    payment_intent_id UUID NOT NULL,
+    merchant_id BIGINT NOT NULL,
+    FOREIGN KEY (payment_intent_id, merchant_id) REFERENCES payment_intent(id, merchant_id) ON DELETE CASCADE
+);
+
+-- For the cascade when intents are deleted with their merchant
+CREATE INDEX idx_payment_intent_provider_id_intent ON payment_intent_provider_id(payment_intent_id);
+
+CREATE FUNCTION index_payment_intent_provider_id() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'UPDATE' AND OLD.provider_payment_id IS NOT NULL THEN
+        DELETE FROM payment_intent_provider_id WHERE provider_payment_id = OLD.provider_payment_id;
+    END IF;
+    IF NEW.provider_payment_id IS NOT NULL THEN
+        INSERT INTO payment_intent_provider_id (provider_payment_id, payment_intent_id, merchant_id)
+        VALUES (NEW.provider_payment_id, NEW.id, NEW.merchant_id);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_payment_intent_provider_id_insert
+    AFTER INSERT ON payment_intent
+    FOR EACH ROW WHEN (NEW.provider_payment_id IS NOT NULL)
+    EXECUTE FUNCTION index_payment_intent_provider_id();
+
+-- Hibernate updates every column, so the WHEN clause keeps the function off the path of ordinary updates
+CREATE TRIGGER trg_payment_intent_provider_id_update
+    AFTER UPDATE OF provider_payment_id ON payment_intent
+    FOR EACH ROW WHEN (OLD.provider_payment_id IS DISTINCT FROM NEW.provider_payment_id)
+    EXECUTE FUNCTION index_payment_intent_provider_id();
+
+INSERT INTO payment_intent_provider_id (provider_payment_id, payment_intent_id, merchant_id)
+SELECT provider_payment_id, id, merchant_id FROM payment_intent WHERE provider_payment_id IS NOT NULL;
+
+-- Tables referencing an intent name its merchant too
+ALTER TABLE webhook_delivery ADD COLUMN merchant_id BIGINT;
+UPDATE webhook_delivery d SET merchant_id = i.merchant_id FROM payment_intent_legacy i WHERE i.id = d.payment_intent_id;
+ALTER TABLE webhook_delivery
+    ALTER COLUMN merchant_id SET NOT NULL,
+    ADD FOREIGN KEY (payment_intent_id, merchant_id) REFERENCES payment_intent(id, merchant_id) ON DELETE CASCADE;
+
+ALTER TABLE idempotency_record
+    ADD FOREIGN KEY (payment_intent_id, merchant_id) REFERENCES payment_intent(id, merchant_id)
+        ON DELETE SET NULL (payment_intent_id);
+
+DROP TABLE payment_event_legacy;
+DROP TABLE payment_intent_legacy;
+
+ANALYZE payment_intent;
+ANALYZE payment_event;
@@ -0,0 +1,3 @@
+-- The scheme is read from key_hash itself ('$hmac-sha256$v1$...' or BCrypt's '$2a$...'), so hash_scheme (V3) was
+-- written but never read, and only had to be kept in step with key_hash.
+ALTER TABLE api_key DROP COLUMN hash_scheme;
@@ -0,0 +1,3 @@
+-- ApiKey: track which scheme produced key_hash so BCrypt rows can be upgraded lazily.
+-- HMAC_SHA256 hashes are stored as '$hmac-sha256$v1$<base64url digest>'.
+ALTER TABLE api_key ADD COLUMN hash_scheme VARCHAR(32) NOT NULL DEFAULT 'BCRYPT';
@@ -0,0 +1,52 @@
+-- Rate limit tiers and per-endpoint budgets.
+-- A policy row applies either to a tier or to a single merchant (override); see RateLimitPolicyTable.
+ALTER TABLE merchant ADD COLUMN rate_limit_tier VARCHAR(32) NOT NULL DEFAULT 'STANDARD';
+
+CREATE TABLE rate_limit_policy (
+    id BIGSERIAL PRIMARY KEY,
+    tier VARCHAR(32),
+    merchant_id BIGINT REFERENCES merchant(id) ON DELETE CASCADE,
+    endpoint VARCHAR(32) NOT NULL,
+    requests_per_window INT NOT NULL CHECK (requests_per_window > 0),
+    window_seconds INT NOT NULL CHECK (window_seconds > 0),
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CHECK ((tier IS NULL) <> (merchant_id IS NULL))
+);
+
+CREATE UNIQUE INDEX idx_rate_limit_policy_tier ON rate_limit_policy(tier, endpoint) WHERE tier IS NOT NULL;
+CREATE UNIQUE INDEX idx_rate_limit_policy_merchant ON rate_limit_policy(merchant_id, endpoint) WHERE merchant_id IS NOT NULL;
+
+-- Single-row version counter, bumped by triggers so nodes can poll cheaply for policy changes
+CREATE TABLE rate_limit_policy_version (
+    id SMALLINT PRIMARY KEY CHECK (id = 1),
+    version BIGINT NOT NULL
+);
+INSERT INTO rate_limit_policy_version (id, version) VALUES (1, 1);
+
+CREATE FUNCTION bump_rate_limit_policy_version() RETURNS TRIGGER AS $$
+BEGIN
+    UPDATE rate_limit_policy_version SET version = version + 1 WHERE id = 1;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_rate_limit_policy_version
+    AFTER INSERT OR UPDATE OR DELETE ON rate_limit_policy
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_rate_limit_policy_version();
+
+CREATE TRIGGER trg_merchant_rate_limit_tier_version
+    AFTER UPDATE OF rate_limit_tier ON merchant
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_rate_limit_policy_version();
+
+-- Default budgets: cheap reads get their own, larger budgets so they never starve confirms
+INSERT INTO rate_limit_policy (tier, endpoint, requests_per_window, window_seconds) VALUES
+    ('STANDARD', 'CREATE', 60, 60),
+    ('STANDARD', 'CONFIRM', 30, 60),
+    ('STANDARD', 'CANCEL', 30, 60),
+    ('STANDARD', 'GET', 600, 60),
+    ('STANDARD', 'LIST', 60, 60),
+    ('PREMIUM', 'CREATE', 600, 60),
+    ('PREMIUM', 'CONFIRM', 300, 60),
+    ('PREMIUM', 'CANCEL', 300, 60),
+    ('PREMIUM', 'GET', 6000, 60),
+    ('PREMIUM', 'LIST', 600, 60);
@@ -0,0 +1,96 @@
+-- Range-partition idempotency_record by day (UTC) on created_at, so expired records are dropped a partition
+-- at a time instead of deleted row by row. See IdempotencyPartitionMaintenance.
+--
+-- A unique index on a partitioned table must include the partition key, so the old partial unique indexes
+-- could only enforce uniqueness per created_at and are replaced by plain lookup indexes. Duplicates are still
+-- rejected: every record is written in the same transaction that sets payment_intent.idempotency_key_create
+-- or idempotency_key_confirm, and those columns have unique indexes.
+
+ALTER TABLE idempotency_record RENAME TO idempotency_record_legacy;
+ALTER INDEX idempotency_record_pkey RENAME TO idempotency_record_legacy_pkey;
+DROP INDEX idx_idempotency_create;
+DROP INDEX idx_idempotency_confirm;
+ALTER SEQUENCE idempotency_record_id_seq OWNED BY NONE;
+
+CREATE TABLE idempotency_record (
+    id BIGINT NOT NULL DEFAULT nextval('idempotency_record_id_seq'),
+    merchant_id BIGINT NOT NULL REFERENCES merchant(id) ON DELETE CASCADE,
+    idempotency_key VARCHAR(255) NOT NULL,
+    operation VARCHAR(32) NOT NULL,
+    payment_intent_id UUID REFERENCES payment_intent(id) ON DELETE SET NULL,
+    payload_hash VARCHAR(64) NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE idempotency_record_id_seq OWNED BY idempotency_record.id;
+
+CREATE INDEX idx_idempotency_create ON idempotency_record(merchant_id, idempotency_key, created_at)
+    WHERE operation = 'CREATE';
+CREATE INDEX idx_idempotency_confirm ON idempotency_record(merchant_id, idempotency_key, payment_intent_id, created_at)
+    WHERE operation = 'CONFIRM';
+
+-- Catches rows for days without a partition, so inserts never fail if maintenance falls behind
+CREATE TABLE idempotency_record_default PARTITION OF idempotency_record DEFAULT;
+
+-- Creates the daily partitions from start_day through end_day, and drops partitions that end at or before
+-- cutoff. Rows that landed in the default partition are deleted once expired. Returns the number of
+-- partitions dropped. Serialized across nodes by an advisory lock.
+CREATE FUNCTION maintain_idempotency_record_partitions(start_day DATE, end_day DATE, cutoff TIMESTAMPTZ)
+RETURNS INT AS $$
+DECLARE
+    d DATE;
+    partition_name TEXT;
+    dropped INT := 0;
+BEGIN
+    IF NOT pg_try_advisory_xact_lock(hashtext('maintain_idempotency_record_partitions')) THEN
+        RETURN 0;
+    END IF;
+
+    d := start_day;
+    WHILE d <= end_day LOOP
+        partition_name := 'idempotency_record_p' || to_char(d, 'YYYYMMDD');
+        IF to_regclass(partition_name) IS NULL THEN
+            IF EXISTS (SELECT 1 FROM idempotency_record_default
+                       WHERE created_at >= d::timestamp AT TIME ZONE 'UTC'
+                         AND created_at < (d + 1)::timestamp AT TIME ZONE 'UTC') THEN
+                RAISE NOTICE 'Skipping partition %: rows for that day are in the default partition', partition_name;
+            ELSE
+                EXECUTE format('CREATE TABLE %I PARTITION OF idempotency_record FOR VALUES FROM (%L) TO (%L)',
+                               partition_name,
+                               d::timestamp AT TIME ZONE 'UTC',
+                               (d + 1)::timestamp AT TIME ZONE 'UTC');
+            END IF;
+        END IF;
+        d := d + 1;
+    END LOOP;
+
+    FOR partition_name IN
+        SELECT c.relname FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'idempotency_record'::regclass
+          AND c.relname ~ '^idempotency_record_p[0-9]{8}$'
+          AND (to_date(substring(c.relname FROM '[0-9]{8}$'), 'YYYYMMDD') + 1)::timestamp AT TIME ZONE 'UTC' <= cutoff
+    LOOP
+        EXECUTE format('ALTER TABLE idempotency_record DETACH PARTITION %I', partition_name);
+        EXECUTE format('DROP TABLE %I', partition_name);
+        dropped := dropped + 1;
+    END LOOP;
+
+    DELETE FROM idempotency_record_default WHERE created_at < cutoff;
+    RETURN dropped;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Partitions for existing rows and the next week, then move the rows over
+SELECT maintain_idempotency_record_partitions(
+    LEAST(COALESCE((SELECT MIN(created_at AT TIME ZONE 'UTC')::date FROM idempotency_record_legacy), CURRENT_DATE),
+          CURRENT_DATE),
+    CURRENT_DATE + 7,
+    '-infinity');
+
+INSERT INTO idempotency_record (id, merchant_id, idempotency_key, operation, payment_intent_id, payload_hash, created_at)
+SELECT id, merchant_id, idempotency_key, operation, payment_intent_id, payload_hash, created_at
+FROM idempotency_record_legacy;
+
+DROP TABLE idempotency_record_legacy;
@@ -0,0 +1,8 @@
+-- Let Hibernate allocate ids from the sequences 50 at a time (pooled optimizer) instead of using IDENTITY,
+-- which forces an immediate INSERT per entity and disables JDBC batching. Inserts that rely on the column
+-- default still draw one value each; the pooled optimizer only hands out ids below the values it fetched,
+-- so the two never overlap.
+ALTER SEQUENCE payment_event_id_seq INCREMENT BY 50;
+ALTER SEQUENCE webhook_delivery_id_seq INCREMENT BY 50;
+ALTER SEQUENCE audit_log_id_seq INCREMENT BY 50;
+ALTER SEQUENCE idempotency_record_id_seq INCREMENT BY 50;
@@ -0,0 +1,4 @@
+-- Keyset pagination of a merchant's intents, newest first: (created_at, id) is the cursor.
+-- Supersedes idx_payment_intent_merchant, which is a prefix of it.
+CREATE INDEX idx_payment_intent_merchant_created ON payment_intent(merchant_id, created_at DESC, id DESC);
+DROP INDEX idx_payment_intent_merchant;
@@ -0,0 +1,3 @@
+-- ProviderChargeReconciler looks for intents left PROCESSING longer than payment.provider.reconcile.after-ms.
+-- Only PROCESSING rows are indexed, so the index stays as small as the number of charges in flight.
+CREATE INDEX idx_payment_intent_processing ON payment_intent(updated_at) WHERE status = 'PROCESSING';
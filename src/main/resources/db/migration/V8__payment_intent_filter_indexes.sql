@@ -0,0 +1,9 @@
+-- Status-filtered lists: equality on merchant_id and status, then the list order, so a status filter with or
+-- without a created_at range is a single index range scan that needs no sort. Unfiltered lists use
+-- idx_payment_intent_merchant_created.
+CREATE INDEX idx_payment_intent_merchant_status_created ON payment_intent(merchant_id, status, created_at DESC, id DESC);
+
+-- Single-column indexes no query relies on any more: status has a handful of values, and created_at is only
+-- ever filtered within one merchant. Dropping them saves two index writes per insert and status change.
+DROP INDEX idx_payment_intent_status;
+DROP INDEX idx_payment_intent_created;
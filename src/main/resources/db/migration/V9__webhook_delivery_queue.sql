@@ -0,0 +1,14 @@
+-- Merchant webhook endpoint; deliveries are signed with the secret (HMAC-SHA256)
+ALTER TABLE merchant
+    ADD COLUMN webhook_url VARCHAR(2048),
+    ADD COLUMN webhook_secret VARCHAR(64);
+
+-- webhook_delivery becomes a work queue: PENDING rows are claimed once next_attempt_at has passed. A claim moves
+-- next_attempt_at forward by the lease, so other nodes skip the row while it is being sent.
+ALTER TABLE webhook_delivery
+    ADD COLUMN payload TEXT,
+    ADD COLUMN next_attempt_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    ADD COLUMN last_error VARCHAR(512);
+
+-- Only pending rows are ever claimed; delivered and failed ones stay out of the index
+CREATE INDEX idx_webhook_delivery_due ON webhook_delivery(next_attempt_at) WHERE status = 'PENDING';
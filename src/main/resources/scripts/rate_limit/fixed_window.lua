@@ -0,0 +1,27 @@
+-- Fixed-window counter: grant up to ARGV[3] permits from a budget of ARGV[1] per ARGV[2] seconds.
+-- Returns {granted, remaining, reset_ms, retry_after_ms}.
+local key = KEYS[1]
+local limit = tonumber(ARGV[1])
+local window_ms = tonumber(ARGV[2]) * 1000
+local requested = tonumber(ARGV[3])
+
+local count = tonumber(redis.call('GET', key) or '0')
+local granted = math.max(math.min(requested, limit - count), 0)
+if granted > 0 then
+    count = redis.call('INCRBY', key, granted)
+end
+
+-- Also repairs counters left without a TTL by the old INCR + EXPIRE sequence.
+local ttl = redis.call('PTTL', key)
+if ttl < 0 then
+    if count > 0 then
+        redis.call('PEXPIRE', key, window_ms)
+    end
+    ttl = window_ms
+end
+
+local retry_after = 0
+if granted < requested then
+    retry_after = ttl
+end
+return {granted, math.max(limit - count, 0), ttl, retry_after}
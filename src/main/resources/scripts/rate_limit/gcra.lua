@@ -0,0 +1,25 @@
+-- Generic cell rate algorithm: ARGV[1] permits per ARGV[2] seconds, bursting up to the full limit.
+-- Stores only the theoretical arrival time (TAT) in milliseconds. Grants up to ARGV[3] permits.
+-- Returns {granted, remaining, reset_ms, retry_after_ms}.
+local key = KEYS[1]
+local limit = tonumber(ARGV[1])
+local window_ms = tonumber(ARGV[2]) * 1000
+local requested = tonumber(ARGV[3])
+local interval = window_ms / limit
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + tonumber(time[2]) / 1000
+
+local tat = math.max(tonumber(redis.call('GET', key) or '0'), now)
+local available = math.floor((now + window_ms - tat) / interval)
+local granted = math.max(math.min(requested, available), 0)
+if granted > 0 then
+    tat = tat + granted * interval
+    redis.call('SET', key, tostring(tat), 'PX', math.ceil(tat - now))
+end
+
+local retry_after = 0
+if granted < requested then
+    retry_after = math.ceil(tat + interval - window_ms - now)
+end
+return {granted, available - granted, math.ceil(tat - now), retry_after}
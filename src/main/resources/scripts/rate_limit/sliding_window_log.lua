@@ -0,0 +1,33 @@
+-- Sliding-window log: one sorted-set entry per permit, scored by grant time in microseconds.
+-- Grants up to ARGV[3] permits if fewer than ARGV[1] were granted in the last ARGV[2] seconds.
+-- Returns {granted, remaining, reset_ms, retry_after_ms}.
+local key = KEYS[1]
+local limit = tonumber(ARGV[1])
+local window_us = tonumber(ARGV[2]) * 1000000
+local requested = tonumber(ARGV[3])
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+
+redis.call('ZREMRANGEBYSCORE', key, '-inf', now - window_us)
+local count = redis.call('ZCARD', key)
+local granted = math.max(math.min(requested, limit - count), 0)
+for i = 1, granted do
+    -- count + i is unique among live entries, so members never collide within one microsecond
+    redis.call('ZADD', key, now, string.format('%.0f-%d', now, count + i))
+end
+count = count + granted
+if count > 0 then
+    redis.call('PEXPIRE', key, math.ceil(window_us / 1000))
+end
+
+local reset = 0
+local oldest = redis.call('ZRANGE', key, 0, 0, 'WITHSCORES')
+if oldest[2] then
+    reset = math.ceil((tonumber(oldest[2]) + window_us - now) / 1000)
+end
+local retry_after = 0
+if granted < requested then
+    retry_after = reset
+end
+return {granted, limit - count, reset, retry_after}
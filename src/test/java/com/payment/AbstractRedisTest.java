@@ -0,0 +1,46 @@
+package com.payment;
+
+import org.junit.jupiter.api.AfterEach;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base for tests that only need Redis, without the Spring context or Postgres.
+ */
+@Testcontainers
+public abstract class AbstractRedisTest {
+
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+
+    private final List<LettuceConnectionFactory> connectionFactories = new ArrayList<>();
+
+    /**
+     * Opens a separate connection to the shared Redis, e.g. one per simulated node.
+     */
+    protected StringRedisTemplate newRedisTemplate() {
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(redis.getHost(), redis.getMappedPort(6379)));
+        factory.afterPropertiesSet();
+        factory.start();
+        connectionFactories.add(factory);
+        StringRedisTemplate template = new StringRedisTemplate(factory);
+        template.afterPropertiesSet();
+        return template;
+    }
+
+    @AfterEach
+    void closeConnections() {
+        connectionFactories.forEach(LettuceConnectionFactory::destroy);
+        connectionFactories.clear();
+    }
+}
@@ -0,0 +1,71 @@
+package com.payment;
+
+import com.payment.security.ApiKeyCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class ApiKeyCacheTest {
+
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    private final ApiKeyCache cache = new ApiKeyCache(redisTemplate, new SimpleMeterRegistry(), 100, 300);
+
+    @Test
+    void digest_isStableAndDoesNotExposeKey() {
+        String digest = cache.digest("pk_secret");
+        assertEquals(digest, cache.digest("pk_secret"));
+        assertNotEquals(digest, cache.digest("pk_other"));
+        assertFalse(digest.contains("secret"));
+    }
+
+    @Test
+    void put_thenGet_returnsMerchant() {
+        String digest = cache.digest("pk_secret");
+        assertNull(cache.getMerchantId(digest));
+        cache.put(digest, 1L, 42L, cache.stamp());
+        assertEquals(42L, cache.getMerchantId(digest));
+    }
+
+    @Test
+    void evict_removesEntriesForApiKey() {
+        String digest = cache.digest("pk_secret");
+        cache.put(digest, 1L, 42L, cache.stamp());
+        cache.evict(1L);
+        assertNull(cache.getMerchantId(digest));
+    }
+
+    @Test
+    void put_afterConcurrentRevocation_isDiscarded() {
+        String digest = cache.digest("pk_secret");
+        long stamp = cache.stamp();
+        cache.evict(1L);
+        cache.put(digest, 1L, 42L, stamp);
+        assertNull(cache.getMerchantId(digest));
+    }
+
+    @Test
+    void evictOnCommit_withoutTransaction_evictsAndBroadcasts() {
+        String digest = cache.digest("pk_secret");
+        cache.put(digest, 7L, 42L, cache.stamp());
+        cache.evictOnCommit(7L);
+        assertNull(cache.getMerchantId(digest));
+        verify(redisTemplate).convertAndSend(ApiKeyCache.REVOCATION_CHANNEL, "7");
+    }
+
+    @Test
+    void revocationMessage_fromOtherNode_evicts() {
+        String digest = cache.digest("pk_secret");
+        cache.put(digest, 7L, 42L, cache.stamp());
+        cache.onMessage(new DefaultMessage(
+                ApiKeyCache.REVOCATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "7".getBytes(StandardCharsets.UTF_8)), null);
+        assertNull(cache.getMerchantId(digest));
+    }
+}
@@ -0,0 +1,34 @@
+package com.payment;
+
+import com.payment.security.ApiKeyHasher;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApiKeyHasherTest {
+
+    private final ApiKeyHasher hasher = new ApiKeyHasher("test-pepper");
+
+    @Test
+    void hmacHash_isVersionedAndVerifies() {
+        String hash = hasher.hash("pk_secret");
+        assertTrue(hash.startsWith("$hmac-sha256$v1$"));
+        assertTrue(hasher.matches("pk_secret", hash));
+        assertFalse(hasher.matches("pk_other", hash));
+        assertFalse(hasher.needsUpgrade(hash));
+    }
+
+    @Test
+    void hmacHash_dependsOnPepper() {
+        assertNotEquals(hasher.hash("pk_secret"), new ApiKeyHasher("other-pepper").hash("pk_secret"));
+    }
+
+    @Test
+    void legacyBcryptHash_verifiesAndNeedsUpgrade() {
+        String hash = new BCryptPasswordEncoder().encode("pk_secret");
+        assertTrue(hasher.matches("pk_secret", hash));
+        assertFalse(hasher.matches("pk_other", hash));
+        assertTrue(hasher.needsUpgrade(hash));
+    }
+}
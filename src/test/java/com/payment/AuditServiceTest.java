@@ -0,0 +1,117 @@
+package com.payment;
+
+import com.payment.repository.AuditLogRepository;
+import com.payment.service.AuditLogWriter;
+import com.payment.service.AuditService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AuditServiceTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Integer> batchSizes = new ArrayList<>();
+
+    private AuditLogWriter writer(int capacity, int batchSize, long flushIntervalMs) {
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(),
+                ArgumentMatchers.<ParameterizedPreparedStatementSetter<AuditLogWriter.Entry>>any()))
+                .thenAnswer(inv -> {
+                    batchSizes.add(((Collection<?>) inv.getArgument(1)).size());
+                    return new int[0][];
+                });
+        return new AuditLogWriter(jdbcTemplate, meterRegistry, capacity, batchSize, flushIntervalMs);
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    @Test
+    void log_insideTransaction_writesOneBatchBeforeCommit() {
+        AuditService auditService = new AuditService(mock(AuditLogRepository.class), writer(10, 10, 10));
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        auditService.log(1L, "PAYMENT_INTENT_CREATED", "a");
+        auditService.log(1L, "PAYMENT_CONFIRMED", "b");
+        assertTrue(batchSizes.isEmpty());
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        assertEquals(1, synchronizations.size());
+        synchronizations.forEach(s -> s.beforeCommit(false));
+        synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        assertEquals(List.of(2), batchSizes);
+        assertEquals(1, meterRegistry.get("audit.flush").tag("mode", "sync").timer().count());
+    }
+
+    @Test
+    void log_rolledBack_writesNothing() {
+        AuditService auditService = new AuditService(mock(AuditLogRepository.class), writer(10, 10, 10));
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        auditService.log(1L, "PAYMENT_CANCELED", "a");
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertTrue(batchSizes.isEmpty());
+    }
+
+    @Test
+    void log_withoutTransaction_writesImmediately() {
+        AuditService auditService = new AuditService(mock(AuditLogRepository.class), writer(10, 10, 10));
+
+        auditService.log(null, "MERCHANT_REGISTERED", "a");
+
+        assertEquals(List.of(1), batchSizes);
+    }
+
+    @Test
+    void logAsync_flushesQueuedEntriesInBatches() throws Exception {
+        AuditLogWriter writer = writer(100, 4, 50);
+        AuditService auditService = new AuditService(mock(AuditLogRepository.class), writer);
+
+        for (int i = 0; i < 10; i++) {
+            auditService.logAsync(1L, "MERCHANT_LOGIN", "n=" + i);
+        }
+        assertEquals(10.0, meterRegistry.get("audit.queue.depth").gauge().value());
+        writer.start();
+        writer.stop();
+
+        assertEquals(10, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 4), batchSizes.toString());
+        assertEquals(0, writer.queueDepth());
+    }
+
+    @Test
+    void logAsync_queueFull_dropsAndCounts() {
+        AuditLogWriter writer = writer(2, 10, 10);
+        AuditService auditService = new AuditService(mock(AuditLogRepository.class), writer);
+
+        for (int i = 0; i < 5; i++) {
+            auditService.logAsync(1L, "MERCHANT_LOGIN", "n=" + i);
+        }
+
+        assertEquals(2, writer.queueDepth());
+        assertEquals(3.0, meterRegistry.get("audit.dropped").counter().count());
+    }
+}
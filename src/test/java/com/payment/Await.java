@@ -0,0 +1,40 @@
+package com.payment;
+
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Polls for work that finishes on another thread: provider results, relays, deliveries, closed streams.
+ */
+public final class Await {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final long POLL_MS = 20;
+
+    private Await() {
+    }
+
+    /**
+     * Returns once {@code condition} holds, checking every 20 ms; fails the test after 10 s.
+     */
+    public static void until(String description, BooleanSupplier condition) {
+        until(description, TIMEOUT, condition);
+    }
+
+    public static void until(String description, Duration timeout, BooleanSupplier condition) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline > 0) {
+                fail("Timed out after " + timeout.toMillis() + " ms waiting for " + description);
+            }
+            try {
+                Thread.sleep(POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for " + description, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.payment;
+
+import com.payment.service.CanonicalJsonDigest;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CanonicalJsonDigestTest {
+
+    @Test
+    void fieldOrderAndWhitespace_doNotMatter() {
+        assertEquals(hash("{\"amount\":100,\"currency\":\"SEK\"}"),
+                hash(" {\n  \"currency\" : \"SEK\",\n  \"amount\" : 100\n}"));
+    }
+
+    @Test
+    void nullMembers_areDropped_andNumbersNormalized() {
+        assertEquals(hash("{\"amount\":10,\"currency\":\"SEK\"}"),
+                hash("{\"amount\":10.00,\"currency\":\"SEK\",\"description\":null}"));
+        assertEquals(hash("{\"amount\":10}"), hash("{\"amount\":1e1}"));
+    }
+
+    @Test
+    void differentValues_andArrayOrder_matter() {
+        assertNotEquals(hash("{\"amount\":100}"), hash("{\"amount\":200}"));
+        assertNotEquals(hash("{\"amount\":\"100\"}"), hash("{\"amount\":100}"));
+        assertNotEquals(hash("{\"tags\":[1,2]}"), hash("{\"tags\":[2,1]}"));
+    }
+
+    @Test
+    void nestedObjects_areCanonicalized() {
+        assertEquals(hash("{\"a\":{\"y\":1,\"x\":[{\"q\":true,\"p\":false}]},\"b\":\"\\u00e9\"}"),
+                hash("{\"b\":\"é\",\"a\":{\"x\":[{\"p\":false,\"q\":true}],\"y\":1}}"));
+    }
+
+    @Test
+    void byteAtATimeFeeding_matchesWholeDocument() {
+        byte[] json = "{\"currency\":\"SEK\",\"description\":\"Kaffe ☕\",\"amount\":12.50}".getBytes(StandardCharsets.UTF_8);
+        CanonicalJsonDigest digest = new CanonicalJsonDigest();
+        for (int i = 0; i < json.length; i++) {
+            assertNull(digest.hex());
+            digest.update(json, i, 1);
+        }
+        assertEquals(CanonicalJsonDigest.hash(json), digest.hex());
+        assertEquals(64, digest.hex().length());
+    }
+
+    @Test
+    void invalidJson_hasNoDigest() {
+        assertNull(hash("{\"amount\":"));
+        assertNull(hash("not json"));
+    }
+
+    private static String hash(String json) {
+        return CanonicalJsonDigest.hash(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,108 @@
+package com.payment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.domain.PaymentStatus;
+import com.payment.dto.PaymentIntentResponse;
+import com.payment.repository.PaymentIntentRepository;
+import com.payment.service.IdempotencyCache;
+import com.payment.service.PaymentIntentCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class IdempotencyCacheTest {
+
+    private final Map<String, String> store = new HashMap<>();
+    private final PaymentIntentCache paymentIntentCache = mock(PaymentIntentCache.class);
+
+    @SuppressWarnings("unchecked")
+    private IdempotencyCache newCache(boolean failing) {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> ops = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(ops);
+        if (failing) {
+            when(ops.get(anyString())).thenThrow(new RedisConnectionFailureException("down"));
+        } else {
+            when(ops.get(anyString())).thenAnswer(inv -> store.get(inv.getArgument(0, String.class)));
+            doAnswer(inv -> store.put(inv.getArgument(0), inv.getArgument(1)))
+                    .when(ops).set(anyString(), anyString(), any(Duration.class));
+        }
+        return new IdempotencyCache(redisTemplate, new ObjectMapper().findAndRegisterModules(), paymentIntentCache,
+                mock(PaymentIntentRepository.class), true, 60, Duration.ofHours(24));
+    }
+
+    @Test
+    void put_thenFind_roundTripsResponseAndHash() {
+        IdempotencyCache cache = newCache(false);
+        PaymentIntentResponse response = response();
+        cache.put(1L, "CREATE", "key-1", null, "hash", response);
+
+        Optional<IdempotencyCache.Replay> replay = cache.find(1L, "CREATE", "key-1", null);
+        assertTrue(replay.isPresent());
+        assertEquals("hash", replay.get().payloadHash());
+        assertEquals(response, replay.get().response());
+    }
+
+    @Test
+    void find_answersWithTheIntentsCurrentState() {
+        IdempotencyCache cache = newCache(false);
+        PaymentIntentResponse original = response();
+        cache.put(1L, "CREATE", "key-1", null, "hash", original);
+        PaymentIntentResponse current = new PaymentIntentResponse(original.id(), PaymentStatus.SUCCEEDED, original.amount(),
+                original.currency(), null, null, "pay_1", null, null, original.createdAt(), original.updatedAt().plusSeconds(1));
+        when(paymentIntentCache.get(eq(1L), eq(original.id()), any()))
+                .thenReturn(Optional.of(new PaymentIntentCache.Entry(1L, 2, current)));
+
+        Optional<IdempotencyCache.Replay> replay = cache.find(1L, "CREATE", "key-1", null);
+        assertEquals("hash", replay.orElseThrow().payloadHash());
+        assertEquals(current, replay.get().response());
+    }
+
+    @Test
+    void find_servesATerminalResponse_withoutLookingUpTheIntent() {
+        IdempotencyCache cache = newCache(false);
+        PaymentIntentResponse original = response();
+        PaymentIntentResponse canceled = new PaymentIntentResponse(original.id(), PaymentStatus.CANCELED, original.amount(),
+                original.currency(), null, null, null, null, null, original.createdAt(), original.updatedAt());
+        cache.put(1L, "CONFIRM", "key-1", original.id(), "hash", canceled);
+
+        assertEquals(canceled, cache.find(1L, "CONFIRM", "key-1", original.id()).orElseThrow().response());
+        verifyNoInteractions(paymentIntentCache);
+    }
+
+    @Test
+    void entries_areScopedByMerchantOperationAndIntent() {
+        IdempotencyCache cache = newCache(false);
+        UUID intentId = UUID.randomUUID();
+        cache.put(1L, "CONFIRM", "key-1", intentId, "hash", response());
+
+        assertTrue(cache.find(1L, "CONFIRM", "key-1", intentId).isPresent());
+        assertTrue(cache.find(2L, "CONFIRM", "key-1", intentId).isEmpty());
+        assertTrue(cache.find(1L, "CONFIRM", "key-1", UUID.randomUUID()).isEmpty());
+        assertTrue(cache.find(1L, "CREATE", "key-1", null).isEmpty());
+    }
+
+    @Test
+    void redisFailure_isTreatedAsMiss() {
+        assertTrue(newCache(true).find(1L, "CREATE", "key-1", null).isEmpty());
+    }
+
+    private static PaymentIntentResponse response() {
+        Instant now = Instant.parse("2024-01-01T00:00:00Z");
+        return new PaymentIntentResponse(UUID.randomUUID(), PaymentStatus.CREATED, new BigDecimal("10.00"), "SEK",
+                null, null, null, null, null, now, now);
+    }
+}
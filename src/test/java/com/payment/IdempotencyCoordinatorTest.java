@@ -0,0 +1,115 @@
+package com.payment;
+
+import com.payment.domain.PaymentStatus;
+import com.payment.dto.PaymentIntentResponse;
+import com.payment.exception.IdempotencyConflictException;
+import com.payment.service.IdempotencyCache;
+import com.payment.service.IdempotencyCoordinator;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class IdempotencyCoordinatorTest {
+
+    private final IdempotencyCache cache = mock(IdempotencyCache.class);
+    private final ValueOperations<String, String> ops = mockValueOperations();
+    private final IdempotencyCoordinator coordinator = new IdempotencyCoordinator(cache, redisTemplate(), 10_000, 200, 5);
+
+    @Test
+    void concurrentDuplicates_runWorkOnce() throws Exception {
+        when(cache.find(any(), any(), any(), any())).thenReturn(Optional.empty());
+        when(ops.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+        PaymentIntentResponse response = response();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        List<Future<PaymentIntentResponse>> results = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return coordinator.execute(1L, "CREATE", "key-1", null, "hash", () -> {
+                    calls.incrementAndGet();
+                    sleep(100);
+                    return new IdempotencyCache.Replay("hash", response);
+                });
+            }));
+        }
+        start.countDown();
+        for (Future<PaymentIntentResponse> result : results) {
+            assertEquals(response, result.get());
+        }
+        executor.shutdown();
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void cachedReplay_withDifferentPayload_conflicts() {
+        when(cache.find(any(), any(), any(), any()))
+                .thenReturn(Optional.of(new IdempotencyCache.Replay("other-hash", response())));
+        assertThrows(IdempotencyConflictException.class, () ->
+                coordinator.execute(1L, "CREATE", "key-1", null, "hash", () -> fail("work must not run")));
+    }
+
+    @Test
+    void leaseHeldElsewhere_waitsForCachedResult() {
+        PaymentIntentResponse response = response();
+        when(ops.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        when(cache.find(any(), any(), any(), any()))
+                .thenReturn(Optional.empty(), Optional.empty(), Optional.of(new IdempotencyCache.Replay("hash", response)));
+
+        assertEquals(response, coordinator.execute(1L, "CREATE", "key-1", null, "hash",
+                () -> fail("work must not run while another node holds the lease")));
+    }
+
+    @Test
+    void leaseHeldElsewhere_timesOutWithConflict() {
+        when(ops.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        when(cache.find(any(), any(), any(), any())).thenReturn(Optional.empty());
+
+        assertThrows(IdempotencyConflictException.class, () ->
+                coordinator.execute(1L, "CREATE", "key-1", null, "hash", () -> fail("work must not run")));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ValueOperations<String, String> mockValueOperations() {
+        return mock(ValueOperations.class);
+    }
+
+    private StringRedisTemplate redisTemplate() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        when(redisTemplate.opsForValue()).thenReturn(ops);
+        return redisTemplate;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static PaymentIntentResponse response() {
+        Instant now = Instant.parse("2024-01-01T00:00:00Z");
+        return new PaymentIntentResponse(UUID.randomUUID(), PaymentStatus.CREATED, new BigDecimal("10.00"), "SEK",
+                null, null, null, null, null, now, now);
+    }
+}
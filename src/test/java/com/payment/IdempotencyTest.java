@@ -2,14 +2,24 @@ package com.payment;
 
 import com.payment.repository.IdempotencyRecordRepository;
 import com.payment.service.IdempotencyService;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
 
 class IdempotencyTest {
 
-    private final IdempotencyService idempotencyService = new IdempotencyService(
-            org.mockito.Mockito.mock(IdempotencyRecordRepository.class));
+    private final IdempotencyRecordRepository repository = mock(IdempotencyRecordRepository.class);
+    private final IdempotencyService idempotencyService = new IdempotencyService(repository, Duration.ofHours(24));
 
     @Test
     void samePayload_producesSameHash() {
@@ -33,4 +43,36 @@ class IdempotencyTest {
         assertEquals(hash1, hash2);
         assertEquals(64, hash1.length());
     }
+
+    @Test
+    void lookups_ignoreRecordsOlderThanRetention() {
+        ArgumentCaptor<Instant> cutoff = ArgumentCaptor.forClass(Instant.class);
+        when(repository.findByMerchantIdAndIdempotencyKeyAndOperationAndCreatedAtAfter(
+                eq(1L), eq("key"), eq("CREATE"), cutoff.capture())).thenReturn(Optional.empty());
+
+        Instant before = Instant.now();
+        assertTrue(idempotencyService.findCreateRecord(1L, "key").isEmpty());
+
+        Instant expected = before.minus(Duration.ofHours(24));
+        assertFalse(cutoff.getValue().isBefore(expected));
+        assertTrue(cutoff.getValue().isBefore(expected.plusSeconds(5)));
+    }
+
+    @Test
+    void keyTaken_matchesOnlyTheIdempotencyKeyIndexes() {
+        assertTrue(IdempotencyService.isCreateKeyTaken(violation("payment_intent_p03_merchant_id_idempotency_key_create_idx")));
+        assertTrue(IdempotencyService.isCreateKeyTaken(violation("idx_payment_intent_idempotency_create")));
+        assertFalse(IdempotencyService.isConfirmKeyTaken(violation("payment_intent_p03_merchant_id_idempotency_key_create_idx")));
+        assertTrue(IdempotencyService.isConfirmKeyTaken(violation("payment_intent_p15_merchant_id_idempotency_key_confirm_idx")));
+
+        assertFalse(IdempotencyService.isCreateKeyTaken(violation("payment_intent_p03_pkey")));
+        assertFalse(IdempotencyService.isCreateKeyTaken(violation("payment_intent_provider_id_pkey")));
+        assertFalse(IdempotencyService.isCreateKeyTaken(violation(null)));
+        assertFalse(IdempotencyService.isCreateKeyTaken(new DataIntegrityViolationException("value too long")));
+    }
+
+    private static DataIntegrityViolationException violation(String constraint) {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("duplicate key", new SQLException("duplicate key", "23505"), constraint));
+    }
 }
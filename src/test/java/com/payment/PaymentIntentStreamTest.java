@@ -0,0 +1,174 @@
+package com.payment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.domain.PaymentStatus;
+import com.payment.service.PaymentIntentStream;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentIntentStreamTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PaymentIntentStream stream = new PaymentIntentStream(null, objectMapper, meterRegistry,
+            2, 60_000, 60_000, 60_000);
+
+    /**
+     * Records what would be written to the response; optionally blocks every send after the subscription comment
+     * until released, like a client that stopped reading.
+     */
+    private static class RecordingEmitter extends SseEmitter {
+        final List<String> sent = new CopyOnWriteArrayList<>();
+        final CountDownLatch release;
+        volatile boolean completed;
+
+        RecordingEmitter(boolean blocked) {
+            this.release = new CountDownLatch(blocked ? 1 : 0);
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            try {
+                if (!sent.isEmpty()) {
+                    release.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sent.add(builder.build().stream().map(d -> d.getData().toString()).collect(Collectors.joining()));
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+
+        String await(int count) {
+            Await.until(count + " events sent", () -> sent.size() >= count);
+            assertEquals(count, sent.size(), "sent: " + sent);
+            return sent.get(count - 1);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        stream.stop();
+    }
+
+    @Test
+    void changes_areSentToTheMerchantsSubscribersOnly() throws Exception {
+        RecordingEmitter subscriber = new RecordingEmitter(false);
+        RecordingEmitter otherMerchant = new RecordingEmitter(false);
+        stream.subscribe(1L, subscriber);
+        stream.subscribe(2L, otherMerchant);
+        assertTrue(subscriber.await(1).contains(":subscribed"));
+        UUID intentId = UUID.randomUUID();
+
+        stream.onMessage(message(1L, new PaymentIntentStream.StatusChange(intentId, 1L, PaymentStatus.SUCCEEDED, 2,
+                "{\"status\":\"SUCCEEDED\"}")), null);
+
+        String event = subscriber.await(2);
+        assertTrue(event.contains("id:" + intentId + ":2\n"), event);
+        assertTrue(event.contains("event:payment_intent.succeeded\n"), event);
+        assertTrue(event.contains("data:{\"status\":\"SUCCEEDED\"}"), event);
+        Thread.sleep(50);
+        assertEquals(1, otherMerchant.sent.size());
+    }
+
+    @Test
+    void subscriberThatOverflowsItsBuffer_isEvicted_withoutDelayingOthers() throws Exception {
+        RecordingEmitter slow = new RecordingEmitter(true);
+        RecordingEmitter fast = new RecordingEmitter(false);
+        stream.subscribe(1L, slow);
+        stream.subscribe(1L, fast);
+        fast.await(1);
+
+        // The slow subscriber's writer is stuck on the first event; two more fill its buffer, the fourth overflows it
+        for (int i = 0; i < 4; i++) {
+            stream.onMessage(message(1L, new PaymentIntentStream.StatusChange(UUID.randomUUID(), 1L,
+                    PaymentStatus.CREATED, 0, "{}")), null);
+            fast.await(2 + i);
+        }
+
+        assertTrue(slow.completed);
+        assertFalse(fast.completed);
+        assertEquals(1, stream.subscriberCount(1L));
+        assertEquals(1.0, meterRegistry.get("payment_intent.stream.evicted").counter().count());
+        slow.release.countDown();
+        assertTrue(slow.sent.size() <= 2);
+    }
+
+    @Test
+    void subscribersStalledOnTheSocket_doNotHoldUpAHealthySubscriber() throws Exception {
+        // One more stalled client than the fixed writer pool this stream used to have
+        List<RecordingEmitter> stalled = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            RecordingEmitter emitter = new RecordingEmitter(true);
+            stream.subscribe(1L, emitter);
+            stalled.add(emitter);
+        }
+        RecordingEmitter healthy = new RecordingEmitter(false);
+        stream.subscribe(1L, healthy);
+
+        for (int i = 0; i < 2; i++) {
+            stream.onMessage(message(1L, new PaymentIntentStream.StatusChange(UUID.randomUUID(), 1L,
+                    PaymentStatus.CREATED, 0, "{}")), null);
+            healthy.await(2 + i);
+        }
+
+        assertFalse(healthy.completed);
+        assertEquals(10, stream.subscriberCount(1L));
+        stalled.forEach(emitter -> emitter.release.countDown());
+    }
+
+    @Test
+    void subscriberWhoseWriteStalls_isEvictedAfterTheWriteTimeout() throws Exception {
+        PaymentIntentStream shortTimeout = new PaymentIntentStream(null, objectMapper, meterRegistry,
+                16, 100, 60_000, 60_000);
+        try {
+            RecordingEmitter stalled = new RecordingEmitter(true);
+            RecordingEmitter healthy = new RecordingEmitter(false);
+            shortTimeout.subscribe(1L, stalled);
+            shortTimeout.subscribe(1L, healthy);
+
+            shortTimeout.onMessage(message(1L, new PaymentIntentStream.StatusChange(UUID.randomUUID(), 1L,
+                    PaymentStatus.CREATED, 0, "{}")), null);
+
+            Await.until("stalled subscriber evicted", () -> stalled.completed);
+            assertEquals(1, shortTimeout.subscriberCount(1L));
+            assertFalse(healthy.completed);
+            assertEquals(2, healthy.sent.size());
+            assertEquals(1.0, meterRegistry.get("payment_intent.stream.evicted").counter().count());
+            stalled.release.countDown();
+        } finally {
+            shortTimeout.stop();
+        }
+    }
+
+    @Test
+    void messagesForMerchantsWithoutLocalSubscribers_areSkippedBeforeParsing() {
+        stream.onMessage(new DefaultMessage("payment_intent:status:9".getBytes(StandardCharsets.UTF_8),
+                "not json".getBytes(StandardCharsets.UTF_8)), null);
+        stream.onMessage(new DefaultMessage("payment_intent:status:x".getBytes(StandardCharsets.UTF_8),
+                "[]".getBytes(StandardCharsets.UTF_8)), null);
+        assertEquals(0, stream.subscriberCount(9L));
+    }
+
+    private DefaultMessage message(Long merchantId, PaymentIntentStream.StatusChange change) throws Exception {
+        return new DefaultMessage(("payment_intent:status:" + merchantId).getBytes(StandardCharsets.UTF_8),
+                objectMapper.writeValueAsBytes(List.of(change)));
+    }
+}
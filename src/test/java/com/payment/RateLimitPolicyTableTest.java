@@ -0,0 +1,81 @@
+package com.payment;
+
+import com.payment.domain.RateLimitEndpoint;
+import com.payment.domain.RateLimitPolicy;
+import com.payment.service.RateLimitPolicyTable;
+import com.payment.service.RateLimitPolicyTable.Budget;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitPolicyTableTest {
+
+    private static final Budget FALLBACK = new Budget(60, 60);
+
+    private final RateLimitPolicyTable table = RateLimitPolicyTable.compile(List.of(
+                    tierPolicy("STANDARD", RateLimitEndpoint.CREATE, 30),
+                    tierPolicy("PREMIUM", RateLimitEndpoint.CREATE, 300),
+                    tierPolicy("PREMIUM", RateLimitEndpoint.GET, 3000),
+                    merchantPolicy(7L, RateLimitEndpoint.CREATE, 5),
+                    merchantPolicy(8L, RateLimitEndpoint.CONFIRM, 1)),
+            Map.of(7L, "PREMIUM"), FALLBACK);
+
+    @Test
+    void unknownMerchant_usesDefaultTierThenFallback() {
+        assertEquals(new Budget(30, 60), table.resolve(1L, RateLimitEndpoint.CREATE));
+        assertEquals(FALLBACK, table.resolve(1L, RateLimitEndpoint.GET));
+        assertEquals(FALLBACK, table.resolve(null, RateLimitEndpoint.OTHER));
+    }
+
+    @Test
+    void merchantOverride_winsOverTier_andInheritsTheRest() {
+        assertEquals(new Budget(5, 60), table.resolve(7L, RateLimitEndpoint.CREATE));
+        assertEquals(new Budget(3000, 60), table.resolve(7L, RateLimitEndpoint.GET));
+        assertEquals(FALLBACK, table.resolve(7L, RateLimitEndpoint.LIST));
+    }
+
+    @Test
+    void merchantOverride_withoutTier_inheritsDefaultTier() {
+        assertEquals(new Budget(1, 60), table.resolve(8L, RateLimitEndpoint.CONFIRM));
+        assertEquals(new Budget(30, 60), table.resolve(8L, RateLimitEndpoint.CREATE));
+    }
+
+    @Test
+    void tierWithoutPolicies_fallsBackToDefaultTier() {
+        RateLimitPolicyTable compiled = RateLimitPolicyTable.compile(
+                List.of(tierPolicy("STANDARD", RateLimitEndpoint.CREATE, 30)), Map.of(9L, "GOLD"), FALLBACK);
+        assertEquals(new Budget(30, 60), compiled.resolve(9L, RateLimitEndpoint.CREATE));
+        assertEquals(new Budget(30, 60), compiled.resolveTier("GOLD", RateLimitEndpoint.CREATE));
+    }
+
+    @Test
+    void classify_mapsPaymentIntentRoutes() {
+        assertEquals(RateLimitEndpoint.CREATE, RateLimitEndpoint.classify("POST", "/api/payment_intents"));
+        assertEquals(RateLimitEndpoint.LIST, RateLimitEndpoint.classify("GET", "/api/payment_intents/"));
+        assertEquals(RateLimitEndpoint.GET, RateLimitEndpoint.classify("GET", "/api/payment_intents/pi_123"));
+        assertEquals(RateLimitEndpoint.CONFIRM, RateLimitEndpoint.classify("POST", "/api/payment_intents/pi_123/confirm"));
+        assertEquals(RateLimitEndpoint.CANCEL, RateLimitEndpoint.classify("POST", "/api/payment_intents/pi_123/cancel"));
+        assertEquals(RateLimitEndpoint.BATCH_UPDATE, RateLimitEndpoint.classify("POST", "/api/payment_intents/batch/confirm"));
+        assertEquals(RateLimitEndpoint.BATCH_UPDATE, RateLimitEndpoint.classify("POST", "/api/payment_intents/batch/cancel"));
+        assertEquals(RateLimitEndpoint.OTHER, RateLimitEndpoint.classify("DELETE", "/api/payment_intents/pi_123"));
+        assertEquals(RateLimitEndpoint.OTHER, RateLimitEndpoint.classify("GET", "/api/apikeys"));
+    }
+
+    private static RateLimitPolicy tierPolicy(String tier, RateLimitEndpoint endpoint, int limit) {
+        RateLimitPolicy policy = new RateLimitPolicy();
+        policy.setTier(tier);
+        policy.setEndpoint(endpoint);
+        policy.setRequestsPerWindow(limit);
+        policy.setWindowSeconds(60);
+        return policy;
+    }
+
+    private static RateLimitPolicy merchantPolicy(Long merchantId, RateLimitEndpoint endpoint, int limit) {
+        RateLimitPolicy policy = tierPolicy(null, endpoint, limit);
+        policy.setMerchantId(merchantId);
+        return policy;
+    }
+}
@@ -0,0 +1,51 @@
+package com.payment;
+
+import com.payment.config.VirtualThreadPinningMonitor;
+import com.payment.config.VirtualThreadPinningMonitor.Path;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class VirtualThreadPinningMonitorTest {
+
+    @Test
+    void classify_attributesStackToInnermostKnownLibrary() {
+        assertEquals(Path.JDBC, VirtualThreadPinningMonitor.classify(List.of(
+                "java.lang.Object", "org.postgresql.core.v3.QueryExecutorImpl", "com.payment.service.PaymentIntentService")));
+        assertEquals(Path.REDIS, VirtualThreadPinningMonitor.classify(List.of(
+                "java.util.concurrent.CompletableFuture", "io.lettuce.core.protocol.AsyncCommand",
+                "com.zaxxer.hikari.pool.HikariPool")));
+        assertEquals(Path.BCRYPT, VirtualThreadPinningMonitor.classify(List.of(
+                "java.security.SecureRandom", "org.springframework.security.crypto.bcrypt.BCrypt")));
+        assertEquals(Path.OTHER, VirtualThreadPinningMonitor.classify(List.of("java.lang.Thread")));
+        assertEquals(Path.OTHER, VirtualThreadPinningMonitor.classify(List.of()));
+    }
+
+    @Test
+    void recordsVirtualThreadBlockedInsideSynchronized() throws Exception {
+        VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor(new SimpleMeterRegistry(), 10);
+        monitor.start();
+        try {
+            Object lock = new Object();
+            Thread.ofVirtual().start(() -> {
+                synchronized (lock) {
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }).join();
+
+            // JFR hands events to the stream about once a second
+            Await.until("pinned event", () -> monitor.counts().get(Path.OTHER) > 0);
+            assertEquals(1, monitor.counts().get(Path.OTHER));
+            assertEquals(0, monitor.counts().get(Path.JDBC));
+        } finally {
+            monitor.stop();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.payment;
+
+import com.payment.service.WebhookDeliveryEngine;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebhookDeliveryEngineTest {
+
+    @Test
+    void backoff_doublesPerAttempt_withRandomUpperHalf() {
+        assertEquals(500, WebhookDeliveryEngine.backoffMs(1, 1_000, 60_000, 0.0));
+        assertEquals(999, WebhookDeliveryEngine.backoffMs(1, 1_000, 60_000, 0.999));
+        assertEquals(2_000, WebhookDeliveryEngine.backoffMs(3, 1_000, 60_000, 0.0));
+        assertEquals(4_000, WebhookDeliveryEngine.backoffMs(3, 1_000, 60_000, 1.0));
+    }
+
+    @Test
+    void backoff_isCappedWithoutOverflow() {
+        assertEquals(30_000, WebhookDeliveryEngine.backoffMs(7, 1_000, 60_000, 0.0));
+        assertEquals(30_000, WebhookDeliveryEngine.backoffMs(40, 1_000, 60_000, 0.0));
+        assertEquals(30_000, WebhookDeliveryEngine.backoffMs(Integer.MAX_VALUE, 30_000, 60_000, 0.0));
+        assertTrue(WebhookDeliveryEngine.backoffMs(200, 1_000, 60_000, 0.5) <= 60_000);
+    }
+
+    @Test
+    void signature_isHmacOfTimestampAndBody() throws Exception {
+        String body = "{\"type\":\"payment_intent.succeeded\"}";
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec("whsec_test".getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        String expected = HexFormat.of().formatHex(mac.doFinal(("1700000000." + body).getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("t=1700000000,v1=" + expected, WebhookDeliveryEngine.signature("whsec_test", 1_700_000_000L, body));
+        assertNotEquals(WebhookDeliveryEngine.signature("whsec_test", 1_700_000_000L, body),
+                WebhookDeliveryEngine.signature("whsec_other", 1_700_000_000L, body));
+    }
+}
@@ -0,0 +1,159 @@
+package com.payment.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.AbstractIntegrationTest;
+import com.payment.config.VirtualThreadPinningMonitor;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.TestPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * HTTP throughput and latency at 2,000 concurrent connections through Tomcat, run once on platform request threads
+ * ({@link PlatformThreadBenchmarkTest}) and once on virtual threads ({@link VirtualThreadBenchmarkTest}). Each
+ * connection alternates a GET by id, which needs a pooled database connection, with an idempotent create replay
+ * served from Redis. Requests per connection default to 10 and can be changed with {@code -Dbenchmark.rows}.
+ * Pinning diagnostics are on in both runs. Needs Docker; run with
+ * {@code ./mvnw -Pbenchmark test -Dtest='*ThreadBenchmarkTest'}.
+ */
+@Tag("benchmark")
+@TestPropertySource(properties = {
+        "server.tomcat.accept-count=2048",
+        "diagnostics.pinning.enabled=true",
+        "logging.level.com.payment=INFO"
+})
+abstract class AbstractThreadModelBenchmark extends AbstractIntegrationTest {
+
+    private static final int CONNECTIONS = 2_000;
+    private static final int REQUESTS_PER_CONNECTION = Integer.getInteger("benchmark.rows", 10);
+    private static final int WARMUP = 1_000;
+
+    @LocalServerPort
+    int port;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    VirtualThreadPinningMonitor pinningMonitor;
+    @Value("${spring.threads.virtual.enabled}")
+    boolean virtualThreads;
+    @Value("${server.tomcat.threads.max:200}")
+    int maxPlatformThreads;
+    @Value("${spring.datasource.hikari.maximum-pool-size}")
+    int poolSize;
+
+    @Test
+    void getAndReplay_at2000ConcurrentConnections() throws Exception {
+        String email = "threads-" + UUID.randomUUID() + "@bench.test";
+        HttpClient setupClient = HttpClient.newHttpClient();
+        send(setupClient, post("/api/auth/register", Map.of(), Map.of("name", "Threads", "email", email, "password", "password123")));
+        String jwt = objectMapper.readTree(send(setupClient, post("/api/auth/login", Map.of(),
+                Map.of("email", email, "password", "password123"))).body()).get("accessToken").asText();
+        String apiKey = objectMapper.readTree(send(setupClient, post("/api/apikeys",
+                Map.of("Authorization", "Bearer " + jwt), null)).body()).get("apiKey").asText();
+        Map<String, String> create = Map.of("X-API-KEY", apiKey, "Idempotency-Key", "threads-" + UUID.randomUUID());
+        Map<String, Object> createBody = Map.of("amount", 10.00, "currency", "SEK");
+        String intentId = objectMapper.readTree(send(setupClient, post("/api/payment_intents", create, createBody)).body())
+                .get("id").asText();
+
+        HttpRequest get = HttpRequest.newBuilder(uri("/api/payment_intents/" + intentId))
+                .header("X-API-KEY", apiKey).timeout(Duration.ofSeconds(60)).GET().build();
+        HttpRequest replay = post("/api/payment_intents", create, createBody);
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        for (int i = 0; i < WARMUP; i++) {
+            send(client, i % 2 == 0 ? get : replay);
+        }
+
+        Map<VirtualThreadPinningMonitor.Path, Long> pinsBefore = pinningMonitor.counts();
+        long[] latencies = new long[CONNECTIONS * REQUESTS_PER_CONNECTION];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        CountDownLatch ready = new CountDownLatch(CONNECTIONS);
+        CountDownLatch go = new CountDownLatch(1);
+
+        long start;
+        // One virtual-thread caller per connection; the client opens a connection per concurrent request
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < CONNECTIONS; c++) {
+                int connection = c;
+                callers.submit(() -> {
+                    ready.countDown();
+                    go.await();
+                    for (int r = 0; r < REQUESTS_PER_CONNECTION; r++) {
+                        long requestStart = System.nanoTime();
+                        try {
+                            send(client, (connection + r) % 2 == 0 ? get : replay);
+                        } catch (Exception | AssertionError e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[next.getAndIncrement()] = System.nanoTime() - requestStart;
+                    }
+                    return null;
+                });
+            }
+            ready.await();
+            start = System.nanoTime();
+            go.countDown();
+        }
+        long nanos = System.nanoTime() - start;
+        // JFR hands events to the monitor about once a second
+        Thread.sleep(1_500);
+        Map<VirtualThreadPinningMonitor.Path, Long> pins = pinningMonitor.counts();
+        pins.replaceAll((path, count) -> count - pinsBefore.get(path));
+
+        Arrays.sort(latencies);
+        System.out.printf("%s request threads (%s), pool %d, %,d connections x %d requests:%n"
+                        + "  %,d req/s, p50 %.1f ms, p99 %.1f ms, max %.1f ms, %d errors%n"
+                        + "  pinned %s%n",
+                virtualThreads ? "Virtual" : "Platform",
+                virtualThreads ? "unbounded" : maxPlatformThreads + " max", poolSize,
+                CONNECTIONS, REQUESTS_PER_CONNECTION,
+                (long) (latencies.length / (nanos / 1e9)),
+                percentile(latencies, 0.50), percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6,
+                errors.get(), pins);
+        assertEquals(0, errors.get());
+    }
+
+    private HttpRequest post(String path, Map<String, String> headers, Object body) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(60))
+                .POST(body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)));
+        headers.forEach(request::header);
+        return request.build();
+    }
+
+    private static HttpResponse<String> send(HttpClient client, HttpRequest request) throws Exception {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 300) {
+            throw new AssertionError(request.uri() + " answered " + response.statusCode() + ": " + response.body());
+        }
+        return response;
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+}
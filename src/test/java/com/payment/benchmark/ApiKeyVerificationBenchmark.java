@@ -0,0 +1,41 @@
+package com.payment.benchmark;
+
+import com.payment.security.ApiKeyHasher;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of verifying an API key against a legacy BCrypt hash and the HMAC-SHA256 scheme.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ApiKeyVerificationBenchmark {
+
+    private static final String RAW_KEY = "pk_3q2-7wHmZk1cXyJ9bq0pVn4sT6uR8eWfYgAhDiLjKoM";
+
+    private ApiKeyHasher hasher;
+    private String bcryptHash;
+    private String hmacHash;
+
+    @Setup
+    public void setUp() {
+        hasher = new ApiKeyHasher("benchmark-pepper");
+        bcryptHash = new BCryptPasswordEncoder().encode(RAW_KEY);
+        hmacHash = hasher.hash(RAW_KEY);
+    }
+
+    @Benchmark
+    public boolean bcrypt() {
+        return hasher.matches(RAW_KEY, bcryptHash);
+    }
+
+    @Benchmark
+    public boolean hmacSha256() {
+        return hasher.matches(RAW_KEY, hmacHash);
+    }
+}
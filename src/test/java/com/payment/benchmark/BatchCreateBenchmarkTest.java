@@ -0,0 +1,84 @@
+package com.payment.benchmark;
+
+import com.payment.AbstractIntegrationTest;
+import com.payment.domain.Merchant;
+import com.payment.dto.BatchCreatePaymentIntentRequest;
+import com.payment.repository.MerchantRepository;
+import com.payment.service.PaymentIntentBatchService;
+import com.payment.service.PaymentIntentService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Intent creation throughput: one transaction per intent, as through {@code POST /api/payment_intents}, vs
+ * {@link PaymentIntentBatchService} with 1,000-item batches. HTTP is left out on both sides. Intent count
+ * defaults to 20,000 and can be changed with {@code -Dbenchmark.rows}. Needs Docker; run with
+ * {@code ./mvnw -Pbenchmark test -Dtest=BatchCreateBenchmarkTest}.
+ */
+@Tag("benchmark")
+class BatchCreateBenchmarkTest extends AbstractIntegrationTest {
+
+    private static final int INTENTS = Integer.getInteger("benchmark.rows", 20_000);
+    private static final int BATCH = 1_000;
+    private static final BigDecimal AMOUNT = new BigDecimal("10.00");
+
+    @Autowired
+    PaymentIntentService paymentIntentService;
+    @Autowired
+    PaymentIntentBatchService paymentIntentBatchService;
+    @Autowired
+    MerchantRepository merchantRepository;
+
+    @Test
+    void singleVsBatchCreate() {
+        Long merchantId = merchant();
+        // Warm up connections, sequence blocks and JIT on both paths
+        single(merchantId, 500);
+        batched(merchantId, 500);
+
+        long start = System.nanoTime();
+        single(merchantId, INTENTS);
+        long singleNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        batched(merchantId, INTENTS);
+        long batchNanos = System.nanoTime() - start;
+
+        System.out.printf("Create %,d intents: one per transaction %,d intents/s, batches of %,d %,d intents/s (%.1fx)%n",
+                INTENTS, (long) (INTENTS / (singleNanos / 1e9)), BATCH, (long) (INTENTS / (batchNanos / 1e9)),
+                (double) singleNanos / batchNanos);
+    }
+
+    private void single(Long merchantId, int count) {
+        for (int i = 0; i < count; i++) {
+            paymentIntentService.create(merchantId, AMOUNT, "SEK", null, null, UUID.randomUUID().toString(), "hash");
+        }
+    }
+
+    private void batched(Long merchantId, int count) {
+        for (int done = 0; done < count; done += BATCH) {
+            List<BatchCreatePaymentIntentRequest.Item> items = new ArrayList<>(BATCH);
+            for (int i = 0; i < Math.min(BATCH, count - done); i++) {
+                items.add(new BatchCreatePaymentIntentRequest.Item(UUID.randomUUID().toString(), AMOUNT, "SEK", null, null));
+            }
+            List<PaymentIntentBatchService.Result> results = paymentIntentBatchService.create(merchantId, items);
+            assertEquals(items.size(), results.stream()
+                    .filter(result -> result.outcome() == PaymentIntentBatchService.Outcome.CREATED).count());
+        }
+    }
+
+    private Long merchant() {
+        Merchant merchant = new Merchant();
+        merchant.setName("Batch benchmark");
+        merchant.setEmail("batch-benchmark-" + UUID.randomUUID() + "@bench.test");
+        merchant.setPasswordHash("unused");
+        return merchantRepository.save(merchant).getId();
+    }
+}
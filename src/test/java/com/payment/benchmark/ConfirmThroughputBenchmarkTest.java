@@ -0,0 +1,131 @@
+package com.payment.benchmark;
+
+import com.payment.AbstractIntegrationTest;
+import com.payment.domain.Merchant;
+import com.payment.domain.PaymentIntent;
+import com.payment.repository.MerchantRepository;
+import com.payment.service.PaymentIntentService;
+import com.payment.service.PaymentProvider;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Confirm throughput against a provider that takes 200 ms per charge, with a 10-connection pool and 64
+ * concurrent callers. "In transaction" calls the provider while the confirm transaction holds its connection,
+ * as confirm would with a real provider in place of the old inline simulation, so it cannot exceed
+ * pool size / latency = 50 confirms/s. "Async" is {@link PaymentIntentService#confirm}, timed until every
+ * provider result has been applied. Confirm count defaults to 2,000 and can be changed with
+ * {@code -Dbenchmark.rows}. Needs Docker; run with
+ * {@code ./mvnw -Pbenchmark test -Dtest=ConfirmThroughputBenchmarkTest}.
+ */
+@Tag("benchmark")
+@TestPropertySource(properties = {
+        "spring.datasource.hikari.maximum-pool-size=10",
+        "payment.provider.timeout-ms=10000",
+        "payment.provider.simulated.latency-median-ms=200",
+        "payment.provider.simulated.latency-p99-ms=200"
+})
+class ConfirmThroughputBenchmarkTest extends AbstractIntegrationTest {
+
+    private static final int CONFIRMS = Integer.getInteger("benchmark.rows", 2_000);
+    private static final int CALLERS = 64;
+
+    @Autowired
+    PaymentIntentService paymentIntentService;
+    @Autowired
+    PaymentProvider paymentProvider;
+    @Autowired
+    MerchantRepository merchantRepository;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Value("${spring.datasource.hikari.maximum-pool-size}")
+    int poolSize;
+
+    @Test
+    void providerCallInTransaction_vsAsyncConfirm() throws Exception {
+        Long merchantId = merchant();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        List<PaymentIntent> blocking = intents(merchantId, CONFIRMS);
+        long start = System.nanoTime();
+        run(blocking, intent -> transaction.executeWithoutResult(tx -> {
+            jdbcTemplate.queryForObject("SELECT status FROM payment_intent WHERE id = ? FOR UPDATE", String.class, intent.getId());
+            paymentProvider.charge(new PaymentProvider.ChargeRequest(intent.getId(), "pay_bench_" + intent.getId(),
+                    intent.getAmount(), intent.getCurrency())).join();
+        }));
+        long blockingNanos = System.nanoTime() - start;
+
+        List<PaymentIntent> async = intents(merchantId, CONFIRMS);
+        start = System.nanoTime();
+        run(async, intent -> paymentIntentService.confirm(merchantId, intent.getId(), UUID.randomUUID().toString(), "hash"));
+        long acceptedNanos = System.nanoTime() - start;
+        while (jdbcTemplate.queryForObject("SELECT count(*) FROM payment_intent WHERE merchant_id = ? AND status = 'PROCESSING'",
+                Long.class, merchantId) > 0) {
+            Thread.sleep(10);
+        }
+        long asyncNanos = System.nanoTime() - start;
+        assertEquals(CONFIRMS, (long) jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM payment_intent WHERE merchant_id = ? AND status = 'SUCCEEDED'", Long.class, merchantId));
+
+        System.out.printf("Confirm %,d intents, %d callers, pool %d, provider 200 ms (bound %d/s if the connection is held):%n"
+                        + "  provider call in transaction %,d confirms/s%n"
+                        + "  async confirm %,d confirms/s accepted, %,d/s settled (%.1fx)%n",
+                CONFIRMS, CALLERS, poolSize, poolSize * 1000 / 200,
+                perSecond(blockingNanos), perSecond(acceptedNanos), perSecond(asyncNanos),
+                (double) blockingNanos / asyncNanos);
+    }
+
+    private static void run(List<PaymentIntent> intents, Consumer<PaymentIntent> confirm) throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<?>> futures = new ArrayList<>(intents.size());
+            for (PaymentIntent intent : intents) {
+                futures.add(callers.submit(() -> confirm.accept(intent)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            callers.shutdown();
+        }
+    }
+
+    private List<PaymentIntent> intents(Long merchantId, int count) {
+        List<PaymentIntent> intents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            intents.add(paymentIntentService.create(merchantId, new BigDecimal("10.00"), "SEK", null, null, null, null));
+        }
+        return intents;
+    }
+
+    private static long perSecond(long nanos) {
+        return (long) (CONFIRMS / (nanos / 1e9));
+    }
+
+    private Long merchant() {
+        Merchant merchant = new Merchant();
+        merchant.setName("Confirm benchmark");
+        merchant.setEmail("confirm-benchmark-" + UUID.randomUUID() + "@bench.test");
+        merchant.setPasswordHash("unused");
+        return merchantRepository.save(merchant).getId();
+    }
+}
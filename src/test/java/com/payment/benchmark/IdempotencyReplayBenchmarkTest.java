@@ -0,0 +1,120 @@
+package com.payment.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.AbstractIntegrationTest;
+import com.payment.domain.Merchant;
+import com.payment.domain.PaymentIntent;
+import com.payment.dto.PaymentIntentResponse;
+import com.payment.repository.MerchantRepository;
+import com.payment.repository.PaymentIntentRepository;
+import com.payment.service.IdempotencyCache;
+import com.payment.service.IdempotencyService;
+import com.payment.service.PaymentIntentCache;
+import com.payment.service.PaymentIntentService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Replay latency of an idempotent create: the Redis fast path vs the database path (idempotency record lookup plus
+ * payment intent load). The fast path is measured three ways: a stored terminal response (one GET), an in-flight
+ * intent found in the intent cache, and an in-flight intent the intent cache does not hold, which is loaded from
+ * the database. Needs Docker; run with
+ * {@code ./mvnw -Pbenchmark test -Dtest=IdempotencyReplayBenchmarkTest}.
+ */
+@Tag("benchmark")
+class IdempotencyReplayBenchmarkTest extends AbstractIntegrationTest {
+
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 10_000;
+
+    @Autowired
+    PaymentIntentService paymentIntentService;
+    @Autowired
+    IdempotencyService idempotencyService;
+    @Autowired
+    IdempotencyCache idempotencyCache;
+    @Autowired
+    PaymentIntentRepository paymentIntentRepository;
+    @Autowired
+    MerchantRepository merchantRepository;
+    @Autowired
+    StringRedisTemplate redisTemplate;
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    void replayLatency_cacheVsDatabase() {
+        Merchant merchant = new Merchant();
+        merchant.setName("Replay benchmark");
+        merchant.setEmail("replay-" + UUID.randomUUID() + "@bench.test");
+        merchant.setPasswordHash("x");
+        Long merchantId = merchantRepository.save(merchant).getId();
+        String idempotencyKey = "replay-" + UUID.randomUUID();
+        String payloadHash = idempotencyService.hashPayload("{\"amount\":10,\"currency\":\"SEK\"}");
+        paymentIntentService.create(merchantId, new BigDecimal("10"), "SEK", null, null, idempotencyKey, payloadHash);
+        String canceledKey = "replay-" + UUID.randomUUID();
+        PaymentIntent canceled = paymentIntentService.create(merchantId, new BigDecimal("10"), "SEK", null, null,
+                canceledKey, payloadHash);
+        canceled = paymentIntentService.cancel(merchantId, canceled.getId());
+        // As stored when the replayed request itself left the intent terminal
+        idempotencyCache.put(merchantId, "CREATE", canceledKey, null, payloadHash, PaymentIntentResponse.from(canceled));
+        IdempotencyCache withoutIntentCache = new IdempotencyCache(redisTemplate, objectMapper,
+                new PaymentIntentCache(redisTemplate, objectMapper, new SimpleMeterRegistry(), false, 1, 1, 1),
+                paymentIntentRepository, true, 86_400, Duration.ofHours(24));
+
+        Supplier<PaymentIntentResponse> terminalPath = () ->
+                idempotencyCache.find(merchantId, "CREATE", canceledKey, null).orElseThrow().response();
+        Supplier<PaymentIntentResponse> cachedIntentPath = () ->
+                idempotencyCache.find(merchantId, "CREATE", idempotencyKey, null).orElseThrow().response();
+        Supplier<PaymentIntentResponse> loadedIntentPath = () ->
+                withoutIntentCache.find(merchantId, "CREATE", idempotencyKey, null).orElseThrow().response();
+        Supplier<PaymentIntentResponse> databasePath = () -> {
+            UUID intentId = idempotencyService.findCreateRecord(merchantId, idempotencyKey)
+                    .orElseThrow().getPaymentIntentId();
+            PaymentIntent intent = paymentIntentRepository.findByIdAndMerchantId(intentId, merchantId).orElseThrow();
+            return PaymentIntentResponse.from(intent);
+        };
+        assertEquals(databasePath.get().status(), cachedIntentPath.get().status());
+        assertEquals(databasePath.get().id(), loadedIntentPath.get().id());
+
+        long[] terminal = measure(terminalPath);
+        long[] cachedIntent = measure(cachedIntentPath);
+        long[] loadedIntent = measure(loadedIntentPath);
+        long[] database = measure(databasePath);
+        System.out.printf("Idempotent replay (%d iterations), p50/p99 in us: cache, terminal response %d/%d; "
+                        + "cache, intent cached %d/%d; cache, intent loaded %d/%d; database %d/%d%n",
+                ITERATIONS, percentile(terminal, 50), percentile(terminal, 99),
+                percentile(cachedIntent, 50), percentile(cachedIntent, 99),
+                percentile(loadedIntent, 50), percentile(loadedIntent, 99),
+                percentile(database, 50), percentile(database, 99));
+    }
+
+    private static long[] measure(Supplier<PaymentIntentResponse> path) {
+        for (int i = 0; i < WARMUP; i++) {
+            path.get();
+        }
+        long[] samples = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            path.get();
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples;
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)] / 1_000;
+    }
+}
@@ -0,0 +1,83 @@
+package com.payment.benchmark;
+
+import com.payment.AbstractIntegrationTest;
+import com.payment.domain.Merchant;
+import com.payment.repository.MerchantRepository;
+import com.payment.service.OutboxRelay;
+import com.payment.service.RedisStreamOutboxBroker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Relay throughput from {@code outbox_event} to a Redis Stream with batch sizes 1, 50 and 500 and with one and two
+ * workers. Every event must land in the stream exactly once. Event count defaults to 20,000 and can be changed with
+ * {@code -Dbenchmark.rows}. Needs Docker; run with {@code ./mvnw -Pbenchmark test -Dtest=OutboxRelayBenchmarkTest}.
+ */
+@Tag("benchmark")
+class OutboxRelayBenchmarkTest extends AbstractIntegrationTest {
+
+    private static final int EVENTS = Integer.getInteger("benchmark.rows", 20_000);
+
+    @Autowired
+    MerchantRepository merchantRepository;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    StringRedisTemplate redisTemplate;
+
+    @Test
+    void relayThroughput_byBatchSize() throws Exception {
+        Long merchantId = merchant();
+        System.out.printf("Relay %,d outbox events to a Redis Stream:%n", EVENTS);
+        for (int batchSize : new int[]{1, 50, 500}) {
+            run(merchantId, batchSize, 1);
+        }
+        run(merchantId, 500, 2);
+    }
+
+    private void run(Long merchantId, int batchSize, int workers) throws Exception {
+        jdbcTemplate.update("DELETE FROM outbox_event");
+        // Payload sized like a serialized PaymentIntentResponse
+        jdbcTemplate.update("""
+                INSERT INTO outbox_event (payment_intent_id, merchant_id, event_type, intent_version, payload)
+                SELECT gen_random_uuid(), ?, 'INTENT_CREATED', 0, repeat('x', 400) FROM generate_series(1, ?)
+                """, merchantId, EVENTS);
+        String stream = "benchmark-outbox-" + UUID.randomUUID();
+        int events = EVENTS;
+        OutboxRelay relay = new OutboxRelay(jdbcTemplate, transactionManager,
+                new RedisStreamOutboxBroker(redisTemplate, stream, events), new SimpleMeterRegistry(),
+                workers, batchSize, 10);
+
+        long start = System.nanoTime();
+        relay.start();
+        while (jdbcTemplate.queryForObject("SELECT count(*) FROM outbox_event", Long.class) > 0) {
+            Thread.sleep(10);
+        }
+        long nanos = System.nanoTime() - start;
+        relay.stop();
+
+        assertEquals(events, redisTemplate.opsForStream().size(stream));
+        redisTemplate.delete(stream);
+        System.out.printf("  batch %3d, %d worker(s): %,d events/s%n",
+                batchSize, workers, (long) (events / (nanos / 1e9)));
+    }
+
+    private Long merchant() {
+        Merchant merchant = new Merchant();
+        merchant.setName("Outbox benchmark");
+        merchant.setEmail("outbox-benchmark-" + UUID.randomUUID() + "@bench.test");
+        merchant.setPasswordHash("unused");
+        return merchantRepository.save(merchant).getId();
+    }
+}
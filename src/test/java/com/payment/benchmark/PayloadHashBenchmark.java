@@ -0,0 +1,54 @@
+package com.payment.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.dto.CreatePaymentIntentRequest;
+import com.payment.service.CanonicalJsonDigest;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares idempotency payload hashing: re-serializing the DTO and hex-encoding with String.format
+ * (the previous controller path) vs the canonical digest fed with the raw body bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PayloadHashBenchmark {
+
+    private static final String BODY = "{\"amount\":125.50,\"currency\":\"SEK\",\"description\":\"Order 10045\","
+            + "\"customerReference\":\"cus_8f2k1\"}";
+
+    private ObjectMapper objectMapper;
+    private CreatePaymentIntentRequest request;
+    private byte[] body;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = new ObjectMapper();
+        body = BODY.getBytes(StandardCharsets.UTF_8);
+        request = objectMapper.readValue(body, CreatePaymentIntentRequest.class);
+    }
+
+    @Benchmark
+    public String reserializeAndFormat() throws Exception {
+        byte[] hash = MessageDigest.getInstance("SHA-256")
+                .digest(objectMapper.writeValueAsString(request).getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder();
+        for (byte b : hash) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String streamingCanonical() {
+        CanonicalJsonDigest digest = new CanonicalJsonDigest();
+        digest.update(body, 0, body.length);
+        return digest.hex();
+    }
+}
@@ -0,0 +1,92 @@
+package com.payment.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.AbstractIntegrationTest;
+import com.payment.service.PaymentIntentCache;
+import com.payment.service.PaymentIntentService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Latency and single-thread throughput of a payment intent read by id: the database query, the Redis level alone
+ * (a second cache without a local level) and the full cache, over a working set of 10,000 intents from a
+ * {@link PaymentIntentDataset} of 100,000 rows (mostly terminal, so cached for the long TTL). Row count can be
+ * changed with {@code -Dbenchmark.rows}. Needs Docker; run with
+ * {@code ./mvnw -Pbenchmark test -Dtest=PaymentIntentCacheBenchmarkTest}.
+ */
+@Tag("benchmark")
+class PaymentIntentCacheBenchmarkTest extends AbstractIntegrationTest {
+
+    private static final long ROWS = Long.getLong("benchmark.rows", 100_000);
+    private static final int WORKING_SET = 10_000;
+    private static final int ITERATIONS = 50_000;
+
+    @Autowired
+    PaymentIntentService paymentIntentService;
+    @Autowired
+    PaymentIntentCache paymentIntentCache;
+    @Autowired
+    StringRedisTemplate redisTemplate;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    private record Key(Long merchantId, UUID id) {
+    }
+
+    @Test
+    void getById_databaseVsRedisVsLocal() {
+        PaymentIntentDataset dataset = new PaymentIntentDataset(jdbcTemplate).generate(10, ROWS);
+        try {
+            List<Key> keys = jdbcTemplate.query("SELECT id, merchant_id FROM payment_intent ORDER BY random() LIMIT ?",
+                    (rs, i) -> new Key(rs.getLong("merchant_id"), rs.getObject("id", UUID.class)), WORKING_SET);
+            // Caffeine drops entries of a zero-size cache right away, so every read falls through to Redis
+            PaymentIntentCache redisOnly = new PaymentIntentCache(redisTemplate, objectMapper, new SimpleMeterRegistry(),
+                    true, 0, 86_400, 10);
+
+            Map<String, BiFunction<Long, UUID, Object>> paths = Map.of(
+                    "database", (merchantId, id) -> paymentIntentService.getById(merchantId, id)
+                            .map(PaymentIntentCache.Entry::of).orElseThrow(),
+                    "redis", (merchantId, id) -> redisOnly.get(merchantId, id,
+                            () -> paymentIntentService.getById(merchantId, id)).orElseThrow(),
+                    "local", (merchantId, id) -> paymentIntentCache.get(merchantId, id,
+                            () -> paymentIntentService.getById(merchantId, id)).orElseThrow());
+            for (String path : List.of("database", "redis", "local")) {
+                report(path, keys, paths.get(path));
+            }
+        } finally {
+            dataset.drop();
+        }
+    }
+
+    private static void report(String path, List<Key> keys, BiFunction<Long, UUID, Object> read) {
+        // One pass over the working set warms up the JIT and fills the caches
+        keys.forEach(key -> assertNotNull(read.apply(key.merchantId(), key.id())));
+        long[] samples = new long[ITERATIONS];
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            Key key = keys.get(i % keys.size());
+            long begin = System.nanoTime();
+            read.apply(key.merchantId(), key.id());
+            samples[i] = System.nanoTime() - begin;
+        }
+        long nanos = System.nanoTime() - start;
+        Arrays.sort(samples);
+        System.out.printf("GET by id from %-8s (%,d reads of %,d intents): p50=%.1fus p99=%.1fus, %,d reads/s%n",
+                path, ITERATIONS, keys.size(), samples[ITERATIONS / 2] / 1e3, samples[ITERATIONS * 99 / 100] / 1e3,
+                (long) (ITERATIONS / (nanos / 1e9)));
+    }
+}
@@ -0,0 +1,71 @@
+package com.payment.benchmark;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Generates a production-shaped payment_intent dataset in bulk with {@code generate_series}: intents
+ * spread evenly over {@code merchants} merchants and the past year, with a realistic status mix (mostly
+ * SUCCEEDED, few in flight). Rows are inserted in chunks so each transaction stays bounded.
+ */
+public final class PaymentIntentDataset {
+
+    private static final int CHUNK = 1_000_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String tag = UUID.randomUUID().toString().substring(0, 8);
+    private List<Long> merchantIds = List.of();
+
+    public PaymentIntentDataset(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserts {@code merchants} merchants and {@code rows} intents, then runs VACUUM ANALYZE so the planner
+     * and index-only scans see the final table.
+     */
+    public PaymentIntentDataset generate(int merchants, long rows) {
+        merchantIds = jdbcTemplate.queryForList(
+                "INSERT INTO merchant (name, email, password_hash) "
+                        + "SELECT 'Dataset ' || g, 'dataset-' || ? || '-' || g || '@bench.test', 'x' "
+                        + "FROM generate_series(1, ?) g RETURNING id",
+                Long.class, tag, merchants);
+        Long[] ids = merchantIds.toArray(Long[]::new);
+        for (long chunk = 1; chunk <= rows; chunk += CHUNK) {
+            long start = chunk;
+            long end = Math.min(rows, chunk + CHUNK - 1);
+            jdbcTemplate.update(connection -> {
+                var ps = connection.prepareStatement(
+                        "INSERT INTO payment_intent (id, merchant_id, amount, currency, status, created_at, updated_at, version) "
+                                + "SELECT gen_random_uuid(), (?::bigint[])[1 + g % ?], "
+                                + "round((random() * 1000)::numeric, 2), 'SEK', "
+                                + "CASE WHEN r < 0.80 THEN 'SUCCEEDED' WHEN r < 0.85 THEN 'FAILED' "
+                                + "WHEN r < 0.90 THEN 'CANCELED' WHEN r < 0.97 THEN 'CREATED' "
+                                + "WHEN r < 0.99 THEN 'PROCESSING' ELSE 'REQUIRES_CONFIRMATION' END, "
+                                + "ts, ts, 0 "
+                                + "FROM (SELECT g, random() AS r, now() - random() * interval '365 days' AS ts "
+                                + "FROM generate_series(?::bigint, ?::bigint) g) s");
+                ps.setArray(1, connection.createArrayOf("bigint", ids));
+                ps.setInt(2, ids.length);
+                ps.setLong(3, start);
+                ps.setLong(4, end);
+                return ps;
+            });
+        }
+        jdbcTemplate.execute("VACUUM ANALYZE payment_intent");
+        return this;
+    }
+
+    public List<Long> merchantIds() {
+        return merchantIds;
+    }
+
+    /**
+     * Removes the generated merchants and their intents.
+     */
+    public void drop() {
+        jdbcTemplate.update("DELETE FROM merchant WHERE email LIKE ?", "dataset-" + tag + "-%");
+    }
+}
@@ -0,0 +1,178 @@
+package com.payment.benchmark;
+
+import com.payment.AbstractIntegrationTest;
+import com.payment.domain.PaymentIntent;
+import com.payment.domain.PaymentStatus;
+import com.payment.dto.CursorPage;
+import com.payment.service.PaymentIntentService;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that every list filter combination is served by a composite index, on a generated dataset of
+ * {@code -Dbenchmark.rows} intents (default 10M). The SQL Hibernate actually sends is captured and planned
+ * as a generic plan: the plan PostgreSQL caches for a prepared statement, which is
+ * where {@code (:x IS NULL OR ...)} filters used to fall back to scanning. Needs Docker and several
+ * minutes; run with {@code ./mvnw -Pbenchmark test -Dtest=PaymentIntentListPlanBenchmarkTest}.
+ */
+@Tag("benchmark")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.payment.benchmark.PaymentIntentListPlanBenchmarkTest$SqlCapture")
+class PaymentIntentListPlanBenchmarkTest extends AbstractIntegrationTest {
+
+    private static final long ROWS = Long.getLong("benchmark.rows", 10_000_000L);
+    private static final int MERCHANTS = 1_000;
+    private static final String BY_CREATED = "idx_payment_intent_merchant_created";
+    private static final String BY_STATUS = "idx_payment_intent_merchant_status_created";
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PaymentIntentService paymentIntentService;
+
+    private PaymentIntentDataset dataset;
+    private Long merchantId;
+    private final Instant to = Instant.now().truncatedTo(ChronoUnit.DAYS);
+    private final Instant from = to.minus(30, ChronoUnit.DAYS);
+
+    @BeforeAll
+    void generateDataset() {
+        long start = System.nanoTime();
+        dataset = new PaymentIntentDataset(jdbcTemplate).generate(MERCHANTS, ROWS);
+        merchantId = dataset.merchantIds().get(0);
+        System.out.printf("Generated %,d payment intents for %,d merchants in %ds%n",
+                ROWS, MERCHANTS, (System.nanoTime() - start) / 1_000_000_000);
+    }
+
+    @AfterAll
+    void dropDataset() {
+        dataset.drop();
+    }
+
+    @Test
+    void firstPage_noFilters() {
+        assertIndexScan(capture(() -> cursorPage(null, null, null, null)), BY_CREATED);
+    }
+
+    @Test
+    void firstPage_statusFilter() {
+        assertIndexScan(capture(() -> cursorPage(PaymentStatus.PROCESSING, null, null, null)), BY_STATUS);
+    }
+
+    @Test
+    void firstPage_createdAtRange() {
+        assertIndexScan(capture(() -> cursorPage(null, from, to, null)), BY_CREATED);
+    }
+
+    @Test
+    void firstPage_statusAndCreatedAtRange() {
+        assertIndexScan(capture(() -> cursorPage(PaymentStatus.FAILED, from, to, null)), BY_STATUS);
+    }
+
+    @Test
+    void nextPage_statusFilter_startsAtCursor() {
+        String cursor = cursorPage(PaymentStatus.SUCCEEDED, null, null, null).nextCursor();
+        String plan = assertIndexScan(capture(() -> cursorPage(PaymentStatus.SUCCEEDED, null, null, cursor)), BY_STATUS);
+        assertTrue(plan.contains("created_at <="), "cursor must bound the index scan:\n" + plan);
+    }
+
+    @Test
+    void offsetPage_statusFilter() {
+        List<String> statements = captureAll(() ->
+                paymentIntentService.list(merchantId, PaymentStatus.CREATED, null, null, PageRequest.of(1, 20)));
+        String select = statements.stream().filter(sql -> !sql.contains("count(")).findFirst().orElseThrow(() -> new AssertionError(statements.toString()));
+        String count = statements.stream().filter(sql -> sql.contains("count(")).findFirst().orElseThrow(() -> new AssertionError(statements.toString()));
+        assertIndexScan(select, BY_STATUS);
+        String countPlan = explain(count);
+        assertTrue(countPlan.contains(BY_STATUS) && !countPlan.contains("Seq Scan"), countPlan);
+    }
+
+    private CursorPage<PaymentIntent> cursorPage(PaymentStatus status, Instant from, Instant to, String startingAfter) {
+        return paymentIntentService.listByCursor(merchantId, status, from, to, startingAfter, null, 20);
+    }
+
+    private String assertIndexScan(String sql, String index) {
+        String plan = explain(sql);
+        System.out.println(plan);
+        assertTrue(plan.contains("Index Scan using " + index), "expected " + index + ":\n" + plan);
+        assertFalse(plan.contains("Seq Scan"), plan);
+        assertFalse(plan.contains("Sort"), "list order must come from the index:\n" + plan);
+        return plan;
+    }
+
+    /**
+     * Generic plan of {@code sql}: its JDBC placeholders are turned into numbered parameters of a server-side
+     * prepared statement, which is then explained with {@code plan_cache_mode = force_generic_plan}.
+     */
+    private String explain(String sql) {
+        StringBuilder numbered = new StringBuilder();
+        int parameter = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                numbered.append('$').append(++parameter);
+            } else {
+                numbered.append(c);
+            }
+        }
+        String arguments = parameter == 0 ? "" : "(" + String.join(", ", Collections.nCopies(parameter, "NULL")) + ")";
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PREPARE list_plan AS " + numbered);
+                statement.execute("SET plan_cache_mode = force_generic_plan");
+                List<String> lines = new ArrayList<>();
+                try (ResultSet rs = statement.executeQuery("EXPLAIN EXECUTE list_plan" + arguments)) {
+                    while (rs.next()) {
+                        lines.add(rs.getString(1));
+                    }
+                }
+                statement.execute("RESET plan_cache_mode");
+                statement.execute("DEALLOCATE list_plan");
+                return String.join("\n", lines);
+            }
+        });
+    }
+
+    private static String capture(Runnable query) {
+        List<String> statements = captureAll(query);
+        assertEquals(1, statements.size(), statements.toString());
+        return statements.get(0);
+    }
+
+    private static List<String> captureAll(Runnable query) {
+        SqlCapture.STATEMENTS.clear();
+        query.run();
+        return SqlCapture.STATEMENTS.stream().filter(sql -> sql.contains("payment_intent")).toList();
+    }
+
+    public static class SqlCapture implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
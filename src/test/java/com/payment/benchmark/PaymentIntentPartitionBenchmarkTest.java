@@ -0,0 +1,148 @@
+package com.payment.benchmark;
+
+import com.payment.AbstractIntegrationTest;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * payment_intent hash-partitioned by merchant against the same rows in one plain table with the same indexes:
+ * get by id and first list page p50/p99, with PostgreSQL's default plan caching and with generic plans forced
+ * ({@code plan_cache_mode}), then, after a status change to 5% of one merchant's intents, how long
+ * VACUUM takes on what the change touched (the merchant's partition, or the whole table) and how big the largest
+ * index it scans is. {@link PaymentIntentDataset} of 50M intents over 1,000 merchants by default; row count can be
+ * changed with {@code -Dbenchmark.rows}. The dataset is generated twice over, which takes a while and about 25 GB of
+ * disk at the default size. Needs Docker; run with
+ * {@code ./mvnw -Pbenchmark test -Dtest=PaymentIntentPartitionBenchmarkTest}.
+ */
+@Tag("benchmark")
+class PaymentIntentPartitionBenchmarkTest extends AbstractIntegrationTest {
+
+    private static final long ROWS = Long.getLong("benchmark.rows", 50_000_000);
+    private static final int MERCHANTS = 1_000;
+    private static final int WORKING_SET = 10_000;
+    private static final int ITERATIONS = 20_000;
+    private static final String SINGLE = "payment_intent_single";
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    private record Key(Long merchantId, UUID id) {
+    }
+
+    @Test
+    void partitionedVsSingleTable() {
+        PaymentIntentDataset dataset = new PaymentIntentDataset(jdbcTemplate).generate(MERCHANTS, ROWS);
+        try {
+            jdbcTemplate.execute("CREATE TABLE " + SINGLE + " (LIKE payment_intent INCLUDING DEFAULTS INCLUDING INDEXES)");
+            jdbcTemplate.execute("INSERT INTO " + SINGLE + " SELECT * FROM payment_intent");
+            jdbcTemplate.execute("VACUUM ANALYZE " + SINGLE);
+            List<Key> keys = jdbcTemplate.query("SELECT id, merchant_id FROM payment_intent TABLESAMPLE BERNOULLI (?) LIMIT ?",
+                    (rs, i) -> new Key(rs.getLong("merchant_id"), rs.getObject("id", UUID.class)),
+                    Math.min(100.0, WORKING_SET * 200.0 / ROWS), WORKING_SET);
+
+            System.out.printf("payment_intent, %,d rows over %,d merchants, 16 hash partitions vs one table:%n",
+                    ROWS, MERCHANTS);
+            for (String table : List.of("payment_intent", SINGLE)) {
+                for (String planCacheMode : List.of("auto", "force_generic_plan")) {
+                    report("get by id", table, planCacheMode, keys, true,
+                            "SELECT * FROM " + table + " WHERE id = ? AND merchant_id = ?");
+                    report("first page", table, planCacheMode, keys, false,
+                            "SELECT * FROM " + table + " WHERE merchant_id = ? ORDER BY created_at DESC, id DESC LIMIT 20");
+                }
+            }
+
+            Long merchantId = dataset.merchantIds().get(0);
+            String partition = jdbcTemplate.queryForObject(
+                    "SELECT tableoid::regclass::text FROM payment_intent WHERE merchant_id = ? LIMIT 1", String.class,
+                    merchantId);
+            vacuumAfterChurn("payment_intent", partition, merchantId);
+            vacuumAfterChurn(SINGLE, SINGLE, merchantId);
+        } finally {
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + SINGLE);
+            dataset.drop();
+        }
+    }
+
+    /**
+     * Runs the query for every key on one connection with one server-side prepared statement, as the application's
+     * statement cache does. Parameters are the merchant, preceded by the intent id if {@code byId}.
+     */
+    private void report(String operation, String table, String planCacheMode, List<Key> keys, boolean byId,
+                        String sql) {
+        long[] samples = jdbcTemplate.execute((ConnectionCallback<long[]>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET plan_cache_mode = " + planCacheMode);
+            }
+            try (PreparedStatement query = connection.prepareStatement(sql)) {
+                // One pass over the working set warms up the JIT, the buffer cache and the plan cache
+                keys.forEach(key -> execute(query, key, byId));
+                long[] nanos = new long[ITERATIONS];
+                for (int i = 0; i < ITERATIONS; i++) {
+                    long begin = System.nanoTime();
+                    execute(query, keys.get(i % keys.size()), byId);
+                    nanos[i] = System.nanoTime() - begin;
+                }
+                return nanos;
+            } finally {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("RESET plan_cache_mode");
+                }
+            }
+        });
+        Arrays.sort(samples);
+        System.out.printf("  %-10s %-21s %-18s p50=%.1fus p99=%.1fus%n", operation, table, planCacheMode,
+                samples[ITERATIONS / 2] / 1e3, samples[ITERATIONS * 99 / 100] / 1e3);
+    }
+
+    private static void execute(PreparedStatement query, Key key, boolean byId) {
+        try {
+            if (byId) {
+                query.setObject(1, key.id());
+            }
+            query.setLong(byId ? 2 : 1, key.merchantId());
+            try (ResultSet rows = query.executeQuery()) {
+                while (rows.next()) {
+                    rows.getObject(1);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Changes 5% of the merchant's intents, then vacuums {@code vacuumed}, the relation that holds them.
+     * Autovacuum is kept off it meanwhile, so the manual VACUUM does all the work. INDEX_CLEANUP ON makes both
+     * VACUUMs scan their indexes: left to decide, PostgreSQL skips that when under 2% of the heap pages hold dead
+     * rows, which a small change to a large table is, while autovacuum, at 20% dead rows, never is.
+     */
+    private void vacuumAfterChurn(String table, String vacuumed, Long merchantId) {
+        jdbcTemplate.execute("ALTER TABLE " + vacuumed + " SET (autovacuum_enabled = false)");
+        try {
+            int changed = jdbcTemplate.update("UPDATE " + table + " SET status = 'CANCELED', version = version + 1, "
+                    + "updated_at = now() WHERE merchant_id = ? AND random() < 0.05", merchantId);
+            long begin = System.nanoTime();
+            jdbcTemplate.execute("VACUUM (INDEX_CLEANUP ON) " + vacuumed);
+            long millis = (System.nanoTime() - begin) / 1_000_000;
+            Long heapBytes = jdbcTemplate.queryForObject("SELECT pg_relation_size(?::regclass)", Long.class, vacuumed);
+            Long indexBytes = jdbcTemplate.queryForObject(
+                    "SELECT max(pg_relation_size(indexrelid)) FROM pg_index WHERE indrelid = ?::regclass", Long.class,
+                    vacuumed);
+            System.out.printf("  VACUUM %-21s after %,d changed rows: %,d ms (heap %,d MB, largest index %,d MB)%n",
+                    vacuumed, changed, millis, heapBytes >> 20, indexBytes >> 20);
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE " + vacuumed + " RESET (autovacuum_enabled)");
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.payment.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.AbstractIntegrationTest;
+import com.payment.service.PaymentIntentService;
+import com.payment.service.PaymentIntentStream;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Holds 2,000 idle {@code GET /api/payment_intents/stream} connections for one merchant, then commits 50 intents
+ * one at a time and measures create-to-delivery latency across every subscriber. Threads and heap are reported as
+ * the marginal cost of the second 1,000 connections, after the first burst has grown Tomcat's worker pool; the
+ * client runs in the same JVM, so its buffers are included. Connection count can be changed with
+ * {@code -Dbenchmark.rows}. Needs Docker; run with {@code ./mvnw -Pbenchmark test -Dtest=PaymentIntentStreamBenchmarkTest}.
+ */
+@Tag("benchmark")
+class PaymentIntentStreamBenchmarkTest extends AbstractIntegrationTest {
+
+    private static final int CONNECTIONS = Integer.getInteger("benchmark.rows", 2_000);
+    private static final int CHANGES = 50;
+
+    @LocalServerPort
+    int port;
+    @Autowired
+    PaymentIntentService paymentIntentService;
+    @Autowired
+    PaymentIntentStream paymentIntentStream;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private final Map<String, Long> arrivals = new ConcurrentHashMap<>();
+    private final AtomicInteger received = new AtomicInteger();
+
+    @Test
+    void idleConnectionCost_andFanOutLatency() throws Exception {
+        Long merchantId = merchant();
+        String apiKey = apiKey();
+        // Plain HTTP/1.1: one connection per stream, and no h2c upgrade attempts racing each other
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/payment_intents/stream"))
+                .header("X-API-KEY", apiKey)
+                .build();
+
+        List<Flow.Subscription> subscriptions = new ArrayList<>();
+        open(client, request, CONNECTIONS / 2, subscriptions);
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        long heapBefore = usedHeap();
+        open(client, request, CONNECTIONS - CONNECTIONS / 2, subscriptions);
+        assertEquals(CONNECTIONS, paymentIntentStream.subscriberCount(merchantId));
+        int threadsAfter = ManagementFactory.getThreadMXBean().getThreadCount();
+        long heapAfter = usedHeap();
+
+        int added = CONNECTIONS - CONNECTIONS / 2;
+        System.out.printf("%,d idle streams; the last %,d added %+d JVM threads and ~%,d bytes of heap per stream%n",
+                CONNECTIONS, added, threadsAfter - threadsBefore, (heapAfter - heapBefore) / added);
+
+        long[] latencies = new long[CHANGES];
+        long start = System.nanoTime();
+        for (int i = 0; i < CHANGES; i++) {
+            long committing = System.nanoTime();
+            UUID intentId = paymentIntentService.create(merchantId, new BigDecimal("10.00"), "SEK",
+                    null, null, null, null).getId();
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (received.get() < (i + 1) * CONNECTIONS && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            latencies[i] = arrivals.get(intentId.toString()) - committing;
+        }
+        long nanos = System.nanoTime() - start;
+        assertEquals(CHANGES * CONNECTIONS, received.get(), "every subscriber receives every change");
+
+        Arrays.sort(latencies);
+        System.out.printf("%d changes to %,d subscribers: %,d deliveries/s; create-to-last-subscriber p50 %.1f ms, p99 %.1f ms%n",
+                CHANGES, CONNECTIONS, (long) (CHANGES * (double) CONNECTIONS / (nanos / 1e9)),
+                latencies[CHANGES / 2] / 1e6, latencies[CHANGES * 99 / 100] / 1e6);
+        synchronized (subscriptions) {
+            subscriptions.forEach(Flow.Subscription::cancel);
+        }
+    }
+
+    private void open(HttpClient client, HttpRequest request, int count, List<Flow.Subscription> subscriptions)
+            throws InterruptedException {
+        CountDownLatch subscribed = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            client.sendAsync(request, HttpResponse.BodyHandlers.fromLineSubscriber(new Flow.Subscriber<String>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    synchronized (subscriptions) {
+                        subscriptions.add(subscription);
+                    }
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(String line) {
+                    if (line.equals(":subscribed")) {
+                        subscribed.countDown();
+                    } else if (line.startsWith("id:")) {
+                        long now = System.nanoTime();
+                        arrivals.merge(line.substring(3, line.lastIndexOf(':')), now, Math::max);
+                        received.incrementAndGet();
+                    }
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            }));
+        }
+        assertTrue(subscribed.await(120, TimeUnit.SECONDS), "subscribed: " + (count - subscribed.getCount()));
+        // Lets Tomcat's request threads finish returning to the pool
+        Thread.sleep(1_000);
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        System.gc();
+        Thread.sleep(200);
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private Long merchant() throws Exception {
+        send("/api/auth/register", null, Map.of("name", "Stream benchmark", "email", "stream-benchmark@bench.test",
+                "password", "password123"));
+        return jdbcTemplate.queryForObject("SELECT id FROM merchant WHERE email = 'stream-benchmark@bench.test'", Long.class);
+    }
+
+    private String apiKey() throws Exception {
+        String jwt = send("/api/auth/login", null, Map.of("email", "stream-benchmark@bench.test",
+                "password", "password123")).get("accessToken").asText();
+        return send("/api/apikeys", jwt, null).get("apiKey").asText();
+    }
+
+    private JsonNode send(String path, String jwt, Object body) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Content-Type", "application/json")
+                .POST(body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)));
+        if (jwt != null) {
+            request.header("Authorization", "Bearer " + jwt);
+        }
+        HttpResponse<String> response = HttpClient.newHttpClient().send(request.build(), HttpResponse.BodyHandlers.ofString());
+        return objectMapper.readTree(response.body());
+    }
+}
@@ -0,0 +1,10 @@
+package com.payment.benchmark;
+
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * {@link AbstractThreadModelBenchmark} with Tomcat requests on platform threads.
+ */
+@TestPropertySource(properties = "spring.threads.virtual.enabled=false")
+class PlatformThreadBenchmarkTest extends AbstractThreadModelBenchmark {
+}
@@ -0,0 +1,78 @@
+package com.payment.benchmark;
+
+import com.payment.AbstractIntegrationTest;
+import com.payment.domain.UuidV7;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Sustained insert throughput and primary key index size for a payment_intent-shaped table keyed by
+ * random UUIDv4 vs time-ordered UUIDv7. Row count defaults to 2M and can be changed with
+ * {@code -Dbenchmark.rows}. Needs Docker; run with
+ * {@code ./mvnw -Pbenchmark test -Dtest=UuidPrimaryKeyBenchmarkTest}.
+ */
+@Tag("benchmark")
+class UuidPrimaryKeyBenchmarkTest extends AbstractIntegrationTest {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 2_000_000);
+    private static final int BATCH = 1_000;
+    private static final int SEGMENTS = 5;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void insertThroughputAndIndexSize_v4VsV7() {
+        Result v4 = run("uuid_bench_v4", UUID::randomUUID);
+        Result v7 = run("uuid_bench_v7", UuidV7::next);
+        System.out.printf("UUID primary key, %,d rows: v4 %,d rows/s (last %d%%: %,d rows/s), pkey %,d kB, leaf density %.1f%%; "
+                        + "v7 %,d rows/s (last %d%%: %,d rows/s), pkey %,d kB, leaf density %.1f%%%n",
+                ROWS, v4.rowsPerSecond, 100 / SEGMENTS, v4.lastSegmentRowsPerSecond, v4.indexKb, v4.leafDensity,
+                v7.rowsPerSecond, 100 / SEGMENTS, v7.lastSegmentRowsPerSecond, v7.indexKb, v7.leafDensity);
+    }
+
+    private Result run(String table, Supplier<UUID> ids) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + table);
+        jdbcTemplate.execute("CREATE TABLE " + table + " (id UUID PRIMARY KEY, merchant_id BIGINT NOT NULL, "
+                + "amount DECIMAL(19,2) NOT NULL, currency VARCHAR(3) NOT NULL, "
+                + "created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+        jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pgstattuple");
+        String sql = "INSERT INTO " + table + " (id, merchant_id, amount, currency) VALUES (?, ?, ?, ?)";
+        BigDecimal amount = new BigDecimal("10.00");
+        int perSegment = ROWS / SEGMENTS;
+        long lastSegmentNanos = 0;
+        long start = System.nanoTime();
+        for (int segment = 0; segment < SEGMENTS; segment++) {
+            long segmentStart = System.nanoTime();
+            for (int inserted = 0; inserted < perSegment; inserted += BATCH) {
+                List<Object[]> rows = new ArrayList<>(BATCH);
+                for (int i = 0; i < BATCH; i++) {
+                    rows.add(new Object[]{ids.get(), (long) (i % 100), amount, "SEK"});
+                }
+                jdbcTemplate.batchUpdate(sql, rows);
+            }
+            lastSegmentNanos = System.nanoTime() - segmentStart;
+        }
+        long totalNanos = System.nanoTime() - start;
+        Long indexBytes = jdbcTemplate.queryForObject("SELECT pg_relation_size(?::regclass)", Long.class, table + "_pkey");
+        Double leafDensity = jdbcTemplate.queryForObject("SELECT avg_leaf_density FROM pgstatindex(?)", Double.class,
+                table + "_pkey");
+        jdbcTemplate.execute("DROP TABLE " + table);
+        return new Result(
+                (long) (perSegment * SEGMENTS / (totalNanos / 1e9)),
+                (long) (perSegment / (lastSegmentNanos / 1e9)),
+                indexBytes / 1024,
+                leafDensity);
+    }
+
+    private record Result(long rowsPerSecond, long lastSegmentRowsPerSecond, long indexKb, double leafDensity) {
+    }
+}
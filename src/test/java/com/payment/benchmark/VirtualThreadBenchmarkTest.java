@@ -0,0 +1,10 @@
+package com.payment.benchmark;
+
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * {@link AbstractThreadModelBenchmark} with Tomcat requests on virtual threads.
+ */
+@TestPropertySource(properties = "spring.threads.virtual.enabled=true")
+class VirtualThreadBenchmarkTest extends AbstractThreadModelBenchmark {
+}
@@ -0,0 +1,129 @@
+package com.payment.benchmark;
+
+import com.payment.AbstractIntegrationTest;
+import com.payment.domain.Merchant;
+import com.payment.repository.MerchantRepository;
+import com.payment.service.PaymentIntentService;
+import com.payment.service.WebhookDeliveryEngine;
+import com.payment.service.WebhookEndpointService;
+import com.payment.service.WebhookUrlPolicy;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Webhook delivery throughput against a stub endpoint that answers after 50 ms, with 1, 2, 4 and 8 delivery
+ * workers of 25 in-flight deliveries each, and with the same 8 workers split across two nodes. Every delivery
+ * must arrive exactly once. Delivery count defaults to 5,000 and can be changed with {@code -Dbenchmark.rows}.
+ * Needs Docker; run with {@code ./mvnw -Pbenchmark test -Dtest=WebhookDeliveryBenchmarkTest}.
+ */
+@Tag("benchmark")
+@TestPropertySource(properties = {
+        "webhook.endpoint.require-https=false",
+        "webhook.endpoint.allow-private-addresses=true"
+})
+class WebhookDeliveryBenchmarkTest extends AbstractIntegrationTest {
+
+    private static final int DELIVERIES = Integer.getInteger("benchmark.rows", 5_000);
+    private static final int BATCH_SIZE = 25;
+    private static final long LATENCY_MS = 50;
+
+    @Autowired
+    PaymentIntentService paymentIntentService;
+    @Autowired
+    WebhookEndpointService webhookEndpointService;
+    @Autowired
+    MerchantRepository merchantRepository;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    private final Map<String, Integer> received = new ConcurrentHashMap<>();
+
+    @Test
+    void deliveryThroughput_byWorkerCount() throws Exception {
+        HttpServer stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 4096);
+        stub.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        stub.createContext("/hooks", exchange -> {
+            try {
+                exchange.getRequestBody().readAllBytes();
+                received.merge(exchange.getRequestHeaders().getFirst("Webhook-Id"), 1, Integer::sum);
+                Thread.sleep(LATENCY_MS);
+                exchange.sendResponseHeaders(200, -1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        });
+        stub.start();
+        try {
+            Long merchantId = merchant();
+            webhookEndpointService.set(merchantId, "http://127.0.0.1:" + stub.getAddress().getPort() + "/hooks");
+            for (int i = 0; i < 1_000; i++) {
+                paymentIntentService.create(merchantId, new BigDecimal("10.00"), "SEK", null, null, null, null);
+            }
+            UUID intentId = jdbcTemplate.queryForObject("SELECT id FROM payment_intent WHERE merchant_id = ? LIMIT 1",
+                    UUID.class, merchantId);
+
+            System.out.printf("Deliver %,d webhooks, endpoint latency %d ms, %d in flight per worker:%n",
+                    DELIVERIES, LATENCY_MS, BATCH_SIZE);
+            for (int workers : new int[]{1, 2, 4, 8}) {
+                run(merchantId, intentId, 1, workers);
+            }
+            run(merchantId, intentId, 2, 4);
+        } finally {
+            stub.stop(0);
+        }
+    }
+
+    private void run(Long merchantId, UUID intentId, int nodes, int workersPerNode) throws Exception {
+        received.clear();
+        jdbcTemplate.update("DELETE FROM webhook_delivery");
+        jdbcTemplate.update("""
+                INSERT INTO webhook_delivery (id, payment_intent_id, merchant_id, event_type, status, payload)
+                SELECT nextval('webhook_delivery_id_seq'), ?, ?, 'SUCCEEDED', 'PENDING', '{}' FROM generate_series(1, ?)
+                """, intentId, merchantId, DELIVERIES);
+
+        WebhookDeliveryEngine[] engines = new WebhookDeliveryEngine[nodes];
+        long start = System.nanoTime();
+        for (int i = 0; i < nodes; i++) {
+            engines[i] = new WebhookDeliveryEngine(jdbcTemplate, new SimpleMeterRegistry(),
+                    new WebhookUrlPolicy(false, true), workersPerNode, BATCH_SIZE, 1_000, 10_000, 60_000, 3, 1_000, 10_000, 10, false);
+            engines[i].start();
+        }
+        while (jdbcTemplate.queryForObject("SELECT count(*) FROM webhook_delivery WHERE status = 'DELIVERED'", Long.class) < DELIVERIES) {
+            Thread.sleep(10);
+        }
+        long nanos = System.nanoTime() - start;
+        for (WebhookDeliveryEngine engine : engines) {
+            engine.stop();
+        }
+
+        assertEquals(DELIVERIES, received.size());
+        assertEquals(DELIVERIES, received.values().stream().mapToInt(Integer::intValue).sum(), "duplicate deliveries");
+        System.out.printf("  %d node(s) x %d worker(s): %,d deliveries/s (bound %,d/s by in-flight / latency)%n",
+                nodes, workersPerNode, (long) (DELIVERIES / (nanos / 1e9)),
+                nodes * workersPerNode * BATCH_SIZE * 1000 / LATENCY_MS);
+    }
+
+    private Long merchant() {
+        Merchant merchant = new Merchant();
+        merchant.setName("Webhook benchmark");
+        merchant.setEmail("webhook-benchmark-" + UUID.randomUUID() + "@bench.test");
+        merchant.setPasswordHash("unused");
+        return merchantRepository.save(merchant).getId();
+    }
+}
@@ -0,0 +1,168 @@
+package com.payment.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.AbstractIntegrationTest;
+import com.payment.repository.*;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureMockMvc
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class BatchCreateIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+    @Autowired
+    IdempotencyRecordRepository idempotencyRecordRepository;
+    @Autowired
+    PaymentEventRepository paymentEventRepository;
+    @Autowired
+    WebhookDeliveryRepository webhookDeliveryRepository;
+    @Autowired
+    PaymentIntentRepository paymentIntentRepository;
+    @Autowired
+    ApiKeyRepository apiKeyRepository;
+    @Autowired
+    MerchantRepository merchantRepository;
+
+    private String apiKey;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        idempotencyRecordRepository.deleteAll();
+        paymentEventRepository.deleteAll();
+        webhookDeliveryRepository.deleteAll();
+        paymentIntentRepository.deleteAll();
+        apiKeyRepository.deleteAll();
+        merchantRepository.deleteAll();
+
+        var registerBody = Map.of("name", "Test", "email", "batch@test.com", "password", "password123");
+        mockMvc.perform(post("/api/auth/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(registerBody))).andExpect(status().isCreated());
+        var loginResult = mockMvc.perform(post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("email", "batch@test.com", "password", "password123"))))
+                .andExpect(status().isOk()).andReturn();
+        String jwt = objectMapper.readTree(loginResult.getResponse().getContentAsString()).get("accessToken").asText();
+        var apiKeyResult = mockMvc.perform(post("/api/apikeys").header("Authorization", "Bearer " + jwt))
+                .andExpect(status().isCreated()).andReturn();
+        apiKey = objectMapper.readTree(apiKeyResult.getResponse().getContentAsString()).get("apiKey").asText();
+    }
+
+    @Test
+    void itemsSucceedOrFailIndependently_andReplayOnRetry() throws Exception {
+        List<Map<String, Object>> items = List.of(
+                item("k-1", "10.00"),
+                item("k-2", "20.00"),
+                item("k-3", "0.00"),
+                item("k-1", "30.00"),
+                item("k-4", "40.00"));
+
+        JsonNode first = batch(items);
+        assertEquals(3, first.get("created").asInt());
+        assertEquals(2, first.get("failed").asInt());
+        assertEquals(List.of("CREATED", "CREATED", "FAILED", "FAILED", "CREATED"), outcomes(first));
+        assertTrue(first.get("results").get(2).get("error").asText().startsWith("amount:"));
+        assertEquals("Duplicate idempotency key in batch", first.get("results").get(3).get("error").asText());
+        assertEquals(3, paymentIntentRepository.count());
+        assertEquals(3, paymentEventRepository.count());
+
+        JsonNode retry = batch(List.of(item("k-1", "10.00"), item("k-2", "99.00"), item("k-5", "50.00")));
+        assertEquals(List.of("REPLAYED", "FAILED", "CREATED"), outcomes(retry));
+        assertEquals(id(first, 0), id(retry, 0));
+        assertEquals("Idempotency key already used with a different payload",
+                retry.get("results").get(1).get("error").asText());
+
+        // A batch item and a single create with the same key and body are the same request
+        var single = mockMvc.perform(post("/api/payment_intents")
+                        .header("X-API-KEY", apiKey)
+                        .header("Idempotency-Key", "k-4")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\": 40, \"currency\": \"SEK\"}"))
+                .andExpect(status().isCreated()).andReturn();
+        assertEquals(id(first, 4), objectMapper.readTree(single.getResponse().getContentAsString()).get("id").asText());
+        assertEquals(4, paymentIntentRepository.count());
+    }
+
+    @Test
+    void batch_insertsInJdbcBatches() throws Exception {
+        batch(List.of(item("warm-up", "1.00")));
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            items.add(item("bulk-" + i, "10.00"));
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        JsonNode result = batch(items);
+
+        assertEquals(500, result.get("created").asInt());
+        assertEquals(1500, statistics.getEntityInsertCount(), "intent, event and idempotency record per item");
+        // Two key lookups, then per 250-item chunk batched INSERTs of 50 rows and pooled sequence fetches;
+        // one statement per row would be 1500
+        assertTrue(statistics.getPrepareStatementCount() <= 30, "statements: " + statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void tooManyItems_returns400() throws Exception {
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (int i = 0; i < 1001; i++) {
+            items.add(item("k-" + i, "1.00"));
+        }
+        mockMvc.perform(post("/api/payment_intents/batch")
+                        .header("X-API-KEY", apiKey)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("items", items))))
+                .andExpect(status().isBadRequest());
+    }
+
+    private JsonNode batch(List<Map<String, Object>> items) throws Exception {
+        var result = mockMvc.perform(post("/api/payment_intents/batch")
+                        .header("X-API-KEY", apiKey)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("items", items))))
+                .andExpect(status().isOk()).andReturn();
+        return objectMapper.readTree(result.getResponse().getContentAsString());
+    }
+
+    private static Map<String, Object> item(String idempotencyKey, String amount) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("idempotencyKey", idempotencyKey);
+        item.put("amount", amount);
+        item.put("currency", "SEK");
+        return item;
+    }
+
+    private static List<String> outcomes(JsonNode response) {
+        List<String> outcomes = new ArrayList<>();
+        response.get("results").forEach(result -> outcomes.add(result.get("outcome").asText()));
+        return outcomes;
+    }
+
+    private static String id(JsonNode response, int index) {
+        return response.get("results").get(index).get("paymentIntent").get("id").asText();
+    }
+}
@@ -0,0 +1,287 @@
+package com.payment.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.AbstractIntegrationTest;
+import com.payment.Await;
+import com.payment.domain.PaymentIntent;
+import com.payment.domain.PaymentStatus;
+import com.payment.repository.*;
+import com.payment.service.PaymentIntentService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        // Provider results land after the batch response, so they are not counted with its statements
+        "payment.provider.simulated.latency-median-ms=300",
+        "payment.provider.simulated.latency-p99-ms=300"
+})
+class BatchUpdateIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+    @Autowired
+    PaymentIntentService paymentIntentService;
+    @Autowired
+    IdempotencyRecordRepository idempotencyRecordRepository;
+    @Autowired
+    PaymentEventRepository paymentEventRepository;
+    @Autowired
+    WebhookDeliveryRepository webhookDeliveryRepository;
+    @Autowired
+    PaymentIntentRepository paymentIntentRepository;
+    @Autowired
+    ApiKeyRepository apiKeyRepository;
+    @Autowired
+    MerchantRepository merchantRepository;
+
+    private String apiKey;
+    private Long merchantId;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        idempotencyRecordRepository.deleteAll();
+        paymentEventRepository.deleteAll();
+        webhookDeliveryRepository.deleteAll();
+        paymentIntentRepository.deleteAll();
+        apiKeyRepository.deleteAll();
+        merchantRepository.deleteAll();
+
+        var registerBody = Map.of("name", "Test", "email", "batch-update@test.com", "password", "password123");
+        mockMvc.perform(post("/api/auth/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(registerBody))).andExpect(status().isCreated());
+        merchantId = merchantRepository.findByEmail("batch-update@test.com").orElseThrow().getId();
+
+        var loginResult = mockMvc.perform(post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("email", "batch-update@test.com", "password", "password123"))))
+                .andExpect(status().isOk()).andReturn();
+        String jwt = objectMapper.readTree(loginResult.getResponse().getContentAsString()).get("accessToken").asText();
+        var apiKeyResult = mockMvc.perform(post("/api/apikeys").header("Authorization", "Bearer " + jwt))
+                .andExpect(status().isCreated()).andReturn();
+        apiKey = objectMapper.readTree(apiKeyResult.getResponse().getContentAsString()).get("apiKey").asText();
+    }
+
+    @Test
+    void confirm_itemsSucceedOrFailIndependently_andReplayOnRetry() throws Exception {
+        UUID first = intent();
+        UUID second = intent();
+        UUID canceled = intent();
+        paymentIntentService.cancel(merchantId, canceled);
+
+        JsonNode response = batch("/batch/confirm", List.of(
+                confirmItem(first, "c-1", "tok_1"),
+                confirmItem(second, "c-2", "tok_2"),
+                confirmItem(canceled, "c-3", "tok_3"),
+                confirmItem(UUID.randomUUID(), "c-4", "tok_4"),
+                confirmItem(first, "c-5", "tok_5")));
+
+        assertEquals(2, response.get("updated").asInt());
+        assertEquals(List.of("UPDATED", "UPDATED", "FAILED", "FAILED", "FAILED"), outcomes(response));
+        assertEquals("PROCESSING", response.get("results").get(0).get("paymentIntent").get("status").asText());
+        assertEquals("Cannot confirm payment in status: CANCELED", error(response, 2));
+        assertEquals("Payment intent not found", error(response, 3));
+        assertEquals("Duplicate payment intent id in batch", error(response, 4));
+        awaitStatus(first, PaymentStatus.SUCCEEDED);
+        awaitStatus(second, PaymentStatus.SUCCEEDED);
+
+        JsonNode retry = batch("/batch/confirm", List.of(
+                confirmItem(first, "c-1", "tok_1"),
+                confirmItem(second, "c-2", "tok_other"),
+                confirmItem(canceled, "c-1", "tok_1")));
+        assertEquals(List.of("REPLAYED", "FAILED", "FAILED"), outcomes(retry));
+        assertEquals(first.toString(), retry.get("results").get(0).get("paymentIntent").get("id").asText());
+        assertEquals("Idempotency key already used with a different payload", error(retry, 1));
+        assertEquals("Duplicate idempotency key in batch", error(retry, 2));
+
+        // A batch item and a single confirm with the same key and body are the same request
+        mockMvc.perform(post("/api/payment_intents/" + second + "/confirm")
+                        .header("X-API-KEY", apiKey)
+                        .header("Idempotency-Key", "c-2")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"paymentMethodType\": \"card\", \"paymentMethodToken\": \"tok_2\"}"))
+                .andExpect(status().isOk());
+        assertEquals(6, paymentEventRepository.findByMerchantIdAndPaymentIntentIdOrderByCreatedAtAsc(merchantId, first).size()
+                + paymentEventRepository.findByMerchantIdAndPaymentIntentIdOrderByCreatedAtAsc(merchantId, second).size());
+    }
+
+    @Test
+    void cancel_reportsInvalidTransitionsPerItem() throws Exception {
+        UUID open = intent();
+        UUID confirmed = intent();
+        paymentIntentService.confirm(merchantId, confirmed, "c-1", "hash");
+        awaitStatus(confirmed, PaymentStatus.SUCCEEDED);
+
+        JsonNode response = batch("/batch/cancel", Map.of("ids", List.of(open, confirmed, UUID.randomUUID())));
+
+        assertEquals(List.of("UPDATED", "FAILED", "FAILED"), outcomes(response));
+        assertEquals("CANCELED", response.get("results").get(0).get("paymentIntent").get("status").asText());
+        assertEquals("Cannot cancel payment in status: SUCCEEDED", error(response, 1));
+        assertEquals("Payment intent not found", error(response, 2));
+        assertEquals(PaymentStatus.CANCELED, paymentIntentRepository.findById(open).orElseThrow().getStatus());
+    }
+
+    @Test
+    void lockedIntent_failsWithoutBlockingTheBatch() throws Exception {
+        UUID locked = intent();
+        UUID free = intent();
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() ->
+                new TransactionTemplate(transactionManager).executeWithoutResult(tx -> {
+                    jdbcTemplate.queryForList("SELECT id FROM payment_intent WHERE id = ? FOR UPDATE", locked);
+                    held.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+        assertTrue(held.await(10, TimeUnit.SECONDS));
+
+        JsonNode response;
+        try {
+            response = batch("/batch/cancel", Map.of("ids", List.of(locked, free)));
+        } finally {
+            release.countDown();
+            holder.get(10, TimeUnit.SECONDS);
+        }
+
+        assertEquals(List.of("FAILED", "UPDATED"), outcomes(response));
+        assertEquals("Payment intent is being modified by a concurrent request; retry", error(response, 0));
+        assertEquals(PaymentStatus.CREATED, paymentIntentRepository.findById(locked).orElseThrow().getStatus());
+        assertEquals(PaymentStatus.CANCELED, paymentIntentRepository.findById(free).orElseThrow().getStatus());
+    }
+
+    @Test
+    void confirmKeyTakenConcurrently_failsOnlyThatItem() throws Exception {
+        UUID holder = intent();
+        UUID contested = intent();
+        UUID other = intent();
+        CountDownLatch taken = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // Takes the key for another intent without committing, so the batch's lookups miss it and its update
+        // waits on the unique index until this commits
+        CompletableFuture<Void> concurrent = CompletableFuture.runAsync(() ->
+                new TransactionTemplate(transactionManager).executeWithoutResult(tx -> {
+                    jdbcTemplate.update("UPDATE payment_intent SET idempotency_key_confirm = 'contested' WHERE id = ? AND merchant_id = ?",
+                            holder, merchantId);
+                    taken.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+        assertTrue(taken.await(10, TimeUnit.SECONDS));
+
+        CompletableFuture<JsonNode> batch = CompletableFuture.supplyAsync(() -> {
+            try {
+                return batch("/batch/confirm", List.of(
+                        confirmItem(contested, "contested", "tok_1"),
+                        confirmItem(other, "uncontested", "tok_2")));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Await.until("batch waiting on the unique index", () -> jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_locks WHERE NOT granted", Long.class) > 0);
+        release.countDown();
+        concurrent.get(10, TimeUnit.SECONDS);
+        JsonNode response = batch.get(10, TimeUnit.SECONDS);
+
+        assertEquals(List.of("FAILED", "UPDATED"), outcomes(response));
+        assertEquals("Idempotency key already used for another payment intent", error(response, 0));
+        assertEquals(PaymentStatus.CREATED, paymentIntentRepository.findById(contested).orElseThrow().getStatus());
+        awaitStatus(other, PaymentStatus.SUCCEEDED);
+    }
+
+    @Test
+    void confirm_writesInJdbcBatches() throws Exception {
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            items.add(confirmItem(intent(), "bulk-" + i, "tok_" + i));
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        JsonNode response = batch("/batch/confirm", items);
+
+        assertEquals(200, response.get("updated").asInt());
+        assertEquals(200, statistics.getEntityUpdateCount());
+        // Two key lookups and one locking select, then batched UPDATEs and INSERTs of 50 rows with pooled
+        // sequence fetches; one statement per row would be 600
+        assertTrue(statistics.getPrepareStatementCount() <= 40, "statements: " + statistics.getPrepareStatementCount());
+        // Let the provider results land before the next test clears the tables
+        Await.until("provider results", () -> jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM payment_intent WHERE status = 'PROCESSING'", Long.class) == 0);
+    }
+
+    private UUID intent() {
+        PaymentIntent intent = paymentIntentService.create(merchantId, new BigDecimal("10.00"), "SEK", null, null, null, null);
+        return intent.getId();
+    }
+
+    private void awaitStatus(UUID id, PaymentStatus expected) {
+        Await.until(id + " " + expected, () -> paymentIntentRepository.findById(id).orElseThrow().getStatus() == expected);
+    }
+
+    private JsonNode batch(String path, Object body) throws Exception {
+        Object content = body instanceof List<?> items ? Map.of("items", items) : body;
+        var result = mockMvc.perform(post("/api/payment_intents" + path)
+                        .header("X-API-KEY", apiKey)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(content)))
+                .andExpect(status().isOk()).andReturn();
+        return objectMapper.readTree(result.getResponse().getContentAsString());
+    }
+
+    private static Map<String, Object> confirmItem(UUID id, String idempotencyKey, String token) {
+        return Map.of("id", id, "idempotencyKey", idempotencyKey, "paymentMethodType", "card", "paymentMethodToken", token);
+    }
+
+    private static List<String> outcomes(JsonNode response) {
+        List<String> outcomes = new ArrayList<>();
+        response.get("results").forEach(result -> outcomes.add(result.get("outcome").asText()));
+        return outcomes;
+    }
+
+    private static String error(JsonNode response, int index) {
+        return response.get("results").get(index).get("error").asText();
+    }
+}
@@ -2,6 +2,7 @@ package com.payment.integration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.payment.AbstractIntegrationTest;
+import com.payment.Await;
 import com.payment.repository.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,14 +11,19 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.Duration;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -106,14 +112,56 @@ class ConcurrencyIntegrationTest extends AbstractIntegrationTest {
 
         latch.countDown();
         executor.shutdown();
-        while (!executor.isTerminated()) {
-            Thread.sleep(50);
-        }
+        Await.until("concurrent confirms", Duration.ofSeconds(30), executor::isTerminated);
 
         assertEquals(threads, successCount.get(), "All should return 200 (idempotent or first success)");
 
-        var events = paymentEventRepository.findByPaymentIntentIdOrderByCreatedAtAsc(UUID.fromString(intentId));
+        Long merchantId = merchantRepository.findByEmail("concur@test.com").orElseThrow().getId();
+        var events = paymentEventRepository.findByMerchantIdAndPaymentIntentIdOrderByCreatedAtAsc(merchantId,
+                UUID.fromString(intentId));
         long confirmCount = events.stream().filter(e -> e.getType().name().equals("CONFIRM_REQUESTED")).count();
         assertEquals(1, confirmCount);
     }
+
+    @Test
+    void createStorm_sameIdempotencyKey_insertsExactlyOnce() throws Exception {
+        int requests = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        CountDownLatch latch = new CountDownLatch(1);
+        Set<String> intentIds = ConcurrentHashMap.newKeySet();
+        AtomicInteger createdCount = new AtomicInteger(0);
+        long recordsBefore = idempotencyRecordRepository.count();
+        long intentsBefore = paymentIntentRepository.count();
+
+        String idempotencyKey = UUID.randomUUID().toString();
+        String body = objectMapper.writeValueAsString(Map.of("amount", 75, "currency", "SEK"));
+        for (int i = 0; i < requests; i++) {
+            executor.submit(() -> {
+                try {
+                    latch.await();
+                    var result = mockMvc.perform(post("/api/payment_intents")
+                            .header("X-API-KEY", apiKey)
+                            .header("Idempotency-Key", idempotencyKey)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(body))
+                            .andReturn();
+                    if (result.getResponse().getStatus() == 201) {
+                        createdCount.incrementAndGet();
+                        intentIds.add(objectMapper.readTree(result.getResponse().getContentAsString()).get("id").asText());
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+
+        latch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+
+        assertEquals(requests, createdCount.get(), "Every duplicate should get the original 201 response");
+        assertEquals(1, intentIds.size());
+        assertEquals(recordsBefore + 1, idempotencyRecordRepository.count());
+        assertEquals(intentsBefore + 1, paymentIntentRepository.count());
+    }
 }
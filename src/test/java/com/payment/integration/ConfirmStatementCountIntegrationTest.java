@@ -0,0 +1,92 @@
+package com.payment.integration;
+
+import com.payment.AbstractIntegrationTest;
+import com.payment.domain.Merchant;
+import com.payment.domain.PaymentIntent;
+import com.payment.domain.PaymentStatus;
+import com.payment.repository.*;
+import com.payment.service.PaymentIntentService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Guards the number of statements Hibernate sends per confirm. The audit entry is written through JDBC and is
+ * not counted here. The simulated provider is slowed down past the charge timeout, so no provider result is
+ * applied while statements are counted.
+ */
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "payment.provider.simulated.latency-median-ms=60000",
+        "payment.provider.simulated.latency-p99-ms=60000"
+})
+class ConfirmStatementCountIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    PaymentIntentService paymentIntentService;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+    @Autowired
+    IdempotencyRecordRepository idempotencyRecordRepository;
+    @Autowired
+    PaymentEventRepository paymentEventRepository;
+    @Autowired
+    WebhookDeliveryRepository webhookDeliveryRepository;
+    @Autowired
+    PaymentIntentRepository paymentIntentRepository;
+    @Autowired
+    ApiKeyRepository apiKeyRepository;
+    @Autowired
+    MerchantRepository merchantRepository;
+
+    private Long merchantId;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyRecordRepository.deleteAll();
+        paymentEventRepository.deleteAll();
+        webhookDeliveryRepository.deleteAll();
+        paymentIntentRepository.deleteAll();
+        apiKeyRepository.deleteAll();
+        merchantRepository.deleteAll();
+
+        Merchant merchant = new Merchant();
+        merchant.setName("Batching");
+        merchant.setEmail("batching@test.com");
+        merchant.setPasswordHash("unused");
+        merchantId = merchantRepository.save(merchant).getId();
+    }
+
+    @Test
+    void confirm_sendsFourStatements() {
+        // First confirm allocates the sequence blocks, which later confirms draw from without a round trip
+        confirm(createIntent());
+        PaymentIntent intent = createIntent();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        PaymentIntent confirmed = confirm(intent);
+
+        assertEquals(PaymentStatus.PROCESSING, confirmed.getStatus());
+        assertEquals(2, statistics.getEntityInsertCount(), "one payment event and one idempotency record");
+        // SELECT intent, INSERT event, INSERT idempotency record, UPDATE intent
+        assertEquals(4, statistics.getPrepareStatementCount());
+    }
+
+    private PaymentIntent createIntent() {
+        return paymentIntentService.create(merchantId, new BigDecimal("10.00"), "EUR", null, null, null, null);
+    }
+
+    private PaymentIntent confirm(PaymentIntent intent) {
+        return paymentIntentService.confirm(merchantId, intent.getId(), UUID.randomUUID().toString(), "hash");
+    }
+}
@@ -0,0 +1,142 @@
+package com.payment.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.AbstractIntegrationTest;
+import com.payment.repository.*;
+import com.payment.service.PaymentIntentService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureMockMvc
+class CursorPaginationIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PaymentIntentService paymentIntentService;
+    @Autowired
+    IdempotencyRecordRepository idempotencyRecordRepository;
+    @Autowired
+    PaymentEventRepository paymentEventRepository;
+    @Autowired
+    WebhookDeliveryRepository webhookDeliveryRepository;
+    @Autowired
+    PaymentIntentRepository paymentIntentRepository;
+    @Autowired
+    ApiKeyRepository apiKeyRepository;
+    @Autowired
+    MerchantRepository merchantRepository;
+
+    private String apiKey;
+    private Long merchantId;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        idempotencyRecordRepository.deleteAll();
+        paymentEventRepository.deleteAll();
+        webhookDeliveryRepository.deleteAll();
+        paymentIntentRepository.deleteAll();
+        apiKeyRepository.deleteAll();
+        merchantRepository.deleteAll();
+
+        var registerBody = Map.of("name", "Test", "email", "cursor@test.com", "password", "password123");
+        mockMvc.perform(post("/api/auth/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(registerBody))).andExpect(status().isCreated());
+        merchantId = merchantRepository.findByEmail("cursor@test.com").orElseThrow().getId();
+
+        var loginResult = mockMvc.perform(post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("email", "cursor@test.com", "password", "password123"))))
+                .andExpect(status().isOk()).andReturn();
+        String jwt = objectMapper.readTree(loginResult.getResponse().getContentAsString()).get("accessToken").asText();
+        var apiKeyResult = mockMvc.perform(post("/api/apikeys").header("Authorization", "Bearer " + jwt))
+                .andExpect(status().isCreated()).andReturn();
+        apiKey = objectMapper.readTree(apiKeyResult.getResponse().getContentAsString()).get("apiKey").asText();
+    }
+
+    @Test
+    void pagesForwardAndBack_inCreatedAtIdOrder() throws Exception {
+        for (int i = 0; i < 25; i++) {
+            paymentIntentService.create(merchantId, new BigDecimal(10 + i), "SEK", null, null, null, null);
+        }
+        // Identical timestamps for a block of rows, so the id tie-breaker decides their order
+        jdbcTemplate.update("UPDATE payment_intent SET created_at = ? WHERE merchant_id = ? AND amount < 20",
+                Timestamp.from(Instant.parse("2026-01-01T00:00:00Z")), merchantId);
+        List<String> expected = jdbcTemplate.queryForList(
+                "SELECT id::text FROM payment_intent WHERE merchant_id = ? ORDER BY created_at DESC, id DESC",
+                String.class, merchantId);
+
+        JsonNode first = list(null, null);
+        JsonNode second = list("starting_after", first.get("nextCursor").asText());
+        JsonNode third = list("starting_after", second.get("nextCursor").asText());
+
+        assertTrue(first.get("hasMore").asBoolean());
+        assertTrue(first.get("previousCursor").isNull());
+        assertTrue(second.get("hasMore").asBoolean());
+        assertFalse(third.get("hasMore").asBoolean());
+        assertTrue(third.get("nextCursor").isNull());
+        List<String> forward = new ArrayList<>();
+        forward.addAll(ids(first));
+        forward.addAll(ids(second));
+        forward.addAll(ids(third));
+        assertEquals(expected, forward);
+
+        JsonNode back = list("ending_before", third.get("previousCursor").asText());
+        assertEquals(ids(second), ids(back));
+        assertTrue(back.get("hasMore").asBoolean());
+        JsonNode backToStart = list("ending_before", back.get("previousCursor").asText());
+        assertEquals(ids(first), ids(backToStart));
+        assertFalse(backToStart.get("hasMore").asBoolean());
+    }
+
+    @Test
+    void invalidCursor_returns400() throws Exception {
+        mockMvc.perform(get("/api/payment_intents")
+                        .header("X-API-KEY", apiKey)
+                        .param("pagination", "cursor")
+                        .param("starting_after", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private JsonNode list(String cursorParam, String cursor) throws Exception {
+        MockHttpServletRequestBuilder request = get("/api/payment_intents")
+                .header("X-API-KEY", apiKey)
+                .param("pagination", "cursor")
+                .param("size", "10");
+        if (cursorParam != null) {
+            request.param(cursorParam, cursor);
+        }
+        var result = mockMvc.perform(request).andExpect(status().isOk()).andReturn();
+        return objectMapper.readTree(result.getResponse().getContentAsString());
+    }
+
+    private static List<String> ids(JsonNode page) {
+        List<String> ids = new ArrayList<>();
+        page.get("data").forEach(intent -> ids.add(intent.get("id").asText()));
+        return ids;
+    }
+}
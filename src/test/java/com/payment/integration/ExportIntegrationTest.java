@@ -0,0 +1,216 @@
+package com.payment.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.AbstractIntegrationTest;
+import com.payment.Await;
+import com.payment.exception.RateLimitExceededException;
+import com.payment.repository.*;
+import com.payment.service.PaymentIntentExporter;
+import com.payment.service.PaymentIntentService;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.sql.DataSource;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureMockMvc
+class ExportIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    DataSource dataSource;
+    @Autowired
+    MeterRegistry meterRegistry;
+    @Autowired
+    PaymentIntentService paymentIntentService;
+    @Autowired
+    PaymentIntentExporter paymentIntentExporter;
+    @Autowired
+    IdempotencyRecordRepository idempotencyRecordRepository;
+    @Autowired
+    PaymentEventRepository paymentEventRepository;
+    @Autowired
+    WebhookDeliveryRepository webhookDeliveryRepository;
+    @Autowired
+    PaymentIntentRepository paymentIntentRepository;
+    @Autowired
+    ApiKeyRepository apiKeyRepository;
+    @Autowired
+    MerchantRepository merchantRepository;
+
+    @LocalServerPort
+    int port;
+
+    private String apiKey;
+    private Long merchantId;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        idempotencyRecordRepository.deleteAll();
+        paymentEventRepository.deleteAll();
+        webhookDeliveryRepository.deleteAll();
+        paymentIntentRepository.deleteAll();
+        apiKeyRepository.deleteAll();
+        merchantRepository.deleteAll();
+
+        var registerBody = Map.of("name", "Test", "email", "export@test.com", "password", "password123");
+        mockMvc.perform(post("/api/auth/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(registerBody))).andExpect(status().isCreated());
+        merchantId = merchantRepository.findByEmail("export@test.com").orElseThrow().getId();
+
+        var loginResult = mockMvc.perform(post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("email", "export@test.com", "password", "password123"))))
+                .andExpect(status().isOk()).andReturn();
+        String jwt = objectMapper.readTree(loginResult.getResponse().getContentAsString()).get("accessToken").asText();
+        var apiKeyResult = mockMvc.perform(post("/api/apikeys").header("Authorization", "Bearer " + jwt))
+                .andExpect(status().isCreated()).andReturn();
+        apiKey = objectMapper.readTree(apiKeyResult.getResponse().getContentAsString()).get("apiKey").asText();
+    }
+
+    @AfterEach
+    void tearDown() {
+        // Far quicker than the next setUp's entity-by-entity deleteAll once the bulk rows are in
+        jdbcTemplate.update("DELETE FROM payment_event WHERE merchant_id = ?", merchantId);
+        jdbcTemplate.update("DELETE FROM payment_intent WHERE merchant_id = ?", merchantId);
+    }
+
+    @Test
+    void exportsNdjsonAndCsv_newestFirst() throws Exception {
+        paymentIntentService.create(merchantId, new BigDecimal("10.00"), "SEK", "plain", null, null, null);
+        paymentIntentService.create(merchantId, new BigDecimal("20.50"), "SEK", "Order \"42\", rush", "cust-1", null, null);
+        paymentIntentService.create(merchantId, new BigDecimal("30.00"), "EUR", null, null, null, null);
+        List<String> expected = jdbcTemplate.queryForList(
+                "SELECT id::text FROM payment_intent WHERE merchant_id = ? ORDER BY created_at DESC, id DESC",
+                String.class, merchantId);
+
+        String ndjson = export("ndjson", "application/x-ndjson");
+        List<String> lines = ndjson.lines().toList();
+        assertEquals(3, lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            JsonNode intent = objectMapper.readTree(lines.get(i));
+            assertEquals(expected.get(i), intent.get("id").asText());
+            assertEquals("CREATED", intent.get("status").asText());
+        }
+
+        List<String> rows = export("csv", "text/csv").lines().toList();
+        assertEquals(4, rows.size());
+        assertTrue(rows.get(0).startsWith("id,status,amount,currency,description"));
+        assertTrue(rows.get(2).startsWith(expected.get(1) + ",CREATED,20.50,SEK,\"Order \"\"42\"\", rush\",cust-1,"),
+                rows.get(2));
+    }
+
+    @Test
+    void unknownFormat_returns400() throws Exception {
+        mockMvc.perform(get("/api/payment_intents/export").header("X-API-KEY", apiKey).param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void clientDisconnect_abortsExportAndReleasesConnection() throws Exception {
+        // Far more than the socket buffers hold, so the server is still streaming when the client leaves
+        jdbcTemplate.update("INSERT INTO payment_intent (id, merchant_id, amount, currency, status, created_at, updated_at, version) "
+                + "SELECT gen_random_uuid(), ?, 10.00, 'SEK', 'SUCCEEDED', now() - g * interval '1 second', now(), 0 "
+                + "FROM generate_series(1, 200000) g", merchantId);
+        Timer aborted = meterRegistry.timer("export.duration", "outcome", "aborted");
+        long abortedBefore = aborted.count();
+
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET /api/payment_intents/export HTTP/1.1\r\nHost: localhost\r\nX-API-KEY: " + apiKey
+                    + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            InputStream in = socket.getInputStream();
+            byte[] head = in.readNBytes(64 * 1024);
+            assertTrue(new String(Arrays.copyOf(head, 12), StandardCharsets.US_ASCII).startsWith("HTTP/1.1 200"));
+        }
+
+        var pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+        Await.until("aborted export released its connection",
+                () -> aborted.count() > abortedBefore && pool.getActiveConnections() == 0);
+        assertEquals(abortedBefore + 1, aborted.count());
+        assertEquals(0, pool.getActiveConnections());
+    }
+
+    @Test
+    void exportSlots_areReturnedOnce_howeverTheRequestEnds() throws Exception {
+        paymentIntentService.create(merchantId, new BigDecimal("10.00"), "SEK", null, null, null, null);
+        Timer completed = meterRegistry.timer("export.duration", "outcome", "completed");
+        long completedBefore = completed.count();
+        export("ndjson", "application/x-ndjson");
+
+        MvcResult started = mockMvc.perform(get("/api/payment_intents/export").header("X-API-KEY", apiKey))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MockAsyncContext asyncContext = (MockAsyncContext) started.getRequest().getAsyncContext();
+        // The export's own timeout, not the MVC default
+        assertEquals(Duration.ofMinutes(30).toMillis(), asyncContext.getTimeout());
+        // A timeout cancels a body that has not started yet, so let it finish first to have both release it
+        Await.until("export's body finished", () -> completed.count() == completedBefore + 2);
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+
+        // Released by the body and again by the timeout: still exactly export.max-concurrent slots
+        List<PaymentIntentExporter.Export> open = new ArrayList<>();
+        try {
+            for (int i = 0; i < 4; i++) {
+                open.add(paymentIntentExporter.open(merchantId, null, null, null, PaymentIntentExporter.Format.CSV));
+            }
+            assertThrows(RateLimitExceededException.class,
+                    () -> paymentIntentExporter.open(merchantId, null, null, null, PaymentIntentExporter.Format.CSV));
+        } finally {
+            open.forEach(PaymentIntentExporter.Export::release);
+        }
+    }
+
+    private String export(String format, String contentType) throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/payment_intents/export")
+                        .header("X-API-KEY", apiKey)
+                        .param("format", format))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(contentType))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+    }
+}
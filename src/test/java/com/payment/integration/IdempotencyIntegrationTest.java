@@ -7,6 +7,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
@@ -34,6 +35,8 @@ class IdempotencyIntegrationTest extends AbstractIntegrationTest {
     ApiKeyRepository apiKeyRepository;
     @Autowired
     MerchantRepository merchantRepository;
+    @Autowired
+    StringRedisTemplate redisTemplate;
 
     private String apiKey;
     private String idempotencyKey;
@@ -108,4 +111,63 @@ class IdempotencyIntegrationTest extends AbstractIntegrationTest {
                 .content(objectMapper.writeValueAsString(body2)))
                 .andExpect(status().isConflict());
     }
+
+    @Test
+    void replay_returnsCurrentState_fromCacheAndFromDatabase() throws Exception {
+        var body = Map.of("amount", 100, "currency", "SEK");
+        var created = mockMvc.perform(post("/api/payment_intents")
+                .header("X-API-KEY", apiKey)
+                .header("Idempotency-Key", idempotencyKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(body)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.status").value("CREATED"))
+                .andReturn();
+        String id = objectMapper.readTree(created.getResponse().getContentAsString()).get("id").asText();
+        mockMvc.perform(post("/api/payment_intents/" + id + "/cancel").header("X-API-KEY", apiKey))
+                .andExpect(status().isOk());
+
+        // Served from the Redis replay cache
+        mockMvc.perform(post("/api/payment_intents")
+                .header("X-API-KEY", apiKey)
+                .header("Idempotency-Key", idempotencyKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(body)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(id))
+                .andExpect(jsonPath("$.status").value("CANCELED"));
+
+        // Served from idempotency_record
+        redisTemplate.delete(redisTemplate.keys("idempotency:*"));
+        mockMvc.perform(post("/api/payment_intents")
+                .header("X-API-KEY", apiKey)
+                .header("Idempotency-Key", idempotencyKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(body)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(id))
+                .andExpect(jsonPath("$.status").value("CANCELED"));
+    }
+
+    @Test
+    void keyReusedAfterItsRecordExpired_returns409() throws Exception {
+        var body = Map.of("amount", 100, "currency", "SEK");
+        mockMvc.perform(post("/api/payment_intents")
+                .header("X-API-KEY", apiKey)
+                .header("Idempotency-Key", idempotencyKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(body)))
+                .andExpect(status().isCreated());
+        // Past idempotency.retention: record and cached replay are gone, the intent still holds the key
+        idempotencyRecordRepository.deleteAll();
+        redisTemplate.delete(redisTemplate.keys("idempotency:*"));
+
+        mockMvc.perform(post("/api/payment_intents")
+                .header("X-API-KEY", apiKey)
+                .header("Idempotency-Key", idempotencyKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(body)))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message").value("Idempotency key was already used and can no longer be replayed"));
+    }
 }
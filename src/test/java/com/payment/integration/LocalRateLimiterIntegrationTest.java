@@ -0,0 +1,112 @@
+package com.payment.integration;
+
+import com.payment.AbstractRedisTest;
+import com.payment.service.LocalRateLimiter;
+import com.payment.service.RateLimitPolicyTable;
+import com.payment.service.RateLimitService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Simulates several application nodes, each with its own local tier and Redis connection,
+ * sharing one Redis budget.
+ */
+class LocalRateLimiterIntegrationTest extends AbstractRedisTest {
+
+    private static final int NODES = 4;
+
+    private final AtomicInteger redisCalls = new AtomicInteger();
+
+    @Test
+    void underBurst_redisTrafficDropsByOrderOfMagnitude() throws Exception {
+        List<LocalRateLimiter> nodes = startNodes(100_000, "gcra", 100, 0.1);
+        String key = UUID.randomUUID().toString();
+
+        int admitted = burst(nodes, key, 500);
+
+        assertEquals(NODES * 500, admitted);
+        assertTrue(redisCalls.get() <= NODES * 500 / 10,
+                "Expected at most one Redis call per 10 requests, got " + redisCalls.get());
+    }
+
+    @Test
+    void globalLimit_neverExceeded_andUnderAdmissionWithinBound() throws Exception {
+        int limit = 1000;
+        List<LocalRateLimiter> nodes = startNodes(limit, "fixed-window", 50, 0.05);
+        String key = UUID.randomUUID().toString();
+
+        int admitted = burst(nodes, key, 600);
+
+        int maxLease = (int) (limit * 0.05);
+        assertTrue(admitted <= limit, "Admitted " + admitted + " over the global limit " + limit);
+        assertTrue(admitted >= limit - NODES * maxLease,
+                "Admitted " + admitted + ", below the error bound of " + (limit - NODES * maxLease));
+    }
+
+    @Test
+    void exhaustedBudget_rejectionIsServedLocally() {
+        List<LocalRateLimiter> nodes = startNodes(5, "fixed-window", 10, 1.0);
+        LocalRateLimiter node = nodes.get(0);
+        String key = UUID.randomUUID().toString();
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(node.checkAndIncrement(key).allowed());
+        }
+        int callsBeforeRejections = redisCalls.get();
+        for (int i = 0; i < 100; i++) {
+            RateLimitService.RateLimitResult result = node.checkAndIncrement(key);
+            assertFalse(result.allowed());
+            assertTrue(result.retryAfterSeconds() > 0);
+        }
+
+        assertEquals(callsBeforeRejections + 1, redisCalls.get());
+    }
+
+    private List<LocalRateLimiter> startNodes(int limit, String algorithm, int leaseSize, double maxError) {
+        List<LocalRateLimiter> nodes = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            RateLimitService redisTier = new RateLimitService(newRedisTemplate(), limit, 60, algorithm) {
+                @Override
+                public RateLimitLease lease(String key, int permits, RateLimitPolicyTable.Budget budget) {
+                    redisCalls.incrementAndGet();
+                    return super.lease(key, permits, budget);
+                }
+            };
+            nodes.add(new LocalRateLimiter(redisTier, true, leaseSize, maxError, 60_000));
+        }
+        return nodes;
+    }
+
+    private int burst(List<LocalRateLimiter> nodes, String key, int requestsPerNode) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(NODES * 4);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger admitted = new AtomicInteger();
+        for (LocalRateLimiter node : nodes) {
+            for (int t = 0; t < 4; t++) {
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < requestsPerNode / 4; i++) {
+                        if (node.checkAndIncrement(key).allowed()) {
+                            admitted.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        return admitted.get();
+    }
+}
@@ -0,0 +1,248 @@
+package com.payment.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.AbstractIntegrationTest;
+import com.payment.Await;
+import com.payment.domain.Merchant;
+import com.payment.domain.PaymentIntent;
+import com.payment.domain.PaymentStatus;
+import com.payment.repository.*;
+import com.payment.service.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the relay against the in-memory broker. The context is closed afterwards, so its relay does not drain
+ * outbox rows written by other test classes.
+ */
+@DirtiesContext
+@TestPropertySource(properties = {
+        "outbox.relay.enabled=true",
+        "outbox.relay.batch-size=50",
+        "outbox.relay.poll-ms=20"
+})
+class OutboxIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    PaymentIntentService paymentIntentService;
+    @Autowired
+    PaymentIntentBatchService paymentIntentBatchService;
+    @Autowired
+    OutboxRelay outboxRelay;
+    @Autowired
+    InMemoryOutboxBroker broker;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    StringRedisTemplate redisTemplate;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    IdempotencyRecordRepository idempotencyRecordRepository;
+    @Autowired
+    PaymentEventRepository paymentEventRepository;
+    @Autowired
+    WebhookDeliveryRepository webhookDeliveryRepository;
+    @Autowired
+    PaymentIntentRepository paymentIntentRepository;
+    @Autowired
+    ApiKeyRepository apiKeyRepository;
+    @Autowired
+    MerchantRepository merchantRepository;
+
+    private Long merchantId;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyRecordRepository.deleteAll();
+        paymentEventRepository.deleteAll();
+        webhookDeliveryRepository.deleteAll();
+        paymentIntentRepository.deleteAll();
+        apiKeyRepository.deleteAll();
+        merchantRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM outbox_event");
+        broker.clear();
+
+        Merchant merchant = new Merchant();
+        merchant.setName("Outbox");
+        merchant.setEmail("outbox@test.com");
+        merchant.setPasswordHash("unused");
+        merchantId = merchantRepository.save(merchant).getId();
+    }
+
+    @Test
+    void stateChanges_arePublishedInOrder_withCommittedVersions() throws Exception {
+        PaymentIntent intent = create();
+        paymentIntentService.confirm(merchantId, intent.getId(), UUID.randomUUID().toString(), "hash");
+
+        List<OutboxBroker.Message> messages = awaitMessages(intent.getId(), 3);
+
+        assertEquals(List.of("INTENT_CREATED", "CONFIRM_REQUESTED", "SUCCEEDED"),
+                messages.stream().map(OutboxBroker.Message::type).toList());
+        assertEquals(List.of(0L, 1L, 2L), messages.stream().map(OutboxBroker.Message::intentVersion).toList());
+        assertTrue(messages.get(0).id() < messages.get(1).id() && messages.get(1).id() < messages.get(2).id());
+        assertEquals(merchantId, messages.get(2).merchantId());
+        var payload = objectMapper.readTree(messages.get(2).payload());
+        assertEquals("SUCCEEDED", payload.get("status").asText());
+        assertEquals(intent.getId().toString(), payload.get("id").asText());
+        assertEquals(PaymentStatus.SUCCEEDED,
+                paymentIntentRepository.findById(intent.getId()).orElseThrow().getStatus());
+        awaitOutboxEmpty();
+    }
+
+    @Test
+    void rolledBackChange_writesNoOutboxEvent() throws Exception {
+        PaymentIntent created = create();
+        awaitMessages(created.getId(), 1);
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        UUID rolledBack = transaction.execute(status -> {
+            PaymentIntent intent = create();
+            paymentIntentService.cancel(merchantId, created.getId());
+            status.setRollbackOnly();
+            return intent.getId();
+        });
+        paymentIntentService.cancel(merchantId, created.getId());
+        assertThrows(IllegalStateException.class, () -> paymentIntentService.cancel(merchantId, created.getId()));
+
+        awaitOutboxEmpty();
+        assertTrue(broker.published().stream().noneMatch(m -> m.paymentIntentId().equals(rolledBack)));
+        assertEquals(List.of("INTENT_CREATED", "CANCELED"), broker.published().stream()
+                .filter(m -> m.paymentIntentId().equals(created.getId())).map(OutboxBroker.Message::type).toList());
+    }
+
+    @Test
+    void constraintViolationAtPreCommitFlush_isTranslated_andWritesNoOutboxEvent() throws Exception {
+        String key = UUID.randomUUID().toString();
+        PaymentIntent first = paymentIntentService.create(merchantId, new BigDecimal("10.00"), "SEK", null, null, key, "hash");
+
+        assertThrows(DataIntegrityViolationException.class, () -> paymentIntentService.create(
+                merchantId, new BigDecimal("20.00"), "SEK", null, null, key, "hash"));
+
+        awaitMessages(first.getId(), 1);
+        awaitOutboxEmpty();
+        assertEquals(1, paymentIntentRepository.count());
+    }
+
+    @Test
+    void batchCancel_writesOneEventPerChangedIntent() throws Exception {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(create().getId());
+        }
+        paymentIntentService.cancel(merchantId, ids.get(0));
+
+        paymentIntentBatchService.cancel(merchantId, ids);
+
+        for (UUID id : ids) {
+            List<OutboxBroker.Message> messages = awaitMessages(id, 2);
+            assertEquals("CANCELED", messages.get(1).type());
+            assertEquals(1, messages.get(1).intentVersion());
+        }
+    }
+
+    @Test
+    void failedPublish_keepsEvents_andConcurrentRelaysPublishEachOnce() throws Exception {
+        outboxRelay.stop();
+        try {
+            int events = 200;
+            for (int i = 0; i < events; i++) {
+                create();
+            }
+            OutboxRelay failing = relay(messages -> {
+                throw new IllegalStateException("broker unavailable");
+            }, 50);
+            assertThrows(IllegalStateException.class, failing::relayBatch);
+            assertEquals(events, (long) jdbcTemplate.queryForObject("SELECT count(*) FROM outbox_event", Long.class));
+
+            InMemoryOutboxBroker first = new InMemoryOutboxBroker();
+            InMemoryOutboxBroker second = new InMemoryOutboxBroker();
+            OutboxRelay nodeA = relay(first, 7);
+            OutboxRelay nodeB = relay(second, 7);
+            nodeA.start();
+            nodeB.start();
+            try {
+                awaitOutboxEmpty();
+            } finally {
+                nodeA.stop();
+                nodeB.stop();
+            }
+
+            Set<Long> ids = new HashSet<>();
+            first.published().forEach(m -> ids.add(m.id()));
+            second.published().forEach(m -> ids.add(m.id()));
+            assertEquals(events, first.published().size() + second.published().size());
+            assertEquals(events, ids.size());
+            assertFalse(first.published().isEmpty() || second.published().isEmpty(), "both relays published");
+        } finally {
+            outboxRelay.start();
+        }
+    }
+
+    @Test
+    void redisStreamBroker_appendsMessagesInOrder() {
+        String stream = "test-outbox-" + UUID.randomUUID();
+        RedisStreamOutboxBroker redisBroker = new RedisStreamOutboxBroker(redisTemplate, stream, 1_000);
+        UUID intentId = UUID.randomUUID();
+        Instant now = Instant.now();
+
+        redisBroker.publish(List.of(
+                new OutboxBroker.Message(1, intentId, merchantId, "INTENT_CREATED", 0, now, "{\"status\":\"CREATED\"}"),
+                new OutboxBroker.Message(2, intentId, merchantId, "CANCELED", 1, now, "{\"status\":\"CANCELED\"}")));
+
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().range(stream, Range.unbounded());
+        assertEquals(2, records.size());
+        assertEquals("INTENT_CREATED", records.get(0).getValue().get("type"));
+        assertEquals("CANCELED", records.get(1).getValue().get("type"));
+        assertEquals(intentId.toString(), records.get(1).getValue().get("paymentIntentId"));
+        assertEquals("1", records.get(1).getValue().get("intentVersion"));
+        redisTemplate.delete(stream);
+    }
+
+    private OutboxRelay relay(OutboxBroker target, int batchSize) {
+        return new OutboxRelay(jdbcTemplate, transactionManager, target, new SimpleMeterRegistry(), 2, batchSize, 20);
+    }
+
+    private PaymentIntent create() {
+        return paymentIntentService.create(merchantId, new BigDecimal("10.00"), "SEK", null, null, null, null);
+    }
+
+    private List<OutboxBroker.Message> awaitMessages(UUID intentId, int count) {
+        Await.until(count + " messages", () -> published(intentId).size() >= count);
+        List<OutboxBroker.Message> messages = published(intentId);
+        assertEquals(count, messages.size());
+        return messages;
+    }
+
+    private List<OutboxBroker.Message> published(UUID intentId) {
+        return broker.published().stream().filter(m -> m.paymentIntentId().equals(intentId)).toList();
+    }
+
+    private void awaitOutboxEmpty() {
+        Await.until("outbox relayed",
+                () -> jdbcTemplate.queryForObject("SELECT count(*) FROM outbox_event", Long.class) == 0);
+    }
+}
@@ -0,0 +1,110 @@
+package com.payment.integration;
+
+import com.payment.AbstractIntegrationTest;
+import com.payment.domain.Merchant;
+import com.payment.domain.PaymentIntent;
+import com.payment.repository.*;
+import com.payment.service.PaymentIntentService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * payment_intent and payment_event are hash-partitioned by merchant. PostgreSQL only locks the partitions a
+ * statement's plan can reach, so the locks a transaction holds show whether its queries were pruned to the
+ * merchant's partition.
+ */
+class PartitionPruningIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    PaymentIntentService paymentIntentService;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    EntityManager entityManager;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    IdempotencyRecordRepository idempotencyRecordRepository;
+    @Autowired
+    PaymentEventRepository paymentEventRepository;
+    @Autowired
+    WebhookDeliveryRepository webhookDeliveryRepository;
+    @Autowired
+    PaymentIntentRepository paymentIntentRepository;
+    @Autowired
+    ApiKeyRepository apiKeyRepository;
+    @Autowired
+    MerchantRepository merchantRepository;
+
+    private Long merchantId;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyRecordRepository.deleteAll();
+        paymentEventRepository.deleteAll();
+        webhookDeliveryRepository.deleteAll();
+        paymentIntentRepository.deleteAll();
+        apiKeyRepository.deleteAll();
+        merchantRepository.deleteAll();
+
+        Merchant merchant = new Merchant();
+        merchant.setName("Partitioned");
+        merchant.setEmail("partitioned@test.com");
+        merchant.setPasswordHash("unused");
+        merchantId = merchantRepository.save(merchant).getId();
+    }
+
+    @Test
+    void merchantScopedReadsAndWrites_touchOnlyTheMerchantsPartitions() {
+        PaymentIntent intent = paymentIntentService.create(merchantId, new BigDecimal("10.00"), "SEK", null, null, null, null);
+        String number = jdbcTemplate.queryForObject(
+                "SELECT right(tableoid::regclass::text, 2) FROM payment_intent WHERE merchant_id = ?", String.class, merchantId);
+        Set<String> intentPartition = Set.of("payment_intent_p" + number);
+
+        assertEquals(intentPartition, partitionsTouched(() -> paymentIntentService.getById(merchantId, intent.getId())));
+        assertEquals(intentPartition, partitionsTouched(
+                () -> paymentIntentService.list(merchantId, null, null, null, PageRequest.of(0, 10))));
+        assertEquals(intentPartition, partitionsTouched(
+                () -> paymentIntentService.listByCursor(merchantId, null, null, null, null, null, 10)));
+        assertEquals(Set.of("payment_event_p" + number),
+                partitionsTouched(() -> paymentIntentService.getEvents(merchantId, intent.getId())));
+        // Locking read, UPDATE with merchant_id in its WHERE clause, and the event INSERT
+        assertEquals(Set.of("payment_intent_p" + number, "payment_event_p" + number),
+                partitionsTouched(() -> paymentIntentService.confirm(merchantId, intent.getId(), "key-1", "hash")));
+
+        String providerPaymentId = paymentIntentRepository.findByIdAndMerchantId(intent.getId(), merchantId)
+                .orElseThrow().getProviderPaymentId();
+        assertEquals(intentPartition,
+                partitionsTouched(() -> paymentIntentRepository.findByProviderPaymentId(providerPaymentId)));
+    }
+
+    @Test
+    void lookupWithoutTheMerchant_touchesEveryPartition() {
+        PaymentIntent intent = paymentIntentService.create(merchantId, new BigDecimal("10.00"), "SEK", null, null, null, null);
+
+        assertEquals(16, partitionsTouched(() -> paymentIntentRepository.findById(intent.getId())).size());
+    }
+
+    private Set<String> partitionsTouched(Runnable work) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            work.run();
+            entityManager.flush();
+            return new TreeSet<>(jdbcTemplate.queryForList("""
+                    SELECT c.relname FROM pg_locks l JOIN pg_class c ON c.oid = l.relation
+                    WHERE l.pid = pg_backend_pid() AND c.relname ~ '^payment_(intent|event)_p[0-9]{2}$'
+                    """, String.class));
+        });
+    }
+}
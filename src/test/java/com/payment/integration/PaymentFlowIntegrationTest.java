@@ -2,6 +2,7 @@ package com.payment.integration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.payment.AbstractIntegrationTest;
+import com.payment.Await;
 import com.payment.domain.PaymentStatus;
 import com.payment.repository.ApiKeyRepository;
 import com.payment.repository.IdempotencyRecordRepository;
@@ -123,11 +124,18 @@ class PaymentFlowIntegrationTest extends AbstractIntegrationTest {
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(confirmBody)))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.status").value("SUCCEEDED"))
+                .andExpect(jsonPath("$.status").value("PROCESSING"))
                 .andExpect(jsonPath("$.providerPaymentId").exists())
                 .andReturn();
 
-        var events = paymentEventRepository.findByPaymentIntentIdOrderByCreatedAtAsc(UUID.fromString(intentId));
+        // The provider answers after the confirm transaction has committed
+        Await.until("provider result", () -> paymentIntentRepository.findById(UUID.fromString(intentId))
+                .orElseThrow().getStatus() == PaymentStatus.SUCCEEDED);
+        mockMvc.perform(get("/api/payment_intents/" + intentId).header("X-API-KEY", apiKey))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("SUCCEEDED"));
+
+        var events = paymentEventRepository.findByMerchantIdAndPaymentIntentIdOrderByCreatedAtAsc(merchantId, UUID.fromString(intentId));
         assertEquals(3, events.size());
         assertEquals("INTENT_CREATED", events.get(0).getType().name());
         assertEquals("CONFIRM_REQUESTED", events.get(1).getType().name());
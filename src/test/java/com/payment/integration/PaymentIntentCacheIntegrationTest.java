@@ -0,0 +1,137 @@
+package com.payment.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.AbstractIntegrationTest;
+import com.payment.repository.*;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.TestPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@code GET /api/payment_intents/{id}} through the intent cache: ETags, conditional requests, refresh on commit.
+ */
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class PaymentIntentCacheIntegrationTest extends AbstractIntegrationTest {
+
+    @LocalServerPort
+    int port;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+    @Autowired
+    IdempotencyRecordRepository idempotencyRecordRepository;
+    @Autowired
+    PaymentEventRepository paymentEventRepository;
+    @Autowired
+    WebhookDeliveryRepository webhookDeliveryRepository;
+    @Autowired
+    PaymentIntentRepository paymentIntentRepository;
+    @Autowired
+    ApiKeyRepository apiKeyRepository;
+    @Autowired
+    MerchantRepository merchantRepository;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void setUp() {
+        idempotencyRecordRepository.deleteAll();
+        paymentEventRepository.deleteAll();
+        webhookDeliveryRepository.deleteAll();
+        paymentIntentRepository.deleteAll();
+        apiKeyRepository.deleteAll();
+        merchantRepository.deleteAll();
+    }
+
+    @Test
+    void get_carriesVersionETag_answers304WhileUnchanged_andSeesCommittedChanges() throws Exception {
+        String apiKey = apiKey("etag");
+        String intentId = create(apiKey);
+
+        HttpResponse<String> first = get(apiKey, intentId, null);
+        assertEquals(200, first.statusCode());
+        assertEquals("\"0\"", first.headers().firstValue("ETag").orElseThrow());
+        String cacheControl = first.headers().firstValue("Cache-Control").orElseThrow();
+        assertTrue(cacheControl.contains("no-cache") && cacheControl.contains("private"), cacheControl);
+
+        HttpResponse<String> notModified = get(apiKey, intentId, "\"0\"");
+        assertEquals(304, notModified.statusCode());
+        assertEquals("", notModified.body());
+
+        send("POST", "/api/payment_intents/" + intentId + "/cancel", Map.of("X-API-KEY", apiKey), null, 200);
+
+        HttpResponse<String> changed = get(apiKey, intentId, "\"0\"");
+        assertEquals(200, changed.statusCode());
+        assertEquals("\"1\"", changed.headers().firstValue("ETag").orElseThrow());
+        assertEquals("CANCELED", objectMapper.readTree(changed.body()).get("status").asText());
+    }
+
+    @Test
+    void cachedGet_sendsNoStatements_andIsScopedToTheMerchant() throws Exception {
+        String apiKey = apiKey("cached");
+        String otherKey = apiKey("other");
+        String intentId = create(apiKey);
+        assertEquals(200, get(apiKey, intentId, null).statusCode());
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        HttpResponse<String> cached = get(apiKey, intentId, null);
+
+        assertEquals(200, cached.statusCode());
+        assertEquals(intentId, objectMapper.readTree(cached.body()).get("id").asText());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(400, get(otherKey, intentId, null).statusCode());
+    }
+
+    private HttpResponse<String> get(String apiKey, String intentId, String ifNoneMatch) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(
+                        URI.create("http://localhost:" + port + "/api/payment_intents/" + intentId))
+                .header("X-API-KEY", apiKey);
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private String create(String apiKey) throws Exception {
+        return send("POST", "/api/payment_intents", Map.of("X-API-KEY", apiKey,
+                "Idempotency-Key", UUID.randomUUID().toString()), Map.of("amount", 25.00, "currency", "SEK"), 201)
+                .get("id").asText();
+    }
+
+    private String apiKey(String name) throws Exception {
+        String email = name + "@cache.test";
+        send("POST", "/api/auth/register", Map.of(), Map.of("name", name, "email", email, "password", "password123"), 201);
+        String jwt = send("POST", "/api/auth/login", Map.of(), Map.of("email", email, "password", "password123"), 200)
+                .get("accessToken").asText();
+        return send("POST", "/api/apikeys", Map.of("Authorization", "Bearer " + jwt), null, 201).get("apiKey").asText();
+    }
+
+    private JsonNode send(String method, String path, Map<String, String> headers, Object body, int expectedStatus)
+            throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Content-Type", "application/json")
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)));
+        headers.forEach(request::header);
+        HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(expectedStatus, response.statusCode(), response.body());
+        return objectMapper.readTree(response.body());
+    }
+}
@@ -0,0 +1,161 @@
+package com.payment.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.AbstractRedisTest;
+import com.payment.domain.PaymentIntent;
+import com.payment.domain.PaymentStatus;
+import com.payment.dto.PaymentIntentResponse;
+import com.payment.service.PaymentIntentCache;
+import com.payment.service.PaymentIntentStream;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PaymentIntentCacheRedisIntegrationTest extends AbstractRedisTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private PaymentIntentCache newCache(StringRedisTemplate redisTemplate) {
+        return new PaymentIntentCache(redisTemplate, objectMapper, new SimpleMeterRegistry(), true, 100, 86_400, 10);
+    }
+
+    @Test
+    void miss_loadsOnce_thenServesFromLocalCache_andOtherNodesFromRedis() {
+        PaymentIntentCache node = newCache(newRedisTemplate());
+        PaymentIntentCache otherNode = newCache(newRedisTemplate());
+        PaymentIntent intent = intent(PaymentStatus.CREATED, 0);
+
+        assertEquals(0, node.get(1L, intent.getId(), loader(intent)).orElseThrow().version());
+        assertEquals(intent.getId(), node.get(1L, intent.getId(), loader(intent)).orElseThrow().response().id());
+        assertEquals("\"0\"", otherNode.get(1L, intent.getId(), loader(intent)).orElseThrow().etag());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void cachedIntent_ofAnotherMerchant_isReportedMissing() {
+        PaymentIntentCache cache = newCache(newRedisTemplate());
+        PaymentIntent intent = intent(PaymentStatus.CREATED, 0);
+        cache.get(1L, intent.getId(), loader(intent));
+
+        assertTrue(cache.get(2L, intent.getId(), () -> Optional.empty()).isEmpty());
+        assertTrue(cache.get(1L, UUID.randomUUID(), () -> Optional.empty()).isEmpty());
+    }
+
+    @Test
+    void redisTtl_dependsOnWhetherTheIntentIsTerminal() {
+        StringRedisTemplate redisTemplate = newRedisTemplate();
+        PaymentIntentCache cache = newCache(redisTemplate);
+        PaymentIntent active = intent(PaymentStatus.PROCESSING, 1);
+        PaymentIntent terminal = intent(PaymentStatus.SUCCEEDED, 2);
+        cache.get(1L, active.getId(), loader(active));
+        cache.get(1L, terminal.getId(), loader(terminal));
+
+        long activeTtl = redisTemplate.getExpire("payment_intent_cache:" + active.getId(), TimeUnit.SECONDS);
+        long terminalTtl = redisTemplate.getExpire("payment_intent_cache:" + terminal.getId(), TimeUnit.SECONDS);
+        assertTrue(activeTtl > 0 && activeTtl <= 10, "active TTL " + activeTtl);
+        assertTrue(terminalTtl > 3_600, "terminal TTL " + terminalTtl);
+    }
+
+    @Test
+    void commitDuringALoad_winsOverTheStaleRead_onBothLevels() {
+        PaymentIntentCache node = newCache(newRedisTemplate());
+        PaymentIntentCache committingNode = newCache(newRedisTemplate());
+        PaymentIntent stale = intent(PaymentStatus.PROCESSING, 1);
+
+        // The database answers with version 1 while version 2 commits on another node and its eviction arrives
+        node.get(1L, stale.getId(), () -> {
+            committingNode.update(List.of(change(stale, PaymentStatus.SUCCEEDED, 2)));
+            node.onMessage(eviction(stale.getId() + ":2"), null);
+            return loader(stale).get();
+        });
+
+        PaymentIntentCache.Entry entry = node.get(1L, stale.getId(), loader(stale)).orElseThrow();
+        assertEquals(2, entry.version());
+        assertEquals(PaymentStatus.SUCCEEDED, entry.response().status());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void eviction_dropsOnlyOlderLocalCopies() {
+        StringRedisTemplate redisTemplate = newRedisTemplate();
+        PaymentIntentCache cache = newCache(redisTemplate);
+        PaymentIntent older = intent(PaymentStatus.CREATED, 0);
+        PaymentIntent current = intent(PaymentStatus.CREATED, 3);
+        cache.get(1L, older.getId(), loader(older));
+        cache.get(1L, current.getId(), loader(current));
+        redisTemplate.delete(List.of("payment_intent_cache:" + older.getId(), "payment_intent_cache:" + current.getId()));
+
+        cache.onMessage(eviction(older.getId() + ":1," + current.getId() + ":3,not-an-id"), null);
+
+        cache.get(1L, older.getId(), loader(older));
+        cache.get(1L, current.getId(), loader(current));
+        assertEquals(3, loads.get(), "only the older copy is reloaded");
+    }
+
+    @Test
+    void redisFailure_fallsBackToTheLoader() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        when(redisTemplate.opsForValue()).thenThrow(new RedisConnectionFailureException("down"));
+        PaymentIntentCache cache = newCache(redisTemplate);
+        PaymentIntent intent = intent(PaymentStatus.CREATED, 0);
+
+        assertTrue(cache.get(1L, intent.getId(), loader(intent)).isPresent());
+        assertEquals(1, loads.get());
+    }
+
+    private Supplier<Optional<PaymentIntent>> loader(PaymentIntent intent) {
+        return () -> {
+            loads.incrementAndGet();
+            return Optional.of(intent);
+        };
+    }
+
+    private PaymentIntentStream.StatusChange change(PaymentIntent intent, PaymentStatus status, long version) {
+        intent = intent(intent.getId(), status, version);
+        try {
+            return new PaymentIntentStream.StatusChange(intent.getId(), intent.getMerchantId(), status, version,
+                    objectMapper.writeValueAsString(PaymentIntentResponse.from(intent)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static DefaultMessage eviction(String body) {
+        return new DefaultMessage(PaymentIntentCache.EVICTION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static PaymentIntent intent(PaymentStatus status, long version) {
+        return intent(UUID.randomUUID(), status, version);
+    }
+
+    private static PaymentIntent intent(UUID id, PaymentStatus status, long version) {
+        Instant now = Instant.parse("2024-01-01T00:00:00Z");
+        PaymentIntent intent = new PaymentIntent();
+        intent.setId(id);
+        intent.setMerchantId(1L);
+        intent.setAmount(new BigDecimal("10.00"));
+        intent.setCurrency("SEK");
+        intent.setStatus(status);
+        intent.setVersion(version);
+        intent.setCreatedAt(now);
+        intent.setUpdatedAt(now);
+        return intent;
+    }
+}
@@ -0,0 +1,216 @@
+package com.payment.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.AbstractIntegrationTest;
+import com.payment.Await;
+import com.payment.domain.PaymentStatus;
+import com.payment.repository.*;
+import com.payment.service.PaymentIntentStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reads {@code GET /api/payment_intents/stream} over real HTTP while intents change through the API and the
+ * provider path.
+ */
+class PaymentIntentStreamIntegrationTest extends AbstractIntegrationTest {
+
+    @LocalServerPort
+    int port;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    StringRedisTemplate redisTemplate;
+    @Autowired
+    PaymentIntentStream paymentIntentStream;
+    @Autowired
+    IdempotencyRecordRepository idempotencyRecordRepository;
+    @Autowired
+    PaymentEventRepository paymentEventRepository;
+    @Autowired
+    WebhookDeliveryRepository webhookDeliveryRepository;
+    @Autowired
+    PaymentIntentRepository paymentIntentRepository;
+    @Autowired
+    ApiKeyRepository apiKeyRepository;
+    @Autowired
+    MerchantRepository merchantRepository;
+
+    private record Event(String id, String name, String data) {
+    }
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final List<Stream<String>> streams = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        idempotencyRecordRepository.deleteAll();
+        paymentEventRepository.deleteAll();
+        webhookDeliveryRepository.deleteAll();
+        paymentIntentRepository.deleteAll();
+        apiKeyRepository.deleteAll();
+        merchantRepository.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        streams.forEach(Stream::close);
+    }
+
+    @Test
+    void statusChanges_areStreamedToTheMerchant_inCommitOrder() throws Exception {
+        String apiKey = apiKey("stream");
+        String otherKey = apiKey("other");
+        BlockingQueue<Event> events = open(apiKey);
+        BlockingQueue<Event> otherEvents = open(otherKey);
+
+        String intentId = send("POST", "/api/payment_intents", Map.of("X-API-KEY", apiKey,
+                "Idempotency-Key", UUID.randomUUID().toString()), Map.of("amount", 25.00, "currency", "SEK"), 201)
+                .get("id").asText();
+        send("POST", "/api/payment_intents/" + intentId + "/confirm", Map.of("X-API-KEY", apiKey,
+                        "Idempotency-Key", UUID.randomUUID().toString()),
+                Map.of("paymentMethodType", "CARD", "paymentMethodToken", "tok_test_visa"), 200);
+
+        List<Event> received = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Event event = events.poll(10, TimeUnit.SECONDS);
+            assertNotNull(event, "received " + received);
+            received.add(event);
+        }
+        assertEquals(List.of("payment_intent.created", "payment_intent.processing", "payment_intent.succeeded"),
+                received.stream().map(Event::name).toList());
+        assertEquals(List.of(intentId + ":0", intentId + ":1", intentId + ":2"),
+                received.stream().map(Event::id).toList());
+        JsonNode settled = objectMapper.readTree(received.get(2).data());
+        assertEquals(intentId, settled.get("id").asText());
+        assertEquals("SUCCEEDED", settled.get("status").asText());
+        assertNull(otherEvents.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void changesPublishedByAnotherNode_reachLocalSubscribers() throws Exception {
+        String apiKey = apiKey("cluster");
+        Long merchantId = merchantRepository.findAll().get(0).getId();
+        BlockingQueue<Event> events = open(apiKey);
+        UUID intentId = UUID.randomUUID();
+
+        redisTemplate.convertAndSend("payment_intent:status:" + merchantId, objectMapper.writeValueAsString(List.of(
+                new PaymentIntentStream.StatusChange(intentId, merchantId, PaymentStatus.FAILED, 3,
+                        "{\"id\":\"" + intentId + "\",\"status\":\"FAILED\"}"))));
+
+        Event event = events.poll(10, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals("payment_intent.failed", event.name());
+        assertEquals(intentId + ":3", event.id());
+    }
+
+    @Test
+    void closedStream_isUnsubscribed_andStreamRequiresAuthentication() throws Exception {
+        String apiKey = apiKey("closing");
+        Long merchantId = merchantRepository.findAll().get(0).getId();
+        open(apiKey);
+        assertEquals(1, paymentIntentStream.subscriberCount(merchantId));
+
+        streams.forEach(Stream::close);
+        // The server notices the closed connection on its next write
+        Await.until("stream unsubscribed", () -> {
+            if (paymentIntentStream.subscriberCount(merchantId) == 0) {
+                return true;
+            }
+            try {
+                send("POST", "/api/payment_intents", Map.of("X-API-KEY", apiKey,
+                        "Idempotency-Key", UUID.randomUUID().toString()), Map.of("amount", 1.00, "currency", "SEK"), 201);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return false;
+        });
+
+        HttpResponse<String> anonymous = client.send(HttpRequest.newBuilder(
+                URI.create("http://localhost:" + port + "/api/payment_intents/stream")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertTrue(anonymous.statusCode() == 401 || anonymous.statusCode() == 403, "status " + anonymous.statusCode());
+    }
+
+    /**
+     * Opens a stream and returns its events once the server has confirmed the subscription.
+     */
+    private BlockingQueue<Event> open(String apiKey) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/payment_intents/stream"))
+                .header("X-API-KEY", apiKey)
+                .header("Accept", "text/event-stream")
+                .build();
+        HttpResponse<Stream<String>> response = client.send(request, HttpResponse.BodyHandlers.ofLines());
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/event-stream"));
+
+        BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+        CompletableFuture<Void> subscribed = new CompletableFuture<>();
+        streams.add(response.body());
+        Thread.ofPlatform().daemon().start(() -> {
+            Map<String, String> fields = new LinkedHashMap<>();
+            try {
+                response.body().forEach(line -> {
+                    if (line.equals(":subscribed")) {
+                        subscribed.complete(null);
+                    } else if (line.isEmpty()) {
+                        if (fields.containsKey("event")) {
+                            events.add(new Event(fields.get("id"), fields.get("event"), fields.get("data")));
+                        }
+                        fields.clear();
+                    } else if (!line.startsWith(":")) {
+                        int colon = line.indexOf(':');
+                        fields.put(line.substring(0, colon), line.substring(colon + 1));
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                // Closed by the test
+            }
+        });
+        subscribed.get(10, TimeUnit.SECONDS);
+        return events;
+    }
+
+    private String apiKey(String name) throws Exception {
+        String email = name + "@stream.test";
+        send("POST", "/api/auth/register", Map.of(), Map.of("name", name, "email", email, "password", "password123"), 201);
+        String jwt = send("POST", "/api/auth/login", Map.of(), Map.of("email", email, "password", "password123"), 200)
+                .get("accessToken").asText();
+        return send("POST", "/api/apikeys", Map.of("Authorization", "Bearer " + jwt), null, 201).get("apiKey").asText();
+    }
+
+    private JsonNode send(String method, String path, Map<String, String> headers, Object body, int expectedStatus)
+            throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Content-Type", "application/json")
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)));
+        headers.forEach(request::header);
+        HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(expectedStatus, response.statusCode(), response.body());
+        return objectMapper.readTree(response.body());
+    }
+}
@@ -0,0 +1,130 @@
+package com.payment.integration;
+
+import com.payment.AbstractIntegrationTest;
+import com.payment.Await;
+import com.payment.domain.Merchant;
+import com.payment.domain.PaymentEventType;
+import com.payment.domain.PaymentIntent;
+import com.payment.domain.PaymentStatus;
+import com.payment.repository.*;
+import com.payment.service.PaymentIntentService;
+import com.payment.service.PaymentProvider;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The simulated provider answers after 2 s here, past the 500 ms charge timeout, so charges stay PROCESSING
+ * until a provider result is applied by hand.
+ */
+@TestPropertySource(properties = {
+        "payment.provider.timeout-ms=500",
+        "payment.provider.simulated.latency-median-ms=2000",
+        "payment.provider.simulated.latency-p99-ms=2000"
+})
+class ProviderChargeIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    PaymentIntentService paymentIntentService;
+    @Autowired
+    DataSource dataSource;
+    @Autowired
+    MeterRegistry meterRegistry;
+    @Autowired
+    IdempotencyRecordRepository idempotencyRecordRepository;
+    @Autowired
+    PaymentEventRepository paymentEventRepository;
+    @Autowired
+    WebhookDeliveryRepository webhookDeliveryRepository;
+    @Autowired
+    PaymentIntentRepository paymentIntentRepository;
+    @Autowired
+    ApiKeyRepository apiKeyRepository;
+    @Autowired
+    MerchantRepository merchantRepository;
+
+    private Long merchantId;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyRecordRepository.deleteAll();
+        paymentEventRepository.deleteAll();
+        webhookDeliveryRepository.deleteAll();
+        paymentIntentRepository.deleteAll();
+        apiKeyRepository.deleteAll();
+        merchantRepository.deleteAll();
+
+        Merchant merchant = new Merchant();
+        merchant.setName("Provider");
+        merchant.setEmail("provider@test.com");
+        merchant.setPasswordHash("unused");
+        merchant.setWebhookUrl("https://hooks.example.com/payments");
+        merchant.setWebhookSecret("whsec_test");
+        merchantId = merchantRepository.save(merchant).getId();
+    }
+
+    @Test
+    void confirm_commitsProcessing_andHoldsNoConnectionWhileProviderIsCalled() throws Exception {
+        Timer timedOut = meterRegistry.timer("provider.charge", "outcome", "timeout");
+        long timedOutBefore = timedOut.count();
+
+        PaymentIntent intent = confirm();
+
+        assertEquals(PaymentStatus.PROCESSING, intent.getStatus());
+        var pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+        assertEquals(0, pool.getActiveConnections());
+
+        Await.until("charge timeout", () -> timedOut.count() > timedOutBefore);
+        assertEquals(timedOutBefore + 1, timedOut.count());
+        // Unanswered charges are left for the provider webhook or the reconciler
+        assertEquals(PaymentStatus.PROCESSING, paymentIntentRepository.findById(intent.getId()).orElseThrow().getStatus());
+        paymentIntentService.handleProviderWebhook(intent.getProviderPaymentId(), "SUCCEEDED", null, null);
+        assertEquals(PaymentStatus.SUCCEEDED, paymentIntentRepository.findById(intent.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void completeCharge_sharesWebhookPath_andSecondResultIsIgnored() {
+        PaymentIntent intent = confirm();
+
+        paymentIntentService.completeCharge(intent.getProviderPaymentId(),
+                PaymentProvider.ChargeResult.failure("card_declined", "Declined"));
+        paymentIntentService.handleProviderWebhook(intent.getProviderPaymentId(), "SUCCEEDED", null, null);
+
+        PaymentIntent settled = paymentIntentRepository.findById(intent.getId()).orElseThrow();
+        assertEquals(PaymentStatus.FAILED, settled.getStatus());
+        assertEquals("card_declined", settled.getFailureCode());
+        var events = paymentEventRepository.findByMerchantIdAndPaymentIntentIdOrderByCreatedAtAsc(merchantId, intent.getId());
+        assertEquals(3, events.size());
+        assertEquals(PaymentEventType.FAILED, events.get(2).getType());
+        assertEquals(1, webhookDeliveryRepository.count());
+    }
+
+    @Test
+    void settledIntent_queuesNoWebhook_whenMerchantHasNoEndpoint() {
+        Merchant merchant = merchantRepository.findById(merchantId).orElseThrow();
+        merchant.setWebhookUrl(null);
+        merchant.setWebhookSecret(null);
+        merchantRepository.save(merchant);
+        PaymentIntent intent = confirm();
+
+        paymentIntentService.handleProviderWebhook(intent.getProviderPaymentId(), "SUCCEEDED", null, null);
+
+        assertEquals(PaymentStatus.SUCCEEDED, paymentIntentRepository.findById(intent.getId()).orElseThrow().getStatus());
+        assertEquals(0, webhookDeliveryRepository.count());
+    }
+
+    private PaymentIntent confirm() {
+        PaymentIntent intent = paymentIntentService.create(merchantId, new BigDecimal("10.00"), "SEK", null, null, null, null);
+        return paymentIntentService.confirm(merchantId, intent.getId(), UUID.randomUUID().toString(), "hash");
+    }
+}
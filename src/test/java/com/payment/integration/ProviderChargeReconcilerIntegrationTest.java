@@ -0,0 +1,115 @@
+package com.payment.integration;
+
+import com.payment.AbstractIntegrationTest;
+import com.payment.Await;
+import com.payment.domain.Merchant;
+import com.payment.domain.PaymentEventType;
+import com.payment.domain.PaymentIntent;
+import com.payment.domain.PaymentStatus;
+import com.payment.repository.*;
+import com.payment.service.PaymentIntentService;
+import com.payment.service.ProviderChargeDispatcher;
+import com.payment.service.ProviderChargeReconciler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Intents committed PROCESSING whose charge never reached the provider, as after a restart between commit and
+ * hand-off, are set up directly in the database.
+ */
+class ProviderChargeReconcilerIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    PaymentIntentService paymentIntentService;
+    @Autowired
+    ProviderChargeDispatcher dispatcher;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    IdempotencyRecordRepository idempotencyRecordRepository;
+    @Autowired
+    PaymentEventRepository paymentEventRepository;
+    @Autowired
+    WebhookDeliveryRepository webhookDeliveryRepository;
+    @Autowired
+    PaymentIntentRepository paymentIntentRepository;
+    @Autowired
+    ApiKeyRepository apiKeyRepository;
+    @Autowired
+    MerchantRepository merchantRepository;
+
+    private Long merchantId;
+    private ProviderChargeReconciler reconciler;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyRecordRepository.deleteAll();
+        paymentEventRepository.deleteAll();
+        webhookDeliveryRepository.deleteAll();
+        paymentIntentRepository.deleteAll();
+        apiKeyRepository.deleteAll();
+        merchantRepository.deleteAll();
+
+        Merchant merchant = new Merchant();
+        merchant.setName("Reconciled");
+        merchant.setEmail("reconciled@test.com");
+        merchant.setPasswordHash("unused");
+        merchantId = merchantRepository.save(merchant).getId();
+        reconciler = new ProviderChargeReconciler(jdbcTemplate, transactionManager, dispatcher,
+                new SimpleMeterRegistry(), 1_000, 60_000, 100);
+    }
+
+    @Test
+    void chargeLostAfterCommit_isSentAgain_andSettlesTheIntent() {
+        UUID lost = processing("pay_lost", 120);
+
+        assertEquals(1, reconciler.reconcile());
+
+        Await.until("reconciled charge settled", () -> status(lost) == PaymentStatus.SUCCEEDED);
+        PaymentIntent settled = paymentIntentRepository.findByIdAndMerchantId(lost, merchantId).orElseThrow();
+        assertEquals("pay_lost", settled.getProviderPaymentId());
+        var events = paymentEventRepository.findByMerchantIdAndPaymentIntentIdOrderByCreatedAtAsc(merchantId, lost);
+        assertEquals(PaymentEventType.SUCCEEDED, events.get(events.size() - 1).getType());
+        assertEquals(0, reconciler.reconcile());
+    }
+
+    @Test
+    void recentCharges_andClaimedCharges_areLeftAlone() {
+        UUID recent = processing("pay_recent", 5);
+        UUID claimed = processing("pay_claimed", 120);
+        // A second node claimed it a moment ago and is waiting for the provider
+        jdbcTemplate.update("UPDATE payment_intent SET updated_at = now() WHERE id = ? AND merchant_id = ?", claimed, merchantId);
+
+        assertEquals(0, reconciler.reconcile());
+        assertEquals(PaymentStatus.PROCESSING, status(recent));
+        assertEquals(PaymentStatus.PROCESSING, status(claimed));
+    }
+
+    /**
+     * An intent that was confirmed {@code secondsAgo} and whose charge was never dispatched.
+     */
+    private UUID processing(String providerPaymentId, int secondsAgo) {
+        PaymentIntent intent = paymentIntentService.create(merchantId, new BigDecimal("10.00"), "SEK", null, null, null, null);
+        jdbcTemplate.update("""
+                UPDATE payment_intent SET status = 'PROCESSING', provider_payment_id = ?,
+                    updated_at = now() - ? * interval '1 second'
+                WHERE id = ? AND merchant_id = ?
+                """, providerPaymentId, secondsAgo, intent.getId(), merchantId);
+        return intent.getId();
+    }
+
+    private PaymentStatus status(UUID id) {
+        return paymentIntentRepository.findByIdAndMerchantId(id, merchantId).orElseThrow().getStatus();
+    }
+}
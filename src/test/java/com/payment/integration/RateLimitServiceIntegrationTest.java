@@ -0,0 +1,68 @@
+package com.payment.integration;
+
+import com.payment.AbstractRedisTest;
+import com.payment.service.RateLimitService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitServiceIntegrationTest extends AbstractRedisTest {
+
+    private StringRedisTemplate redisTemplate;
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate = newRedisTemplate();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"fixed-window", "sliding-window-log", "gcra"})
+    void allowsUpToLimit_thenRejectsWithRetryAfter(String algorithm) {
+        RateLimitService service = new RateLimitService(redisTemplate, 3, 60, algorithm);
+        String key = UUID.randomUUID().toString();
+
+        for (int i = 0; i < 3; i++) {
+            RateLimitService.RateLimitResult result = service.checkAndIncrement(key);
+            assertTrue(result.allowed());
+            assertEquals(3, result.limit());
+            assertEquals(2 - i, result.remaining());
+        }
+
+        RateLimitService.RateLimitResult rejected = service.checkAndIncrement(key);
+        assertFalse(rejected.allowed());
+        assertEquals(0, rejected.remaining());
+        assertTrue(rejected.retryAfterSeconds() > 0);
+        assertTrue(rejected.resetSeconds() > 0 && rejected.resetSeconds() <= 60);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"fixed-window", "sliding-window-log", "gcra"})
+    void stateAlwaysHasTtl(String algorithm) {
+        RateLimitService service = new RateLimitService(redisTemplate, 3, 60, algorithm);
+        String key = UUID.randomUUID().toString();
+
+        service.checkAndIncrement(key);
+
+        Long ttl = redisTemplate.getExpire("rate_limit:" + key, TimeUnit.MILLISECONDS);
+        assertNotNull(ttl);
+        assertTrue(ttl > 0 && ttl <= 60_000);
+    }
+
+    @Test
+    void fixedWindow_repairsCounterLeftWithoutTtl() {
+        RateLimitService service = new RateLimitService(redisTemplate, 3, 60, "fixed-window");
+        String key = UUID.randomUUID().toString();
+        redisTemplate.opsForValue().set("rate_limit:" + key, "1");
+
+        service.checkAndIncrement(key);
+
+        assertTrue(redisTemplate.getExpire("rate_limit:" + key, TimeUnit.MILLISECONDS) > 0);
+    }
+}
@@ -0,0 +1,221 @@
+package com.payment.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.Await;
+import com.payment.domain.Merchant;
+import com.payment.domain.PaymentIntent;
+import com.payment.repository.*;
+import com.payment.service.PaymentIntentService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.Network;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.images.builder.Transferable;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against a primary and a streaming replica of it. The replica's WAL replay is paused to make it fall behind.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@Testcontainers
+@TestPropertySource(properties = {
+        "datasource.replica.max-lag-ms=2000",
+        "datasource.replica.lag-check-ms=100"
+})
+class ReadReplicaIntegrationTest {
+
+    private static final DockerImageName POSTGRES = DockerImageName.parse("postgres:16-alpine");
+    private static final Network network = Network.newNetwork();
+
+    @Container
+    static PostgreSQLContainer<?> primary = new PostgreSQLContainer<>(POSTGRES)
+            .withDatabaseName("payment_test")
+            .withUsername("test")
+            .withPassword("test")
+            .withNetwork(network)
+            .withNetworkAliases("primary")
+            .withCopyToContainer(Transferable.of("echo 'host replication all all scram-sha-256' >> \"$PGDATA/pg_hba.conf\""),
+                    "/docker-entrypoint-initdb.d/replication.sh");
+
+    @Container
+    static GenericContainer<?> replica = new GenericContainer<>(POSTGRES)
+            .withNetwork(network)
+            .dependsOn(primary)
+            .withEnv("PGPASSWORD", "test")
+            .withExposedPorts(5432)
+            .withCommand("sh", "-c", "pg_basebackup -h primary -U test -D /tmp/replica -R -X stream"
+                    + " && chown -R postgres /tmp/replica && chmod 700 /tmp/replica"
+                    + " && exec su-exec postgres postgres -D /tmp/replica")
+            .waitingFor(Wait.forLogMessage(".*ready to accept read-only connections.*", 1));
+
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", primary::getJdbcUrl);
+        registry.add("spring.datasource.username", primary::getUsername);
+        registry.add("spring.datasource.password", primary::getPassword);
+        registry.add("datasource.replica.urls", ReadReplicaIntegrationTest::replicaUrl);
+        registry.add("spring.data.redis.host", redis::getHost);
+        registry.add("spring.data.redis.port", () -> redis.getMappedPort(6379).toString());
+    }
+
+    private static String replicaUrl() {
+        return "jdbc:postgresql://" + replica.getHost() + ":" + replica.getMappedPort(5432) + "/payment_test";
+    }
+
+    @LocalServerPort
+    int port;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PaymentIntentService paymentIntentService;
+    @Autowired
+    MeterRegistry meterRegistry;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    IdempotencyRecordRepository idempotencyRecordRepository;
+    @Autowired
+    PaymentEventRepository paymentEventRepository;
+    @Autowired
+    WebhookDeliveryRepository webhookDeliveryRepository;
+    @Autowired
+    PaymentIntentRepository paymentIntentRepository;
+    @Autowired
+    ApiKeyRepository apiKeyRepository;
+    @Autowired
+    MerchantRepository merchantRepository;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void setUp() {
+        idempotencyRecordRepository.deleteAll();
+        paymentEventRepository.deleteAll();
+        webhookDeliveryRepository.deleteAll();
+        paymentIntentRepository.deleteAll();
+        apiKeyRepository.deleteAll();
+        merchantRepository.deleteAll();
+        Await.until("replica in use", Duration.ofSeconds(15), () -> onReplica(true));
+    }
+
+    @Test
+    void readOnlyTransactions_useTheReplica_andEverythingElseThePrimary() {
+        assertTrue(onReplica(true));
+        assertFalse(onReplica(false));
+        assertFalse(jdbcTemplate.queryForObject("SELECT pg_is_in_recovery()", Boolean.class));
+    }
+
+    @Test
+    void replicaBehindTheBound_isSkipped_untilItCatchesUp() throws Exception {
+        Merchant merchant = new Merchant();
+        merchant.setName("Lagging");
+        merchant.setEmail("lagging@test.com");
+        merchant.setPasswordHash("unused");
+        Long merchantId = merchantRepository.save(merchant).getId();
+
+        PaymentIntent intent;
+        try (Connection replicaConnection = DriverManager.getConnection(replicaUrl(), "test", "test");
+             Statement statement = replicaConnection.createStatement()) {
+            statement.execute("SELECT pg_wal_replay_pause()");
+            try {
+                intent = paymentIntentService.create(merchantId, new BigDecimal("10.00"), "SEK", null, null, null, null);
+
+                Await.until("primary used once the replica is 2 s behind", Duration.ofSeconds(15), () -> !onReplica(true));
+                assertTrue(paymentIntentService.getById(merchantId, intent.getId()).isPresent());
+            } finally {
+                statement.execute("SELECT pg_wal_replay_resume()");
+            }
+        }
+        Await.until("replica used again after catching up", Duration.ofSeconds(15), () -> onReplica(true));
+        assertTrue(paymentIntentService.getById(merchantId, intent.getId()).isPresent());
+    }
+
+    @Test
+    void merchantThatJustChangedAnIntent_readsItFromThePrimary() throws Exception {
+        String apiKey = apiKey("sticky");
+        double stickyBefore = stickyReads();
+
+        try (Connection replicaConnection = DriverManager.getConnection(replicaUrl(), "test", "test");
+             Statement statement = replicaConnection.createStatement()) {
+            statement.execute("SELECT pg_wal_replay_pause()");
+            try {
+                String intentId = send("POST", "/api/payment_intents", Map.of("X-API-KEY", apiKey),
+                        Map.of("amount", 25.00, "currency", "SEK"), 201).get("id").asText();
+
+                // The paused replica does not have the intent, and is still within the bound
+                JsonNode page = send("GET", "/api/payment_intents", Map.of("X-API-KEY", apiKey), null, 200);
+                assertEquals(1, page.get("content").size());
+                assertEquals(intentId, page.get("content").get(0).get("id").asText());
+                assertTrue(stickyReads() > stickyBefore);
+            } finally {
+                statement.execute("SELECT pg_wal_replay_resume()");
+            }
+        }
+    }
+
+    private boolean onReplica(boolean readOnly) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(readOnly);
+        return transaction.execute(status -> jdbcTemplate.queryForObject("SELECT pg_is_in_recovery()", Boolean.class));
+    }
+
+    private double stickyReads() {
+        return meterRegistry.get("datasource.read_only.connections").tag("reason", "read_your_writes").counter().count();
+    }
+
+    private String apiKey(String name) throws Exception {
+        String email = name + "@replica.test";
+        send("POST", "/api/auth/register", Map.of(), Map.of("name", name, "email", email, "password", "password123"), 201);
+        String jwt = send("POST", "/api/auth/login", Map.of(), Map.of("email", email, "password", "password123"), 200)
+                .get("accessToken").asText();
+        return send("POST", "/api/apikeys", Map.of("Authorization", "Bearer " + jwt), null, 201).get("apiKey").asText();
+    }
+
+    private JsonNode send(String method, String path, Map<String, String> headers, Object body, int expectedStatus)
+            throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Content-Type", "application/json")
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)));
+        headers.forEach(request::header);
+        HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(expectedStatus, response.statusCode(), response.body());
+        return objectMapper.readTree(response.body());
+    }
+}
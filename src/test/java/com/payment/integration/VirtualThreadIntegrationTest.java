@@ -0,0 +1,138 @@
+package com.payment.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.AbstractIntegrationTest;
+import com.payment.Await;
+import com.payment.config.VirtualThreadPinningMonitor;
+import com.payment.domain.PaymentStatus;
+import com.payment.repository.*;
+import jakarta.servlet.Filter;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.test.context.TestPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Drives the API over real HTTP with virtual threads on, so requests go through Tomcat's virtual-thread executor,
+ * and checks that the JDBC and Redis paths did not pin a carrier while doing so.
+ */
+@TestPropertySource(properties = {
+        "spring.threads.virtual.enabled=true",
+        "diagnostics.pinning.enabled=true",
+        "diagnostics.pinning.threshold-ms=20"
+})
+class VirtualThreadIntegrationTest extends AbstractIntegrationTest {
+
+    private static final String THREAD_HEADER = "X-Test-Virtual-Thread";
+
+    @TestConfiguration
+    static class ThreadReportingConfig {
+
+        @Bean
+        @Order(Ordered.HIGHEST_PRECEDENCE)
+        Filter threadReportingFilter() {
+            return (request, response, chain) -> {
+                ((HttpServletResponse) response).setHeader(THREAD_HEADER,
+                        String.valueOf(Thread.currentThread().isVirtual()));
+                chain.doFilter(request, response);
+            };
+        }
+    }
+
+    @LocalServerPort
+    int port;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    VirtualThreadPinningMonitor pinningMonitor;
+    @Autowired
+    IdempotencyRecordRepository idempotencyRecordRepository;
+    @Autowired
+    PaymentEventRepository paymentEventRepository;
+    @Autowired
+    WebhookDeliveryRepository webhookDeliveryRepository;
+    @Autowired
+    PaymentIntentRepository paymentIntentRepository;
+    @Autowired
+    ApiKeyRepository apiKeyRepository;
+    @Autowired
+    MerchantRepository merchantRepository;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void setUp() {
+        idempotencyRecordRepository.deleteAll();
+        paymentEventRepository.deleteAll();
+        webhookDeliveryRepository.deleteAll();
+        paymentIntentRepository.deleteAll();
+        apiKeyRepository.deleteAll();
+        merchantRepository.deleteAll();
+    }
+
+    @Test
+    void paymentFlow_runsOnVirtualThreads_withoutPinningOnJdbcOrRedis() throws Exception {
+        send("POST", "/api/auth/register", Map.of(), Map.of(
+                "name", "Virtual", "email", "virtual@test.com", "password", "password123"), 201);
+        String jwt = send("POST", "/api/auth/login", Map.of(), Map.of(
+                "email", "virtual@test.com", "password", "password123"), 200).get("accessToken").asText();
+        String apiKey = send("POST", "/api/apikeys", Map.of("Authorization", "Bearer " + jwt), null, 201)
+                .get("apiKey").asText();
+        Map<String, String> auth = Map.of("X-API-KEY", apiKey);
+
+        String createKey = UUID.randomUUID().toString();
+        Map<String, Object> createBody = Map.of("amount", 25.00, "currency", "SEK");
+        String intentId = send("POST", "/api/payment_intents", withKey(auth, createKey), createBody, 201)
+                .get("id").asText();
+        assertEquals(intentId, send("POST", "/api/payment_intents", withKey(auth, createKey), createBody, 201)
+                .get("id").asText());
+        assertEquals("PROCESSING", send("POST", "/api/payment_intents/" + intentId + "/confirm",
+                withKey(auth, UUID.randomUUID().toString()),
+                Map.of("paymentMethodType", "CARD", "paymentMethodToken", "tok_test_visa"), 200)
+                .get("status").asText());
+
+        Await.until("provider result", () -> paymentIntentRepository.findById(UUID.fromString(intentId))
+                .orElseThrow().getStatus() == PaymentStatus.SUCCEEDED);
+        assertEquals("SUCCEEDED", send("GET", "/api/payment_intents/" + intentId, auth, null, 200)
+                .get("status").asText());
+
+        // JFR hands events to the monitor about once a second
+        Thread.sleep(1_500);
+        Map<VirtualThreadPinningMonitor.Path, Long> pins = pinningMonitor.counts();
+        assertEquals(0, pins.get(VirtualThreadPinningMonitor.Path.JDBC), "JDBC pins: " + pins);
+        assertEquals(0, pins.get(VirtualThreadPinningMonitor.Path.REDIS), "Redis pins: " + pins);
+    }
+
+    private JsonNode send(String method, String path, Map<String, String> headers, Object body, int expectedStatus)
+            throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Content-Type", "application/json")
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)));
+        headers.forEach(request::header);
+        HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(expectedStatus, response.statusCode(), response.body());
+        assertEquals("true", response.headers().firstValue(THREAD_HEADER).orElse(null), path);
+        return objectMapper.readTree(response.body());
+    }
+
+    private static Map<String, String> withKey(Map<String, String> headers, String idempotencyKey) {
+        return Map.of("X-API-KEY", headers.get("X-API-KEY"), "Idempotency-Key", idempotencyKey);
+    }
+}
@@ -0,0 +1,266 @@
+package com.payment.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.AbstractIntegrationTest;
+import com.payment.Await;
+import com.payment.domain.Merchant;
+import com.payment.domain.PaymentIntent;
+import com.payment.domain.PaymentStatus;
+import com.payment.domain.WebhookDelivery;
+import com.payment.domain.WebhookDeliveryStatus;
+import com.payment.repository.*;
+import com.payment.service.PaymentIntentService;
+import com.payment.service.WebhookDeliveryEngine;
+import com.payment.service.WebhookEndpointService;
+import com.payment.service.WebhookUrlPolicy;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Delivers to a stub HTTP server on loopback, so the endpoint policy allows plain http and private addresses.
+ * Backoff is shortened to 100 ms so retries happen within the test. The context
+ * is closed afterwards, so its delivery workers do not claim rows written by other test classes.
+ */
+@DirtiesContext
+@TestPropertySource(properties = {
+        "webhook.delivery.enabled=true",
+        "webhook.delivery.workers=2",
+        "webhook.delivery.batch-size=10",
+        "webhook.delivery.max-connections-per-host=4",
+        "webhook.delivery.timeout-ms=2000",
+        "webhook.delivery.lease-ms=5000",
+        "webhook.delivery.max-attempts=3",
+        "webhook.delivery.backoff.initial-ms=100",
+        "webhook.delivery.backoff.max-ms=400",
+        "webhook.delivery.poll-ms=20",
+        "webhook.endpoint.require-https=false",
+        "webhook.endpoint.allow-private-addresses=true"
+})
+class WebhookDeliveryIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    PaymentIntentService paymentIntentService;
+    @Autowired
+    WebhookEndpointService webhookEndpointService;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    IdempotencyRecordRepository idempotencyRecordRepository;
+    @Autowired
+    PaymentEventRepository paymentEventRepository;
+    @Autowired
+    WebhookDeliveryRepository webhookDeliveryRepository;
+    @Autowired
+    PaymentIntentRepository paymentIntentRepository;
+    @Autowired
+    ApiKeyRepository apiKeyRepository;
+    @Autowired
+    MerchantRepository merchantRepository;
+
+    private record Received(String id, String signature, String body, long atMillis) {
+    }
+
+    private HttpServer stub;
+    private final List<Received> received = new CopyOnWriteArrayList<>();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+    private volatile IntUnaryOperator statusForCall = call -> 200;
+    private volatile long latencyMs;
+    private final List<WebhookDeliveryEngine> otherNodes = new ArrayList<>();
+    private Long merchantId;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        idempotencyRecordRepository.deleteAll();
+        paymentEventRepository.deleteAll();
+        webhookDeliveryRepository.deleteAll();
+        paymentIntentRepository.deleteAll();
+        apiKeyRepository.deleteAll();
+        merchantRepository.deleteAll();
+
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        stub.setExecutor(Executors.newCachedThreadPool());
+        stub.createContext("/hooks", exchange -> {
+            int now = concurrent.incrementAndGet();
+            maxConcurrent.accumulateAndGet(now, Math::max);
+            try (InputStream in = exchange.getRequestBody()) {
+                received.add(new Received(exchange.getRequestHeaders().getFirst("Webhook-Id"),
+                        exchange.getRequestHeaders().getFirst("Webhook-Signature"),
+                        new String(in.readAllBytes(), StandardCharsets.UTF_8), System.currentTimeMillis()));
+                if (latencyMs > 0) {
+                    Thread.sleep(latencyMs);
+                }
+                exchange.sendResponseHeaders(statusForCall.applyAsInt(calls.incrementAndGet()), -1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrent.decrementAndGet();
+                exchange.close();
+            }
+        });
+        stub.start();
+
+        Merchant merchant = new Merchant();
+        merchant.setName("Webhooks");
+        merchant.setEmail("webhooks@test.com");
+        merchant.setPasswordHash("unused");
+        merchantId = merchantRepository.save(merchant).getId();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (WebhookDeliveryEngine node : otherNodes) {
+            node.stop();
+        }
+        stub.stop(0);
+    }
+
+    @Test
+    void settledIntent_isDeliveredOnce_withVerifiableSignature() throws Exception {
+        String secret = webhookEndpointService.set(merchantId, endpoint()).secret();
+
+        PaymentIntent intent = confirm();
+
+        WebhookDelivery delivery = awaitDelivery(d -> d.getStatus() == WebhookDeliveryStatus.DELIVERED);
+        assertEquals(1, delivery.getAttempts());
+        assertEquals(1, received.size());
+        Received request = received.get(0);
+        assertEquals(String.valueOf(delivery.getId()), request.id());
+        long timestamp = Long.parseLong(request.signature().substring(2, request.signature().indexOf(',')));
+        assertEquals(WebhookDeliveryEngine.signature(secret, timestamp, request.body()), request.signature());
+        var event = objectMapper.readTree(request.body());
+        assertEquals("payment_intent.succeeded", event.get("type").asText());
+        assertEquals(intent.getId().toString(), event.get("data").get("id").asText());
+        assertEquals("SUCCEEDED", event.get("data").get("status").asText());
+    }
+
+    @Test
+    void failedAttempts_areRetriedWithBackoff_untilDelivered() throws Exception {
+        webhookEndpointService.set(merchantId, endpoint());
+        statusForCall = call -> call <= 2 ? 503 : 200;
+
+        confirm();
+
+        WebhookDelivery delivery = awaitDelivery(d -> d.getStatus() == WebhookDeliveryStatus.DELIVERED);
+        assertEquals(3, delivery.getAttempts());
+        assertNull(delivery.getLastError());
+        assertEquals(3, received.size());
+        // Attempt n waits at least half of 100 ms * 2^(n-1)
+        assertTrue(received.get(1).atMillis() - received.get(0).atMillis() >= 50);
+        assertTrue(received.get(2).atMillis() - received.get(1).atMillis() >= 100);
+    }
+
+    @Test
+    void deliveryIsMarkedFailed_afterMaxAttempts_andNothingIsQueuedWithoutEndpoint() throws Exception {
+        webhookEndpointService.set(merchantId, endpoint());
+        statusForCall = call -> 500;
+
+        confirm();
+
+        WebhookDelivery delivery = awaitDelivery(d -> d.getStatus() == WebhookDeliveryStatus.FAILED);
+        assertEquals(3, delivery.getAttempts());
+        assertEquals("HTTP 500", delivery.getLastError());
+        assertEquals(3, received.size());
+
+        webhookDeliveryRepository.deleteAll();
+        webhookEndpointService.remove(merchantId);
+        PaymentIntent unsent = confirm();
+        Await.until("intent settled", () -> paymentIntentRepository.findByIdAndMerchantId(unsent.getId(), merchantId)
+                .orElseThrow().getStatus() == PaymentStatus.SUCCEEDED);
+        assertEquals(0, webhookDeliveryRepository.count());
+        assertEquals(3, received.size());
+    }
+
+    @Test
+    void endpointRejectedByPolicy_atSendTime_failsWithoutRetry() throws Exception {
+        webhookEndpointService.set(merchantId, endpoint());
+        // Stored before the policy applied; deliveries must not follow it
+        jdbcTemplate.update("UPDATE merchant SET webhook_url = ? WHERE id = ?",
+                "ftp://127.0.0.1:" + stub.getAddress().getPort() + "/hooks", merchantId);
+
+        confirm();
+
+        WebhookDelivery delivery = awaitDelivery(d -> d.getStatus() == WebhookDeliveryStatus.FAILED);
+        assertEquals(1, delivery.getAttempts());
+        assertEquals("Webhook URL must use http(s)", delivery.getLastError());
+        assertEquals(0, received.size());
+    }
+
+    @Test
+    void severalNodes_shareTheQueue_withoutDoubleDelivery_andRespectHostLimit() throws Exception {
+        webhookEndpointService.set(merchantId, endpoint());
+        latencyMs = 20;
+        for (int i = 0; i < 2; i++) {
+            WebhookDeliveryEngine node = new WebhookDeliveryEngine(jdbcTemplate, new SimpleMeterRegistry(),
+                    new WebhookUrlPolicy(false, true), 2, 10, 4, 2_000, 5_000, 3, 100, 400, 20, false);
+            otherNodes.add(node);
+            node.start();
+        }
+        int deliveries = 300;
+        for (int i = 0; i < deliveries; i++) {
+            paymentIntentService.create(merchantId, new BigDecimal("10.00"), "SEK", null, null, null, null);
+        }
+        jdbcTemplate.update("""
+                INSERT INTO webhook_delivery (id, payment_intent_id, merchant_id, event_type, status, payload)
+                SELECT nextval('webhook_delivery_id_seq'), id, merchant_id, 'SUCCEEDED', 'PENDING', '{}' FROM payment_intent
+                """);
+
+        Await.until(deliveries + " deliveries", Duration.ofSeconds(30), () -> jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM webhook_delivery WHERE status = 'DELIVERED'", Long.class) >= deliveries);
+
+        assertEquals(deliveries, (long) jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM webhook_delivery WHERE status = 'DELIVERED' AND attempts = 1", Long.class));
+        Map<String, Integer> perDelivery = new ConcurrentHashMap<>();
+        received.forEach(r -> perDelivery.merge(r.id(), 1, Integer::sum));
+        assertEquals(deliveries, perDelivery.size());
+        assertTrue(perDelivery.values().stream().allMatch(count -> count == 1), "delivered more than once");
+        // Three nodes, each with at most 4 connections to the stub host
+        assertTrue(maxConcurrent.get() <= 12, "max concurrent " + maxConcurrent.get());
+        assertTrue(maxConcurrent.get() > 4, "nodes did not deliver concurrently: " + maxConcurrent.get());
+    }
+
+    private String endpoint() {
+        return "http://127.0.0.1:" + stub.getAddress().getPort() + "/hooks";
+    }
+
+    private PaymentIntent confirm() {
+        PaymentIntent intent = paymentIntentService.create(merchantId, new BigDecimal("10.00"), "SEK", null, null, null, null);
+        return paymentIntentService.confirm(merchantId, intent.getId(), UUID.randomUUID().toString(), "hash");
+    }
+
+    private WebhookDelivery awaitDelivery(Predicate<WebhookDelivery> done) {
+        Await.until("delivery state", () -> {
+            List<WebhookDelivery> deliveries = webhookDeliveryRepository.findAll();
+            return deliveries.size() == 1 && done.test(deliveries.get(0));
+        });
+        return webhookDeliveryRepository.findAll().get(0);
+    }
+}